@@ -0,0 +1,65 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import dev.masterflomaster1.jfxc.crypto.classic.ClassicCipherBenchmark;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the block cipher benchmarks over every registered block cipher, mode and padding, together with the classic
+ * cipher benchmark, and writes the results as JSON.
+ *
+ * <p>Accepts the regular JMH command line. Parameters given with {@code -p} replace the full sweep, e.g.
+ * {@code -p algorithm=AES,SM4 -p payloadSize=1048576}, and benchmark patterns narrow the run to some benchmarks.</p>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() { }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        SecurityUtils.init();
+
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(ResultFormatType.JSON);
+
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(BlockCipherBenchmark.class.getSimpleName());
+            options.include(FileOperationsBenchmark.class.getSimpleName());
+            options.include(ClassicCipherBenchmark.class.getSimpleName());
+        }
+
+        sweep(commandLine, options, "algorithm", SecurityUtils.getBlockCiphers().stream().toList());
+        sweep(commandLine, options, "mode",
+                Arrays.stream(BlockCipherImpl.Mode.values()).map(BlockCipherImpl.Mode::getMode).toList());
+        sweep(commandLine, options, "padding",
+                Arrays.stream(BlockCipherImpl.Padding.values()).map(BlockCipherImpl.Padding::getPadding).toList());
+
+        new Runner(options.build()).run();
+    }
+
+    /**
+     * Generates a key of the smallest length the algorithm supports.
+     */
+    static byte[] generateKey(String algorithm) {
+        List<Integer> keyLengths = BlockCipherImpl.getAvailableKeyLengths(algorithm);
+        return BlockCipherImpl.generateKey(algorithm, keyLengths.isEmpty() ? 128 : keyLengths.get(0));
+    }
+
+    private static void sweep(CommandLineOptions commandLine,
+                              ChainedOptionsBuilder options,
+                              String name,
+                              List<String> values) {
+        if (!commandLine.getParameter(name).hasValue())
+            options.param(name, values.toArray(String[]::new));
+    }
+
+}
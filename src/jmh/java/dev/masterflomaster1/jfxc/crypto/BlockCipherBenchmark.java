@@ -0,0 +1,76 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@code byte[]} API of {@link BlockCipherImpl}.
+ *
+ * <p>The parameter defaults only cover a single combination, {@link BenchmarkRunner} expands them to every
+ * registered block cipher, mode and padding.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockCipherBenchmark {
+
+    @Param("AES")
+    public String algorithm;
+
+    @Param("CBC")
+    public String mode;
+
+    @Param("PKCS7Padding")
+    public String padding;
+
+    @Param({"64", "4096", "1048576", "67108864"})
+    public int payloadSize;
+
+    private BlockCipherImpl.Mode cipherMode;
+    private BlockCipherImpl.Padding cipherPadding;
+    private byte[] key;
+    private byte[] iv;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SecurityUtils.init();
+
+        cipherMode = BlockCipherImpl.Mode.fromString(mode);
+        cipherPadding = BlockCipherImpl.Padding.fromString(padding);
+        key = BenchmarkRunner.generateKey(algorithm);
+        iv = BlockCipherImpl.generateIV(algorithm);
+
+        plaintext = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(plaintext);
+        ciphertext = BlockCipherImpl.encrypt(algorithm, cipherMode, cipherPadding, iv, plaintext, key);
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return BlockCipherImpl.encrypt(algorithm, cipherMode, cipherPadding, iv, plaintext, key);
+    }
+
+    @Benchmark
+    public byte[] decrypt() {
+        return BlockCipherImpl.decrypt(algorithm, cipherMode, cipherPadding, iv, ciphertext, key);
+    }
+
+}
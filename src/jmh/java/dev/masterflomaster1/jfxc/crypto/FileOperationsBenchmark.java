@@ -0,0 +1,94 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the file paths in {@link FileOperations}, from the first read to the last write.
+ *
+ * <p>Every invocation creates and initializes its cipher, the same as the file encryption paths do.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileOperationsBenchmark {
+
+    @Param("AES")
+    public String algorithm;
+
+    @Param("CBC")
+    public String mode;
+
+    @Param("PKCS7Padding")
+    public String padding;
+
+    @Param({"64", "4096", "1048576", "67108864"})
+    public int payloadSize;
+
+    /**
+     * {@link FileOperations.IoMode} value, every backend goes through the same dispatcher.
+     */
+    @Param({"STREAM", "NIO", "MAPPED", "PIPELINED", "AUTO"})
+    public String ioPath;
+
+    private BlockCipherImpl.Mode cipherMode;
+    private BlockCipherImpl.Padding cipherPadding;
+    private byte[] key;
+    private byte[] iv;
+    private Path input;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SecurityUtils.init();
+
+        cipherMode = BlockCipherImpl.Mode.fromString(mode);
+        cipherPadding = BlockCipherImpl.Padding.fromString(padding);
+        key = BenchmarkRunner.generateKey(algorithm);
+        iv = BlockCipherImpl.generateIV(algorithm);
+
+        byte[] data = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(data);
+
+        input = Files.createTempFile("jmh", ".bin");
+        output = Files.createTempFile("jmh", ".enc");
+        Files.write(input, data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void encrypt() throws GeneralSecurityException {
+        Cipher cipher = BlockCipherImpl.initCipher(Cipher.ENCRYPT_MODE, algorithm, cipherMode, cipherPadding, iv, key);
+
+        FileOperations.encryptAndDecrypt(Cipher.ENCRYPT_MODE, cipher, input, output,
+                FileOperations.IoMode.valueOf(ioPath));
+    }
+
+}
@@ -0,0 +1,98 @@
+package dev.masterflomaster1.jfxc.crypto.classic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the substitution ciphers, the {@code String} methods next to their {@code char[]} bulk variants.
+ *
+ * <p>The corpus is mixed-case ASCII prose with spaces and punctuation. The forks inherit
+ * {@code --add-modules jdk.incubator.vector} from the runner, replacing their arguments with {@code -jvmArgs} measures
+ * the bulk methods on plain array loops instead.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassicCipherBenchmark {
+
+    private static final String WORDS = "the quick brown fox jumps over a lazy dog while thirteen Zebras watch";
+
+    @Param({"4096", "1048576", "16777216"})
+    public int textLength;
+
+    private String text;
+    private char[] chars;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] words = WORDS.split(" ");
+        Random random = new Random(textLength);
+        StringBuilder builder = new StringBuilder(textLength + 16);
+
+        while (builder.length() < textLength) {
+            builder.append(words[random.nextInt(words.length)]);
+            builder.append(random.nextInt(8) == 0 ? ". " : " ");
+        }
+
+        builder.setLength(textLength);
+        text = builder.toString();
+        chars = text.toCharArray();
+    }
+
+    @Benchmark
+    public String caesarString() {
+        return CaesarCipherImpl.encrypt(text, 3);
+    }
+
+    @Benchmark
+    public char[] caesarBulk() {
+        return CaesarCipherImpl.encrypt(chars, 3);
+    }
+
+    @Benchmark
+    public String affineString() {
+        return AffineCipherImpl.encrypt(text, 5, 8);
+    }
+
+    @Benchmark
+    public char[] affineBulk() {
+        return AffineCipherImpl.encrypt(chars, 5, 8);
+    }
+
+    @Benchmark
+    public String atbashString() {
+        return AtbashCipherImpl.encrypt(text);
+    }
+
+    @Benchmark
+    public char[] atbashBulk() {
+        return AtbashCipherImpl.encrypt(chars);
+    }
+
+    @Benchmark
+    public String vigenereString() {
+        return VigenereCipherImpl.encrypt(text, "LEMON");
+    }
+
+    @Benchmark
+    public char[] vigenereBulk() {
+        return VigenereCipherImpl.encrypt(chars, "LEMON");
+    }
+
+}
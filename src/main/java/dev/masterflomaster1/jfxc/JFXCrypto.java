@@ -1,5 +1,6 @@
 package dev.masterflomaster1.jfxc;
 
+import dev.masterflomaster1.jfxc.crypto.ProviderRouter;
 import dev.masterflomaster1.jfxc.gui.event.BrowseEvent;
 import dev.masterflomaster1.jfxc.gui.event.DefaultEventBus;
 import dev.masterflomaster1.jfxc.gui.event.HotkeyEvent;
@@ -48,6 +49,7 @@ public class JFXCrypto extends Application {
         stage = primaryStage;
 
         Thread.currentThread().setUncaughtExceptionHandler(new DefaultExceptionHandler(primaryStage));
+        ProviderRouter.setForegroundThread(Thread.currentThread());
         loadApplicationProperties();
 
         if (IS_DEV_MODE) {
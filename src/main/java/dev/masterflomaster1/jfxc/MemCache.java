@@ -7,6 +7,7 @@ public final class MemCache {
 
     private static final Map<String, String> STRING_POOL = new HashMap<>();
     private static final Map<String, Integer> INTEGER_POOL = new HashMap<>();
+    private static final Map<String, Boolean> BOOLEAN_POOL = new HashMap<>();
 
     private MemCache() { }
 
@@ -24,6 +25,13 @@ public final class MemCache {
         return defaultInteger;
     }
 
+    public static boolean readBoolean(String key, boolean defaultBoolean) {
+        if (BOOLEAN_POOL.containsKey(key))
+            return BOOLEAN_POOL.get(key);
+
+        return defaultBoolean;
+    }
+
     public static void writeString(String key, String value) {
         STRING_POOL.put(key, value);
     }
@@ -32,4 +40,8 @@ public final class MemCache {
         INTEGER_POOL.put(key, value);
     }
 
+    public static void writeBoolean(String key, boolean value) {
+        BOOLEAN_POOL.put(key, value);
+    }
+
 }
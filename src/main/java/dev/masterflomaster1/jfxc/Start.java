@@ -1,5 +1,6 @@
 package dev.masterflomaster1.jfxc;
 
+import dev.masterflomaster1.jfxc.crypto.ProviderRouter;
 import dev.masterflomaster1.jfxc.crypto.SecurityUtils;
 
 public final class Start {
@@ -8,6 +9,7 @@ public final class Start {
 
     public static void main(String[] args) {
         SecurityUtils.init();
+        ProviderRouter.warmUpInBackground(ProviderRouter.cacheFile());
         JFXCrypto.launch(JFXCrypto.class, args);
     }
 
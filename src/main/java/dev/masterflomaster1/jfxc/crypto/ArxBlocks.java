@@ -0,0 +1,34 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+/**
+ * Computes batches of consecutive ChaCha20 or Salsa20 keystream blocks for {@link SimdStreamCipher}.
+ *
+ * <p>Both functions take the 16 input words with the counter words left for the implementation to fill in, run 20
+ * rounds and write each 64 byte block little-endian. Instances keep scratch space and are not thread-safe.</p>
+ */
+interface ArxBlocks {
+
+    int BLOCK_SIZE = 64;
+
+    /**
+     * Number of blocks written per call.
+     */
+    int blocks();
+
+    /**
+     * Writes the ChaCha20 blocks for {@code counter, counter + 1, ...} to the start of {@code out}.
+     *
+     * @param state The input words, word 12 receives the low counter bits.
+     * @param wideCounter Whether word 13 receives the high counter bits, as in the original ChaCha. RFC 7539 keeps a
+     *                    32-bit counter and uses word 13 for the nonce.
+     */
+    void chacha(int[] state, long counter, boolean wideCounter, byte[] out);
+
+    /**
+     * Writes the Salsa20 blocks for {@code counter, counter + 1, ...} to the start of {@code out}.
+     *
+     * @param state The input words, words 8 and 9 receive the counter.
+     */
+    void salsa(int[] state, long counter, byte[] out);
+
+}
@@ -0,0 +1,202 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a file on {@link AsynchronousFileChannel} with several large reads in flight and hands the chunks to
+ * {@link #consume(Slot, boolean)} strictly in file order.
+ *
+ * <p>The file is cut into chunks that travel through a fixed set of slots, each with its own direct buffer, so up to
+ * {@link #SLOTS} positional reads are outstanding at once and the device always has a queue to work on. Chunks are
+ * consumed on whichever I/O thread completes the read the consumer is waiting for. A slot belongs to the consumer
+ * until it calls {@link #release(Slot)}, which starts reading the chunk {@link #SLOTS} places ahead into it.</p>
+ *
+ * <p>The channel is closed whichever way {@link #result} completes, including cancellation.</p>
+ *
+ * @param <T> Type of the result.
+ */
+abstract class AsyncChunkReader<T> {
+
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Chunks in flight per file. Two would be plain double buffering, more keep the disk busy while the consumer is.
+     */
+    static final int SLOTS = 4;
+
+    final CompletableFuture<T> result = new CompletableFuture<>();
+
+    /**
+     * At least one, an empty file is still consumed once as an empty last chunk.
+     */
+    final long chunkCount;
+    final Slot[] slots;
+
+    private final AsynchronousFileChannel source;
+    private final ProgressMonitor monitor;
+    private final long size;
+
+    /**
+     * Guards {@link #drain()}, whoever raises it from zero consumes chunks for everyone.
+     */
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    /** Only touched inside {@link #drain()}. */
+    private long nextChunk;
+
+    AsyncChunkReader(AsynchronousFileChannel source, ProgressMonitor monitor) throws IOException {
+        this.source = source;
+        this.monitor = monitor;
+        this.size = source.size();
+        this.chunkCount = Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        this.slots = new Slot[(int) Math.min(SLOTS, chunkCount)];
+
+        // Small files get a buffer of their size only
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = new Slot(i, ByteBuffer.allocateDirect((int) Math.min(CHUNK_SIZE, size)));
+    }
+
+    /**
+     * Takes the next chunk in file order, the bytes between position and limit of {@code slot.buffer}. Never called
+     * by two threads at once. Failing the chunk is done by throwing or by completing {@link #result}.
+     *
+     * @param last Whether this is the last chunk of the file.
+     */
+    abstract void consume(Slot slot, boolean last) throws GeneralSecurityException;
+
+    /**
+     * Starts the reads and returns without waiting for any I/O.
+     */
+    final CompletableFuture<T> start() {
+        result.whenComplete((value, e) -> close());
+
+        for (int i = 0; i < slots.length; i++)
+            read(slots[i], i);
+
+        return result;
+    }
+
+    /**
+     * Hands {@code slot} back once the consumer is done with its chunk.
+     */
+    final void release(Slot slot) {
+        if (slot.chunk + slots.length < chunkCount)
+            read(slot, slot.chunk + slots.length);
+    }
+
+    void close() {
+        closeQuietly(source);
+    }
+
+    static void closeQuietly(AsynchronousFileChannel channel) {
+        if (channel == null)
+            return;
+
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // The result is already decided
+        }
+    }
+
+    private void read(Slot slot, long chunk) {
+        long position = chunk * CHUNK_SIZE;
+
+        slot.chunk = chunk;
+        slot.buffer.clear();
+        slot.buffer.limit((int) Math.min(CHUNK_SIZE, size - position));
+        readRemaining(slot, position);
+    }
+
+    /**
+     * Keeps reading until the chunk is complete, a positional read may return less than asked for.
+     */
+    private void readRemaining(Slot slot, long position) {
+        if (result.isDone())
+            return;
+
+        if (!slot.buffer.hasRemaining()) {
+            slot.buffer.flip();
+            slot.ready = true;
+            drain();
+            return;
+        }
+
+        try {
+            source.read(slot.buffer, position, slot, new CompletionHandler<>() {
+                @Override
+                public void completed(Integer read, Slot attachment) {
+                    // The file shrank since it was opened, consume what is there
+                    if (read == -1)
+                        attachment.buffer.limit(attachment.buffer.position());
+
+                    readRemaining(attachment, position + Math.max(read, 0));
+                }
+
+                @Override
+                public void failed(Throwable e, Slot attachment) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Consumes every chunk whose turn has come. Calls that arrive while another thread is draining only leave a
+     * request behind, so the consumer is never run by two threads at once.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0)
+            return;
+
+        do {
+            try {
+                Slot slot;
+
+                while (!result.isDone() && (slot = slots[(int) (nextChunk % slots.length)]).ready
+                        && slot.chunk == nextChunk) {
+                    monitor.checkCancelled();
+
+                    slot.ready = false;
+                    nextChunk++;
+                    monitor.worked(slot.buffer.remaining());
+                    consume(slot, slot.chunk == chunkCount - 1);
+                }
+            } catch (GeneralSecurityException | RuntimeException e) {
+                // Includes the CancellationException of a cancelled monitor
+                result.completeExceptionally(e);
+            }
+        } while (drainRequests.decrementAndGet() != 0);
+    }
+
+    /**
+     * Buffer of one chunk in flight, {@code ready} hands a completely read chunk to {@link #drain()}. {@code index}
+     * is the position in {@link #slots}, for consumers that keep per-slot state of their own.
+     */
+    static final class Slot {
+
+        final int index;
+        final ByteBuffer buffer;
+
+        private volatile long chunk;
+        private volatile boolean ready;
+
+        private Slot(int index, ByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        long chunk() {
+            return chunk;
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous file encryption on {@link AsynchronousFileChannel}.
+ *
+ * <p>The cipher takes the chunks of {@link AsyncChunkReader} strictly in file order and each result is written at
+ * its own position in the destination while the next chunks are ciphered. Every slot has an output buffer of its
+ * own, so a slot is only handed back for its next chunk once its write has completed.</p>
+ *
+ * <p>The calling thread never waits, every step is a completion handler. The reads and writes themselves still block
+ * a thread: on Linux and macOS {@link AsynchronousFileChannel} runs every operation as a blocking call on a thread of
+ * the executor it was opened with, here {@link SharedExecutors#IO}, so each chunk in flight holds a pool thread until
+ * the device answers. Only Windows completes file I/O without a waiting thread.</p>
+ */
+final class AsyncCipherTransfer extends AsyncChunkReader<Long> {
+
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private final Cipher cipher;
+    private final AsynchronousFileChannel destination;
+
+    /**
+     * Output buffer of each slot, only replaced inside {@link #consume(Slot, boolean)}.
+     */
+    private final ByteBuffer[] outputs;
+    private final AtomicLong chunksWritten = new AtomicLong();
+
+    /** Only touched inside {@link #consume(Slot, boolean)}. */
+    private long writePosition;
+    /** Set once the last chunk has been through the cipher. */
+    private volatile long length;
+
+    private AsyncCipherTransfer(Cipher cipher,
+                                AsynchronousFileChannel source,
+                                AsynchronousFileChannel destination,
+                                ProgressMonitor monitor) throws IOException {
+        super(source, monitor);
+        this.cipher = cipher;
+        this.destination = destination;
+        this.outputs = new ByteBuffer[slots.length];
+
+        // One chunk plus the block a padded decryption holds back and the block doFinal may add
+        int outputSize = cipher.getOutputSize(slots[0].buffer.capacity()) + 2 * Math.max(cipher.getBlockSize(), 1);
+
+        for (int i = 0; i < outputs.length; i++)
+            outputs[i] = ByteBuffer.allocateDirect(outputSize);
+    }
+
+    /**
+     * Starts the transfer and returns without waiting for any I/O.
+     *
+     * @return Completes with the number of bytes written. Cancelling it stops the transfer.
+     */
+    static CompletableFuture<Long> start(Cipher cipher, Path target, Path destination, ProgressMonitor monitor) {
+        AsynchronousFileChannel sourceChannel = null;
+        AsynchronousFileChannel destChannel = null;
+
+        try {
+            sourceChannel = AsynchronousFileChannel.open(target, Set.of(StandardOpenOption.READ), SharedExecutors.IO);
+            destChannel = AsynchronousFileChannel.open(destination, EnumSet.of(StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), SharedExecutors.IO);
+
+            return new AsyncCipherTransfer(cipher, sourceChannel, destChannel, monitor).start();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(sourceChannel);
+            closeQuietly(destChannel);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    void consume(Slot slot, boolean last) throws GeneralSecurityException {
+        int inputLength = slot.buffer.remaining();
+        ByteBuffer output = outputs[slot.index];
+
+        // An AEAD decryption holds everything back until doFinal, which then needs room for the whole plaintext
+        int needed = cipher.getOutputSize(inputLength);
+        if (needed > output.capacity()) {
+            output = ByteBuffer.allocate(needed);
+            outputs[slot.index] = output;
+        }
+
+        output.clear();
+        cipher.update(slot.buffer, output);
+
+        if (last)
+            cipher.doFinal(EMPTY_BUFFER.duplicate(), output);
+
+        output.flip();
+        long position = writePosition;
+        writePosition += output.remaining();
+
+        if (last)
+            length = writePosition;
+
+        writeRemaining(slot, output, position);
+    }
+
+    /**
+     * Keeps writing until the output is drained, then hands the slot back for its next chunk.
+     */
+    private void writeRemaining(Slot slot, ByteBuffer output, long position) {
+        if (result.isDone())
+            return;
+
+        if (!output.hasRemaining()) {
+            if (chunksWritten.incrementAndGet() == chunkCount)
+                result.complete(length);
+            else
+                release(slot);
+
+            return;
+        }
+
+        try {
+            destination.write(output, position, slot, new CompletionHandler<>() {
+                @Override
+                public void completed(Integer count, Slot attachment) {
+                    writeRemaining(attachment, output, position + count);
+                }
+
+                @Override
+                public void failed(Throwable e, Slot attachment) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    void close() {
+        super.close();
+        closeQuietly(destination);
+    }
+
+}
@@ -0,0 +1,54 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous file hashing on {@link AsynchronousFileChannel} with several large reads in flight.
+ *
+ * <p>The digest takes the chunks of {@link AsyncChunkReader} in file order and hands each slot straight back, so the
+ * read of the chunk {@link #SLOTS} places ahead starts as soon as the digest is done with it.</p>
+ */
+final class AsyncHashReader extends AsyncChunkReader<byte[]> {
+
+    private final MessageDigest digest;
+
+    private AsyncHashReader(MessageDigest digest, AsynchronousFileChannel channel, ProgressMonitor monitor)
+            throws IOException {
+        super(channel, monitor);
+        this.digest = digest;
+    }
+
+    /**
+     * Starts hashing and returns without waiting for any I/O.
+     *
+     * @return Completes with the digest. Cancelling it stops the reads.
+     */
+    static CompletableFuture<byte[]> start(MessageDigest digest, Path path, ProgressMonitor monitor) {
+        AsynchronousFileChannel channel = null;
+
+        try {
+            channel = AsynchronousFileChannel.open(path, Set.of(StandardOpenOption.READ), SharedExecutors.IO);
+            return new AsyncHashReader(digest, channel, monitor).start();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    void consume(Slot slot, boolean last) {
+        digest.update(slot.buffer);
+
+        if (last)
+            result.complete(digest.digest());
+        else
+            release(slot);
+    }
+
+}
@@ -0,0 +1,361 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Encrypts or decrypts every regular file of a directory tree into a mirrored destination tree.
+ *
+ * <p>Files larger than {@link #SMALL_FILE_THRESHOLD} are scheduled first, largest first, one file per task. Smaller
+ * files are grouped into batches so that a tree of hundreds of thousands of tiny files does not pay one task per
+ * file. The number of files in flight is bounded by the I/O concurrency of the job, progress is sampled periodically
+ * as files/s, bytes/s and ETA, and files that fail are collected into the final {@link Report} instead of aborting
+ * the whole job.</p>
+ */
+public final class BatchFileProcessor {
+
+    public static final int DEFAULT_IO_CONCURRENCY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    static final long SMALL_FILE_THRESHOLD = 1024 * 1024;
+    private static final long BATCH_BYTES = 16 * 1024 * 1024;
+    private static final int BATCH_FILES = 256;
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+    private BatchFileProcessor() { }
+
+    /**
+     * Processes one file. {@code relativePath} is the path of the file below the source root.
+     */
+    @FunctionalInterface
+    public interface FileAction {
+        void process(Path source, Path destination, Path relativePath) throws Exception;
+    }
+
+    /**
+     * Block cipher action. Each file gets its own IV derived from {@code iv} and its relative path, so files in
+     * the same tree never share a keystream; decryption derives the same IVs as long as the layout is unchanged.
+     */
+    public static FileAction blockCipher(boolean encrypt,
+                                         String algorithm,
+                                         BlockCipherImpl.Mode mode,
+                                         BlockCipherImpl.Padding padding,
+                                         byte[] iv,
+                                         byte[] key) {
+        return (source, destination, relativePath) -> {
+            byte[] fileIv = mode == BlockCipherImpl.Mode.ECB ? iv : deriveIv(iv, relativePath);
+
+            String target = source.toString();
+            String output = destination.toString();
+
+            if (encrypt)
+                BlockCipherImpl.nioEncrypt(target, output, algorithm, mode, padding, fileIv, key);
+            else
+                BlockCipherImpl.nioDecrypt(target, output, algorithm, mode, padding, fileIv, key);
+        };
+    }
+
+    /**
+     * Stream cipher action with per-file IVs, see {@link #blockCipher}.
+     */
+    public static FileAction streamCipher(boolean encrypt, String algorithm, byte[] iv, byte[] key) {
+        return (source, destination, relativePath) -> {
+            byte[] fileIv = StreamCipherImpl.getCorrespondingIvLengthBits(algorithm).isPresent()
+                    ? deriveIv(iv, relativePath)
+                    : iv;
+
+            if (encrypt)
+                StreamCipherImpl.nioEncrypt(source, destination, algorithm, fileIv, key);
+            else
+                StreamCipherImpl.nioDecrypt(source, destination, algorithm, fileIv, key);
+        };
+    }
+
+    /**
+     * Derives a per-file IV of the same length as {@code baseIv} from SHA-256 over the base IV and the relative path
+     * with {@code /} separators.
+     */
+    static byte[] deriveIv(byte[] baseIv, Path relativePath) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(baseIv);
+            md.update(relativePath.toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+            byte[] digest = md.digest();
+
+            byte[] iv = new byte[baseIv.length];
+            for (int i = 0; i < iv.length; i++) {
+                // Stretch the digest for IVs longer than 32 bytes, e.g. Threefish-1024
+                iv[i] = (byte) (digest[i % digest.length] ^ (i / digest.length));
+            }
+            return iv;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Job start(Path sourceRoot, Path destinationRoot, FileAction action, Consumer<Progress> listener) {
+        return start(sourceRoot, destinationRoot, action, DEFAULT_IO_CONCURRENCY, listener);
+    }
+
+    /**
+     * Starts processing a directory tree in the background.
+     *
+     * @param sourceRoot The directory whose regular files are processed.
+     * @param destinationRoot The directory the mirrored tree is written to, neither {@code sourceRoot} nor inside it.
+     * @param action What to do with every file.
+     * @param ioConcurrency The maximum number of files processed at the same time.
+     * @param listener Receives progress snapshots on a background thread, may be {@code null}.
+     * @return A handle to observe or cancel the job.
+     */
+    public static Job start(Path sourceRoot,
+                            Path destinationRoot,
+                            FileAction action,
+                            int ioConcurrency,
+                            Consumer<Progress> listener) {
+        Objects.requireNonNull(sourceRoot);
+        Objects.requireNonNull(destinationRoot);
+        Objects.requireNonNull(action);
+
+        if (ioConcurrency < 1)
+            throw new IllegalArgumentException("I/O concurrency must be positive: " + ioConcurrency);
+
+        Path source = sourceRoot.toAbsolutePath().normalize();
+        Path destination = destinationRoot.toAbsolutePath().normalize();
+
+        // Inside the source the job would walk into its own output
+        if (destination.startsWith(source))
+            throw new IllegalArgumentException("Destination directory must not be the source directory or inside it");
+
+        var job = new Job(listener);
+        job.run(source, destination, action, ioConcurrency);
+        return job;
+    }
+
+    /**
+     * Groups files into tasks: large files alone and largest first, small files in batches bounded by count and size.
+     */
+    static List<List<FileEntry>> plan(List<FileEntry> files) {
+        List<List<FileEntry>> tasks = new ArrayList<>();
+        List<FileEntry> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparingLong(FileEntry::size).reversed());
+
+        List<FileEntry> batch = new ArrayList<>();
+        long batchBytes = 0;
+
+        for (var entry : sorted) {
+            if (entry.size() >= SMALL_FILE_THRESHOLD) {
+                tasks.add(List.of(entry));
+                continue;
+            }
+
+            if (batch.size() == BATCH_FILES || batchBytes + entry.size() > BATCH_BYTES) {
+                tasks.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+
+            batch.add(entry);
+            batchBytes += entry.size();
+        }
+
+        if (!batch.isEmpty())
+            tasks.add(batch);
+
+        return tasks;
+    }
+
+    record FileEntry(Path relativePath, long size) { }
+
+    public record Progress(long filesDone,
+                           long filesTotal,
+                           long bytesDone,
+                           long bytesTotal,
+                           long failures,
+                           double filesPerSecond,
+                           double bytesPerSecond,
+                           Duration eta) {
+
+        public double fraction() {
+            if (bytesTotal > 0)
+                return (double) bytesDone / bytesTotal;
+
+            return filesTotal == 0 ? 0 : (double) filesDone / filesTotal;
+        }
+    }
+
+    public record Failure(Path path, String message) { }
+
+    public record Report(long filesProcessed,
+                         long bytesProcessed,
+                         List<Failure> failures,
+                         boolean cancelled,
+                         Duration elapsed) { }
+
+    public static final class Job {
+
+        private final Consumer<Progress> listener;
+        private final CompletableFuture<Report> completion = new CompletableFuture<>();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<>();
+
+        private final AtomicLong filesTotal = new AtomicLong();
+        private final AtomicLong bytesTotal = new AtomicLong();
+        private final AtomicLong filesDone = new AtomicLong();
+        private final AtomicLong bytesDone = new AtomicLong();
+
+        private final long startNanos = System.nanoTime();
+
+        private Job(Consumer<Progress> listener) {
+            this.listener = listener;
+        }
+
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        public CompletableFuture<Report> completion() {
+            return completion;
+        }
+
+        public Report await() {
+            return completion.join();
+        }
+
+        public Progress progress() {
+            double seconds = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+            long files = filesDone.get();
+            long bytes = bytesDone.get();
+            long totalFiles = filesTotal.get();
+            long totalBytes = bytesTotal.get();
+
+            double filesPerSecond = files / seconds;
+            double bytesPerSecond = bytes / seconds;
+
+            // Small files are bound by per-file overhead and large ones by throughput, so take the slower estimate
+            double byFiles = filesPerSecond > 0 ? (totalFiles - files) / filesPerSecond : 0;
+            double byBytes = bytesPerSecond > 0 ? (totalBytes - bytes) / bytesPerSecond : 0;
+            Duration eta = Duration.ofMillis((long) (Math.max(byFiles, byBytes) * 1000));
+
+            return new Progress(files, totalFiles, bytes, totalBytes, failures.size(),
+                    filesPerSecond, bytesPerSecond, eta);
+        }
+
+        private void run(Path sourceRoot, Path destinationRoot, FileAction action, int ioConcurrency) {
+            ScheduledFuture<?> ticker = listener == null ? null : SharedExecutors.TIMER.scheduleAtFixedRate(
+                    () -> listener.accept(progress()), PROGRESS_INTERVAL_MILLIS, PROGRESS_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+
+            CompletableFuture
+                    .supplyAsync(() -> scan(sourceRoot), SharedExecutors.IO)
+                    .thenCompose(files -> {
+                        filesTotal.set(files.size());
+                        bytesTotal.set(files.stream().mapToLong(FileEntry::size).sum());
+
+                        // The I/O pool is shared and unbounded, so the job bounds itself by its number of workers
+                        var tasks = new ConcurrentLinkedQueue<>(plan(files));
+                        var workers = new CompletableFuture<?>[Math.max(1, Math.min(ioConcurrency, tasks.size()))];
+
+                        for (int i = 0; i < workers.length; i++) {
+                            workers[i] = CompletableFuture.runAsync(() -> {
+                                List<FileEntry> task;
+                                while ((task = tasks.poll()) != null)
+                                    processTask(task, sourceRoot, destinationRoot, action);
+                            }, SharedExecutors.IO);
+                        }
+
+                        return CompletableFuture.allOf(workers);
+                    })
+                    .whenComplete((ignored, e) -> {
+                        if (ticker != null)
+                            ticker.cancel(false);
+
+                        if (listener != null)
+                            listener.accept(progress());
+
+                        if (e != null) {
+                            completion.completeExceptionally(e);
+                            return;
+                        }
+
+                        completion.complete(new Report(filesDone.get(), bytesDone.get(), List.copyOf(failures),
+                                cancelled.get(), Duration.ofNanos(System.nanoTime() - startNanos)));
+                    });
+        }
+
+        private List<FileEntry> scan(Path sourceRoot) {
+            try (Stream<Path> stream = Files.walk(sourceRoot)) {
+                return stream
+                        .filter(Files::isRegularFile)
+                        .map(p -> new FileEntry(sourceRoot.relativize(p), sizeOf(p)))
+                        .toList();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void processTask(List<FileEntry> task, Path sourceRoot, Path destinationRoot, FileAction action) {
+            for (var entry : task) {
+                if (cancelled.get())
+                    return;
+
+                Path source = sourceRoot.resolve(entry.relativePath());
+                Path destination = destinationRoot.resolve(entry.relativePath());
+
+                try {
+                    Files.createDirectories(destination.getParent());
+                    action.process(source, destination, entry.relativePath());
+
+                    filesDone.incrementAndGet();
+                    bytesDone.addAndGet(entry.size());
+                } catch (Exception e) {
+                    failures.add(new Failure(entry.relativePath(), rootCauseMessage(e)));
+                    deleteQuietly(destination);
+                }
+            }
+        }
+
+        private static long sizeOf(Path path) {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        private static String rootCauseMessage(Throwable e) {
+            Throwable cause = e;
+            while (cause.getCause() != null)
+                cause = cause.getCause();
+
+            return cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+        }
+
+        private static void deleteQuietly(Path path) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) { }
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * BLAKE3 with its 256-bit default output, the chunks of a file hashed in parallel.
+ *
+ * <p>BLAKE3 is a tree by design: the input is cut into 1 KiB chunks and every parent node combines the chaining
+ * values of a left subtree holding the largest power of two of chunks and a right subtree holding the rest. Each
+ * subtree is hashed by its own task, down to {@link #TASK_CHUNKS} chunks, which a task reads at once and hashes
+ * sequentially. The result is the same as of any other BLAKE3 implementation.</p>
+ */
+final class Blake3TreeHash extends TreeHash {
+
+    static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Chunks below which a subtree is not split into further tasks, a power of two so subtrees fit it exactly.
+     */
+    private static final int TASK_CHUNKS = 1024;
+
+    private static final int BLOCK_SIZE = 64;
+    private static final int OUTPUT_SIZE = 32;
+
+    private static final int CHUNK_START = 1;
+    private static final int CHUNK_END = 2;
+    private static final int PARENT = 4;
+    private static final int ROOT = 8;
+
+    private static final int[] IV = {
+            0x6A09E667, 0xBB67AE85, 0x3C6EF372, 0xA54FF53A, 0x510E527F, 0x9B05688C, 0x1F83D9AB, 0x5BE0CD19
+    };
+
+    private static final int[] MSG_PERMUTATION = {2, 6, 3, 10, 7, 0, 4, 13, 1, 11, 12, 5, 9, 14, 15, 8};
+
+    @Override
+    byte[] hash(FileChannel channel, ProgressMonitor monitor) throws IOException {
+        long size = channel.size();
+        // An empty input is still one chunk
+        long chunks = Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+        int[] cv = ForkJoinPool.commonPool().invoke(new Subtree(channel, size, 0, chunks, true, monitor));
+        byte[] output = new byte[OUTPUT_SIZE];
+
+        for (int i = 0; i < OUTPUT_SIZE / 4; i++)
+            intToLittleEndian(cv[i], output, i * 4);
+
+        return output;
+    }
+
+    /**
+     * The size of the left subtree of {@code chunks} chunks, at least one chunk is left to the right.
+     */
+    private static long leftChunks(long chunks) {
+        return Long.highestOneBit(chunks - 1);
+    }
+
+    private static final class Subtree extends RecursiveTask<int[]> {
+
+        private final FileChannel channel;
+        private final long size;
+        private final long start;
+        private final long chunks;
+        private final boolean root;
+        private final ProgressMonitor monitor;
+
+        private Subtree(FileChannel channel, long size, long start, long chunks, boolean root,
+                        ProgressMonitor monitor) {
+            this.channel = channel;
+            this.size = size;
+            this.start = start;
+            this.chunks = chunks;
+            this.root = root;
+            this.monitor = monitor;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (chunks <= TASK_CHUNKS) {
+                long position = start * CHUNK_SIZE;
+                byte[] data = read(channel, position, (int) Math.min(chunks * CHUNK_SIZE, size - position), monitor);
+                return subtree(data, 0, start, chunks, root);
+            }
+
+            long left = leftChunks(chunks);
+            var leftTask = new Subtree(channel, size, start, left, false, monitor);
+            leftTask.fork();
+
+            int[] rightCv = new Subtree(channel, size, start + left, chunks - left, false, monitor).compute();
+            return parent(leftTask.join(), rightCv, root);
+        }
+    }
+
+    /**
+     * Hashes the {@code chunks} chunks starting at {@code offset} of {@code data}, whose first chunk has the index
+     * {@code counter} in the whole input.
+     */
+    private static int[] subtree(byte[] data, int offset, long counter, long chunks, boolean root) {
+        if (chunks == 1)
+            return chunk(data, offset, Math.min(CHUNK_SIZE, data.length - offset), counter, root);
+
+        long left = leftChunks(chunks);
+        int[] leftCv = subtree(data, offset, counter, left, false);
+        int[] rightCv = subtree(data, offset + (int) left * CHUNK_SIZE, counter + left, chunks - left, false);
+        return parent(leftCv, rightCv, root);
+    }
+
+    private static int[] chunk(byte[] data, int offset, int length, long counter, boolean root) {
+        int[] cv = IV.clone();
+        int[] block = new int[16];
+        byte[] last = new byte[BLOCK_SIZE];
+        int blocks = Math.max(1, (length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+
+        for (int i = 0; i < blocks; i++) {
+            int blockOffset = offset + i * BLOCK_SIZE;
+            int blockLength = Math.min(BLOCK_SIZE, length - i * BLOCK_SIZE);
+            int flags = (i == 0 ? CHUNK_START : 0) | (i == blocks - 1 ? CHUNK_END | (root ? ROOT : 0) : 0);
+
+            if (blockLength == BLOCK_SIZE) {
+                littleEndianToInts(data, blockOffset, block);
+            } else {
+                // The last block is zero padded, its real length goes into the compression
+                Arrays.fill(last, (byte) 0);
+                System.arraycopy(data, blockOffset, last, 0, blockLength);
+                littleEndianToInts(last, 0, block);
+            }
+
+            cv = compress(cv, block, counter, blockLength, flags);
+        }
+
+        return cv;
+    }
+
+    private static int[] parent(int[] left, int[] right, boolean root) {
+        int[] block = new int[16];
+        System.arraycopy(left, 0, block, 0, 8);
+        System.arraycopy(right, 0, block, 8, 8);
+        return compress(IV, block, 0, BLOCK_SIZE, PARENT | (root ? ROOT : 0));
+    }
+
+    /**
+     * @return The first eight words of the compression output, the chaining value or the 256-bit root output.
+     */
+    private static int[] compress(int[] cv, int[] block, long counter, int blockLength, int flags) {
+        int[] s = {
+                cv[0], cv[1], cv[2], cv[3], cv[4], cv[5], cv[6], cv[7],
+                IV[0], IV[1], IV[2], IV[3], (int) counter, (int) (counter >>> 32), blockLength, flags
+        };
+        int[] m = block.clone();
+        int[] permuted = new int[16];
+
+        for (int round = 0; round < 7; round++) {
+            g(s, 0, 4, 8, 12, m[0], m[1]);
+            g(s, 1, 5, 9, 13, m[2], m[3]);
+            g(s, 2, 6, 10, 14, m[4], m[5]);
+            g(s, 3, 7, 11, 15, m[6], m[7]);
+            g(s, 0, 5, 10, 15, m[8], m[9]);
+            g(s, 1, 6, 11, 12, m[10], m[11]);
+            g(s, 2, 7, 8, 13, m[12], m[13]);
+            g(s, 3, 4, 9, 14, m[14], m[15]);
+
+            for (int i = 0; i < 16; i++)
+                permuted[i] = m[MSG_PERMUTATION[i]];
+
+            int[] swap = m;
+            m = permuted;
+            permuted = swap;
+        }
+
+        int[] out = new int[8];
+
+        for (int i = 0; i < 8; i++)
+            out[i] = s[i] ^ s[i + 8];
+
+        return out;
+    }
+
+    private static void g(int[] s, int a, int b, int c, int d, int x, int y) {
+        s[a] += s[b] + x;
+        s[d] = Integer.rotateRight(s[d] ^ s[a], 16);
+        s[c] += s[d];
+        s[b] = Integer.rotateRight(s[b] ^ s[c], 12);
+        s[a] += s[b] + y;
+        s[d] = Integer.rotateRight(s[d] ^ s[a], 8);
+        s[c] += s[d];
+        s[b] = Integer.rotateRight(s[b] ^ s[c], 7);
+    }
+
+    private static void littleEndianToInts(byte[] data, int offset, int[] words) {
+        for (int i = 0; i < words.length; i++, offset += 4) {
+            words[i] = (data[offset] & 0xFF)
+                    | (data[offset + 1] & 0xFF) << 8
+                    | (data[offset + 2] & 0xFF) << 16
+                    | (data[offset + 3] & 0xFF) << 24;
+        }
+    }
+
+    private static void intToLittleEndian(int value, byte[] output, int offset) {
+        output[offset] = (byte) value;
+        output[offset + 1] = (byte) (value >>> 8);
+        output[offset + 2] = (byte) (value >>> 16);
+        output[offset + 3] = (byte) (value >>> 24);
+    }
+
+}
@@ -9,14 +9,17 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public final class BlockCipherImpl {
 
@@ -25,43 +28,41 @@ public final class BlockCipherImpl {
     private BlockCipherImpl() { }
 
     public static byte[] encrypt(String algorithm, Mode mode, Padding padding, byte[] iv, byte[] inputData, byte[] key) {
-        try {
-            SecretKey secretKey = new SecretKeySpec(key, algorithm);
-            Cipher cipher = Cipher.getInstance(algorithm + "/%s/%s".formatted(mode.mode, padding.padding), "BC");
-
-            if (mode == Mode.ECB) {
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            } else {
-                IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivParameterSpec);
-            }
-
-            return cipher.doFinal(inputData);
-        } catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException | InvalidKeyException |
-                 IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException e) {
-            throw new RuntimeException(e);
-        }
+        return doFinal(Cipher.ENCRYPT_MODE, algorithm, mode, padding, iv, inputData, key);
     }
 
     public static byte[] decrypt(String algorithm, Mode mode, Padding padding, byte[] iv, byte[] inputData, byte[] key) {
-        try {
-            SecretKey secretKey = new SecretKeySpec(key, algorithm);
-            Cipher cipher = Cipher.getInstance(algorithm + "/%s/%s".formatted(mode.mode, padding), "BC");
-
-            if (mode == Mode.ECB) {
-                cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            } else  {
-                IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-                cipher.init(Cipher.DECRYPT_MODE, secretKey, ivParameterSpec);
-            }
+        return doFinal(Cipher.DECRYPT_MODE, algorithm, mode, padding, iv, inputData, key);
+    }
 
-            return cipher.doFinal(inputData);
+    private static byte[] doFinal(int opmode,
+                                  String algorithm,
+                                  Mode mode,
+                                  Padding padding,
+                                  byte[] iv,
+                                  byte[] inputData,
+                                  byte[] key) {
+        String transformation = algorithm + "/" + mode.getMode() + "/" + padding.getPadding();
+
+        try (var lease = CipherPool.shared().acquire(
+                transformation, opmode, algorithm, key, mode == Mode.ECB ? null : effectiveIv(algorithm, mode, iv))) {
+            return lease.doFinal(inputData);
         } catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException | InvalidKeyException |
                  IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Binds a block cipher to {@code key} for encrypting and decrypting many messages that differ only in their IV.
+     * The key schedule is expanded once per pooled cipher instead of once per message.
+     *
+     * @return A thread-safe handle, close it to wipe the key.
+     */
+    public static PreparedBlockCipher prepare(String algorithm, Mode mode, Padding padding, byte[] key) {
+        return new PreparedBlockCipher(algorithm, mode, padding, key);
+    }
+
     public static void encrypt(String target,
                                String destination,
                                String algorithm,
@@ -70,15 +71,7 @@ public final class BlockCipherImpl {
                                byte[] iv,
                                byte[] key) {
         try {
-            SecretKey secretKey = new SecretKeySpec(key, algorithm);
-            Cipher cipher = Cipher.getInstance(algorithm + "/" + mode.getMode() + "/" + padding.getPadding(), "BC");
-
-            if (mode == Mode.ECB) {
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            } else {
-                IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivParameterSpec);
-            }
+            Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, algorithm, mode, padding, iv, key);
 
             FileOperations.encrypt(cipher, Paths.get(target), Paths.get(destination));
         } catch (Exception e) {
@@ -93,23 +86,62 @@ public final class BlockCipherImpl {
                                   Padding padding,
                                   byte[] iv,
                                   byte[] key) {
+        nioEncrypt(target, destination, algorithm, mode, padding, iv, key, FileOperations.IoMode.NIO);
+    }
+
+    public static void nioEncrypt(String target,
+                                  String destination,
+                                  String algorithm,
+                                  Mode mode,
+                                  Padding padding,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode) {
+        nioEncrypt(target, destination, algorithm, mode, padding, iv, key, ioMode, ProgressMonitor.NONE);
+    }
+
+    public static void nioEncrypt(String target,
+                                  String destination,
+                                  String algorithm,
+                                  Mode mode,
+                                  Padding padding,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode,
+                                  ProgressMonitor monitor) {
+        // CTR segments are independent, so large files are processed on all cores
+        if (isParallelCtr(ioMode, mode, algorithm)) {
+            ParallelCtrFileEngine.encryptAndDecrypt(Cipher.ENCRYPT_MODE, algorithm, padding, key, iv,
+                    Paths.get(target), Paths.get(destination), monitor);
+            return;
+        }
+
         try {
-            SecretKey secretKey = new SecretKeySpec(key, algorithm);
-            Cipher cipher = Cipher.getInstance(algorithm + "/" + mode.getMode() + "/" + padding.getPadding(), "BC");
-
-            if (mode == Mode.ECB) {
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            } else {
-                IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivParameterSpec);
-            }
+            Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, algorithm, mode, padding, iv, key);
 
-            FileOperations.nioEncryptAndDecrypt(cipher, Paths.get(target), Paths.get(destination));
+            FileOperations.encryptAndDecrypt(Cipher.ENCRYPT_MODE, cipher, Paths.get(target), Paths.get(destination),
+                    ioMode, monitor);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Encrypts like {@link #nioEncrypt}, keeping a checkpoint journal next to the destination so that an interrupted
+     * run continues where it stopped when started again. See {@link ResumableEncryption}.
+     */
+    public static ResumableEncryption.Result resumableEncrypt(String target,
+                                                              String destination,
+                                                              String algorithm,
+                                                              Mode mode,
+                                                              Padding padding,
+                                                              byte[] iv,
+                                                              byte[] key,
+                                                              ProgressMonitor monitor) {
+        return ResumableEncryption.encrypt(Paths.get(target), Paths.get(destination), algorithm, mode, padding, iv, key,
+                monitor);
+    }
+
     public static void decrypt(String target,
                                String destination,
                                String algorithm,
@@ -119,15 +151,7 @@ public final class BlockCipherImpl {
                                byte[] key) {
 
         try {
-            SecretKey secretKey = new SecretKeySpec(key, algorithm);
-            Cipher cipher = Cipher.getInstance(algorithm + "/" + mode.getMode() + "/" + padding.getPadding(), "BC");
-
-            if (mode == Mode.ECB) {
-                cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            } else {
-                IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-                cipher.init(Cipher.DECRYPT_MODE, secretKey, ivParameterSpec);
-            }
+            Cipher cipher = initCipher(Cipher.DECRYPT_MODE, algorithm, mode, padding, iv, key);
 
             FileOperations.decrypt(cipher, Paths.get(target), Paths.get(destination));
         } catch (Exception e) {
@@ -136,30 +160,102 @@ public final class BlockCipherImpl {
     }
 
     public static void nioDecrypt(String target,
-                               String destination,
-                               String algorithm,
-                               Mode mode,
-                               Padding padding,
-                               byte[] iv,
-                               byte[] key) {
+                                  String destination,
+                                  String algorithm,
+                                  Mode mode,
+                                  Padding padding,
+                                  byte[] iv,
+                                  byte[] key) {
+        nioDecrypt(target, destination, algorithm, mode, padding, iv, key, FileOperations.IoMode.NIO);
+    }
+
+    public static void nioDecrypt(String target,
+                                  String destination,
+                                  String algorithm,
+                                  Mode mode,
+                                  Padding padding,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode) {
+        nioDecrypt(target, destination, algorithm, mode, padding, iv, key, ioMode, ProgressMonitor.NONE);
+    }
+
+    public static void nioDecrypt(String target,
+                                  String destination,
+                                  String algorithm,
+                                  Mode mode,
+                                  Padding padding,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode,
+                                  ProgressMonitor monitor) {
+        // CTR segments are independent, so large files are processed on all cores
+        if (isParallelCtr(ioMode, mode, algorithm)) {
+            ParallelCtrFileEngine.encryptAndDecrypt(Cipher.DECRYPT_MODE, algorithm, padding, key, iv,
+                    Paths.get(target), Paths.get(destination), monitor);
+            return;
+        }
 
         try {
-            SecretKey secretKey = new SecretKeySpec(key, algorithm);
-            Cipher cipher = Cipher.getInstance(algorithm + "/" + mode.getMode() + "/" + padding.getPadding(), "BC");
-
-            if (mode == Mode.ECB) {
-                cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            } else {
-                IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-                cipher.init(Cipher.DECRYPT_MODE, secretKey, ivParameterSpec);
-            }
+            Cipher cipher = initCipher(Cipher.DECRYPT_MODE, algorithm, mode, padding, iv, key);
 
-            FileOperations.nioEncryptAndDecrypt(cipher, Paths.get(target), Paths.get(destination));
+            FileOperations.encryptAndDecrypt(Cipher.DECRYPT_MODE, cipher, Paths.get(target), Paths.get(destination),
+                    ioMode, monitor);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Encrypts a file like {@link #nioEncrypt} without blocking the calling thread, see
+     * {@link FileOperations#asyncEncryptAndDecrypt(Cipher, java.nio.file.Path, java.nio.file.Path, ProgressMonitor)}.
+     *
+     * @return Completes with the number of bytes written, or exceptionally if the cipher cannot be created or the
+     * transfer fails.
+     */
+    public static CompletableFuture<Long> asyncEncrypt(String target,
+                                                       String destination,
+                                                       String algorithm,
+                                                       Mode mode,
+                                                       Padding padding,
+                                                       byte[] iv,
+                                                       byte[] key,
+                                                       ProgressMonitor monitor) {
+        return asyncTransform(Cipher.ENCRYPT_MODE, target, destination, algorithm, mode, padding, iv, key, monitor);
+    }
+
+    /**
+     * Decrypts a file like {@link #nioDecrypt} without blocking the calling thread, see
+     * {@link #asyncEncrypt(String, String, String, Mode, Padding, byte[], byte[], ProgressMonitor)}.
+     */
+    public static CompletableFuture<Long> asyncDecrypt(String target,
+                                                       String destination,
+                                                       String algorithm,
+                                                       Mode mode,
+                                                       Padding padding,
+                                                       byte[] iv,
+                                                       byte[] key,
+                                                       ProgressMonitor monitor) {
+        return asyncTransform(Cipher.DECRYPT_MODE, target, destination, algorithm, mode, padding, iv, key, monitor);
+    }
+
+    private static CompletableFuture<Long> asyncTransform(int opmode,
+                                                          String target,
+                                                          String destination,
+                                                          String algorithm,
+                                                          Mode mode,
+                                                          Padding padding,
+                                                          byte[] iv,
+                                                          byte[] key,
+                                                          ProgressMonitor monitor) {
+        try {
+            Cipher cipher = initCipher(opmode, algorithm, mode, padding, iv, key);
+            return FileOperations.asyncEncryptAndDecrypt(cipher, Paths.get(target), Paths.get(destination), monitor);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     /**
      * Temporarily removed {@code DSTU7624 512} to fix key generation exception
      */
@@ -180,7 +276,7 @@ public final class BlockCipherImpl {
         };
     }
 
-    private static int getBlockLengthBits(String algorithm) {
+    static int getBlockLengthBits(String algorithm) {
         return switch (algorithm) {
             case "DES", "DESEDE", "BLOWFISH", "CAST5", "GOST28147", "IDEA", "RC2", "RC5", "SKIPJACK", "TEA", "XTEA" -> 64;
             case "SHACAL-2", "Threefish-256" -> 256;
@@ -190,6 +286,46 @@ public final class BlockCipherImpl {
         };
     }
 
+    /**
+     * The NIO and automatic paths hand CTR files to {@link ParallelCtrFileEngine}, the others keep a single cipher.
+     */
+    private static boolean isParallelCtr(FileOperations.IoMode ioMode, Mode mode, String algorithm) {
+        return (ioMode == FileOperations.IoMode.NIO || ioMode == FileOperations.IoMode.AUTO)
+                && mode == Mode.CTR
+                && ParallelCtrFileEngine.isSupported(algorithm);
+    }
+
+    /**
+     * GOST R 34.13-2015 counter mode takes an IV of half the block length, so the block-sized IV produced by
+     * {@link #generateIV(String)} is truncated for it.
+     */
+    static byte[] effectiveIv(String algorithm, Mode mode, byte[] iv) {
+        int halfBlockBytes = getBlockLengthBits(algorithm) / 16;
+
+        if (mode == Mode.CTR && "GOST3412-2015".equals(algorithm) && iv.length > halfBlockBytes)
+            return Arrays.copyOf(iv, halfBlockBytes);
+
+        return iv;
+    }
+
+    /**
+     * Creates a cipher initialized the same way as the file encryption paths.
+     */
+    static Cipher initCipher(int opmode, String algorithm, Mode mode, Padding padding, byte[] iv, byte[] key)
+            throws GeneralSecurityException {
+
+        SecretKey secretKey = new SecretKeySpec(key, algorithm);
+        String transformation = algorithm + "/" + mode.getMode() + "/" + padding.getPadding();
+        Cipher cipher = Cipher.getInstance(transformation, ProviderRouter.cipher(transformation));
+
+        if (mode == Mode.ECB)
+            cipher.init(opmode, secretKey);
+        else
+            cipher.init(opmode, secretKey, new IvParameterSpec(effectiveIv(algorithm, mode, iv)));
+
+        return cipher;
+    }
+
     public static byte[] generateKey(String algorithm, int keySize) {
         try {
             KeyGenerator keyGen = KeyGenerator.getInstance(algorithm, "BC");
@@ -215,8 +351,8 @@ public final class BlockCipherImpl {
         ECB("ECB"),
         CBC("CBC"),
         CFB("CFB"),
-        OFB("OFB");
-        //  CTR("CTR");
+        OFB("OFB"),
+        CTR("CTR");
 
         private final String mode;
 
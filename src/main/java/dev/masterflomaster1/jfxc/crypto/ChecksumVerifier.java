@@ -0,0 +1,348 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Verifies checksum files as written by {@code sha256sum} and its siblings, in the GNU format with either text or
+ * binary marker, or in the BSD format of {@code --tag}.
+ *
+ * <p>The digest algorithm comes from the tag of a BSD line, otherwise from the name of the checksum file, such as
+ * {@code SHA512SUMS} or {@code release.md5}, and last from the length of the digest. Files are resolved against the
+ * directory of the checksum file and hashed by a fixed number of workers, so the I/O concurrency stays bounded
+ * however long the list is. Each result goes to the listener as soon as it is known.</p>
+ */
+public final class ChecksumVerifier {
+
+    public static final int DEFAULT_IO_CONCURRENCY = BatchFileProcessor.DEFAULT_IO_CONCURRENCY;
+
+    private static final Pattern GNU_LINE = Pattern.compile("^(\\\\?)([0-9a-fA-F]+) [ *](.+)$");
+    private static final Pattern BSD_LINE = Pattern.compile("^(\\\\?)([A-Za-z0-9/-]+) \\((.+)\\) = ([0-9a-fA-F]+)$");
+
+    /**
+     * Tags of {@code --tag} output mapped to provider names. BLAKE2b lines may carry the length, e.g.
+     * {@code BLAKE2b-256}.
+     */
+    private static final Map<String, String> TAGS = Map.of(
+            "MD5", "MD5",
+            "SHA1", "SHA-1",
+            "SHA224", "SHA-224",
+            "SHA256", "SHA-256",
+            "SHA384", "SHA-384",
+            "SHA512", "SHA-512",
+            "BLAKE2B", "BLAKE2B-512"
+    );
+
+    /**
+     * Keywords in the names of checksum files, as in {@code SHA512SUMS}, {@code B2SUMS} or {@code release.md5}.
+     * Checked in order, the first one the file name contains wins.
+     */
+    private static final List<Map.Entry<String, String>> FILE_NAME_HINTS = List.of(
+            Map.entry("sha512", "SHA-512"),
+            Map.entry("sha384", "SHA-384"),
+            Map.entry("sha256", "SHA-256"),
+            Map.entry("sha224", "SHA-224"),
+            Map.entry("sha1", "SHA-1"),
+            Map.entry("md5", "MD5"),
+            Map.entry("b2sum", "BLAKE2B-512")
+    );
+
+    private static final Map<String, Integer> HEX_DIGITS = Map.of(
+            "MD5", 32,
+            "SHA-1", 40,
+            "SHA-224", 56,
+            "SHA-256", 64,
+            "SHA-384", 96,
+            "SHA-512", 128,
+            "BLAKE2B-512", 128
+    );
+
+    private ChecksumVerifier() { }
+
+    public enum Status {
+        OK,
+        /** The digest differs. */
+        FAILED,
+        MISSING,
+        /** The file or the algorithm could not be used, see the message. */
+        ERROR
+    }
+
+    /**
+     * One line of a checksum file.
+     *
+     * @param line Line number, starting at 1.
+     * @param path File name as written, relative to the directory of the checksum file.
+     */
+    public record Entry(int line, String algorithm, String path, byte[] expected) { }
+
+    public record Result(Entry entry, Status status, String message) { }
+
+    /**
+     * @param skipped Entries not verified because the run stopped at a failure.
+     */
+    public record Summary(long ok,
+                          long failed,
+                          long missing,
+                          long errors,
+                          long skipped,
+                          Duration elapsed) {
+
+        public boolean passed() {
+            return failed == 0 && missing == 0 && errors == 0 && skipped == 0;
+        }
+    }
+
+    /**
+     * Reads every checksum line, blank lines and lines starting with {@code #} are ignored.
+     *
+     * @throws IllegalArgumentException If a line is malformed or the algorithm cannot be told from it.
+     */
+    public static List<Entry> parse(Path checksumFile) {
+        List<String> lines;
+
+        try {
+            lines = Files.readAllLines(checksumFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        String hint = algorithmFromFileName(checksumFile.getFileName().toString());
+        List<Entry> entries = new ArrayList<>(lines.size());
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+
+            if (line.isBlank() || line.startsWith("#"))
+                continue;
+
+            entries.add(parseLine(i + 1, line, hint));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Verifies all entries of a checksum file in parallel and blocks until done.
+     *
+     * @param checksumFile The checksum file.
+     * @param ioConcurrency The maximum number of files read at the same time.
+     * @param stopOnFailure Stop handing out entries after the first result that is not {@link Status#OK}. Files
+     *                      already being read are still reported.
+     * @param listener Receives every result from the worker threads.
+     * @param monitor Receives the bytes hashed and is polled for cancellation.
+     * @return The counts of the run.
+     * @throws CancellationException If {@code monitor} was cancelled.
+     */
+    public static Summary verify(Path checksumFile,
+                                 int ioConcurrency,
+                                 boolean stopOnFailure,
+                                 Consumer<Result> listener,
+                                 ProgressMonitor monitor) {
+        Objects.requireNonNull(listener);
+
+        if (ioConcurrency < 1)
+            throw new IllegalArgumentException("I/O concurrency must be positive: " + ioConcurrency);
+
+        long start = System.nanoTime();
+        List<Entry> entries = parse(checksumFile);
+        Path directory = checksumFile.toAbsolutePath().getParent();
+
+        var next = new AtomicInteger();
+        var stopped = new AtomicBoolean();
+        var counts = new AtomicLong[Status.values().length];
+
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = new AtomicLong();
+
+        Runnable worker = () -> {
+            int index;
+
+            while (!stopped.get() && !monitor.isCancelled() && (index = next.getAndIncrement()) < entries.size()) {
+                Result result = check(directory, entries.get(index), monitor);
+
+                // A cancelled hash is no result
+                if (result == null)
+                    return;
+
+                counts[result.status().ordinal()].incrementAndGet();
+
+                if (stopOnFailure && result.status() != Status.OK)
+                    stopped.set(true);
+
+                listener.accept(result);
+            }
+        };
+
+        int workerCount = Math.max(1, Math.min(ioConcurrency, entries.size()));
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(workerCount);
+
+            for (int i = 0; i < workerCount; i++)
+                futures.add(SharedExecutors.IO.submit(worker));
+
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            // Only the listener can throw here
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+        }
+
+        monitor.checkCancelled();
+
+        long done = 0;
+        for (AtomicLong count : counts)
+            done += count.get();
+
+        return new Summary(
+                counts[Status.OK.ordinal()].get(),
+                counts[Status.FAILED.ordinal()].get(),
+                counts[Status.MISSING.ordinal()].get(),
+                counts[Status.ERROR.ordinal()].get(),
+                entries.size() - done,
+                Duration.ofNanos(System.nanoTime() - start)
+        );
+    }
+
+    /**
+     * @return The result, or {@code null} if the monitor was cancelled while hashing.
+     */
+    private static Result check(Path directory, Entry entry, ProgressMonitor monitor) {
+        Path path = directory.resolve(entry.path());
+
+        try {
+            byte[] actual = UnkeyedCryptoHash.hash(entry.algorithm(), path, monitor);
+
+            if (MessageDigest.isEqual(actual, entry.expected()))
+                return new Result(entry, Status.OK, "");
+
+            return new Result(entry, Status.FAILED, "Computed " + HexFormat.of().formatHex(actual));
+        } catch (CancellationException e) {
+            return null;
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof NoSuchFileException)
+                return new Result(entry, Status.MISSING, "No such file");
+
+            return new Result(entry, Status.ERROR, e.getCause().toString());
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return new Result(entry, Status.ERROR, cause.toString());
+        }
+    }
+
+    static Entry parseLine(int number, String line, String hint) {
+        Matcher bsd = BSD_LINE.matcher(line);
+
+        if (bsd.matches()) {
+            String algorithm = algorithmFromTag(bsd.group(2));
+
+            if (algorithm == null)
+                throw new IllegalArgumentException("Line %d: unknown algorithm %s".formatted(number, bsd.group(2)));
+
+            return entry(number, algorithm, path(bsd.group(3), !bsd.group(1).isEmpty()), bsd.group(4));
+        }
+
+        Matcher gnu = GNU_LINE.matcher(line);
+
+        if (!gnu.matches())
+            throw new IllegalArgumentException("Line %d is not a checksum line".formatted(number));
+
+        String hex = gnu.group(2);
+        // The name only decides between algorithms of the same length, e.g. SHA-512 and BLAKE2b
+        String algorithm = hint != null && HEX_DIGITS.get(hint) == hex.length()
+                ? hint
+                : algorithmFromLength(hex.length());
+
+        if (algorithm == null)
+            throw new IllegalArgumentException("Line %d: no algorithm has %d hex digits"
+                    .formatted(number, hex.length()));
+
+        return entry(number, algorithm, path(gnu.group(3), !gnu.group(1).isEmpty()), hex);
+    }
+
+    private static Entry entry(int number, String algorithm, String path, String hex) {
+        return new Entry(number, algorithm, path, HexFormat.of().parseHex(hex.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Undoes the escaping of file names with backslashes or line breaks, flagged by a backslash before the line.
+     */
+    private static String path(String path, boolean escaped) {
+        if (!escaped)
+            return path;
+
+        var builder = new StringBuilder(path.length());
+
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+
+            if (c == '\\' && i + 1 < path.length()) {
+                char escape = path.charAt(++i);
+                builder.append(escape == 'n' ? '\n' : escape);
+            } else {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    static String algorithmFromTag(String tag) {
+        String upper = tag.toUpperCase(Locale.ROOT);
+
+        // cksum writes BLAKE2b-256 for shortened BLAKE2b digests
+        if (upper.startsWith("BLAKE2B-"))
+            return upper;
+
+        return TAGS.get(upper);
+    }
+
+    static String algorithmFromFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+
+        return FILE_NAME_HINTS.stream()
+                .filter(hint -> lower.contains(hint.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
+    static String algorithmFromLength(int hexDigits) {
+        return switch (hexDigits) {
+            case 32 -> "MD5";
+            case 40 -> "SHA-1";
+            case 56 -> "SHA-224";
+            case 64 -> "SHA-256";
+            case 96 -> "SHA-384";
+            // BLAKE2b only with a file name that says so
+            case 128 -> "SHA-512";
+            default -> null;
+        };
+    }
+
+}
@@ -0,0 +1,240 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Three-stage read, cipher, write pipeline.
+ *
+ * <p>A reader thread fills buffers from the source, the calling thread runs them through the cipher and a writer
+ * thread drains the results to the destination. The stages hand slots to each other through bounded queues and
+ * return them to a preallocated ring once consumed, so nothing is allocated per chunk and storage latency overlaps
+ * with cipher time. Chunk order is preserved because every stage is a single thread.</p>
+ *
+ * <p>The buffers are heap buffers. A provider such as BC works on arrays, handing it direct buffers makes
+ * {@link Cipher#update(ByteBuffer, ByteBuffer)} copy both sides through temporary arrays. With heap buffers that copy
+ * happens once per read and write instead, in the channel's cached direct buffer.</p>
+ */
+final class CipherPipeline {
+
+    static final int CHUNK_SIZE = 1024 * 1024;
+    static final int RING_SIZE = 4;
+
+    private static final long POLL_MILLIS = 50;
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private final Cipher cipher;
+    private final FileChannel source;
+    private final FileChannel destination;
+    private final ProgressMonitor monitor;
+
+    private final BlockingQueue<Slot> freeInput = new ArrayBlockingQueue<>(RING_SIZE);
+    private final BlockingQueue<Slot> freeOutput = new ArrayBlockingQueue<>(RING_SIZE);
+    private final BlockingQueue<Slot> filledInput = new ArrayBlockingQueue<>(RING_SIZE);
+    private final BlockingQueue<Slot> filledOutput = new ArrayBlockingQueue<>(RING_SIZE);
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    CipherPipeline(Cipher cipher, FileChannel source, FileChannel destination, ProgressMonitor monitor) {
+        this.cipher = cipher;
+        this.source = source;
+        this.destination = destination;
+        this.monitor = monitor;
+
+        // One chunk plus the block a padded decryption holds back and the block doFinal may add
+        int outputSize = cipher.getOutputSize(CHUNK_SIZE) + 2 * Math.max(cipher.getBlockSize(), 1);
+
+        for (int i = 0; i < RING_SIZE; i++) {
+            freeInput.add(new Slot(ByteBuffer.allocate(CHUNK_SIZE)));
+            freeOutput.add(new Slot(ByteBuffer.allocate(outputSize)));
+        }
+    }
+
+    /**
+     * Runs the whole source through the cipher and returns once the last byte is written.
+     */
+    void run() throws IOException, GeneralSecurityException {
+        Future<?> reader = SharedExecutors.IO.submit(this::read);
+        Future<?> writer = SharedExecutors.IO.submit(this::write);
+
+        try {
+            transform();
+            writer.get();
+            reader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            fail(e.getCause());
+        } catch (RuntimeException | GeneralSecurityException e) {
+            fail(e);
+        } finally {
+            reader.cancel(true);
+            writer.cancel(true);
+        }
+
+        rethrow();
+    }
+
+    private void read() {
+        try {
+            while (true) {
+                Slot slot = take(freeInput);
+                ByteBuffer buffer = slot.buffer;
+                buffer.clear();
+
+                int read = 0;
+                while (buffer.hasRemaining() && read != -1) {
+                    read = source.read(buffer);
+                }
+
+                buffer.flip();
+                slot.end = read == -1 || source.position() >= source.size();
+                put(filledInput, slot);
+
+                if (slot.end)
+                    return;
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void transform() throws GeneralSecurityException {
+        while (true) {
+            Slot input = take(filledInput);
+            monitor.checkCancelled();
+
+            Slot output = take(freeOutput);
+            int length = input.buffer.remaining();
+
+            // An AEAD decryption holds everything back until doFinal, which then needs room for the whole plaintext
+            int needed = cipher.getOutputSize(length);
+            if (needed > output.buffer.capacity())
+                output.buffer = ByteBuffer.allocate(needed);
+
+            output.buffer.clear();
+            boolean end = input.end;
+            cipher.update(input.buffer, output.buffer);
+            put(freeInput, input);
+
+            if (end)
+                cipher.doFinal(EMPTY_BUFFER.duplicate(), output.buffer);
+
+            output.buffer.flip();
+            output.end = end;
+            put(filledOutput, output);
+            monitor.worked(length);
+
+            if (end)
+                return;
+        }
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                Slot slot = take(filledOutput);
+
+                while (slot.buffer.hasRemaining()) {
+                    destination.write(slot.buffer);
+                }
+
+                boolean end = slot.end;
+                put(freeOutput, slot);
+
+                if (end)
+                    return;
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Waits for the next element, giving up as soon as another stage has failed.
+     */
+    private <T> T take(BlockingQueue<T> queue) {
+        try {
+            while (true) {
+                rethrow();
+                T value = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (value != null)
+                    return value;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Pipeline interrupted");
+        } catch (IOException | GeneralSecurityException e) {
+            throw new PipelineAbortedException(e);
+        }
+    }
+
+    /**
+     * Queues never overflow: each one holds at most the slots of one ring.
+     */
+    private static <T> void put(BlockingQueue<T> queue, T value) {
+        if (!queue.offer(value))
+            throw new IllegalStateException("Pipeline ring overflow");
+    }
+
+    private void fail(Throwable e) {
+        if (!(e instanceof PipelineAbortedException))
+            failure.compareAndSet(null, e);
+    }
+
+    private void rethrow() throws IOException, GeneralSecurityException {
+        Throwable e = failure.get();
+
+        if (e == null)
+            return;
+
+        if (e instanceof IOException io)
+            throw io;
+        if (e instanceof GeneralSecurityException security)
+            throw security;
+        if (e instanceof RuntimeException runtime)
+            throw runtime;
+        if (e instanceof Error error)
+            throw error;
+
+        throw new IOException(e);
+    }
+
+    /**
+     * A buffer of the ring travelling between stages. {@code end} marks the last chunk of the file, it is published
+     * to the next stage together with the slot by the queue hand-off. Only {@link #transform()} replaces the buffer of
+     * an output slot, when the chunk needs more room than the ring was sized for.
+     */
+    private static final class Slot {
+
+        private ByteBuffer buffer;
+        private boolean end;
+
+        private Slot(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Thrown inside a stage that stops because another stage failed first, the original failure is reported.
+     */
+    private static final class PipelineAbortedException extends RuntimeException {
+        private PipelineAbortedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+}
@@ -0,0 +1,272 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, thread-safe pool of initialized {@link Cipher} instances.
+ *
+ * <p>Instances are keyed by transformation, operation mode and a SHA-256 fingerprint of the key, so a borrowed
+ * cipher is already past the provider lookup and the key schedule. When the requested IV differs from the one the
+ * pooled instance was last initialized with, the cipher is re-initialized in place. Idle instances above the
+ * capacity are evicted in least-recently-used order.</p>
+ *
+ * <p>A borrowed {@link Lease} is owned by a single thread and must be closed to return the cipher to the pool.</p>
+ *
+ * <p>Every pooled cipher holds a copy of its raw key, so the {@link #shared()} pool keeps the keys of up to
+ * {@link #DEFAULT_CAPACITY} recently used ciphers in memory for as long as they stay idle in it, which can be the
+ * whole session. The copy is zeroed as soon as its cipher leaves the pool for good: when it is evicted, discarded
+ * after a failure or dropped by {@link #clear()}. The key schedule inside the cipher instance is not reachable from
+ * here and is left to the garbage collector.</p>
+ */
+public final class CipherPool {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final CipherPool SHARED = new CipherPool(DEFAULT_CAPACITY);
+
+    private static final ThreadLocal<MessageDigest> FINGERPRINT_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    });
+
+    private final int capacity;
+    private final LinkedHashMap<PoolKey, ArrayDeque<Entry>> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private int idleCount;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CipherPool(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+        this.capacity = capacity;
+    }
+
+    public static CipherPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Borrows a cipher initialized for {@code opmode} with the given key and IV.
+     *
+     * @param transformation The JCA transformation, e.g. {@code AES/CBC/PKCS7Padding}.
+     * @param opmode {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}.
+     * @param keyAlgorithm The algorithm name of the key, as for a {@link javax.crypto.spec.SecretKeySpec}.
+     * @param key The raw key material.
+     * @param iv The IV, or {@code null} for modes and algorithms that take none.
+     * @return A lease that must be closed after use.
+     */
+    public Lease acquire(String transformation, int opmode, String keyAlgorithm, byte[] key, byte[] iv)
+            throws NoSuchAlgorithmException, NoSuchProviderException, NoSuchPaddingException, InvalidKeyException,
+            InvalidAlgorithmParameterException {
+
+        PoolKey poolKey = new PoolKey(transformation, opmode, fingerprint(key));
+        Entry entry;
+
+        synchronized (this) {
+            ArrayDeque<Entry> deque = idle.get(poolKey);
+            entry = deque == null ? null : deque.pollFirst();
+
+            if (entry != null) {
+                idleCount--;
+                if (deque.isEmpty())
+                    idle.remove(poolKey);
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+
+            Cipher cipher = Cipher.getInstance(transformation, ProviderRouter.cipher(transformation));
+            entry = new Entry(cipher, new PreparedKey(keyAlgorithm, key.clone()));
+
+            try {
+                entry.init(opmode, iv);
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException | RuntimeException e) {
+                entry.secretKey.destroy();
+                throw e;
+            }
+        } else {
+            hits.incrementAndGet();
+
+            if (!Arrays.equals(entry.iv, iv))
+                entry.init(opmode, iv);
+        }
+
+        return new Lease(poolKey, entry);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return idleCount;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Drops every idle cipher and zeroes its key. Ciphers leased at the time return to the pool as usual.
+     */
+    public synchronized void clear() {
+        idle.values().forEach(deque -> deque.forEach(entry -> entry.secretKey.destroy()));
+        idle.clear();
+        idleCount = 0;
+    }
+
+    private synchronized void release(PoolKey poolKey, Entry entry) {
+        idle.computeIfAbsent(poolKey, k -> new ArrayDeque<>()).addFirst(entry);
+        idleCount++;
+
+        Iterator<Map.Entry<PoolKey, ArrayDeque<Entry>>> it = idle.entrySet().iterator();
+        while (idleCount > capacity && it.hasNext()) {
+            ArrayDeque<Entry> eldest = it.next().getValue();
+
+            while (idleCount > capacity && !eldest.isEmpty()) {
+                eldest.pollLast().secretKey.destroy();
+                idleCount--;
+                evictions.incrementAndGet();
+            }
+
+            if (eldest.isEmpty())
+                it.remove();
+        }
+    }
+
+    private static byte[] fingerprint(byte[] key) {
+        MessageDigest md = FINGERPRINT_DIGEST.get();
+        return md.digest(key);
+    }
+
+    /**
+     * Exclusive handle on a pooled cipher. Closing the lease returns the cipher to its pool unless an operation on
+     * it failed, in which case the instance is discarded.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final PoolKey poolKey;
+        private final Entry entry;
+        private boolean broken;
+        private boolean closed;
+
+        private Lease(PoolKey poolKey, Entry entry) {
+            this.poolKey = poolKey;
+            this.entry = entry;
+        }
+
+        public Cipher cipher() {
+            return entry.cipher;
+        }
+
+        /**
+         * The pool's copy of the key, destroyed once the cipher leaves the pool.
+         */
+        SecretKey key() {
+            return entry.secretKey;
+        }
+
+        public byte[] doFinal(byte[] input) throws IllegalBlockSizeException, BadPaddingException {
+            try {
+                return entry.cipher.doFinal(input);
+            } catch (IllegalBlockSizeException | BadPaddingException | RuntimeException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Prevents the cipher from being returned to the pool, e.g. when it was handed to code that may leave it
+         * in an unfinished state.
+         */
+        public void invalidate() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+
+            closed = true;
+            if (broken)
+                entry.secretKey.destroy();
+            else
+                release(poolKey, entry);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Cipher cipher;
+        private final PreparedKey secretKey;
+        private byte[] iv;
+
+        private Entry(Cipher cipher, PreparedKey secretKey) {
+            this.cipher = cipher;
+            this.secretKey = secretKey;
+        }
+
+        private void init(int opmode, byte[] iv) throws InvalidKeyException, InvalidAlgorithmParameterException {
+            if (iv == null)
+                cipher.init(opmode, secretKey);
+            else
+                cipher.init(opmode, secretKey, new IvParameterSpec(iv));
+
+            this.iv = iv == null ? null : iv.clone();
+        }
+    }
+
+    private record PoolKey(String transformation, int opmode, byte[] fingerprint) {
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (!(o instanceof PoolKey other))
+                return false;
+
+            return opmode == other.opmode
+                    && transformation.equals(other.transformation)
+                    && Arrays.equals(fingerprint, other.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * transformation.hashCode() + opmode) + Arrays.hashCode(fingerprint);
+        }
+    }
+
+}
@@ -0,0 +1,307 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Streaming Deflate stage that runs ahead of the cipher when encrypting and behind it when decrypting.
+ *
+ * <p>Text formats like logs and CSV shrink several times under Deflate, so compressing them first saves disk space
+ * and cipher time. Data that is already compressed or encrypted would only cost CPU, which is why
+ * {@link #isCompressible(FileChannel)} samples the byte entropy of the input before anything is written.</p>
+ */
+public final class CompressionStage {
+
+    public static final int DEFAULT_LEVEL = 6;
+
+    /**
+     * Shannon entropy in bits per byte above which the input is treated as already compressed.
+     */
+    static final double ENTROPY_THRESHOLD = 7.5;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final int SAMPLE_COUNT = 4;
+
+    private CompressionStage() {
+    }
+
+    /**
+     * Estimates the Shannon entropy of a file from a few samples spread over its length.
+     *
+     * @return Bits per byte between {@code 0} and {@code 8}, {@code 0} for an empty file.
+     */
+    public static double estimateEntropy(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return estimateEntropy(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Same as {@link #estimateEntropy(Path)}. Uses positional reads, the position of the channel is not changed.
+     */
+    static double estimateEntropy(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long[] counts = new long[256];
+        long total = 0;
+
+        ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE_SIZE, size));
+        long stride = size <= (long) SAMPLE_SIZE * SAMPLE_COUNT ? SAMPLE_SIZE : size / SAMPLE_COUNT;
+
+        for (long offset = 0; offset < size && total < (long) SAMPLE_SIZE * SAMPLE_COUNT; offset += stride) {
+            sample.clear();
+
+            int read = 0;
+            while (sample.hasRemaining() && read != -1) {
+                read = channel.read(sample, offset + sample.position());
+            }
+
+            sample.flip();
+            while (sample.hasRemaining()) {
+                counts[sample.get() & 0xFF]++;
+                total++;
+            }
+        }
+
+        double entropy = 0;
+        for (long count : counts) {
+            if (count == 0)
+                continue;
+
+            double p = (double) count / total;
+            entropy -= p * Math.log(p) / Math.log(2);
+        }
+
+        return entropy;
+    }
+
+    /**
+     * Returns {@code true} unless the sampled entropy shows that the file is already compressed.
+     */
+    public static boolean isCompressible(Path path) {
+        return estimateEntropy(path) < ENTROPY_THRESHOLD;
+    }
+
+    static boolean isCompressible(FileChannel channel) throws IOException {
+        return estimateEntropy(channel) < ENTROPY_THRESHOLD;
+    }
+
+    /**
+     * Deflates the rest of {@code source} and runs the compressed stream through the cipher into {@code destination}.
+     *
+     * @param level The Deflater level, {@code 1} (fastest) to {@code 9} (smallest).
+     * @param monitor Receives the number of uncompressed bytes read.
+     */
+    static Stats deflate(Cipher cipher, FileChannel source, FileChannel destination, int level,
+                         ProgressMonitor monitor) throws IOException, GeneralSecurityException {
+
+        var sink = new CipherSink(cipher, destination);
+        var deflater = new Deflater(level);
+        var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        var compressed = new byte[BUFFER_SIZE];
+        long original = 0;
+        long compressionNanos = 0;
+
+        try {
+            while (source.read(buffer) != -1) {
+                monitor.checkCancelled();
+                buffer.flip();
+
+                long start = System.nanoTime();
+                deflater.setInput(buffer.array(), 0, buffer.limit());
+
+                while (!deflater.needsInput()) {
+                    int length = deflater.deflate(compressed);
+                    compressionNanos += System.nanoTime() - start;
+                    sink.write(compressed, length);
+                    start = System.nanoTime();
+                }
+
+                original += buffer.limit();
+                monitor.worked(buffer.limit());
+                buffer.clear();
+            }
+
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                long start = System.nanoTime();
+                int length = deflater.deflate(compressed);
+                compressionNanos += System.nanoTime() - start;
+                sink.write(compressed, length);
+            }
+
+            sink.finish();
+        } finally {
+            deflater.end();
+        }
+
+        return new Stats(true, original, sink.stored, sink.cipherNanos, compressionNanos);
+    }
+
+    /**
+     * Deciphers the rest of {@code source} and inflates the result into {@code destination}.
+     *
+     * @param monitor Receives the number of encrypted bytes read.
+     * @throws IOException If the decrypted data is not a complete Deflate stream.
+     */
+    static Stats inflate(Cipher cipher, FileChannel source, FileChannel destination, ProgressMonitor monitor)
+            throws IOException, GeneralSecurityException {
+
+        var inflater = new Inflater();
+        var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        var inflated = ByteBuffer.allocate(BUFFER_SIZE);
+        long stored = 0;
+        long original = 0;
+        long cipherNanos = 0;
+        long compressionNanos = 0;
+
+        try {
+            while (true) {
+                int read = source.read(buffer);
+                monitor.checkCancelled();
+
+                long start = System.nanoTime();
+                byte[] plain = read == -1
+                        ? cipher.doFinal()
+                        : cipher.update(buffer.array(), 0, buffer.position());
+                cipherNanos += System.nanoTime() - start;
+
+                // Cipher.update returns null while a padded cipher is still buffering a partial block
+                if (plain != null && plain.length > 0) {
+                    stored += plain.length;
+                    inflater.setInput(plain);
+
+                    while (!inflater.needsInput() && !inflater.finished()) {
+                        start = System.nanoTime();
+                        int length = inflater.inflate(inflated.array());
+                        compressionNanos += System.nanoTime() - start;
+
+                        if (length == 0 && inflater.needsDictionary())
+                            throw new IOException("Deflate stream requires a preset dictionary");
+
+                        inflated.limit(length);
+                        writeFully(destination, inflated);
+                        inflated.clear();
+                        original += length;
+                    }
+                }
+
+                if (read == -1)
+                    break;
+
+                monitor.worked(buffer.position());
+                buffer.clear();
+            }
+
+            if (!inflater.finished())
+                throw new IOException("Truncated compressed stream");
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted compressed stream", e);
+        } finally {
+            inflater.end();
+        }
+
+        return new Stats(true, original, stored, cipherNanos, compressionNanos);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Encrypts whatever the deflater produces and keeps count of the stored bytes and the time spent in the cipher.
+     */
+    private static final class CipherSink {
+
+        private final Cipher cipher;
+        private final FileChannel destination;
+
+        private long stored;
+        private long cipherNanos;
+
+        private CipherSink(Cipher cipher, FileChannel destination) {
+            this.cipher = cipher;
+            this.destination = destination;
+        }
+
+        private void write(byte[] data, int length) throws IOException {
+            if (length == 0)
+                return;
+
+            long start = System.nanoTime();
+            byte[] encrypted = cipher.update(data, 0, length);
+            cipherNanos += System.nanoTime() - start;
+            stored += length;
+
+            if (encrypted != null)
+                writeFully(destination, ByteBuffer.wrap(encrypted));
+        }
+
+        private void finish() throws IOException, GeneralSecurityException {
+            long start = System.nanoTime();
+            byte[] encrypted = cipher.doFinal();
+            cipherNanos += System.nanoTime() - start;
+
+            writeFully(destination, ByteBuffer.wrap(encrypted));
+        }
+    }
+
+    /**
+     * What the compression stage did for one file.
+     *
+     * @param compressed Whether the body is Deflate compressed.
+     * @param originalBytes Size of the plaintext.
+     * @param storedBytes Size of the data that went through the cipher.
+     * @param cipherNanos Time spent in the cipher.
+     * @param compressionNanos Time spent deflating or inflating.
+     */
+    public record Stats(boolean compressed,
+                        long originalBytes,
+                        long storedBytes,
+                        long cipherNanos,
+                        long compressionNanos) {
+
+        /**
+         * Stats of a file that went through the cipher without compression.
+         */
+        public static Stats uncompressed(long bytes, long cipherNanos) {
+            return new Stats(false, bytes, bytes, cipherNanos, 0);
+        }
+
+        /**
+         * Original size divided by the stored size, {@code 1} when nothing was saved.
+         */
+        public double ratio() {
+            return storedBytes == 0 ? 1 : (double) originalBytes / storedBytes;
+        }
+
+        /**
+         * Estimated cipher time that the smaller input saved, minus the time spent compressing. Negative when
+         * compression cost more than it saved.
+         */
+        public Duration timeSaved() {
+            if (!compressed || storedBytes == 0)
+                return Duration.ZERO;
+
+            double nanosPerByte = (double) cipherNanos / storedBytes;
+            long saved = (long) (nanosPerByte * (originalBytes - storedBytes)) - compressionNanos;
+            return Duration.ofNanos(saved);
+        }
+    }
+
+}
@@ -0,0 +1,388 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * SHA-256 checksum manifest of a directory tree in the format of {@code sha256sum}, so {@code sha256sum -c} can
+ * verify it.
+ *
+ * <p>Next to the manifest a compact cache remembers size, modification time, file key (device and inode where the
+ * platform has them) and digest of every file. Files whose attributes still match are taken from the cache without
+ * being read, only new and changed files are hashed, in parallel and largest first. A file modified within
+ * {@link #RACY_WINDOW} of the scan is hashed but not cached, a second change in the same clock tick could otherwise go
+ * unnoticed.</p>
+ *
+ * <p>The result carries a Merkle root over the manifest lines as in RFC 6962, which can be recomputed from the
+ * manifest alone. Comparing it with the root of the previous run answers whether anything changed.</p>
+ */
+public final class DirectoryManifest {
+
+    public static final String ALGORITHM = "SHA-256";
+
+    /**
+     * Appended to the manifest file name to get the cache file.
+     */
+    public static final String CACHE_SUFFIX = ".cache";
+
+    private static final int CACHE_MAGIC = 0x4A464D31;
+    private static final int DIGEST_LENGTH = 32;
+    private static final Duration RACY_WINDOW = Duration.ofSeconds(2);
+
+    private DirectoryManifest() { }
+
+    /**
+     * One line of the manifest.
+     *
+     * @param path Path below the root with {@code /} separators.
+     */
+    public record Entry(String path, long size, byte[] digest) {
+
+        /**
+         * The line as {@code sha256sum} writes it, without the line break. Backslashes and line breaks in the path
+         * are escaped and the line is prefixed with a backslash then.
+         */
+        public String line() {
+            String hex = HexFormat.of().formatHex(digest);
+
+            if (path.indexOf('\\') < 0 && path.indexOf('\n') < 0)
+                return hex + "  " + path;
+
+            return "\\" + hex + "  " + path.replace("\\", "\\\\").replace("\n", "\\n");
+        }
+    }
+
+    /**
+     * @param entries Every file that could be hashed, sorted by path.
+     * @param merkleRoot Merkle root over the manifest lines.
+     * @param previousMerkleRoot Root of the last complete run, {@code null} without a cache.
+     * @param filesHashed Files read because they were new or changed.
+     * @param filesReused Files taken from the cache.
+     * @param bytesHashed Bytes read.
+     * @param failures Files or directories that could not be read, they are missing from the manifest.
+     */
+    public record Result(List<Entry> entries,
+                         byte[] merkleRoot,
+                         byte[] previousMerkleRoot,
+                         long filesHashed,
+                         long filesReused,
+                         long bytesHashed,
+                         List<BatchFileProcessor.Failure> failures,
+                         Duration elapsed) {
+
+        /**
+         * Whether any file was added, removed or changed since the last complete run.
+         */
+        public boolean changed() {
+            return !Arrays.equals(merkleRoot, previousMerkleRoot);
+        }
+    }
+
+    /**
+     * Hashes {@code root} and writes the manifest to {@code manifestFile} and the cache next to it. Both are skipped
+     * if they lie inside the tree.
+     *
+     * <p>On cancellation the cache is still written with everything hashed so far, so the next run picks up from
+     * there, while the manifest is left as it was.</p>
+     *
+     * @param root The directory whose regular files are listed, symbolic links are not followed.
+     * @param manifestFile Where the manifest goes.
+     * @param monitor Receives the bytes hashed from several threads and is polled for cancellation.
+     */
+    public static Result update(Path root, Path manifestFile, ProgressMonitor monitor) {
+        long start = System.nanoTime();
+        Path rootPath = root.toAbsolutePath().normalize();
+        Path manifestPath = manifestFile.toAbsolutePath().normalize();
+        Path cachePath = manifestPath.resolveSibling(manifestPath.getFileName() + CACHE_SUFFIX);
+
+        long racyAfter = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - RACY_WINDOW.toMillis());
+        Cache previous = Cache.read(cachePath);
+        List<BatchFileProcessor.Failure> failures = new ArrayList<>();
+        List<Scanned> files = scan(rootPath, List.of(manifestPath, cachePath), failures);
+
+        Map<String, byte[]> digests = new ConcurrentHashMap<>();
+        List<Scanned> changed = new ArrayList<>();
+
+        for (Scanned file : files) {
+            byte[] cached = previous.lookup(file);
+
+            if (cached != null)
+                digests.put(file.path(), cached);
+            else
+                changed.add(file);
+        }
+
+        var bytesHashed = new AtomicLong();
+        var hashFailures = new ConcurrentLinkedQueue<BatchFileProcessor.Failure>();
+
+        hashAll(rootPath, changed, digests, bytesHashed, hashFailures, monitor);
+
+        List<Scanned> cacheable = files.stream()
+                .filter(file -> digests.containsKey(file.path()) && file.mtimeNanos() < racyAfter)
+                .toList();
+
+        if (monitor.isCancelled()) {
+            // The root stays the one of the last complete run, which the next complete run is compared with
+            Cache.write(cachePath, previous.merkleRoot(), cacheable, digests);
+            throw new CancellationException();
+        }
+
+        List<Entry> entries = toEntries(files, digests);
+        byte[] merkleRoot = merkleRoot(entries);
+
+        Cache.write(cachePath, merkleRoot, cacheable, digests);
+        writeManifest(manifestPath, entries);
+
+        failures.addAll(hashFailures);
+        failures.sort(Comparator.comparing(failure -> failure.path().toString()));
+
+        return new Result(entries, merkleRoot, previous.merkleRoot(), changed.size() - hashFailures.size(),
+                files.size() - changed.size(), bytesHashed.get(), List.copyOf(failures),
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Merkle root of RFC 6962 whose leaves are the UTF-8 manifest lines without line breaks.
+     */
+    public static byte[] merkleRoot(List<Entry> entries) {
+        return MerkleTreeHash.root(entries.stream()
+                .map(entry -> entry.line().getBytes(StandardCharsets.UTF_8))
+                .toList());
+    }
+
+    private static List<Scanned> scan(Path root, List<Path> excluded, List<BatchFileProcessor.Failure> failures) {
+        List<Scanned> files = new ArrayList<>();
+
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !excluded.contains(file)) {
+                        files.add(new Scanned(
+                                root.relativize(file).toString().replace(File.separatorChar, '/'),
+                                attrs.size(),
+                                attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                                Objects.toString(attrs.fileKey(), "")
+                        ));
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    failures.add(new BatchFileProcessor.Failure(root.relativize(file), e.toString()));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        files.sort(Comparator.comparing(Scanned::path));
+        return files;
+    }
+
+    private static void hashAll(Path root,
+                                List<Scanned> files,
+                                Map<String, byte[]> digests,
+                                AtomicLong bytesHashed,
+                                ConcurrentLinkedQueue<BatchFileProcessor.Failure> failures,
+                                ProgressMonitor monitor) {
+        if (files.isEmpty())
+            return;
+
+        var futures = files.stream()
+                .sorted(Comparator.comparingLong(Scanned::size).reversed())
+                .map(file -> CompletableFuture.runAsync(() -> {
+                    if (monitor.isCancelled())
+                        return;
+
+                    try {
+                        Path path = root.resolve(file.path());
+                        digests.put(file.path(), UnkeyedCryptoHash.hash(ALGORITHM, path, monitor));
+                        bytesHashed.addAndGet(file.size());
+                    } catch (CancellationException e) {
+                        // Noticed by the caller through the monitor
+                    } catch (RuntimeException e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        failures.add(new BatchFileProcessor.Failure(Path.of(file.path()), cause.toString()));
+                    }
+                }, ForkJoinPool.commonPool()))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private static List<Entry> toEntries(List<Scanned> files, Map<String, byte[]> digests) {
+        List<Entry> entries = new ArrayList<>(files.size());
+
+        for (Scanned file : files) {
+            byte[] digest = digests.get(file.path());
+
+            if (digest != null)
+                entries.add(new Entry(file.path(), file.size(), digest));
+        }
+
+        return entries;
+    }
+
+    private static void writeManifest(Path manifest, List<Entry> entries) {
+        Path temp = temporarySibling(manifest);
+
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Entry entry : entries) {
+                    writer.write(entry.line());
+                    writer.write('\n');
+                }
+            }
+
+            replace(temp, manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path temporarySibling(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    /**
+     * Moves {@code temp} over {@code target}, atomically where the file system allows it, so a crash never leaves a
+     * half-written file behind.
+     */
+    private static void replace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * A regular file found by the scan, with the modification time as precise as the file system has it.
+     */
+    private record Scanned(String path, long size, long mtimeNanos, String fileKey) { }
+
+    private record CachedFile(long size, long mtimeNanos, String fileKey, byte[] digest) { }
+
+    /**
+     * The cache file, a gzip-compressed sequence of the file attributes and digests.
+     */
+    private record Cache(byte[] merkleRoot, Map<String, CachedFile> files) {
+
+        private static final Cache EMPTY = new Cache(null, Map.of());
+
+        /**
+         * @return The digest if the file looks unchanged, otherwise {@code null}.
+         */
+        byte[] lookup(Scanned file) {
+            CachedFile cached = files.get(file.path());
+
+            if (cached == null || cached.size() != file.size() || cached.mtimeNanos() != file.mtimeNanos()
+                    || !cached.fileKey().equals(file.fileKey()))
+                return null;
+
+            return cached.digest();
+        }
+
+        /**
+         * A missing or unreadable cache means hashing everything, which is never wrong.
+         */
+        static Cache read(Path path) {
+            if (!Files.isRegularFile(path))
+                return EMPTY;
+
+            try (var in = new DataInputStream(new GZIPInputStream(Files.newInputStream(path)))) {
+                if (in.readInt() != CACHE_MAGIC)
+                    return EMPTY;
+
+                byte[] merkleRoot = in.readBoolean() ? in.readNBytes(DIGEST_LENGTH) : null;
+                int count = in.readInt();
+                Map<String, CachedFile> files = new HashMap<>(count * 2);
+
+                for (int i = 0; i < count; i++) {
+                    String file = in.readUTF();
+                    long size = in.readLong();
+                    long mtime = in.readLong();
+                    String fileKey = in.readUTF();
+                    byte[] digest = in.readNBytes(DIGEST_LENGTH);
+
+                    if (digest.length != DIGEST_LENGTH)
+                        return EMPTY;
+
+                    files.put(file, new CachedFile(size, mtime, fileKey, digest));
+                }
+
+                return new Cache(merkleRoot, files);
+            } catch (IOException | RuntimeException e) {
+                return EMPTY;
+            }
+        }
+
+        /**
+         * @param merkleRoot Root of the last complete run, {@code null} if there was none.
+         */
+        static void write(Path path, byte[] merkleRoot, List<Scanned> files, Map<String, byte[]> digests) {
+            Path temp = temporarySibling(path);
+
+            try {
+                try (var out = new DataOutputStream(new BufferedOutputStream(
+                        new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                    out.writeInt(CACHE_MAGIC);
+                    out.writeBoolean(merkleRoot != null);
+
+                    if (merkleRoot != null)
+                        out.write(merkleRoot);
+
+                    out.writeInt(files.size());
+
+                    for (Scanned file : files) {
+                        out.writeUTF(file.path());
+                        out.writeLong(file.size());
+                        out.writeLong(file.mtimeNanos());
+                        out.writeUTF(file.fileKey());
+                        out.write(digests.get(file.path()));
+                    }
+                }
+
+                replace(temp, path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+}
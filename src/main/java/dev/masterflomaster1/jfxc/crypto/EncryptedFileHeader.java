@@ -0,0 +1,415 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact, versioned header that makes an encrypted file self-describing.
+ *
+ * <p>Layout, integers are big-endian, strings and byte arrays carry a one byte length prefix:</p>
+ * <pre>
+ * "JFXH" | version | header length (u16) | type | algorithm | mode | padding | IV | KDF | salt | iterations (i32)
+ *        | segment size (i32) | compression | compression level | HMAC-SHA256 of all preceding bytes
+ * </pre>
+ *
+ * <p>The compression fields were added in version 2, version 1 headers are still read as uncompressed.</p>
+ *
+ * <p>The whole header fits into the first {@value #READ_AHEAD} bytes of the file, so it is parsed with a single
+ * read. The MAC is keyed with a subkey of the file key: {@link #decrypt} rejects a tampered header before touching
+ * the body, while {@link #inspect} parses headers without a key and never reads past them.</p>
+ *
+ * @param type Whether the body was produced by a block or a stream cipher.
+ * @param algorithm The cipher algorithm, e.g. {@code AES}.
+ * @param mode The block cipher mode, {@code null} for stream ciphers.
+ * @param padding The block cipher padding, {@code null} for stream ciphers.
+ * @param iv The IV or nonce, empty if the cipher takes none.
+ * @param kdf How the key was derived from a password, {@code null} for raw keys.
+ * @param segmentSize Plaintext bytes per segment, {@code 0} for a single continuous cipher stream.
+ * @param compression How the plaintext was compressed before encryption, {@code null} if it was not.
+ */
+public record EncryptedFileHeader(Type type,
+                                  String algorithm,
+                                  BlockCipherImpl.Mode mode,
+                                  BlockCipherImpl.Padding padding,
+                                  byte[] iv,
+                                  Kdf kdf,
+                                  int segmentSize,
+                                  Compression compression) {
+
+    public static final int VERSION = 2;
+
+    /**
+     * Upper bound of the header length: fixed fields plus seven fields of at most 255 bytes.
+     */
+    static final int READ_AHEAD = 2048;
+
+    private static final byte[] MAGIC = {'J', 'F', 'X', 'H'};
+    private static final int MAC_LENGTH = 32;
+    private static final byte[] MAC_KEY_LABEL = "JFXH header MAC".getBytes(StandardCharsets.US_ASCII);
+
+    public EncryptedFileHeader {
+        if ((type == Type.BLOCK) != (mode != null && padding != null))
+            throw new IllegalArgumentException("Mode and padding must be set for block ciphers only");
+    }
+
+    public static EncryptedFileHeader forBlockCipher(String algorithm,
+                                                     BlockCipherImpl.Mode mode,
+                                                     BlockCipherImpl.Padding padding,
+                                                     byte[] iv) {
+        return new EncryptedFileHeader(Type.BLOCK, algorithm, mode, padding,
+                mode == BlockCipherImpl.Mode.ECB ? new byte[0] : iv, null, 0, null);
+    }
+
+    public static EncryptedFileHeader forStreamCipher(String algorithm, byte[] iv) {
+        return new EncryptedFileHeader(Type.STREAM, algorithm, null, null,
+                StreamCipherImpl.getCorrespondingIvLengthBits(algorithm).isPresent() ? iv : new byte[0], null, 0,
+                null);
+    }
+
+    public EncryptedFileHeader withKdf(Kdf kdf) {
+        return new EncryptedFileHeader(type, algorithm, mode, padding, iv, kdf, segmentSize, compression);
+    }
+
+    public EncryptedFileHeader withCompression(Compression compression) {
+        return new EncryptedFileHeader(type, algorithm, mode, padding, iv, kdf, segmentSize, compression);
+    }
+
+    /**
+     * Encrypts a file and prefixes the result with this header.
+     *
+     * <p>If the header asks for compression but the sampled input looks already compressed, the file is encrypted
+     * as is and the written header records no compression.</p>
+     *
+     * @param target The path to the source file to encrypt.
+     * @param destination The path to the destination file.
+     * @param key The raw key, or the key derived with {@link #kdf()}.
+     * @param monitor Receives the processed byte count and is polled for cancellation.
+     * @return The compression ratio and time figures of the written file.
+     */
+    public CompressionStage.Stats encrypt(Path target, Path destination, byte[] key, ProgressMonitor monitor) {
+        try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ);
+             FileChannel destChannel = FileChannel.open(destination,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            EncryptedFileHeader effective = compression != null && !CompressionStage.isCompressible(sourceChannel)
+                    ? withCompression(null)
+                    : this;
+            ByteBuffer header = ByteBuffer.wrap(effective.toBytes(key));
+
+            while (header.hasRemaining()) {
+                destChannel.write(header);
+            }
+
+            Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, key);
+
+            if (effective.compression != null)
+                return CompressionStage.deflate(cipher, sourceChannel, destChannel, compression.level(), monitor);
+
+            long start = System.nanoTime();
+            FileOperations.transform(cipher, sourceChannel, destChannel, monitor);
+            return CompressionStage.Stats.uncompressed(sourceChannel.size(), System.nanoTime() - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Decrypts a file written by {@link #encrypt}, configuring the cipher from its header.
+     *
+     * @param target The path to the encrypted file.
+     * @param destination The path to the destination file.
+     * @param key The raw key, or the key derived with the parameters from {@link #inspect(Path)}.
+     * @param monitor Receives the processed byte count and is polled for cancellation.
+     * @return The verified header and, for compressed files, the compression figures.
+     * @throws IllegalArgumentException If the file has no valid header or the header MAC does not match the key.
+     */
+    public static Decryption decrypt(Path target, Path destination, byte[] key, ProgressMonitor monitor) {
+        try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ)) {
+            ByteBuffer buffer = readAhead(sourceChannel);
+            EncryptedFileHeader header = parse(buffer, key);
+
+            sourceChannel.position(buffer.position());
+
+            try (FileChannel destChannel = FileChannel.open(destination,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Cipher cipher = header.newCipher(Cipher.DECRYPT_MODE, key);
+
+                if (header.compression != null)
+                    return new Decryption(header, CompressionStage.inflate(cipher, sourceChannel, destChannel,
+                            monitor));
+
+                long start = System.nanoTime();
+                FileOperations.transform(cipher, sourceChannel, destChannel, monitor);
+                return new Decryption(header,
+                        CompressionStage.Stats.uncompressed(destChannel.size(), System.nanoTime() - start));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the header of a file without a key and without reading the body. The MAC is not verified.
+     *
+     * @throws IllegalArgumentException If the file does not start with a valid header.
+     */
+    public static EncryptedFileHeader inspect(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return parse(readAhead(channel), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the headers of many files in parallel. Files without a valid header are reported, not thrown.
+     */
+    public static List<Inspection> inspectAll(Collection<Path> paths) {
+        return paths.parallelStream()
+                .map(path -> {
+                    try {
+                        return new Inspection(path, inspect(path), null);
+                    } catch (RuntimeException e) {
+                        String message = e.getCause() != null ? e.getCause().toString() : e.getMessage();
+                        return new Inspection(path, null, message);
+                    }
+                })
+                .toList();
+    }
+
+    /**
+     * Returns {@code true} if the file starts with the header magic.
+     */
+    public static boolean isPresent(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length);
+
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) { }
+
+            return !buffer.hasRemaining() && MessageDigest.isEqual(buffer.array(), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Serializes the header including its MAC.
+     */
+    byte[] toBytes(byte[] key) throws GeneralSecurityException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_AHEAD);
+
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putShort((short) 0); // patched below
+        buffer.put((byte) type.ordinal());
+        putString(buffer, algorithm);
+        putString(buffer, mode == null ? "" : mode.getMode());
+        putString(buffer, padding == null ? "" : padding.getPadding());
+        putBytes(buffer, iv);
+        putString(buffer, kdf == null ? "" : kdf.algorithm());
+        putBytes(buffer, kdf == null ? new byte[0] : kdf.salt());
+        buffer.putInt(kdf == null ? 0 : kdf.iterations());
+        buffer.putInt(segmentSize);
+        putString(buffer, compression == null ? "" : compression.algorithm());
+        buffer.put((byte) (compression == null ? 0 : compression.level()));
+
+        int length = buffer.position() + MAC_LENGTH;
+        buffer.putShort(MAGIC.length + 1, (short) length);
+
+        Mac mac = headerMac(key);
+        mac.update(buffer.array(), 0, buffer.position());
+        buffer.put(mac.doFinal());
+
+        byte[] result = new byte[length];
+        buffer.flip().get(result);
+        return result;
+    }
+
+    /**
+     * Parses a header from the start of {@code buffer} and leaves the buffer positioned after it.
+     *
+     * @param key The key to verify the MAC with, or {@code null} to skip verification.
+     */
+    static EncryptedFileHeader parse(ByteBuffer buffer, byte[] key) {
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+
+            if (!MessageDigest.isEqual(magic, MAGIC))
+                throw new IllegalArgumentException("Not an encrypted file header");
+
+            int version = buffer.get() & 0xFF;
+
+            if (version < 1 || version > VERSION)
+                throw new IllegalArgumentException("Unsupported header version " + version);
+
+            int length = buffer.getShort() & 0xFFFF;
+            Type type = Type.values()[buffer.get()];
+            String algorithm = getString(buffer);
+            String mode = getString(buffer);
+            String padding = getString(buffer);
+            byte[] iv = getBytes(buffer);
+            String kdfAlgorithm = getString(buffer);
+            byte[] salt = getBytes(buffer);
+            int iterations = buffer.getInt();
+            int segmentSize = buffer.getInt();
+            String compressionAlgorithm = version >= 2 ? getString(buffer) : "";
+            int compressionLevel = version >= 2 ? buffer.get() : 0;
+
+            if (buffer.position() + MAC_LENGTH != length)
+                throw new IllegalArgumentException("Corrupted header");
+
+            byte[] expectedMac = new byte[MAC_LENGTH];
+            buffer.get(expectedMac);
+
+            if (key != null) {
+                Mac mac = headerMac(key);
+                mac.update(buffer.array(), buffer.arrayOffset(), length - MAC_LENGTH);
+
+                if (!MessageDigest.isEqual(mac.doFinal(), expectedMac))
+                    throw new IllegalArgumentException("Header MAC mismatch, wrong key or tampered header");
+            }
+
+            return new EncryptedFileHeader(
+                    type,
+                    algorithm,
+                    type == Type.BLOCK ? BlockCipherImpl.Mode.fromString(mode) : null,
+                    type == Type.BLOCK ? BlockCipherImpl.Padding.fromString(padding) : null,
+                    iv,
+                    kdfAlgorithm.isEmpty() ? null : new Kdf(kdfAlgorithm, salt, iterations),
+                    segmentSize,
+                    compressionAlgorithm.isEmpty() ? null : new Compression(compressionAlgorithm, compressionLevel)
+            );
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or corrupted header", e);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Cipher newCipher(int opmode, byte[] key) throws GeneralSecurityException {
+        return switch (type) {
+            case BLOCK -> BlockCipherImpl.initCipher(opmode, algorithm, mode, padding, iv, key);
+            case STREAM -> StreamCipherImpl.initCipher(opmode, algorithm, iv, key);
+        };
+    }
+
+    private static ByteBuffer readAhead(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_AHEAD, channel.size()));
+
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) { }
+
+        return buffer.flip();
+    }
+
+    /**
+     * HMAC-SHA256 keyed with {@code HMAC-SHA256(key, label)}, so the file key itself is never used as a MAC key.
+     */
+    private static Mac headerMac(byte[] key) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HMACSHA256", "BC");
+        mac.init(new SecretKeySpec(key, "HMACSHA256"));
+        byte[] macKey = mac.doFinal(MAC_KEY_LABEL);
+
+        mac.init(new SecretKeySpec(macKey, "HMACSHA256"));
+        return mac;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        putBytes(buffer, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] value) {
+        if (value.length > 255)
+            throw new IllegalArgumentException("Header field longer than 255 bytes");
+
+        buffer.put((byte) value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        return new String(getBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.get() & 0xFF];
+        buffer.get(value);
+        return value;
+    }
+
+    public enum Type {
+        BLOCK,
+        STREAM
+    }
+
+    /**
+     * Password based key derivation parameters.
+     *
+     * @param algorithm The {@code SecretKeyFactory} algorithm, e.g. {@code PBKDF2}.
+     * @param salt The salt.
+     * @param iterations The iteration count.
+     */
+    public record Kdf(String algorithm, byte[] salt, int iterations) {
+
+        /**
+         * Derives the file key from a password.
+         */
+        public byte[] deriveKey(char[] password, int keySizeBits) {
+            return PbeImpl.hash(algorithm, password, salt, iterations, keySizeBits);
+        }
+    }
+
+    /**
+     * Compression applied to the plaintext before encryption.
+     *
+     * @param algorithm The compression format, only {@value #DEFLATE} is supported.
+     * @param level The level the file was compressed with. Informational, decompression does not need it.
+     */
+    public record Compression(String algorithm, int level) {
+
+        public static final String DEFLATE = "DEFLATE";
+
+        public Compression {
+            if (!DEFLATE.equals(algorithm))
+                throw new IllegalArgumentException("Unsupported compression: " + algorithm);
+        }
+
+        public static Compression deflate(int level) {
+            return new Compression(DEFLATE, level);
+        }
+    }
+
+    /**
+     * Result of {@link #decrypt}.
+     *
+     * @param header The verified header.
+     * @param stats The compression ratio and time figures of the decrypted file.
+     */
+    public record Decryption(EncryptedFileHeader header, CompressionStage.Stats stats) { }
+
+    /**
+     * Result of reading one header in {@link #inspectAll(Collection)}.
+     *
+     * @param path The inspected file.
+     * @param header The parsed header, {@code null} if the file has none.
+     * @param error Why the header could not be read, {@code null} on success.
+     */
+    public record Inspection(Path path, EncryptedFileHeader header, String error) { }
+
+}
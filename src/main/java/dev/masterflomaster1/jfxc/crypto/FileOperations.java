@@ -5,17 +5,37 @@ import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Utility class for file encryption and decryption using NIO.
  */
 public final class FileOperations {
 
-    private static final int BUFFER_SIZE = 8192;
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Size of one mapped window. A multiple of every supported block size, so a block-buffering cipher never holds
+     * back input across windows when encrypting.
+     */
+    private static final int MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * {@code Unsafe.invokeCleaner}, or {@code null} if the JVM does not offer it.
+     */
+    private static final MethodHandle UNMAPPER = unmapper();
 
     private FileOperations() { }
 
@@ -80,25 +100,369 @@ public final class FileOperations {
      * @param destination The path to the destination file where processed data will be written.
      */
     public static void nioEncryptAndDecrypt(Cipher cipher, Path target, Path destination) {
+        nioEncryptAndDecrypt(cipher, target, destination, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Same as {@link #nioEncryptAndDecrypt(Cipher, Path, Path)}, reporting every chunk to {@code monitor} and stopping
+     * with a {@link CancellationException} once it is cancelled.
+     */
+    public static void nioEncryptAndDecrypt(Cipher cipher, Path target, Path destination, ProgressMonitor monitor) {
         try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ);
              FileChannel destChannel = FileChannel.open(destination,
                      StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
 
-            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-            ByteBuffer encryptedBuffer;
+            transform(cipher, sourceChannel, destChannel, monitor);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Runs the rest of {@code source}, from its current position, through the cipher and appends the result to
+     * {@code destination} at its current position.
+     */
+    static void transform(Cipher cipher, FileChannel source, FileChannel destination, ProgressMonitor monitor)
+            throws IOException, GeneralSecurityException {
+
+        transform(cipher, source, destination, BUFFER_SIZE, monitor);
+    }
+
+    /**
+     * Same as {@link #transform(Cipher, FileChannel, FileChannel, ProgressMonitor)} with a chosen buffer size.
+     */
+    static void transform(Cipher cipher,
+                          FileChannel source,
+                          FileChannel destination,
+                          int bufferSize,
+                          ProgressMonitor monitor) throws IOException, GeneralSecurityException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(alignToBlock(cipher, bufferSize));
+        byte[] encrypted;
+
+        while (source.read(buffer) != -1) {
+            monitor.checkCancelled();
+            buffer.flip();
+            encrypted = cipher.update(buffer.array(), buffer.position(), buffer.remaining());
+
+            // Cipher.update returns null while a padded cipher is still buffering a partial block
+            if (encrypted != null)
+                writeFully(destination, ByteBuffer.wrap(encrypted));
+
+            monitor.worked(buffer.limit());
+            buffer.clear();
+        }
+
+        writeFully(destination, ByteBuffer.wrap(cipher.doFinal()));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Rounds {@code bufferSize} down to a whole number of cipher blocks, so a block cipher never holds back part of
+     * a buffer between updates. Stream ciphers report a block size of {@code 0} and keep the size as is.
+     */
+    static int alignToBlock(Cipher cipher, int bufferSize) {
+        int blockSize = cipher.getBlockSize();
+
+        if (blockSize <= 1)
+            return bufferSize;
+
+        return Math.max(blockSize, bufferSize - bufferSize % blockSize);
+    }
+
+    /**
+     * Encrypts or decrypts a file over plain file streams, the stream counterpart of
+     * {@link #nioEncryptAndDecrypt(Cipher, Path, Path, ProgressMonitor)}.
+     *
+     * <p>The cipher is finished here rather than by a {@link CipherOutputStream}, whose {@code close()} swallows the
+     * {@link javax.crypto.BadPaddingException} of a wrong decryption key and leaves a garbled file behind.</p>
+     */
+    static void streamEncryptAndDecrypt(Cipher cipher,
+                                        Path target,
+                                        Path destination,
+                                        int bufferSize,
+                                        ProgressMonitor monitor) {
+        try (FileInputStream fis = new FileInputStream(target.toString());
+             FileOutputStream fos = new FileOutputStream(destination.toString())) {
+
+            byte[] buffer = new byte[alignToBlock(cipher, bufferSize)];
+            int bytesRead;
+
+            while ((bytesRead = fis.read(buffer)) != -1) {
+                monitor.checkCancelled();
+                byte[] processed = cipher.update(buffer, 0, bytesRead);
 
-            while (sourceChannel.read(buffer) != -1) {
-                buffer.flip();
-                encryptedBuffer = ByteBuffer.wrap(cipher.update(buffer.array(), buffer.position(), buffer.remaining()));
-                destChannel.write(encryptedBuffer);
-                buffer.clear();
+                if (processed != null)
+                    fos.write(processed);
+
+                monitor.worked(bytesRead);
             }
 
-            encryptedBuffer = ByteBuffer.wrap(cipher.doFinal());
-            destChannel.write(encryptedBuffer);
+            fos.write(cipher.doFinal());
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Encrypts or decrypts a file using the selected I/O mode.
+     *
+     * @param opmode {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}, whichever {@code cipher} was
+     *               initialized with.
+     * @param cipher The Cipher instance already initialized for encryption or decryption.
+     * @param target The path to the source file to process.
+     * @param destination The path to the destination file where processed data will be written.
+     * @param ioMode The I/O backend to use.
+     */
+    public static void encryptAndDecrypt(int opmode, Cipher cipher, Path target, Path destination, IoMode ioMode) {
+        encryptAndDecrypt(opmode, cipher, target, destination, ioMode, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Encrypts or decrypts a file using the selected I/O mode, reporting progress to {@code monitor}.
+     *
+     * @param opmode {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}, whichever {@code cipher} was
+     *               initialized with. {@link IoMode#AUTO} ranks the backends separately for each direction.
+     * @param cipher The Cipher instance already initialized for encryption or decryption.
+     * @param target The path to the source file to process.
+     * @param destination The path to the destination file where processed data will be written.
+     * @param ioMode The I/O backend to use, {@link IoMode#AUTO} lets {@link IoStrategySelector} pick one.
+     * @param monitor Receives the processed byte count and is polled for cancellation.
+     */
+    public static void encryptAndDecrypt(int opmode,
+                                         Cipher cipher,
+                                         Path target,
+                                         Path destination,
+                                         IoMode ioMode,
+                                         ProgressMonitor monitor) {
+        switch (ioMode) {
+            case AUTO -> encryptAndDecrypt(cipher, target, destination,
+                    IoStrategySelector.select(opmode, cipher, target.toFile().length()), monitor);
+            case STREAM -> streamEncryptAndDecrypt(cipher, target, destination, BUFFER_SIZE, monitor);
+            case NIO -> nioEncryptAndDecrypt(cipher, target, destination, monitor);
+            case MAPPED -> mappedEncryptAndDecrypt(cipher, target, destination, monitor);
+            case PIPELINED -> pipelinedEncryptAndDecrypt(cipher, target, destination, monitor);
+            default -> throw new IllegalArgumentException("Unsupported I/O mode: " + ioMode);
+        }
+    }
+
+    /**
+     * Encrypts or decrypts a file with the backend and buffer size of {@code strategy}.
+     *
+     * @param cipher The Cipher instance already initialized for encryption or decryption.
+     * @param target The path to the source file to process.
+     * @param destination The path to the destination file where processed data will be written.
+     * @param strategy The backend and buffer size, usually from {@link IoStrategySelector#select}.
+     * @param monitor Receives the processed byte count and is polled for cancellation.
+     */
+    public static void encryptAndDecrypt(Cipher cipher,
+                                         Path target,
+                                         Path destination,
+                                         IoStrategySelector.Strategy strategy,
+                                         ProgressMonitor monitor) {
+        switch (strategy.mode()) {
+            case STREAM -> streamEncryptAndDecrypt(cipher, target, destination, strategy.bufferSize(), monitor);
+            case NIO -> {
+                try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ);
+                     FileChannel destChannel = FileChannel.open(destination, StandardOpenOption.CREATE,
+                             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+                    transform(cipher, sourceChannel, destChannel, strategy.bufferSize(), monitor);
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            case MAPPED -> mappedEncryptAndDecrypt(cipher, target, destination, monitor);
+            case PIPELINED -> pipelinedEncryptAndDecrypt(cipher, target, destination, monitor);
+            default -> throw new IllegalArgumentException("Unsupported I/O mode: " + strategy.mode());
+        }
+    }
+
+    /**
+     * Encrypts or decrypts the content of a file using memory-mapped source and destination files.
+     *
+     * <p>Both files are mapped window by window and every window is passed to
+     * {@link Cipher#update(ByteBuffer, ByteBuffer)} in a single call that writes straight into the mapped output, so
+     * the loop does not allocate per chunk and the data never passes through a heap buffer owned by this class. Both
+     * windows are unmapped before the next ones are mapped, so no more than one window per file is mapped at any time.
+     * The output of {@link Cipher#doFinal()} is written through the channel, and the destination is trimmed to the
+     * produced length only once nothing is mapped any more, as Windows refuses to truncate a mapped file.</p>
+     *
+     * @param cipher The Cipher instance already initialized for encryption or decryption.
+     * @param target The path to the source file to process.
+     * @param destination The path to the destination file where processed data will be written.
+     */
+    public static void mappedEncryptAndDecrypt(Cipher cipher, Path target, Path destination) {
+        mappedEncryptAndDecrypt(cipher, target, destination, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Same as {@link #mappedEncryptAndDecrypt(Cipher, Path, Path)}, reporting every window to {@code monitor}.
+     */
+    public static void mappedEncryptAndDecrypt(Cipher cipher, Path target, Path destination, ProgressMonitor monitor) {
+        try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ);
+             FileChannel destChannel = FileChannel.open(destination, StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            long size = sourceChannel.size();
+            long inPosition = 0;
+            long outPosition = 0;
+
+            while (inPosition < size) {
+                monitor.checkCancelled();
+                int window = (int) Math.min(MAPPED_WINDOW_SIZE, size - inPosition);
+                MappedByteBuffer in = null;
+                MappedByteBuffer out = null;
+
+                try {
+                    in = sourceChannel.map(FileChannel.MapMode.READ_ONLY, inPosition, window);
+                    out = destChannel.map(FileChannel.MapMode.READ_WRITE, outPosition, cipher.getOutputSize(window));
+                    outPosition += cipher.update(in, out);
+                } finally {
+                    unmap(in);
+                    unmap(out);
+                }
+
+                inPosition += window;
+                monitor.worked(window);
+            }
+
+            ByteBuffer last = ByteBuffer.wrap(cipher.doFinal());
+
+            while (last.hasRemaining())
+                outPosition += destChannel.write(last, outPosition);
+
+            // getOutputSize may reserve a block more than a padded decryption produces
+            destChannel.truncate(outPosition);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Releases a mapping right away instead of whenever the buffer is garbage collected. The buffer must not be
+     * accessed afterwards. Without {@link #UNMAPPER} the mapping is left to the garbage collector.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null || UNMAPPER == null)
+            return;
+
+        try {
+            UNMAPPER.invoke((ByteBuffer) buffer);
+        } catch (Throwable ignored) {
+            // Still released once the buffer is collected
+        }
+    }
+
+    private static MethodHandle unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Encrypts or decrypts the content of a file with reading, ciphering and writing running on separate threads.
+     *
+     * <p>While the cipher works on one chunk the next one is already being read and the previous one written, so
+     * slow storage or network mounts no longer stall sequential modes like CBC or OFB between chunks. Chunks travel
+     * through a small ring of reusable direct buffers. Files that fit in a single chunk gain nothing from the extra
+     * threads and take the {@link #nioEncryptAndDecrypt(Cipher, Path, Path) NIO} path instead.</p>
+     *
+     * @param cipher The Cipher instance already initialized for encryption or decryption.
+     * @param target The path to the source file to process.
+     * @param destination The path to the destination file where processed data will be written.
+     */
+    public static void pipelinedEncryptAndDecrypt(Cipher cipher, Path target, Path destination) {
+        pipelinedEncryptAndDecrypt(cipher, target, destination, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Same as {@link #pipelinedEncryptAndDecrypt(Cipher, Path, Path)}, reporting every chunk to {@code monitor}.
+     */
+    public static void pipelinedEncryptAndDecrypt(Cipher cipher,
+                                                  Path target,
+                                                  Path destination,
+                                                  ProgressMonitor monitor) {
+        try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ);
+             FileChannel destChannel = FileChannel.open(destination,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            if (sourceChannel.size() <= CipherPipeline.CHUNK_SIZE)
+                transform(cipher, sourceChannel, destChannel, monitor);
+            else
+                new CipherPipeline(cipher, sourceChannel, destChannel, monitor).run();
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Encrypts or decrypts a file without blocking the calling thread.
+     *
+     * <p>Several chunks are read ahead at their file positions while earlier ones go through the cipher, and every
+     * result is written at its own position, so reading, cipher work and writing overlap. The calling thread does not
+     * wait, but on Linux and macOS every read and write in flight blocks a thread of the shared I/O pool until it
+     * completes. See {@link AsyncCipherTransfer}.</p>
+     *
+     * @param cipher The Cipher instance already initialized for encryption or decryption. It must not be used by
+     *               anyone else until the returned future completes.
+     * @param target The path to the source file to process.
+     * @param destination The path to the destination file where processed data will be written.
+     * @return Completes with the number of bytes written to {@code destination}, or exceptionally with the failure.
+     */
+    public static CompletableFuture<Long> asyncEncryptAndDecrypt(Cipher cipher, Path target, Path destination) {
+        return asyncEncryptAndDecrypt(cipher, target, destination, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Same as {@link #asyncEncryptAndDecrypt(Cipher, Path, Path)}, reporting every chunk to {@code monitor}. Once
+     * {@code monitor} is cancelled the future completes with a {@link CancellationException}, cancelling the future
+     * itself stops the transfer as well.
+     */
+    public static CompletableFuture<Long> asyncEncryptAndDecrypt(Cipher cipher,
+                                                                 Path target,
+                                                                 Path destination,
+                                                                 ProgressMonitor monitor) {
+        return AsyncCipherTransfer.start(cipher, target, destination, monitor);
+    }
+
+    /**
+     * I/O backends available to the file encryption paths.
+     */
+    public enum IoMode {
+        /** Picked per file by {@link IoStrategySelector} from the size, free memory and calibrated throughput. */
+        AUTO,
+        /** Cipher updates between plain file streams. */
+        STREAM,
+        /** Heap buffer read through a {@link FileChannel}. */
+        NIO,
+        /** Memory-mapped source and destination files. */
+        MAPPED,
+        /** Separate reader, cipher and writer threads handing off a ring of direct buffers. */
+        PIPELINED
+    }
+
 }
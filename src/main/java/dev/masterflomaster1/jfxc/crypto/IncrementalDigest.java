@@ -0,0 +1,127 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Digest of an input that changes a little at a time, such as text being typed.
+ *
+ * <p>Keeps clones of the digest state every {@link #CHECKPOINT_INTERVAL} bytes of the last input. A new input is
+ * compared with the last one and hashing resumes from the last checkpoint before the first difference, so appending
+ * to a large input only feeds the new bytes and the tail since the last checkpoint. An edit near the start still
+ * hashes everything after it. Digests whose state cannot be cloned are always computed from scratch, and so is
+ * TupleHash, which takes every update as a tuple element of its own and must see the input in a single update.</p>
+ *
+ * <p>Calls are serialised, instances may be used from any thread.</p>
+ */
+public final class IncrementalDigest {
+
+    static final int CHECKPOINT_INTERVAL = 64 * 1024;
+
+    private final String algorithm;
+
+    /**
+     * The state after {@code i * CHECKPOINT_INTERVAL} bytes of {@link #source} at index {@code i}, starting with the
+     * empty state. Never handed out, only clones of it are updated.
+     */
+    private final List<MessageDigest> checkpoints = new ArrayList<>();
+
+    private byte[] source = new byte[0];
+    /**
+     * Cleared for digests that can only hash the whole input at once.
+     */
+    private boolean resumable;
+
+    /**
+     * @throws RuntimeException If the algorithm is not available.
+     */
+    public IncrementalDigest(String algorithm) {
+        this.algorithm = algorithm;
+        this.resumable = !algorithm.toUpperCase(Locale.ROOT).startsWith("TUPLEHASH");
+        checkpoints.add(newDigest());
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Hashes {@code input}, reusing the work done for the previous input up to where the two differ. The array must
+     * not be modified afterwards, it is kept for the comparison with the next input.
+     *
+     * @param input The complete input.
+     * @param monitor Receives the bytes actually hashed and is polled for cancellation. Checkpoints reached before
+     *                a cancellation are kept.
+     * @return The digest of {@code input}.
+     */
+    public synchronized byte[] digest(byte[] input, ProgressMonitor monitor) {
+        if (!resumable) {
+            monitor.checkCancelled();
+            byte[] digest = UnkeyedCryptoHash.hash(algorithm, input);
+            monitor.worked(input.length);
+            return digest;
+        }
+
+        int common = Arrays.mismatch(source, input);
+        int reusable = common == -1 ? input.length : common;
+
+        // Checkpoints past the first difference describe the old input only
+        int keep = Math.min(checkpoints.size(), reusable / CHECKPOINT_INTERVAL + 1);
+        checkpoints.subList(keep, checkpoints.size()).clear();
+        source = input;
+
+        int offset = (keep - 1) * CHECKPOINT_INTERVAL;
+        MessageDigest md = copy(checkpoints.get(keep - 1));
+
+        if (md == null)
+            return digest(input, monitor);
+
+        while (offset < input.length) {
+            monitor.checkCancelled();
+
+            int length = Math.min(CHECKPOINT_INTERVAL, input.length - offset);
+            md.update(input, offset, length);
+            monitor.worked(length);
+            offset += length;
+
+            if (length == CHECKPOINT_INTERVAL) {
+                MessageDigest checkpoint = copy(md);
+
+                if (checkpoint == null)
+                    return digest(input, monitor);
+
+                checkpoints.add(checkpoint);
+            }
+        }
+
+        return md.digest();
+    }
+
+    /**
+     * @return A clone of {@code md}, or {@code null} after switching to full recomputes if the digest cannot be
+     *         cloned.
+     */
+    private MessageDigest copy(MessageDigest md) {
+        try {
+            return (MessageDigest) md.clone();
+        } catch (CloneNotSupportedException e) {
+            resumable = false;
+            checkpoints.subList(1, checkpoints.size()).clear();
+            return null;
+        }
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm, ProviderRouter.digest(algorithm));
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
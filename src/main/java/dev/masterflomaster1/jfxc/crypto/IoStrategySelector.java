@@ -0,0 +1,382 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the I/O backend and buffer size for {@link FileOperations.IoMode#AUTO}.
+ *
+ * <p>Small files always take the NIO path, the other backends only pay off once their setup cost is spread over
+ * enough data. For larger files the backends are ranked per cipher transformation and direction: the first large
+ * file encrypted or decrypted with a transformation triggers a short calibration that runs every candidate a few
+ * times over a temporary file in that direction and keeps the fastest run of each. Other transformations never wait
+ * for a calibration, concurrent files with the same one wait for the calibration already running. Memory mapping is
+ * passed over when the file would not fit comfortably into free physical memory.</p>
+ *
+ * <p>Rankings are kept for the session and, like the {@link ProviderRouter} routes, saved in the directory named by
+ * {@value ProviderRouter#CACHE_DIRECTORY_PROPERTY} when it is set.</p>
+ *
+ * <p>Buffer sizes are always whole multiples of the cipher block size.</p>
+ */
+public final class IoStrategySelector {
+
+    /**
+     * Files up to this size are processed with a single NIO buffer pass, calibration is not worth it for them.
+     */
+    static final long SMALL_FILE_SIZE = CipherPipeline.CHUNK_SIZE;
+
+    static final int CALIBRATION_SIZE = 4 * 1024 * 1024;
+    static final int CALIBRATION_ROUNDS = 3;
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int[] CANDIDATE_BUFFER_SIZES = {FileOperations.BUFFER_SIZE, 64 * 1024, 256 * 1024};
+    private static final String ENVIRONMENT_KEY = "environment";
+
+    private static final Map<String, List<Strategy>> RANKINGS = new ConcurrentHashMap<>();
+    /**
+     * Rankings of transformations that could not be calibrated at all. Kept for the session only, never saved.
+     */
+    private static final Map<String, List<Strategy>> FALLBACKS = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<List<Strategy>>> CALIBRATIONS = new ConcurrentHashMap<>();
+    private static final AtomicBoolean LOADED = new AtomicBoolean();
+
+    private IoStrategySelector() { }
+
+    /**
+     * Chooses how to process a file of {@code size} bytes with {@code cipher}.
+     *
+     * @param opmode {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}, whichever {@code cipher} was
+     *               initialized with.
+     * @param cipher The initialized cipher, used for its transformation, provider, IV and block size.
+     * @param size The size of the input file in bytes.
+     * @return A strategy with a concrete backend, never {@link FileOperations.IoMode#AUTO}.
+     */
+    public static Strategy select(int opmode, Cipher cipher, long size) {
+        if (size <= SMALL_FILE_SIZE) {
+            int bufferSize = (int) Math.min(DEFAULT_BUFFER_SIZE, Math.max(size, 1));
+            return new Strategy(FileOperations.IoMode.NIO, FileOperations.alignToBlock(cipher, bufferSize));
+        }
+
+        boolean mappable = size < freePhysicalMemory() / 2;
+
+        return ranking(opmode, cipher).stream()
+                .filter(strategy -> mappable || strategy.mode() != FileOperations.IoMode.MAPPED)
+                .findFirst()
+                .orElseGet(() -> new Strategy(FileOperations.IoMode.NIO,
+                        FileOperations.alignToBlock(cipher, DEFAULT_BUFFER_SIZE)));
+    }
+
+    /**
+     * Returns the calibrated ranking for the transformation of {@code cipher} in direction {@code opmode}, fastest
+     * first. Calibrates on first use.
+     */
+    static List<Strategy> ranking(int opmode, Cipher cipher) {
+        if (LOADED.compareAndSet(false, true)) {
+            Path file = cacheFile();
+
+            if (file != null)
+                load(file);
+        }
+
+        String key = key(opmode, cipher.getAlgorithm());
+        List<Strategy> ranking = rankingOf(key);
+
+        if (ranking != null)
+            return ranking;
+
+        // Calibrating outside the map keeps other transformations from waiting for this one
+        CompletableFuture<List<Strategy>> calibration = new CompletableFuture<>();
+        CompletableFuture<List<Strategy>> running = CALIBRATIONS.putIfAbsent(key, calibration);
+
+        if (running != null)
+            return running.join();
+
+        try {
+            if (rankingOf(key) == null) {
+                List<Strategy> calibrated = calibrate(opmode, cipher);
+
+                if (calibrated == null)
+                    FALLBACKS.putIfAbsent(key, List.of(new Strategy(FileOperations.IoMode.NIO,
+                            FileOperations.alignToBlock(cipher, DEFAULT_BUFFER_SIZE))));
+                else if (RANKINGS.putIfAbsent(key, calibrated) == null)
+                    saveQuietly();
+            }
+        } finally {
+            CALIBRATIONS.remove(key, calibration);
+            calibration.complete(rankingOf(key));
+        }
+
+        return rankingOf(key);
+    }
+
+    /**
+     * Forgets all calibration results.
+     */
+    public static void reset() {
+        RANKINGS.clear();
+        FALLBACKS.clear();
+    }
+
+    private static List<Strategy> rankingOf(String key) {
+        List<Strategy> ranking = RANKINGS.get(key);
+        return ranking != null ? ranking : FALLBACKS.get(key);
+    }
+
+    /**
+     * {@code io-strategies.properties} in the {@linkplain ProviderRouter#CACHE_DIRECTORY_PROPERTY cache directory}.
+     *
+     * @return The file, or {@code null} if rankings are not kept between runs.
+     */
+    public static Path cacheFile() {
+        return ProviderRouter.cacheFile("io-strategies.properties");
+    }
+
+    /**
+     * Loads saved rankings, unless they were measured on another JVM or BC version.
+     *
+     * @return {@code true} if the file was loaded.
+     */
+    public static boolean load(Path file) {
+        if (!Files.isRegularFile(file))
+            return false;
+
+        Properties properties = new Properties();
+
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return false;
+        }
+
+        if (!ProviderRouter.environment().equals(properties.getProperty(ENVIRONMENT_KEY)))
+            return false;
+
+        for (String key : properties.stringPropertyNames()) {
+            if (ENVIRONMENT_KEY.equals(key))
+                continue;
+
+            try {
+                RANKINGS.putIfAbsent(key, Arrays.stream(properties.getProperty(key).split(","))
+                        .map(Strategy::parse)
+                        .toList());
+            } catch (IllegalArgumentException ignored) {
+                // Written by a version with other I/O modes, calibrated again on first use
+            }
+        }
+
+        return true;
+    }
+
+    public static void save(Path file) throws IOException {
+        Properties properties = new Properties();
+
+        RANKINGS.forEach((key, ranking) -> properties.setProperty(key, ranking.stream()
+                .map(Strategy::format)
+                .collect(Collectors.joining(","))));
+        properties.setProperty(ENVIRONMENT_KEY, ProviderRouter.environment());
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, "JFXCrypto I/O strategy rankings");
+        }
+    }
+
+    private static void saveQuietly() {
+        Path file = cacheFile();
+
+        if (file == null)
+            return;
+
+        try {
+            save(file);
+        } catch (IOException e) {
+            System.err.println("Cannot save I/O strategy rankings: " + e.getMessage());
+        }
+    }
+
+    private static String key(int opmode, String transformation) {
+        return transformation + (opmode == Cipher.DECRYPT_MODE ? ".decrypt" : ".encrypt");
+    }
+
+    /**
+     * Times every candidate strategy over a temporary file with a fresh key of the same transformation, in the
+     * direction of {@code opmode}. Decryption candidates read a file encrypted with that key first. A candidate that
+     * fails, e.g. a backend that cannot handle the transformation, is left out of the ranking.
+     *
+     * @return The candidates that worked, fastest first, or {@code null} if the calibration could not run at all.
+     */
+    private static List<Strategy> calibrate(int opmode, Cipher cipher) {
+        List<Strategy> candidates = new ArrayList<>();
+
+        for (int bufferSize : CANDIDATE_BUFFER_SIZES) {
+            candidates.add(new Strategy(FileOperations.IoMode.NIO, FileOperations.alignToBlock(cipher, bufferSize)));
+            candidates.add(new Strategy(FileOperations.IoMode.STREAM,
+                    FileOperations.alignToBlock(cipher, bufferSize)));
+        }
+
+        candidates.add(new Strategy(FileOperations.IoMode.PIPELINED, CipherPipeline.CHUNK_SIZE));
+        candidates.add(new Strategy(FileOperations.IoMode.MAPPED, 0));
+
+        Path plain = null;
+        Path input = null;
+        Path output = null;
+
+        try {
+            plain = Files.createTempFile("jfxc-calibration", ".bin");
+            output = Files.createTempFile("jfxc-calibration", ".out");
+
+            byte[] data = new byte[CALIBRATION_SIZE];
+            new SecureRandom().nextBytes(data);
+            Files.write(plain, data);
+
+            SecretKey key = calibrationKey(cipher);
+            input = plain;
+
+            if (opmode == Cipher.DECRYPT_MODE) {
+                input = Files.createTempFile("jfxc-calibration", ".enc");
+                FileOperations.encryptAndDecrypt(calibrationCipher(Cipher.ENCRYPT_MODE, cipher, key), plain, input,
+                        candidates.get(0), ProgressMonitor.NONE);
+            }
+
+            // Warms up the cipher and the file cache, so the first candidate is not penalized
+            FileOperations.encryptAndDecrypt(calibrationCipher(opmode, cipher, key), input, output, candidates.get(0),
+                    ProgressMonitor.NONE);
+
+            Map<Strategy, Long> timings = new HashMap<>();
+
+            for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+                for (Iterator<Strategy> it = candidates.iterator(); it.hasNext(); ) {
+                    Strategy candidate = it.next();
+                    Cipher calibration = calibrationCipher(opmode, cipher, key);
+                    long start = System.nanoTime();
+
+                    try {
+                        FileOperations.encryptAndDecrypt(calibration, input, output, candidate, ProgressMonitor.NONE);
+                    } catch (RuntimeException e) {
+                        it.remove();
+                        timings.remove(candidate);
+                        continue;
+                    }
+
+                    timings.merge(candidate, System.nanoTime() - start, Math::min);
+                }
+            }
+
+            if (candidates.isEmpty())
+                return null;
+
+            candidates.sort(Comparator.comparingLong(timings::get));
+            return List.copyOf(candidates);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            return null;
+        } finally {
+            deleteQuietly(plain);
+            deleteQuietly(input);
+            deleteQuietly(output);
+        }
+    }
+
+    private static SecretKey calibrationKey(Cipher cipher) {
+        String algorithm = cipher.getAlgorithm().split("/")[0];
+
+        try {
+            return KeyGenerator.getInstance(algorithm, cipher.getProvider()).generateKey();
+        } catch (NoSuchAlgorithmException e) {
+            // Not every algorithm registers a key generator, 256 bits is a valid key size for those that do not
+            byte[] raw = new byte[32];
+            new SecureRandom().nextBytes(raw);
+            return new SecretKeySpec(raw, algorithm);
+        }
+    }
+
+    private static Cipher calibrationCipher(int opmode, Cipher cipher, SecretKey key)
+            throws GeneralSecurityException {
+
+        Cipher calibration = Cipher.getInstance(cipher.getAlgorithm(), cipher.getProvider());
+
+        if (cipher.getIV() == null)
+            calibration.init(opmode, key);
+        else
+            calibration.init(opmode, key, new IvParameterSpec(cipher.getIV()));
+
+        return calibration;
+    }
+
+    /**
+     * Free physical memory as reported by the OS, or the free heap if the JVM does not expose it.
+     */
+    private static long freePhysicalMemory() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os)
+            return os.getFreeMemorySize();
+
+        return Runtime.getRuntime().freeMemory();
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null)
+            return;
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) { }
+    }
+
+    /**
+     * An I/O backend together with its buffer size.
+     *
+     * @param mode The backend, never {@link FileOperations.IoMode#AUTO}.
+     * @param bufferSize Bytes per read for the stream and NIO backends. The pipelined and mapped backends size their
+     *                   own buffers.
+     */
+    public record Strategy(FileOperations.IoMode mode, int bufferSize) {
+
+        public Strategy {
+            if (mode == FileOperations.IoMode.AUTO)
+                throw new IllegalArgumentException("A strategy needs a concrete I/O mode");
+        }
+
+        /**
+         * Reads the {@link #format} of a strategy.
+         *
+         * @throws IllegalArgumentException If {@code text} is not a strategy.
+         */
+        static Strategy parse(String text) {
+            String[] parts = text.split(":");
+
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Not a strategy: " + text);
+
+            return new Strategy(FileOperations.IoMode.valueOf(parts[0]), Integer.parseInt(parts[1]));
+        }
+
+        String format() {
+            return mode + ":" + bufferSize;
+        }
+    }
+
+}
@@ -12,7 +12,7 @@ public final class MacImpl {
 
     public static byte[] hmac(String algorithm, byte[] key, byte[] value) {
         try {
-            Mac mac = Mac.getInstance(algorithm, "BC");
+            Mac mac = Mac.getInstance(algorithm, ProviderRouter.mac(algorithm));
             SecretKeySpec keySpec = new SecretKeySpec(key, algorithm);
             mac.init(keySpec);
             return mac.doFinal(value);
@@ -0,0 +1,125 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Merkle tree over SHA-256 as defined for Certificate Transparency in RFC 6962, the leaves of a file hashed in
+ * parallel.
+ *
+ * <p>The file is cut into leaves of {@link #LEAF_SIZE}. A leaf hashes to {@code SHA-256(0x00 || leaf)}, a node to
+ * {@code SHA-256(0x01 || left || right)}, where the left subtree holds the largest power of two of leaves that is
+ * smaller than the total. An empty file hashes to {@code SHA-256()}. The prefixes keep a leaf from passing for a
+ * node.</p>
+ */
+final class MerkleTreeHash extends TreeHash {
+
+    static final int LEAF_SIZE = 64 * 1024;
+
+    /**
+     * Leaves below which a subtree is not split into further tasks.
+     */
+    private static final int TASK_LEAVES = 16;
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    @Override
+    byte[] hash(FileChannel channel, ProgressMonitor monitor) throws IOException {
+        long size = channel.size();
+
+        if (size == 0)
+            return sha256().digest();
+
+        long leaves = (size + LEAF_SIZE - 1) / LEAF_SIZE;
+        return ForkJoinPool.commonPool().invoke(new Subtree(channel, size, 0, leaves, monitor));
+    }
+
+    /**
+     * The same tree over leaves held in memory, e.g. the lines of a manifest.
+     */
+    static byte[] root(List<byte[]> leaves) {
+        MessageDigest md = sha256();
+        return leaves.isEmpty() ? md.digest() : root(md, leaves, 0, leaves.size());
+    }
+
+    private static byte[] root(MessageDigest md, List<byte[]> leaves, int from, int to) {
+        if (to - from == 1) {
+            md.update(LEAF_PREFIX);
+            md.update(leaves.get(from));
+            return md.digest();
+        }
+
+        int split = from + Integer.highestOneBit(to - from - 1);
+        byte[] left = root(md, leaves, from, split);
+        return node(md, left, root(md, leaves, split, to));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            // Built into the JDK and faster than the provider for this one
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] node(MessageDigest md, byte[] left, byte[] right) {
+        md.update(NODE_PREFIX);
+        md.update(left);
+        md.update(right);
+        return md.digest();
+    }
+
+    private static final class Subtree extends RecursiveTask<byte[]> {
+
+        private final FileChannel channel;
+        private final long size;
+        private final long start;
+        private final long leaves;
+        private final ProgressMonitor monitor;
+
+        private Subtree(FileChannel channel, long size, long start, long leaves, ProgressMonitor monitor) {
+            this.channel = channel;
+            this.size = size;
+            this.start = start;
+            this.leaves = leaves;
+            this.monitor = monitor;
+        }
+
+        @Override
+        protected byte[] compute() {
+            if (leaves <= TASK_LEAVES) {
+                long position = start * LEAF_SIZE;
+                byte[] data = read(channel, position, (int) Math.min(leaves * LEAF_SIZE, size - position), monitor);
+                return subtree(sha256(), data, 0, leaves);
+            }
+
+            long left = Long.highestOneBit(leaves - 1);
+            var leftTask = new Subtree(channel, size, start, left, monitor);
+            leftTask.fork();
+
+            byte[] right = new Subtree(channel, size, start + left, leaves - left, monitor).compute();
+            return node(sha256(), leftTask.join(), right);
+        }
+
+        private static byte[] subtree(MessageDigest md, byte[] data, int offset, long leaves) {
+            if (leaves == 1) {
+                md.update(LEAF_PREFIX);
+                md.update(data, offset, Math.min(LEAF_SIZE, data.length - offset));
+                return md.digest();
+            }
+
+            long left = Long.highestOneBit(leaves - 1);
+            byte[] leftHash = subtree(md, data, offset, left);
+            byte[] rightHash = subtree(md, data, offset + (int) left * LEAF_SIZE, leaves - left);
+            return node(md, leftHash, rightHash);
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Hashes many small independent messages at once with SHA-256 or SHA-1, producing the same digests as
+ * BouncyCastle's {@code SHA-256} and {@code SHA-1}.
+ *
+ * <p>A single message of a few hundred bytes is only a handful of blocks, each of which depends on the one before,
+ * so there is nothing to run side by side. Across messages there is: every lane of a {@link ShaLanes} implementation
+ * carries a message of its own and a call compresses one block of each. A lane that finishes its message takes the
+ * next one from the list, so messages of different lengths keep all lanes busy until the list runs out. On the
+ * incubating Vector API that is 4 to 16 messages per step depending on the vector width. The Vector API is used
+ * when {@link VectorSupport#isAvailable()}, otherwise a scalar implementation takes over.</p>
+ *
+ * <p>No {@link MessageDigest} is created per message. All methods are thread-safe, each call works on scratch space
+ * of its own.</p>
+ */
+public final class MultiBufferDigest {
+
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private MultiBufferDigest() { }
+
+    /**
+     * Whether {@code algorithm} is one of the digests this class implements.
+     */
+    public static boolean isSupported(String algorithm) {
+        return Variant.of(algorithm) != null;
+    }
+
+    /**
+     * Whether {@link UnkeyedCryptoHash#hashAll} should use this class for {@code algorithm}: only on the Vector API and
+     * only where {@link ProviderRouter} left the algorithm with BC. A JDK provider is only routed to when its SHA
+     * intrinsics beat BC, and on CPUs with SHA extensions those are faster than the lanes as well.
+     */
+    public static boolean isPreferred(String algorithm) {
+        return VectorSupport.isAvailable()
+                && isSupported(algorithm)
+                && ProviderRouter.FALLBACK_PROVIDER.equals(ProviderRouter.digest(algorithm));
+    }
+
+    /**
+     * Hashes every message on its own.
+     *
+     * @param algorithm {@code SHA-256} or {@code SHA-1}.
+     * @param messages The messages, none of them {@code null}.
+     * @return The digests, in the order of {@code messages}.
+     */
+    public static List<byte[]> digest(String algorithm, List<byte[]> messages) {
+        return digest(algorithm, messages, VectorSupport.isAvailable());
+    }
+
+    static List<byte[]> digest(String algorithm, List<byte[]> messages, boolean vectorized) {
+        Variant variant = Variant.of(algorithm);
+
+        if (variant == null)
+            throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+
+        ShaLanes lanes = vectorized && VectorSupport.isAvailable() ? new VectorShaLanes() : new ScalarShaLanes();
+        return new Batch(variant, lanes, messages).run();
+    }
+
+    /**
+     * Scratch space and lane bookkeeping of one call.
+     */
+    private static final class Batch {
+
+        private final Variant variant;
+        private final ShaLanes lanes;
+        private final List<byte[]> messages;
+        private final int laneCount;
+
+        private final int[] state;
+        private final int[] block;
+        private final byte[] tail = new byte[ShaLanes.BLOCK_SIZE];
+        private final byte[][] digests;
+
+        /** Index of the message in each lane, {@code -1} once the list has run out. */
+        private final int[] message;
+        private final int[] nextBlock;
+        private final int[] blockCount;
+
+        private int nextMessage;
+
+        private Batch(Variant variant, ShaLanes lanes, List<byte[]> messages) {
+            this.variant = variant;
+            this.lanes = lanes;
+            this.messages = messages;
+            this.laneCount = lanes.lanes();
+            this.state = new int[variant.iv.length * laneCount];
+            this.block = new int[16 * laneCount];
+            this.digests = new byte[messages.size()][];
+            this.message = new int[laneCount];
+            this.nextBlock = new int[laneCount];
+            this.blockCount = new int[laneCount];
+        }
+
+        private List<byte[]> run() {
+            int active = 0;
+
+            for (int lane = 0; lane < laneCount; lane++) {
+                if (load(lane))
+                    active++;
+            }
+
+            while (active > 0) {
+                for (int lane = 0; lane < laneCount; lane++) {
+                    if (message[lane] != -1)
+                        fill(lane);
+                }
+
+                if (variant == Variant.SHA256)
+                    lanes.sha256(state, block);
+                else
+                    lanes.sha1(state, block);
+
+                for (int lane = 0; lane < laneCount; lane++) {
+                    if (message[lane] == -1 || ++nextBlock[lane] < blockCount[lane])
+                        continue;
+
+                    digests[message[lane]] = output(lane);
+
+                    if (!load(lane))
+                        active--;
+                }
+            }
+
+            return Arrays.asList(digests);
+        }
+
+        /**
+         * Starts the next message in {@code lane}.
+         *
+         * @return {@code false} if there is none left.
+         */
+        private boolean load(int lane) {
+            if (nextMessage == messages.size()) {
+                message[lane] = -1;
+                return false;
+            }
+
+            int length = messages.get(nextMessage).length;
+
+            message[lane] = nextMessage++;
+            nextBlock[lane] = 0;
+            // The padding needs at least 9 bytes: the 0x80 marker and the 64-bit length
+            blockCount[lane] = (length + 8) / ShaLanes.BLOCK_SIZE + 1;
+
+            for (int word = 0; word < variant.iv.length; word++)
+                state[word * laneCount + lane] = variant.iv[word];
+
+            return true;
+        }
+
+        /**
+         * Writes the next padded block of the message in {@code lane} into its column of {@link #block}.
+         */
+        private void fill(int lane) {
+            byte[] data = messages.get(message[lane]);
+            int offset = nextBlock[lane] * ShaLanes.BLOCK_SIZE;
+            byte[] source = data;
+            int sourceOffset = offset;
+
+            if (offset + ShaLanes.BLOCK_SIZE > data.length) {
+                Arrays.fill(tail, (byte) 0);
+
+                if (offset < data.length)
+                    System.arraycopy(data, offset, tail, 0, data.length - offset);
+
+                if (offset <= data.length)
+                    tail[data.length - offset] = (byte) 0x80;
+
+                if (nextBlock[lane] == blockCount[lane] - 1)
+                    LONG_BE.set(tail, ShaLanes.BLOCK_SIZE - 8, (long) data.length * 8);
+
+                source = tail;
+                sourceOffset = 0;
+            }
+
+            for (int word = 0; word < 16; word++)
+                block[word * laneCount + lane] = (int) INT_BE.get(source, sourceOffset + 4 * word);
+        }
+
+        private byte[] output(int lane) {
+            byte[] digest = new byte[4 * variant.iv.length];
+
+            for (int word = 0; word < variant.iv.length; word++)
+                INT_BE.set(digest, 4 * word, state[word * laneCount + lane]);
+
+            return digest;
+        }
+    }
+
+    private enum Variant {
+        SHA256(new int[] {
+                0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+        }),
+        SHA1(new int[] {0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476, 0xc3d2e1f0});
+
+        private final int[] iv;
+
+        Variant(int[] iv) {
+            this.iv = iv;
+        }
+
+        private static Variant of(String algorithm) {
+            return switch (algorithm.toUpperCase(Locale.ROOT)) {
+                case "SHA-256", "SHA256" -> SHA256;
+                case "SHA-1", "SHA1", "SHA" -> SHA1;
+                default -> null;
+            };
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Feeds one pass over a file to several digests.
+ *
+ * <p>Every chunk is handed to all digests at once, each updating from its own view of the same buffer on a pool
+ * thread. While they work the next chunk is read into a second buffer, so the file is read exactly once and reading
+ * overlaps with hashing. The slowest digest sets the pace. In mapped mode the chunks are slices of mapped windows and
+ * nothing is copied before the digests see it.</p>
+ */
+final class MultiDigest {
+
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * A multiple of {@link #CHUNK_SIZE}, so only the last slice of the file is short.
+     */
+    private static final int MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final List<String> algorithms;
+    private final List<MessageDigest> digests = new ArrayList<>();
+    private final ProgressMonitor monitor;
+
+    MultiDigest(List<String> algorithms, ProgressMonitor monitor) throws GeneralSecurityException {
+        if (algorithms.isEmpty())
+            throw new IllegalArgumentException("No digest algorithm given");
+
+        this.algorithms = List.copyOf(algorithms);
+        this.monitor = monitor;
+
+        for (String algorithm : this.algorithms)
+            digests.add(MessageDigest.getInstance(algorithm, ProviderRouter.digest(algorithm)));
+    }
+
+    /**
+     * Reads {@code channel} from its current position to the end into alternating heap buffers.
+     */
+    Map<String, byte[]> read(FileChannel channel) throws IOException {
+        ByteBuffer[] buffers = {ByteBuffer.allocate(CHUNK_SIZE), ByteBuffer.allocate(CHUNK_SIZE)};
+        List<Future<?>> pending = List.of();
+        int current = 0;
+
+        while (fill(channel, buffers[current])) {
+            monitor.checkCancelled();
+            await(pending);
+
+            buffers[current].flip();
+            monitor.worked(buffers[current].remaining());
+            pending = update(buffers[current]);
+
+            // The digests own this buffer until they are awaited, the next chunk goes to the other one
+            current ^= 1;
+            buffers[current].clear();
+        }
+
+        await(pending);
+        return digest();
+    }
+
+    /**
+     * Maps {@code channel} window by window and passes slices of each window to the digests.
+     */
+    Map<String, byte[]> map(FileChannel channel) throws IOException {
+        long size = channel.size();
+
+        for (long position = 0; position < size; position += MAPPED_WINDOW_SIZE) {
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAPPED_WINDOW_SIZE, size - position));
+
+            while (window.hasRemaining()) {
+                monitor.checkCancelled();
+
+                ByteBuffer slice = window.slice(window.position(), Math.min(CHUNK_SIZE, window.remaining()));
+                window.position(window.position() + slice.remaining());
+
+                monitor.worked(slice.remaining());
+                await(update(slice));
+            }
+        }
+
+        return digest();
+    }
+
+    /**
+     * @return Whether anything was read, {@code false} at the end of the channel.
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        // A read may return less than asked for, full chunks keep the hand-offs few
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1)
+                break;
+        }
+
+        return buffer.position() > 0;
+    }
+
+    private List<Future<?>> update(ByteBuffer chunk) {
+        // A single digest gains nothing from a hand-off
+        if (digests.size() == 1) {
+            digests.get(0).update(chunk.duplicate());
+            return List.of();
+        }
+
+        List<Future<?>> futures = new ArrayList<>(digests.size());
+
+        for (MessageDigest digest : digests) {
+            ByteBuffer view = chunk.duplicate();
+            futures.add(ForkJoinPool.commonPool().submit(() -> digest.update(view)));
+        }
+
+        return futures;
+    }
+
+    private static void await(List<Future<?>> futures) throws IOException {
+        try {
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime)
+                throw runtime;
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Map<String, byte[]> digest() {
+        Map<String, byte[]> result = new LinkedHashMap<>();
+
+        for (int i = 0; i < algorithms.size(); i++)
+            result.put(algorithms.get(i), digests.get(i).digest());
+
+        return result;
+    }
+
+}
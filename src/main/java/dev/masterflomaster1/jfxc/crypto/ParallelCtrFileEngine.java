@@ -0,0 +1,246 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multi-core CTR mode file engine.
+ *
+ * <p>The input is split into large segments whose length is a multiple of every supported block size. Each segment
+ * gets its own {@link Cipher} initialized with the counter value it would have reached in a sequential run, so the
+ * segments can be processed independently on a {@link ForkJoinPool} and written with positional writes. The output
+ * is byte-identical to running a single CTR cipher over the whole file, including the padding of the last block.</p>
+ */
+public final class ParallelCtrFileEngine {
+
+    static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private ParallelCtrFileEngine() { }
+
+    /**
+     * GOST R 34.13-2015 uses its own counter layout with a half-block IV, and BC runs DSTU 7624 CTR as KCTR, which
+     * encrypts the IV before it starts counting. Neither is a plain big-endian counter, so a segment cannot be
+     * started by adding to the IV.
+     */
+    public static boolean isSupported(String algorithm) {
+        return !"GOST3412-2015".equals(algorithm) && !"DSTU7624".equals(algorithm);
+    }
+
+    /**
+     * Encrypts or decrypts a file in CTR mode using the common fork-join pool.
+     *
+     * @param opmode {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}.
+     * @param algorithm The block cipher algorithm, e.g. {@code AES}.
+     * @param padding The padding applied to the last block.
+     * @param key The raw key material.
+     * @param iv The initial counter block.
+     * @param target The path to the source file to process.
+     * @param destination The path to the destination file where processed data will be written.
+     */
+    public static void encryptAndDecrypt(int opmode,
+                                         String algorithm,
+                                         BlockCipherImpl.Padding padding,
+                                         byte[] key,
+                                         byte[] iv,
+                                         Path target,
+                                         Path destination) {
+        encryptAndDecrypt(opmode, algorithm, padding, key, iv, target, destination, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Same as {@link #encryptAndDecrypt(int, String, BlockCipherImpl.Padding, byte[], byte[], Path, Path)}, with
+     * every segment reporting its chunks to {@code monitor}.
+     */
+    public static void encryptAndDecrypt(int opmode,
+                                         String algorithm,
+                                         BlockCipherImpl.Padding padding,
+                                         byte[] key,
+                                         byte[] iv,
+                                         Path target,
+                                         Path destination,
+                                         ProgressMonitor monitor) {
+        encryptAndDecrypt(opmode, algorithm, padding, key, iv, target, destination,
+                DEFAULT_SEGMENT_SIZE, ForkJoinPool.commonPool(), monitor);
+    }
+
+    static void encryptAndDecrypt(int opmode,
+                                  String algorithm,
+                                  BlockCipherImpl.Padding padding,
+                                  byte[] key,
+                                  byte[] iv,
+                                  Path target,
+                                  Path destination,
+                                  int segmentSize,
+                                  ForkJoinPool pool) {
+        encryptAndDecrypt(opmode, algorithm, padding, key, iv, target, destination, segmentSize, pool,
+                ProgressMonitor.NONE);
+    }
+
+    static void encryptAndDecrypt(int opmode,
+                                  String algorithm,
+                                  BlockCipherImpl.Padding padding,
+                                  byte[] key,
+                                  byte[] iv,
+                                  Path target,
+                                  Path destination,
+                                  int segmentSize,
+                                  ForkJoinPool pool,
+                                  ProgressMonitor monitor) {
+        try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ);
+             FileChannel destChannel = FileChannel.open(destination,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            int blockSize = Cipher.getInstance(algorithm + "/CTR/NoPadding", "BC").getBlockSize();
+
+            if (segmentSize % blockSize != 0)
+                throw new IllegalArgumentException("Segment size must be a multiple of the block size");
+
+            long size = sourceChannel.size();
+            int segments = (int) Math.max(1, (size + segmentSize - 1) / segmentSize);
+
+            var context = new Context(opmode, algorithm, padding, new SecretKeySpec(key, algorithm),
+                    counterBlock(iv, blockSize), blockSize, segmentSize, segments, size, sourceChannel, destChannel,
+                    monitor);
+
+            pool.invoke(new SegmentTask(context, 0, segments));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the counter block reached after {@code blocks} increments of {@code counter}, treating the whole block
+     * as one big-endian integer the same way BC's {@code SICBlockCipher} does.
+     */
+    static byte[] addToCounter(byte[] counter, long blocks) {
+        byte[] result = counter.clone();
+        long carry = blocks;
+
+        for (int i = result.length - 1; i >= 0 && carry != 0; i--) {
+            long sum = (result[i] & 0xFF) + (carry & 0xFF);
+            result[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+
+        return result;
+    }
+
+    private static byte[] counterBlock(byte[] iv, int blockSize) {
+        if (iv.length > blockSize)
+            throw new IllegalArgumentException("IV must not be longer than the block size");
+
+        // BC pads a short IV with zero bytes that form the low part of the counter
+        byte[] counter = new byte[blockSize];
+        System.arraycopy(iv, 0, counter, 0, iv.length);
+        return counter;
+    }
+
+    private static void processSegment(Context ctx, int index) throws IOException, GeneralSecurityException {
+        boolean last = index == ctx.segments - 1;
+        long start = (long) index * ctx.segmentSize;
+        long end = Math.min(ctx.size, start + ctx.segmentSize);
+
+        // Only the last segment may carry padding, the others are a plain keystream XOR
+        String transformation = ctx.algorithm + "/CTR/" + (last ? ctx.padding.getPadding() : "NoPadding");
+        Cipher cipher = Cipher.getInstance(transformation, ProviderRouter.cipher(transformation));
+        byte[] counter = addToCounter(ctx.counter, start / ctx.blockSize);
+        cipher.init(ctx.opmode, ctx.secretKey, new IvParameterSpec(counter));
+
+        byte[] in = new byte[CHUNK_SIZE];
+        byte[] out = new byte[CHUNK_SIZE + 2 * ctx.blockSize];
+        ByteBuffer inBuffer = ByteBuffer.wrap(in);
+
+        long readPosition = start;
+        long writePosition = start;
+
+        while (readPosition < end) {
+            ctx.monitor.checkCancelled();
+            inBuffer.clear();
+            inBuffer.limit((int) Math.min(CHUNK_SIZE, end - readPosition));
+
+            while (inBuffer.hasRemaining()) {
+                if (ctx.source.read(inBuffer, readPosition + inBuffer.position()) < 0)
+                    throw new IOException("Unexpected end of file at " + (readPosition + inBuffer.position()));
+            }
+
+            int read = inBuffer.position();
+            readPosition += read;
+
+            int produced = cipher.update(in, 0, read, out, 0);
+            writePosition += write(ctx.destination, out, produced, writePosition);
+            ctx.monitor.worked(read);
+        }
+
+        if (last) {
+            int produced = cipher.doFinal(out, 0);
+            write(ctx.destination, out, produced, writePosition);
+        }
+    }
+
+    private static int write(FileChannel channel, byte[] data, int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+
+        return length;
+    }
+
+    private record Context(int opmode,
+                           String algorithm,
+                           BlockCipherImpl.Padding padding,
+                           SecretKeySpec secretKey,
+                           byte[] counter,
+                           int blockSize,
+                           int segmentSize,
+                           int segments,
+                           long size,
+                           FileChannel source,
+                           FileChannel destination,
+                           ProgressMonitor monitor) { }
+
+    private static final class SegmentTask extends RecursiveAction {
+
+        private final Context context;
+        private final int from;
+        private final int to;
+
+        private SegmentTask(Context context, int from, int to) {
+            this.context = context;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SegmentTask(context, from, mid), new SegmentTask(context, mid, to));
+                return;
+            }
+
+            try {
+                processSegment(context, from);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+}
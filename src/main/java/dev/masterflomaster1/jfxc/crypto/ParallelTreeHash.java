@@ -0,0 +1,131 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.bouncycastle.crypto.digests.CSHAKEDigest;
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+import org.bouncycastle.crypto.digests.XofUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * SHA-3 ParallelHash of NIST SP 800-185 with an empty customization string and the default output length, the
+ * blocks of a file hashed in parallel.
+ *
+ * <p>Every block of {@code B} bytes is hashed on its own with SHAKE, the block hashes are then absorbed in order by
+ * one cSHAKE. The file is worked through in windows of {@link #WINDOW_SIZE}, whose blocks are spread over the pool
+ * and whose hashes are absorbed before the next window is read, so memory stays bounded on files of any size.</p>
+ *
+ * <p>The result equals BouncyCastle's {@code ParallelHash} with the same {@code B}. The {@code PARALLELHASH} message
+ * digests of the provider fix {@code B} to 128 bytes, which leaves the sequential cSHAKE with a quarter of the input
+ * or more, so the file mode defaults to {@link #BLOCK_SIZE}.</p>
+ */
+final class ParallelTreeHash extends TreeHash {
+
+    static final int BLOCK_SIZE = 8 * 1024;
+
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Blocks below which a range is not split into further tasks.
+     */
+    private static final int TASK_BLOCKS = 128;
+
+    private static final byte[] N_PARALLEL_HASH = "ParallelHash".getBytes(StandardCharsets.US_ASCII);
+
+    private final int bitLength;
+    private final int blockSize;
+    /** Both the block hashes and the result are twice the strength long. */
+    private final int outputSize;
+
+    /**
+     * @param bitLength Security strength, 128 or 256.
+     * @param blockSize {@code B} in bytes.
+     */
+    ParallelTreeHash(int bitLength, int blockSize) {
+        if (bitLength != 128 && bitLength != 256)
+            throw new IllegalArgumentException("Unsupported ParallelHash strength: " + bitLength);
+
+        this.bitLength = bitLength;
+        this.blockSize = blockSize;
+        this.outputSize = bitLength / 4;
+    }
+
+    @Override
+    byte[] hash(FileChannel channel, ProgressMonitor monitor) throws IOException {
+        long size = channel.size();
+        int windowBlocks = Math.max(1, WINDOW_SIZE / blockSize);
+
+        CSHAKEDigest compressor = new CSHAKEDigest(bitLength, N_PARALLEL_HASH, null);
+        byte[] encoded = XofUtils.leftEncode(blockSize);
+        compressor.update(encoded, 0, encoded.length);
+
+        long blocks = (size + blockSize - 1) / blockSize;
+
+        for (long first = 0; first < blocks; first += windowBlocks) {
+            int count = (int) Math.min(windowBlocks, blocks - first);
+            byte[] leaves = new byte[count * outputSize];
+
+            ForkJoinPool.commonPool().invoke(new Leaves(channel, size, first, 0, count, leaves, monitor));
+            compressor.update(leaves, 0, leaves.length);
+        }
+
+        encoded = XofUtils.rightEncode(blocks);
+        compressor.update(encoded, 0, encoded.length);
+        encoded = XofUtils.rightEncode(outputSize * 8L);
+        compressor.update(encoded, 0, encoded.length);
+
+        byte[] output = new byte[outputSize];
+        compressor.doFinal(output, 0, outputSize);
+        return output;
+    }
+
+    /**
+     * Hashes the blocks {@code from} to {@code to} of a window starting at block {@code first} into {@code leaves}.
+     */
+    private final class Leaves extends RecursiveAction {
+
+        private final FileChannel channel;
+        private final long size;
+        private final long first;
+        private final int from;
+        private final int to;
+        private final byte[] leaves;
+        private final ProgressMonitor monitor;
+
+        private Leaves(FileChannel channel, long size, long first, int from, int to, byte[] leaves,
+                       ProgressMonitor monitor) {
+            this.channel = channel;
+            this.size = size;
+            this.first = first;
+            this.from = from;
+            this.to = to;
+            this.leaves = leaves;
+            this.monitor = monitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_BLOCKS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Leaves(channel, size, first, from, middle, leaves, monitor),
+                        new Leaves(channel, size, first, middle, to, leaves, monitor));
+                return;
+            }
+
+            long position = (first + from) * blockSize;
+            byte[] data = read(channel, position, (int) Math.min((long) (to - from) * blockSize, size - position),
+                    monitor);
+
+            SHAKEDigest leaf = new SHAKEDigest(bitLength);
+
+            for (int i = 0, offset = 0; offset < data.length; i++, offset += blockSize) {
+                leaf.update(data, offset, Math.min(blockSize, data.length - offset));
+                leaf.doFinal(leaves, (from + i) * outputSize, outputSize);
+            }
+        }
+    }
+
+}
@@ -13,16 +13,19 @@ public final class PbeImpl {
     private PbeImpl() { }
 
     public static CompletableFuture<byte[]> asyncHash(String algorithm, char[] password, byte[] salt, int iter, int kLen) {
-        return CompletableFuture.supplyAsync(() -> {
-            KeySpec spec = new PBEKeySpec(password, salt, iter, kLen);
+        return CompletableFuture.supplyAsync(() -> hash(algorithm, password, salt, iter, kLen));
+    }
+
+    public static byte[] hash(String algorithm, char[] password, byte[] salt, int iter, int kLen) {
+        KeySpec spec = new PBEKeySpec(password, salt, iter, kLen);
 
-            try {
-                SecretKeyFactory factory = SecretKeyFactory.getInstance(algorithm, "BC");
-                return factory.generateSecret(spec).getEncoded();
-            } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeySpecException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        try {
+            String provider = ProviderRouter.secretKeyFactory(algorithm);
+            SecretKeyFactory factory = SecretKeyFactory.getInstance(algorithm, provider);
+            return factory.generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeySpecException e) {
+            throw new RuntimeException(e);
+        }
     }
 
 }
@@ -0,0 +1,352 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.bouncycastle.crypto.BlockCipher;
+import org.bouncycastle.crypto.CipherParameters;
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.engines.BlowfishEngine;
+import org.bouncycastle.crypto.engines.CAST5Engine;
+import org.bouncycastle.crypto.engines.CAST6Engine;
+import org.bouncycastle.crypto.engines.CamelliaEngine;
+import org.bouncycastle.crypto.engines.DESEngine;
+import org.bouncycastle.crypto.engines.DESedeEngine;
+import org.bouncycastle.crypto.engines.DSTU7624Engine;
+import org.bouncycastle.crypto.engines.GOST28147Engine;
+import org.bouncycastle.crypto.engines.GOST3412_2015Engine;
+import org.bouncycastle.crypto.engines.IDEAEngine;
+import org.bouncycastle.crypto.engines.NoekeonEngine;
+import org.bouncycastle.crypto.engines.RC2Engine;
+import org.bouncycastle.crypto.engines.RC532Engine;
+import org.bouncycastle.crypto.engines.RC6Engine;
+import org.bouncycastle.crypto.engines.RijndaelEngine;
+import org.bouncycastle.crypto.engines.SEEDEngine;
+import org.bouncycastle.crypto.engines.SM4Engine;
+import org.bouncycastle.crypto.engines.SerpentEngine;
+import org.bouncycastle.crypto.engines.Shacal2Engine;
+import org.bouncycastle.crypto.engines.SkipjackEngine;
+import org.bouncycastle.crypto.engines.TEAEngine;
+import org.bouncycastle.crypto.engines.ThreefishEngine;
+import org.bouncycastle.crypto.engines.TnepresEngine;
+import org.bouncycastle.crypto.engines.TwofishEngine;
+import org.bouncycastle.crypto.engines.XTEAEngine;
+import org.bouncycastle.crypto.modes.CBCBlockCipher;
+import org.bouncycastle.crypto.modes.CFBBlockCipher;
+import org.bouncycastle.crypto.modes.G3413CTRBlockCipher;
+import org.bouncycastle.crypto.modes.KCTRBlockCipher;
+import org.bouncycastle.crypto.modes.OFBBlockCipher;
+import org.bouncycastle.crypto.modes.SICBlockCipher;
+import org.bouncycastle.crypto.paddings.BlockCipherPadding;
+import org.bouncycastle.crypto.paddings.ISO10126d2Padding;
+import org.bouncycastle.crypto.paddings.PKCS7Padding;
+import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.bouncycastle.crypto.paddings.ZeroBytePadding;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.bouncycastle.crypto.params.ParametersWithRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A block cipher bound to one key, for encrypting many messages that differ only in their IV.
+ *
+ * <p>{@link BlockCipherImpl#encrypt(String, BlockCipherImpl.Mode, BlockCipherImpl.Padding, byte[], byte[], byte[])}
+ * builds a key spec, fingerprints the key and expands the key schedule on every call. A prepared cipher does that
+ * once: it keeps a small pool of ciphers per direction, each initialized with the key a single time, and a message
+ * only resets the IV of a pooled instance. Transformations the {@link ProviderRouter} sends to BouncyCastle run on
+ * its lightweight engines, whose modes accept a new IV without the key, so the expanded schedule is reused as is.
+ * Transformations routed to another provider use pooled JCA ciphers re-initialized with the same key object, which
+ * the JDK providers recognize and keep their schedule for.</p>
+ *
+ * <p>The handle is immutable and thread-safe. Each thread borrows its own pooled instance, so concurrent messages
+ * never share cipher state. Closing the handle zeroes its copy of the key and drops all pooled ciphers together with
+ * their expanded schedules, later calls fail with an {@link IllegalStateException}.</p>
+ */
+public final class PreparedBlockCipher implements AutoCloseable {
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private final String algorithm;
+    private final BlockCipherImpl.Mode mode;
+    private final BlockCipherImpl.Padding padding;
+    private final String transformation;
+    private final String provider;
+    private final PreparedKey key;
+
+    private final Queue<Worker> encryptors = new ConcurrentLinkedQueue<>();
+    private final Queue<Worker> decryptors = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean closed;
+
+    PreparedBlockCipher(String algorithm, BlockCipherImpl.Mode mode, BlockCipherImpl.Padding padding, byte[] key) {
+        this.algorithm = algorithm;
+        this.mode = mode;
+        this.padding = padding;
+        this.transformation = algorithm + "/" + mode.getMode() + "/" + padding.getPadding();
+        this.provider = ProviderRouter.cipher(transformation);
+        this.key = new PreparedKey(algorithm, key.clone());
+
+        // Fails early on unknown algorithms or invalid keys and leaves the first instance of each direction ready
+        encryptors.add(newWorker(true));
+        decryptors.add(newWorker(false));
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public BlockCipherImpl.Mode getMode() {
+        return mode;
+    }
+
+    public BlockCipherImpl.Padding getPadding() {
+        return padding;
+    }
+
+    /**
+     * Encrypts one message.
+     *
+     * @param iv The IV of this message, ignored for ECB.
+     * @param inputData The plaintext.
+     * @return The ciphertext.
+     */
+    public byte[] encrypt(byte[] iv, byte[] inputData) {
+        return process(encryptors, true, iv, inputData);
+    }
+
+    /**
+     * Decrypts one message.
+     *
+     * @param iv The IV the message was encrypted with, ignored for ECB.
+     * @param inputData The ciphertext.
+     * @return The plaintext.
+     */
+    public byte[] decrypt(byte[] iv, byte[] inputData) {
+        return process(decryptors, false, iv, inputData);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        encryptors.clear();
+        decryptors.clear();
+        key.destroy();
+    }
+
+    private byte[] process(Queue<Worker> pool, boolean forEncryption, byte[] iv, byte[] inputData) {
+        if (closed)
+            throw new IllegalStateException("Prepared cipher is closed");
+
+        Worker worker = pool.poll();
+
+        try {
+            if (worker == null)
+                worker = newWorker(forEncryption);
+
+            byte[] result = worker.process(mode == BlockCipherImpl.Mode.ECB ? null : effectiveIv(iv), inputData);
+
+            if (!closed)
+                pool.add(worker);
+
+            return result;
+        } catch (GeneralSecurityException | InvalidCipherTextException e) {
+            // The failed instance is dropped, its state after the error is not trusted
+            throw new RuntimeException(e);
+        }
+    }
+
+    private byte[] effectiveIv(byte[] iv) {
+        if (iv == null)
+            throw new IllegalArgumentException(mode.getMode() + " needs an IV");
+
+        return BlockCipherImpl.effectiveIv(algorithm, mode, iv);
+    }
+
+    private Worker newWorker(boolean forEncryption) {
+        try {
+            if (ProviderRouter.FALLBACK_PROVIDER.equals(provider)) {
+                BlockCipher engine = engine(algorithm);
+
+                if (engine != null)
+                    return new LightweightWorker(forEncryption, engine, mode, padding, key.bytes(), initialIv());
+            }
+
+            return new JcaWorker(forEncryption ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE,
+                    Cipher.getInstance(transformation, provider), key, initialIv());
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A throwaway IV of the right length to expand the key schedule with, every message replaces it. {@code null}
+     * for ECB.
+     */
+    private byte[] initialIv() {
+        if (mode == BlockCipherImpl.Mode.ECB)
+            return null;
+
+        byte[] blockSizedIv = new byte[BlockCipherImpl.getBlockLengthBits(algorithm) / 8];
+        return BlockCipherImpl.effectiveIv(algorithm, mode, blockSizedIv);
+    }
+
+    /**
+     * The BouncyCastle engine behind the JCA name, or {@code null} if there is no lightweight mapping for it.
+     */
+    private static BlockCipher engine(String algorithm) {
+        return switch (algorithm) {
+            case "AES" -> AESEngine.newInstance();
+            case "BLOWFISH" -> new BlowfishEngine();
+            case "CAMELLIA" -> new CamelliaEngine();
+            case "CAST5" -> new CAST5Engine();
+            case "CAST6" -> new CAST6Engine();
+            case "DES" -> new DESEngine();
+            case "DESEDE" -> new DESedeEngine();
+            case "DSTU7624" -> new DSTU7624Engine(128);
+            case "GOST28147" -> new GOST28147Engine();
+            case "GOST3412-2015" -> new GOST3412_2015Engine();
+            case "IDEA" -> new IDEAEngine();
+            case "NOEKEON" -> new NoekeonEngine();
+            case "RC2" -> new RC2Engine();
+            case "RC5" -> new RC532Engine();
+            case "RC6" -> new RC6Engine();
+            case "RIJNDAEL" -> new RijndaelEngine();
+            case "SEED" -> new SEEDEngine();
+            case "SHACAL-2" -> new Shacal2Engine();
+            case "SKIPJACK" -> new SkipjackEngine();
+            case "SM4" -> new SM4Engine();
+            case "Serpent" -> new SerpentEngine();
+            case "TEA" -> new TEAEngine();
+            case "Threefish-256" -> new ThreefishEngine(ThreefishEngine.BLOCKSIZE_256);
+            case "Threefish-512" -> new ThreefishEngine(ThreefishEngine.BLOCKSIZE_512);
+            case "Threefish-1024" -> new ThreefishEngine(ThreefishEngine.BLOCKSIZE_1024);
+            case "Tnepres" -> new TnepresEngine();
+            case "Twofish" -> new TwofishEngine();
+            case "XTEA" -> new XTEAEngine();
+            default -> null;
+        };
+    }
+
+    private interface Worker {
+
+        /**
+         * @param iv The IV, {@code null} for ECB.
+         */
+        byte[] process(byte[] iv, byte[] input) throws GeneralSecurityException, InvalidCipherTextException;
+    }
+
+    /**
+     * A BouncyCastle mode over an engine keyed once. New IVs are passed without a key, which the modes take as the
+     * signal to keep the engine's working key.
+     */
+    private static final class LightweightWorker implements Worker {
+
+        private final boolean forEncryption;
+        private final PaddedBufferedBlockCipher cipher;
+
+        private LightweightWorker(boolean forEncryption,
+                                  BlockCipher engine,
+                                  BlockCipherImpl.Mode mode,
+                                  BlockCipherImpl.Padding padding,
+                                  byte[] key,
+                                  byte[] initialIv) {
+            this.forEncryption = forEncryption;
+
+            int bits = engine.getBlockSize() * 8;
+            BlockCipher modeCipher = switch (mode) {
+                case ECB -> engine;
+                case CBC -> CBCBlockCipher.newInstance(engine);
+                case CFB -> CFBBlockCipher.newInstance(engine, bits);
+                case OFB -> new OFBBlockCipher(engine, bits);
+                case CTR -> counterMode(engine);
+            };
+
+            this.cipher = new PaddedBufferedBlockCipher(modeCipher, padding(padding));
+
+            KeyParameter keyParameter = new KeyParameter(key);
+            Arrays.fill(key, (byte) 0);
+
+            if (initialIv == null)
+                cipher.init(forEncryption, withRandom(keyParameter));
+            else
+                cipher.init(forEncryption, withRandom(new ParametersWithIV(keyParameter, initialIv)));
+        }
+
+        @Override
+        public byte[] process(byte[] iv, byte[] input) throws InvalidCipherTextException {
+            if (iv != null)
+                cipher.init(forEncryption, withRandom(new ParametersWithIV(null, iv)));
+
+            byte[] output = new byte[cipher.getOutputSize(input.length)];
+            int length = cipher.processBytes(input, 0, input.length, output, 0);
+            length += cipher.doFinal(output, length);
+
+            return length == output.length ? output : Arrays.copyOf(output, length);
+        }
+
+        /**
+         * The counter mode BC's JCA layer uses for the engine, GOST and DSTU define their own counter layouts.
+         */
+        private static BlockCipher counterMode(BlockCipher engine) {
+            if (engine instanceof GOST3412_2015Engine)
+                return new G3413CTRBlockCipher(engine);
+
+            if (engine instanceof DSTU7624Engine)
+                return new KCTRBlockCipher(engine);
+
+            return SICBlockCipher.newInstance(engine);
+        }
+
+        private static CipherParameters withRandom(CipherParameters parameters) {
+            // Only ISO 10126 padding draws from it, the other paddings ignore the random
+            return new ParametersWithRandom(parameters, SECURE_RANDOM);
+        }
+
+        private static BlockCipherPadding padding(BlockCipherImpl.Padding padding) {
+            return switch (padding) {
+                case PKCS5Padding, PKCS7Padding -> new PKCS7Padding();
+                case ISO10126Padding -> new ISO10126d2Padding();
+                case ZeroBytePadding -> new ZeroBytePadding();
+            };
+        }
+    }
+
+    /**
+     * A JCA cipher that is always re-initialized with the same key object.
+     */
+    private static final class JcaWorker implements Worker {
+
+        private final int opmode;
+        private final Cipher cipher;
+        private final SecretKey key;
+
+        private JcaWorker(int opmode, Cipher cipher, SecretKey key, byte[] initialIv)
+                throws GeneralSecurityException {
+            this.opmode = opmode;
+            this.cipher = cipher;
+            this.key = key;
+
+            init(initialIv);
+        }
+
+        @Override
+        public byte[] process(byte[] iv, byte[] input) throws GeneralSecurityException {
+            init(iv);
+            return cipher.doFinal(input);
+        }
+
+        private void init(byte[] iv) throws GeneralSecurityException {
+            if (iv == null)
+                cipher.init(opmode, key);
+            else
+                cipher.init(opmode, key, new IvParameterSpec(iv));
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.SecretKey;
+import java.util.Arrays;
+
+/**
+ * A secret key whose material can actually be wiped, unlike {@link javax.crypto.spec.SecretKeySpec} on Java 17.
+ *
+ * <p>Takes ownership of the array it is given, callers pass a copy of the user's key.</p>
+ */
+final class PreparedKey implements SecretKey {
+
+    private final String algorithm;
+    private final byte[] key;
+    private volatile boolean destroyed;
+
+    PreparedKey(String algorithm, byte[] key) {
+        this.algorithm = algorithm;
+        this.key = key;
+    }
+
+    /**
+     * A copy of the key material, for the caller to wipe once it is done with it.
+     */
+    byte[] bytes() {
+        if (destroyed)
+            throw new IllegalStateException("Key has been destroyed");
+
+        return key.clone();
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        return bytes();
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        Arrays.fill(key, (byte) 0);
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+}
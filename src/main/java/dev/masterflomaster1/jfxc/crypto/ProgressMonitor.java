@@ -0,0 +1,40 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Receives progress from long-running file operations and lets the caller stop them between chunks.
+ *
+ * <p>Implementations must be thread-safe, the parallel engines report from several worker threads at once.</p>
+ */
+public interface ProgressMonitor {
+
+    /**
+     * Monitor that ignores progress and never cancels.
+     */
+    ProgressMonitor NONE = new ProgressMonitor() {
+        @Override
+        public void worked(long bytes) { }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Called after {@code bytes} more bytes of the input have been processed.
+     */
+    void worked(long bytes);
+
+    boolean isCancelled();
+
+    /**
+     * Throws {@link CancellationException} if the operation has been cancelled.
+     */
+    default void checkCancelled() {
+        if (isCancelled())
+            throw new CancellationException();
+    }
+
+}
@@ -0,0 +1,476 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends ciphers, digests, MACs and key derivations to the fastest provider that produces the same results as
+ * BouncyCastle.
+ *
+ * <p>The JDK providers get HotSpot intrinsics for AES, SHA and GHASH, which makes them several times faster than BC
+ * for these algorithms. The first request for an algorithm probes every installed provider that offers it: the
+ * candidate must reproduce the BC output on a fixed test vector (and decrypt BC output for ciphers), and the correct
+ * candidates are then timed on a short workload. BC stays the answer for everything only BC implements, and for
+ * every algorithm where another provider disagrees with it.</p>
+ *
+ * <p>A probe runs outside the route table, so lookups of other algorithms never wait for it, and lookups of the same
+ * algorithm wait for the running probe instead of starting their own. The {@linkplain #setForegroundThread foreground
+ * thread} never waits at all: it gets BC until a probe started for it on a daemon thread has finished.</p>
+ *
+ * <p>Routes are kept for the session. When the {@value #CACHE_DIRECTORY_PROPERTY} system property names a directory
+ * they are saved there as well, so later runs skip the probing. A saved file is ignored when the JVM or BC version
+ * differs, as that changes which intrinsics and implementations exist.</p>
+ */
+public final class ProviderRouter {
+
+    public static final String FALLBACK_PROVIDER = "BC";
+
+    /**
+     * System property naming the directory that measurements are kept in between runs. Nothing is written when it is
+     * not set.
+     */
+    public static final String CACHE_DIRECTORY_PROPERTY = "jfxc.cache.dir";
+
+    private static final int BENCHMARK_SIZE = 256 * 1024;
+    private static final int BENCHMARK_ROUNDS = 5;
+    private static final int PBKDF_ITERATIONS = 1000;
+    private static final String ENVIRONMENT_KEY = "environment";
+
+    private static final Map<String, String> ROUTES = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<String>> PROBES = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled = true;
+    private static volatile Thread foregroundThread;
+
+    private ProviderRouter() { }
+
+    /**
+     * Provider for a block cipher transformation, e.g. {@code AES/CBC/PKCS5Padding}.
+     */
+    public static String cipher(String transformation) {
+        return route(Service.CIPHER, transformation);
+    }
+
+    public static String digest(String algorithm) {
+        return route(Service.DIGEST, algorithm);
+    }
+
+    public static String mac(String algorithm) {
+        return route(Service.MAC, algorithm);
+    }
+
+    public static String secretKeyFactory(String algorithm) {
+        return route(Service.SECRET_KEY_FACTORY, algorithm);
+    }
+
+    /**
+     * Turns routing off, every lookup then answers {@value #FALLBACK_PROVIDER}.
+     */
+    public static void setEnabled(boolean enabled) {
+        ProviderRouter.enabled = enabled;
+    }
+
+    /**
+     * Sets the thread that must never be held up by a probe, usually the UI thread. {@code null} clears it.
+     */
+    public static void setForegroundThread(Thread thread) {
+        foregroundThread = thread;
+    }
+
+    /**
+     * The routes decided so far, keyed by {@code <service type>.<algorithm>}.
+     */
+    public static Map<String, String> getRoutes() {
+        return new TreeMap<>(ROUTES);
+    }
+
+    /**
+     * Probes a set of commonly used algorithms, so the first real operation does not pay for it.
+     */
+    public static void warmUp() {
+        for (String transformation : List.of("AES/CBC/PKCS5Padding", "AES/CTR/NoPadding", "AES/ECB/PKCS5Padding"))
+            cipher(transformation);
+
+        for (String digest : List.of("SHA-1", "SHA-256", "SHA-512", "SHA3-256", "MD5"))
+            digest(digest);
+
+        for (String mac : List.of("HMACSHA1", "HMACSHA256", "HMACSHA512"))
+            mac(mac);
+
+        secretKeyFactory("PBKDF2WITHHMACSHA256");
+    }
+
+    /**
+     * Loads the routes saved in {@code cacheFile}, probes whatever is still missing from the {@link #warmUp} set on a
+     * daemon thread and saves the result for the next start.
+     *
+     * @param cacheFile The file to keep routes in, {@code null} to only probe.
+     */
+    public static void warmUpInBackground(Path cacheFile) {
+        Thread thread = new Thread(() -> {
+            if (cacheFile != null)
+                load(cacheFile);
+
+            warmUp();
+
+            if (cacheFile == null)
+                return;
+
+            try {
+                save(cacheFile);
+            } catch (IOException e) {
+                System.err.println("Cannot save provider routes: " + e.getMessage());
+            }
+        }, "jfxc-provider-warm-up");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads saved routes, unless they were measured on another JVM or BC version.
+     *
+     * @return {@code true} if the file was loaded.
+     */
+    public static boolean load(Path file) {
+        if (!Files.isRegularFile(file))
+            return false;
+
+        Properties properties = new Properties();
+
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return false;
+        }
+
+        if (!environment().equals(properties.getProperty(ENVIRONMENT_KEY)))
+            return false;
+
+        properties.stringPropertyNames().stream()
+                .filter(key -> !ENVIRONMENT_KEY.equals(key))
+                .filter(key -> Security.getProvider(properties.getProperty(key)) != null)
+                .forEach(key -> ROUTES.put(key, properties.getProperty(key)));
+
+        return true;
+    }
+
+    public static void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(ROUTES);
+        properties.setProperty(ENVIRONMENT_KEY, environment());
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, "JFXCrypto provider routes");
+        }
+    }
+
+    /**
+     * {@code provider-routes.properties} in the {@linkplain #CACHE_DIRECTORY_PROPERTY cache directory}.
+     *
+     * @return The file, or {@code null} if routes are not kept between runs.
+     */
+    public static Path cacheFile() {
+        return cacheFile("provider-routes.properties");
+    }
+
+    static Path cacheFile(String name) {
+        String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        return directory == null || directory.isBlank() ? null : Path.of(directory, name);
+    }
+
+    /**
+     * Forgets all routes.
+     */
+    static void reset() {
+        ROUTES.clear();
+    }
+
+    private static String route(Service service, String algorithm) {
+        if (!enabled)
+            return FALLBACK_PROVIDER;
+
+        String key = service.type + "." + algorithm;
+        String route = ROUTES.get(key);
+
+        if (route != null)
+            return route;
+
+        boolean foreground = Thread.currentThread() == foregroundThread;
+        CompletableFuture<String> probe = new CompletableFuture<>();
+        CompletableFuture<String> running = PROBES.putIfAbsent(key, probe);
+
+        if (running == null) {
+            running = probe;
+
+            if (foreground) {
+                Thread thread = new Thread(() -> complete(key, probe, service, algorithm), "jfxc-provider-probe");
+                thread.setDaemon(true);
+                thread.start();
+            } else {
+                complete(key, probe, service, algorithm);
+            }
+        }
+
+        return foreground ? running.getNow(FALLBACK_PROVIDER) : running.join();
+    }
+
+    private static void complete(String key, CompletableFuture<String> probe, Service service, String algorithm) {
+        try {
+            // A probe that finished between the lookup and the registration of this one has already decided
+            if (!ROUTES.containsKey(key))
+                ROUTES.putIfAbsent(key, probe(service, algorithm));
+        } finally {
+            PROBES.remove(key, probe);
+            probe.complete(ROUTES.getOrDefault(key, FALLBACK_PROVIDER));
+        }
+    }
+
+    /**
+     * Picks the fastest provider whose output matches BC. Any failure of a candidate disqualifies it.
+     */
+    private static String probe(Service service, String algorithm) {
+        List<Provider> candidates = new ArrayList<>();
+
+        for (Provider provider : Security.getProviders()) {
+            if (provider.getName().equals(FALLBACK_PROVIDER))
+                continue;
+
+            try {
+                if (service.verify(algorithm, provider.getName()))
+                    candidates.add(provider);
+            } catch (GeneralSecurityException | RuntimeException ignored) {
+                // The provider does not offer the algorithm, rejects the test keys or computes something else
+            }
+        }
+
+        if (candidates.isEmpty())
+            return FALLBACK_PROVIDER;
+
+        String fastest = FALLBACK_PROVIDER;
+
+        try {
+            long best = service.benchmark(algorithm, FALLBACK_PROVIDER);
+
+            for (Provider candidate : candidates) {
+                long time = service.benchmark(algorithm, candidate.getName());
+
+                if (time < best) {
+                    best = time;
+                    fastest = candidate.getName();
+                }
+            }
+        } catch (GeneralSecurityException | RuntimeException e) {
+            return FALLBACK_PROVIDER;
+        }
+
+        return fastest;
+    }
+
+    static String environment() {
+        Provider bc = Security.getProvider(FALLBACK_PROVIDER);
+
+        return System.getProperty("java.vm.vendor") + " " + System.getProperty("java.vm.version") + " "
+                + System.getProperty("os.arch") + " BC " + (bc == null ? "none" : bc.getVersionStr());
+    }
+
+    /**
+     * Deterministic test input.
+     */
+    private static byte[] testData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Runs {@code task} a few times and returns the fastest run in nanoseconds, the first run is warm-up.
+     */
+    private static long fastestRun(Task task) throws GeneralSecurityException {
+        task.run();
+
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best;
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws GeneralSecurityException;
+    }
+
+    private enum Service {
+
+        CIPHER("Cipher") {
+            @Override
+            boolean verify(String transformation, String provider) throws GeneralSecurityException {
+                String algorithm = transformation.split("/")[0];
+                List<Integer> keyLengths = BlockCipherImpl.getAvailableKeyLengths(algorithm);
+
+                if (keyLengths.isEmpty())
+                    return false;
+
+                int blockSize = Cipher.getInstance(transformation, FALLBACK_PROVIDER).getBlockSize();
+                boolean padded = !transformation.endsWith("/NoPadding");
+                byte[] plaintext = testData(blockSize * 4 + (padded ? 5 : 0));
+                byte[] iv = transformation.contains("/ECB/") ? null : testData(blockSize);
+
+                for (int bits : keyLengths) {
+                    var key = new SecretKeySpec(testData(bits / 8), algorithm);
+
+                    byte[] expected = init(transformation, FALLBACK_PROVIDER, Cipher.ENCRYPT_MODE, key, iv)
+                            .doFinal(plaintext);
+                    byte[] actual = init(transformation, provider, Cipher.ENCRYPT_MODE, key, iv).doFinal(plaintext);
+
+                    // Randomized paddings like ISO 10126 differ on every call, so each side must decrypt the other
+                    byte[] ours = init(transformation, provider, Cipher.DECRYPT_MODE, key, iv).doFinal(expected);
+                    byte[] theirs = init(transformation, FALLBACK_PROVIDER, Cipher.DECRYPT_MODE, key, iv)
+                            .doFinal(actual);
+
+                    if (!Arrays.equals(plaintext, ours) || !Arrays.equals(plaintext, theirs))
+                        return false;
+
+                    if (!transformation.endsWith("/ISO10126Padding") && !Arrays.equals(expected, actual))
+                        return false;
+                }
+
+                return true;
+            }
+
+            @Override
+            long benchmark(String transformation, String provider) throws GeneralSecurityException {
+                String algorithm = transformation.split("/")[0];
+                int bits = BlockCipherImpl.getAvailableKeyLengths(algorithm).get(0);
+                int blockSize = Cipher.getInstance(transformation, provider).getBlockSize();
+                byte[] iv = transformation.contains("/ECB/") ? null : testData(blockSize);
+
+                Cipher cipher = init(transformation, provider, Cipher.ENCRYPT_MODE,
+                        new SecretKeySpec(testData(bits / 8), algorithm), iv);
+                byte[] data = testData(BENCHMARK_SIZE);
+
+                return fastestRun(() -> cipher.doFinal(data));
+            }
+
+            private static Cipher init(String transformation, String provider, int opmode, SecretKeySpec key,
+                                       byte[] iv) throws GeneralSecurityException {
+                Cipher cipher = Cipher.getInstance(transformation, provider);
+
+                if (iv == null)
+                    cipher.init(opmode, key);
+                else
+                    cipher.init(opmode, key, new IvParameterSpec(iv));
+
+                return cipher;
+            }
+        },
+
+        DIGEST("MessageDigest") {
+            @Override
+            boolean verify(String algorithm, String provider) throws GeneralSecurityException {
+                byte[] data = testData(1000);
+
+                return Arrays.equals(MessageDigest.getInstance(algorithm, FALLBACK_PROVIDER).digest(data),
+                        MessageDigest.getInstance(algorithm, provider).digest(data));
+            }
+
+            @Override
+            long benchmark(String algorithm, String provider) throws GeneralSecurityException {
+                MessageDigest digest = MessageDigest.getInstance(algorithm, provider);
+                byte[] data = testData(BENCHMARK_SIZE);
+
+                return fastestRun(() -> digest.digest(data));
+            }
+        },
+
+        MAC("Mac") {
+            @Override
+            boolean verify(String algorithm, String provider) throws GeneralSecurityException {
+                byte[] data = testData(1000);
+
+                return Arrays.equals(init(algorithm, FALLBACK_PROVIDER).doFinal(data),
+                        init(algorithm, provider).doFinal(data));
+            }
+
+            @Override
+            long benchmark(String algorithm, String provider) throws GeneralSecurityException {
+                Mac mac = init(algorithm, provider);
+                byte[] data = testData(BENCHMARK_SIZE);
+
+                return fastestRun(() -> mac.doFinal(data));
+            }
+
+            private static Mac init(String algorithm, String provider) throws GeneralSecurityException {
+                Mac mac = Mac.getInstance(algorithm, provider);
+                mac.init(new SecretKeySpec(testData(32), algorithm));
+                return mac;
+            }
+        },
+
+        SECRET_KEY_FACTORY("SecretKeyFactory") {
+            @Override
+            boolean verify(String algorithm, String provider) throws GeneralSecurityException {
+                // Non-ASCII on purpose, providers have disagreed on how to encode the password
+                var spec = new PBEKeySpec("pässwörd".toCharArray(), testData(16), PBKDF_ITERATIONS, 256);
+
+                return Arrays.equals(
+                        SecretKeyFactory.getInstance(algorithm, FALLBACK_PROVIDER).generateSecret(spec).getEncoded(),
+                        SecretKeyFactory.getInstance(algorithm, provider).generateSecret(spec).getEncoded());
+            }
+
+            @Override
+            long benchmark(String algorithm, String provider) throws GeneralSecurityException {
+                SecretKeyFactory factory = SecretKeyFactory.getInstance(algorithm, provider);
+                var spec = new PBEKeySpec("password".toCharArray(), testData(16), PBKDF_ITERATIONS, 256);
+
+                return fastestRun(() -> factory.generateSecret(spec));
+            }
+        };
+
+        private final String type;
+
+        Service(String type) {
+            this.type = type;
+        }
+
+        /**
+         * Returns {@code true} if {@code provider} computes the same results as BC for {@code algorithm}.
+         */
+        abstract boolean verify(String algorithm, String provider) throws GeneralSecurityException;
+
+        /**
+         * Returns the fastest time of a fixed workload in nanoseconds.
+         */
+        abstract long benchmark(String algorithm, String provider) throws GeneralSecurityException;
+    }
+
+}
@@ -0,0 +1,412 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Block cipher file encryption that survives being killed and continues where it stopped.
+ *
+ * <p>The ciphertext is written to {@code <destination>.partial} and only renamed to the destination once the cipher
+ * is finished, so an incomplete file is never mistaken for a finished one. At every checkpoint the partial output is
+ * flushed to disk and a small journal, {@code <destination>.checkpoint}, records the offset reached, the chaining
+ * state the cipher needs to continue from there and a SHA-256 of the ciphertext written so far. The chaining state
+ * is the last ciphertext block for CBC and CFB, the last keystream block for OFB and the counter for CTR.</p>
+ *
+ * <p>Running the same encryption again finds the journal, checks that the source file, key and transformation are
+ * unchanged, re-hashes the partial output and compares hash and chaining state with the journal before continuing
+ * from the checkpoint. Anything that does not match starts over from the beginning. Up to the final block every
+ * mode turns each plaintext byte into exactly one ciphertext byte, so the checkpoint offset is the same in both files
+ * and a resumed run produces the same output as an uninterrupted one.</p>
+ *
+ * <p>GOST R 34.13-2015 counter mode uses a counter layout that cannot be restarted from an IV, and BC runs DSTU 7624
+ * CTR as KCTR, which encrypts the IV before counting. Files encrypted with either are still written through the
+ * partial file but never checkpointed.</p>
+ */
+public final class ResumableEncryption {
+
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 64L * 1024 * 1024;
+
+    public static final String PARTIAL_SUFFIX = ".partial";
+    public static final String JOURNAL_SUFFIX = ".checkpoint";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int JOURNAL_VERSION = 1;
+    private static final String DIGEST = "SHA-256";
+    private static final String KEY_CHECK_MAC = "HMACSHA256";
+    private static final byte[] KEY_CHECK_LABEL = "JFXC checkpoint key check".getBytes(StandardCharsets.US_ASCII);
+
+    private ResumableEncryption() { }
+
+    /**
+     * Encrypts {@code target} into {@code destination}, checkpointing every {@value #DEFAULT_CHECKPOINT_INTERVAL}
+     * bytes.
+     */
+    public static Result encrypt(Path target,
+                                 Path destination,
+                                 String algorithm,
+                                 BlockCipherImpl.Mode mode,
+                                 BlockCipherImpl.Padding padding,
+                                 byte[] iv,
+                                 byte[] key,
+                                 ProgressMonitor monitor) {
+        return encrypt(target, destination, algorithm, mode, padding, iv, key, DEFAULT_CHECKPOINT_INTERVAL, monitor);
+    }
+
+    /**
+     * Encrypts {@code target} into {@code destination}, resuming from the checkpoint journal of an earlier run if
+     * one is present and still valid.
+     *
+     * <p>On cancellation or failure the partial file and the journal are left in place for the next attempt.</p>
+     *
+     * @param target The path to the source file to encrypt.
+     * @param destination The path of the finished ciphertext.
+     * @param algorithm The block cipher algorithm, e.g. {@code AES}.
+     * @param mode The block cipher mode.
+     * @param padding The padding applied to the final block.
+     * @param iv The IV, ignored for ECB.
+     * @param key The raw key.
+     * @param checkpointInterval Ciphertext bytes between two checkpoints.
+     * @param monitor Receives the processed byte count, including the part skipped when resuming, and is polled for
+     *                cancellation.
+     * @return Where the run started and the SHA-256 of the complete ciphertext.
+     */
+    public static Result encrypt(Path target,
+                                 Path destination,
+                                 String algorithm,
+                                 BlockCipherImpl.Mode mode,
+                                 BlockCipherImpl.Padding padding,
+                                 byte[] iv,
+                                 byte[] key,
+                                 long checkpointInterval,
+                                 ProgressMonitor monitor) {
+        if (checkpointInterval <= 0)
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+
+        Path partial = partialFile(destination);
+        Path journal = journalFile(destination);
+        Result result;
+
+        try (FileChannel source = FileChannel.open(target, StandardOpenOption.READ);
+             FileChannel output = FileChannel.open(partial,
+                     StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            String transformation = algorithm + "/" + mode.getMode() + "/" + padding.getPadding();
+            int blockSize = Cipher.getInstance(transformation, ProviderRouter.cipher(transformation)).getBlockSize();
+
+            var context = new Context(algorithm, mode, iv, blockSize, source, output);
+            var identity = new Identity(source.size(), Files.getLastModifiedTime(target).toMillis(), transformation,
+                    HexFormat.of().formatHex(keyCheck(key, transformation, iv)));
+            MessageDigest digest = MessageDigest.getInstance(DIGEST, ProviderRouter.digest(DIGEST));
+
+            long offset = resume(context, Checkpoint.read(journal), identity, digest);
+            byte[] state = offset == 0 ? iv : chainState(context, offset);
+            Cipher cipher = BlockCipherImpl.initCipher(Cipher.ENCRYPT_MODE, algorithm, mode, padding, state, key);
+
+            output.truncate(offset);
+            output.position(offset);
+            source.position(offset);
+            monitor.worked(offset);
+
+            ByteBuffer buffer = ByteBuffer.allocate(FileOperations.alignToBlock(cipher, BUFFER_SIZE));
+            long written = offset;
+            long nextCheckpoint = offset + checkpointInterval;
+
+            while (source.read(buffer) != -1) {
+                monitor.checkCancelled();
+                buffer.flip();
+                written += write(output, digest, cipher.update(buffer.array(), 0, buffer.limit()));
+                monitor.worked(buffer.limit());
+                buffer.clear();
+
+                // A padded cipher may hold back a partial block, the checkpoint has to sit on a block boundary
+                if (written >= nextCheckpoint && written % blockSize == 0) {
+                    checkpoint(context, journal, identity, written, digest);
+                    nextCheckpoint = written + checkpointInterval;
+                }
+            }
+
+            written += write(output, digest, cipher.doFinal());
+            output.force(true);
+
+            result = new Result(offset, written, digest.digest());
+        } catch (CancellationException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+
+        try {
+            moveReplacing(partial, destination);
+            Files.deleteIfExists(journal);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * {@code <destination>.partial}, where the ciphertext is written until it is complete.
+     */
+    public static Path partialFile(Path destination) {
+        return destination.resolveSibling(destination.getFileName() + PARTIAL_SUFFIX);
+    }
+
+    /**
+     * {@code <destination>.checkpoint}, the journal of the last checkpoint.
+     */
+    public static Path journalFile(Path destination) {
+        return destination.resolveSibling(destination.getFileName() + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Whether an interrupted run left a checkpoint for {@code destination}.
+     */
+    public static boolean hasCheckpoint(Path destination) {
+        return Files.isRegularFile(journalFile(destination)) && Files.isRegularFile(partialFile(destination));
+    }
+
+    /**
+     * Validates the journal against the current inputs and the partial output.
+     *
+     * @return The offset to continue from, {@code 0} to start over. When resuming, {@code digest} has already been
+     *         fed the ciphertext up to that offset.
+     */
+    private static long resume(Context ctx, Checkpoint checkpoint, Identity identity, MessageDigest digest)
+            throws IOException {
+
+        if (checkpoint == null || !checkpoint.identity().equals(identity))
+            return 0;
+
+        long offset = checkpoint.offset();
+
+        if (offset <= 0 || offset % ctx.blockSize() != 0 || offset > identity.size() || ctx.output().size() < offset)
+            return 0;
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        for (long position = 0; position < offset; position += buffer.limit()) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, offset - position));
+            readFully(ctx.output(), buffer, position);
+            digest.update(buffer.array(), 0, buffer.limit());
+        }
+
+        if (!MessageDigest.isEqual(snapshot(digest), checkpoint.digest())
+                || !Arrays.equals(chainState(ctx, offset), checkpoint.chainState())) {
+            digest.reset();
+            return 0;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Makes everything written up to {@code offset} durable, then replaces the journal.
+     */
+    private static void checkpoint(Context ctx, Path journal, Identity identity, long offset, MessageDigest digest)
+            throws IOException {
+
+        byte[] chainState = chainState(ctx, offset);
+
+        if (chainState == null)
+            return;
+
+        ctx.output().force(false);
+        new Checkpoint(identity, offset, chainState, snapshot(digest)).write(journal);
+    }
+
+    /**
+     * The hash of everything fed to {@code digest} so far, leaving it running.
+     */
+    private static byte[] snapshot(MessageDigest digest) {
+        try {
+            return ((MessageDigest) digest.clone()).digest();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The IV that lets a fresh cipher continue at {@code offset}, read back from the files written so far.
+     *
+     * @return The state, empty for ECB, or {@code null} if the mode cannot be restarted.
+     */
+    private static byte[] chainState(Context ctx, long offset) throws IOException {
+        int blockSize = ctx.blockSize();
+
+        return switch (ctx.mode()) {
+            case ECB -> new byte[0];
+            case CBC, CFB -> readBlock(ctx.output(), offset - blockSize, blockSize);
+            case OFB -> {
+                // OFB feeds back the keystream, which is what the plaintext was XORed with
+                byte[] keystream = readBlock(ctx.output(), offset - blockSize, blockSize);
+                byte[] plaintext = readBlock(ctx.source(), offset - blockSize, blockSize);
+
+                for (int i = 0; i < blockSize; i++)
+                    keystream[i] ^= plaintext[i];
+
+                yield keystream;
+            }
+            // Only a plain big-endian counter can be continued by adding to the IV, see ParallelCtrFileEngine
+            case CTR -> ctx.iv().length == blockSize && ParallelCtrFileEngine.isSupported(ctx.algorithm())
+                    ? ParallelCtrFileEngine.addToCounter(ctx.iv(), offset / blockSize)
+                    : null;
+        };
+    }
+
+    /**
+     * Identifies the key without storing it: an HMAC of the transformation and IV keyed with the file key.
+     */
+    private static byte[] keyCheck(byte[] key, String transformation, byte[] iv) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(KEY_CHECK_MAC, ProviderRouter.mac(KEY_CHECK_MAC));
+        mac.init(new SecretKeySpec(key, KEY_CHECK_MAC));
+        mac.update(KEY_CHECK_LABEL);
+        mac.update(transformation.getBytes(StandardCharsets.US_ASCII));
+        return mac.doFinal(iv);
+    }
+
+    private static int write(FileChannel channel, MessageDigest digest, byte[] data) throws IOException {
+        // Cipher.update returns null while a padded cipher is still buffering a partial block
+        if (data == null)
+            return 0;
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        digest.update(data);
+        return data.length;
+    }
+
+    private static byte[] readBlock(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, buffer, position);
+        return buffer.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0)
+                throw new IOException("Unexpected end of file at " + (position + buffer.position() - start));
+        }
+
+        buffer.flip();
+    }
+
+    private static void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Outcome of a run.
+     *
+     * @param resumedFrom The offset the run continued from, {@code 0} if it started from the beginning.
+     * @param length The length of the ciphertext.
+     * @param sha256 SHA-256 of the complete ciphertext.
+     */
+    public record Result(long resumedFrom, long length, byte[] sha256) {
+
+        public boolean resumed() {
+            return resumedFrom > 0;
+        }
+    }
+
+    private record Context(String algorithm,
+                           BlockCipherImpl.Mode mode,
+                           byte[] iv,
+                           int blockSize,
+                           FileChannel source,
+                           FileChannel output) { }
+
+    /**
+     * What a checkpoint is only valid for: the same source file, transformation and key.
+     */
+    private record Identity(long size, long lastModified, String transformation, String keyCheck) { }
+
+    private record Checkpoint(Identity identity, long offset, byte[] chainState, byte[] digest) {
+
+        /**
+         * @return The checkpoint, or {@code null} if there is none or it cannot be parsed.
+         */
+        static Checkpoint read(Path journal) {
+            if (!Files.isRegularFile(journal))
+                return null;
+
+            Properties properties = new Properties();
+
+            try (Reader reader = Files.newBufferedReader(journal)) {
+                properties.load(reader);
+
+                if (Integer.parseInt(properties.getProperty("version")) != JOURNAL_VERSION)
+                    return null;
+
+                var identity = new Identity(
+                        Long.parseLong(properties.getProperty("source.size")),
+                        Long.parseLong(properties.getProperty("source.modified")),
+                        properties.getProperty("transformation"),
+                        properties.getProperty("key.check"));
+
+                return new Checkpoint(identity,
+                        Long.parseLong(properties.getProperty("offset")),
+                        HexFormat.of().parseHex(properties.getProperty("chain.state")),
+                        HexFormat.of().parseHex(properties.getProperty("digest")));
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Writes a temporary file and moves it over the journal, a crash leaves either the old or the new one.
+         */
+        void write(Path journal) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("version", Integer.toString(JOURNAL_VERSION));
+            properties.setProperty("source.size", Long.toString(identity.size()));
+            properties.setProperty("source.modified", Long.toString(identity.lastModified()));
+            properties.setProperty("transformation", identity.transformation());
+            properties.setProperty("key.check", identity.keyCheck());
+            properties.setProperty("offset", Long.toString(offset));
+            properties.setProperty("chain.state", HexFormat.of().formatHex(chainState));
+            properties.setProperty("digest", HexFormat.of().formatHex(digest));
+
+            Path temporary = journal.resolveSibling(journal.getFileName() + ".tmp");
+
+            try (Writer writer = Files.newBufferedWriter(temporary)) {
+                properties.store(writer, "JFXCrypto encryption checkpoint");
+            }
+
+            moveReplacing(temporary, journal);
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Plain Java ChaCha20 and Salsa20 block functions, one block after the other. Used when the Vector API is not
+ * available.
+ */
+final class ScalarArxBlocks implements ArxBlocks {
+
+    static final int BLOCKS = 4;
+
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @Override
+    public int blocks() {
+        return BLOCKS;
+    }
+
+    @Override
+    public void chacha(int[] state, long counter, boolean wideCounter, byte[] out) {
+        for (int block = 0; block < BLOCKS; block++) {
+            long blockCounter = counter + block;
+            int j12 = (int) blockCounter;
+            int j13 = wideCounter ? (int) (blockCounter >>> 32) : state[13];
+
+            int x0 = state[0];
+            int x1 = state[1];
+            int x2 = state[2];
+            int x3 = state[3];
+            int x4 = state[4];
+            int x5 = state[5];
+            int x6 = state[6];
+            int x7 = state[7];
+            int x8 = state[8];
+            int x9 = state[9];
+            int x10 = state[10];
+            int x11 = state[11];
+            int x12 = j12;
+            int x13 = j13;
+            int x14 = state[14];
+            int x15 = state[15];
+
+            for (int round = 0; round < 10; round++) {
+                x0 += x4;
+                x12 = Integer.rotateLeft(x12 ^ x0, 16);
+                x8 += x12;
+                x4 = Integer.rotateLeft(x4 ^ x8, 12);
+                x0 += x4;
+                x12 = Integer.rotateLeft(x12 ^ x0, 8);
+                x8 += x12;
+                x4 = Integer.rotateLeft(x4 ^ x8, 7);
+                x1 += x5;
+                x13 = Integer.rotateLeft(x13 ^ x1, 16);
+                x9 += x13;
+                x5 = Integer.rotateLeft(x5 ^ x9, 12);
+                x1 += x5;
+                x13 = Integer.rotateLeft(x13 ^ x1, 8);
+                x9 += x13;
+                x5 = Integer.rotateLeft(x5 ^ x9, 7);
+                x2 += x6;
+                x14 = Integer.rotateLeft(x14 ^ x2, 16);
+                x10 += x14;
+                x6 = Integer.rotateLeft(x6 ^ x10, 12);
+                x2 += x6;
+                x14 = Integer.rotateLeft(x14 ^ x2, 8);
+                x10 += x14;
+                x6 = Integer.rotateLeft(x6 ^ x10, 7);
+                x3 += x7;
+                x15 = Integer.rotateLeft(x15 ^ x3, 16);
+                x11 += x15;
+                x7 = Integer.rotateLeft(x7 ^ x11, 12);
+                x3 += x7;
+                x15 = Integer.rotateLeft(x15 ^ x3, 8);
+                x11 += x15;
+                x7 = Integer.rotateLeft(x7 ^ x11, 7);
+                x0 += x5;
+                x15 = Integer.rotateLeft(x15 ^ x0, 16);
+                x10 += x15;
+                x5 = Integer.rotateLeft(x5 ^ x10, 12);
+                x0 += x5;
+                x15 = Integer.rotateLeft(x15 ^ x0, 8);
+                x10 += x15;
+                x5 = Integer.rotateLeft(x5 ^ x10, 7);
+                x1 += x6;
+                x12 = Integer.rotateLeft(x12 ^ x1, 16);
+                x11 += x12;
+                x6 = Integer.rotateLeft(x6 ^ x11, 12);
+                x1 += x6;
+                x12 = Integer.rotateLeft(x12 ^ x1, 8);
+                x11 += x12;
+                x6 = Integer.rotateLeft(x6 ^ x11, 7);
+                x2 += x7;
+                x13 = Integer.rotateLeft(x13 ^ x2, 16);
+                x8 += x13;
+                x7 = Integer.rotateLeft(x7 ^ x8, 12);
+                x2 += x7;
+                x13 = Integer.rotateLeft(x13 ^ x2, 8);
+                x8 += x13;
+                x7 = Integer.rotateLeft(x7 ^ x8, 7);
+                x3 += x4;
+                x14 = Integer.rotateLeft(x14 ^ x3, 16);
+                x9 += x14;
+                x4 = Integer.rotateLeft(x4 ^ x9, 12);
+                x3 += x4;
+                x14 = Integer.rotateLeft(x14 ^ x3, 8);
+                x9 += x14;
+                x4 = Integer.rotateLeft(x4 ^ x9, 7);
+            }
+
+            int offset = block * BLOCK_SIZE;
+            INT_LE.set(out, offset, x0 + state[0]);
+            INT_LE.set(out, offset + 4, x1 + state[1]);
+            INT_LE.set(out, offset + 8, x2 + state[2]);
+            INT_LE.set(out, offset + 12, x3 + state[3]);
+            INT_LE.set(out, offset + 16, x4 + state[4]);
+            INT_LE.set(out, offset + 20, x5 + state[5]);
+            INT_LE.set(out, offset + 24, x6 + state[6]);
+            INT_LE.set(out, offset + 28, x7 + state[7]);
+            INT_LE.set(out, offset + 32, x8 + state[8]);
+            INT_LE.set(out, offset + 36, x9 + state[9]);
+            INT_LE.set(out, offset + 40, x10 + state[10]);
+            INT_LE.set(out, offset + 44, x11 + state[11]);
+            INT_LE.set(out, offset + 48, x12 + j12);
+            INT_LE.set(out, offset + 52, x13 + j13);
+            INT_LE.set(out, offset + 56, x14 + state[14]);
+            INT_LE.set(out, offset + 60, x15 + state[15]);
+        }
+    }
+
+    @Override
+    public void salsa(int[] state, long counter, byte[] out) {
+        for (int block = 0; block < BLOCKS; block++) {
+            long blockCounter = counter + block;
+            int j8 = (int) blockCounter;
+            int j9 = (int) (blockCounter >>> 32);
+
+            int x0 = state[0];
+            int x1 = state[1];
+            int x2 = state[2];
+            int x3 = state[3];
+            int x4 = state[4];
+            int x5 = state[5];
+            int x6 = state[6];
+            int x7 = state[7];
+            int x8 = j8;
+            int x9 = j9;
+            int x10 = state[10];
+            int x11 = state[11];
+            int x12 = state[12];
+            int x13 = state[13];
+            int x14 = state[14];
+            int x15 = state[15];
+
+            for (int round = 0; round < 10; round++) {
+                x4 ^= Integer.rotateLeft(x0 + x12, 7);
+                x8 ^= Integer.rotateLeft(x4 + x0, 9);
+                x12 ^= Integer.rotateLeft(x8 + x4, 13);
+                x0 ^= Integer.rotateLeft(x12 + x8, 18);
+                x9 ^= Integer.rotateLeft(x5 + x1, 7);
+                x13 ^= Integer.rotateLeft(x9 + x5, 9);
+                x1 ^= Integer.rotateLeft(x13 + x9, 13);
+                x5 ^= Integer.rotateLeft(x1 + x13, 18);
+                x14 ^= Integer.rotateLeft(x10 + x6, 7);
+                x2 ^= Integer.rotateLeft(x14 + x10, 9);
+                x6 ^= Integer.rotateLeft(x2 + x14, 13);
+                x10 ^= Integer.rotateLeft(x6 + x2, 18);
+                x3 ^= Integer.rotateLeft(x15 + x11, 7);
+                x7 ^= Integer.rotateLeft(x3 + x15, 9);
+                x11 ^= Integer.rotateLeft(x7 + x3, 13);
+                x15 ^= Integer.rotateLeft(x11 + x7, 18);
+                x1 ^= Integer.rotateLeft(x0 + x3, 7);
+                x2 ^= Integer.rotateLeft(x1 + x0, 9);
+                x3 ^= Integer.rotateLeft(x2 + x1, 13);
+                x0 ^= Integer.rotateLeft(x3 + x2, 18);
+                x6 ^= Integer.rotateLeft(x5 + x4, 7);
+                x7 ^= Integer.rotateLeft(x6 + x5, 9);
+                x4 ^= Integer.rotateLeft(x7 + x6, 13);
+                x5 ^= Integer.rotateLeft(x4 + x7, 18);
+                x11 ^= Integer.rotateLeft(x10 + x9, 7);
+                x8 ^= Integer.rotateLeft(x11 + x10, 9);
+                x9 ^= Integer.rotateLeft(x8 + x11, 13);
+                x10 ^= Integer.rotateLeft(x9 + x8, 18);
+                x12 ^= Integer.rotateLeft(x15 + x14, 7);
+                x13 ^= Integer.rotateLeft(x12 + x15, 9);
+                x14 ^= Integer.rotateLeft(x13 + x12, 13);
+                x15 ^= Integer.rotateLeft(x14 + x13, 18);
+            }
+
+            int offset = block * BLOCK_SIZE;
+            INT_LE.set(out, offset, x0 + state[0]);
+            INT_LE.set(out, offset + 4, x1 + state[1]);
+            INT_LE.set(out, offset + 8, x2 + state[2]);
+            INT_LE.set(out, offset + 12, x3 + state[3]);
+            INT_LE.set(out, offset + 16, x4 + state[4]);
+            INT_LE.set(out, offset + 20, x5 + state[5]);
+            INT_LE.set(out, offset + 24, x6 + state[6]);
+            INT_LE.set(out, offset + 28, x7 + state[7]);
+            INT_LE.set(out, offset + 32, x8 + j8);
+            INT_LE.set(out, offset + 36, x9 + j9);
+            INT_LE.set(out, offset + 40, x10 + state[10]);
+            INT_LE.set(out, offset + 44, x11 + state[11]);
+            INT_LE.set(out, offset + 48, x12 + state[12]);
+            INT_LE.set(out, offset + 52, x13 + state[13]);
+            INT_LE.set(out, offset + 56, x14 + state[14]);
+            INT_LE.set(out, offset + 60, x15 + state[15]);
+        }
+    }
+
+    /**
+     * The HSalsa20 core used by XSalsa20 to derive a subkey: 20 Salsa20 rounds without the final addition.
+     *
+     * @param x The 16 input words, replaced by the output words.
+     */
+    static void salsaRounds(int[] x) {
+        for (int round = 0; round < 10; round++) {
+            // Column round
+            salsaQuarterRound(x, 0, 4, 8, 12);
+            salsaQuarterRound(x, 5, 9, 13, 1);
+            salsaQuarterRound(x, 10, 14, 2, 6);
+            salsaQuarterRound(x, 15, 3, 7, 11);
+            // Row round
+            salsaQuarterRound(x, 0, 1, 2, 3);
+            salsaQuarterRound(x, 5, 6, 7, 4);
+            salsaQuarterRound(x, 10, 11, 8, 9);
+            salsaQuarterRound(x, 15, 12, 13, 14);
+        }
+    }
+
+    private static void salsaQuarterRound(int[] x, int a, int b, int c, int d) {
+        x[b] ^= Integer.rotateLeft(x[a] + x[d], 7);
+        x[c] ^= Integer.rotateLeft(x[b] + x[a], 9);
+        x[d] ^= Integer.rotateLeft(x[c] + x[b], 13);
+        x[a] ^= Integer.rotateLeft(x[d] + x[c], 18);
+    }
+
+}
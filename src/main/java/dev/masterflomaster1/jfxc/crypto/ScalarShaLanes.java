@@ -0,0 +1,122 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+/**
+ * Plain Java SHA-256 and SHA-1 compression, one lane after the other. Used when the Vector API is not available.
+ */
+final class ScalarShaLanes implements ShaLanes {
+
+    static final int LANES = 4;
+
+    static final int[] SHA256_K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    static final int[] SHA1_K = {0x5a827999, 0x6ed9eba1, 0x8f1bbcdc, 0xca62c1d6};
+
+    private final int[] w = new int[80];
+
+    @Override
+    public int lanes() {
+        return LANES;
+    }
+
+    @Override
+    public void sha256(int[] state, int[] block) {
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int t = 0; t < 16; t++)
+                w[t] = block[t * LANES + lane];
+
+            for (int t = 16; t < 64; t++) {
+                int s0 = Integer.rotateRight(w[t - 15], 7) ^ Integer.rotateRight(w[t - 15], 18) ^ (w[t - 15] >>> 3);
+                int s1 = Integer.rotateRight(w[t - 2], 17) ^ Integer.rotateRight(w[t - 2], 19) ^ (w[t - 2] >>> 10);
+                w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+            }
+
+            int a = state[lane];
+            int b = state[LANES + lane];
+            int c = state[2 * LANES + lane];
+            int d = state[3 * LANES + lane];
+            int e = state[4 * LANES + lane];
+            int f = state[5 * LANES + lane];
+            int g = state[6 * LANES + lane];
+            int h = state[7 * LANES + lane];
+
+            for (int t = 0; t < 64; t++) {
+                int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+                int ch = g ^ (e & (f ^ g));
+                int t1 = h + s1 + ch + SHA256_K[t] + w[t];
+                int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+                int maj = (a & b) | (c & (a | b));
+                int t2 = s0 + maj;
+
+                h = g;
+                g = f;
+                f = e;
+                e = d + t1;
+                d = c;
+                c = b;
+                b = a;
+                a = t1 + t2;
+            }
+
+            state[lane] += a;
+            state[LANES + lane] += b;
+            state[2 * LANES + lane] += c;
+            state[3 * LANES + lane] += d;
+            state[4 * LANES + lane] += e;
+            state[5 * LANES + lane] += f;
+            state[6 * LANES + lane] += g;
+            state[7 * LANES + lane] += h;
+        }
+    }
+
+    @Override
+    public void sha1(int[] state, int[] block) {
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int t = 0; t < 16; t++)
+                w[t] = block[t * LANES + lane];
+
+            for (int t = 16; t < 80; t++)
+                w[t] = Integer.rotateLeft(w[t - 3] ^ w[t - 8] ^ w[t - 14] ^ w[t - 16], 1);
+
+            int a = state[lane];
+            int b = state[LANES + lane];
+            int c = state[2 * LANES + lane];
+            int d = state[3 * LANES + lane];
+            int e = state[4 * LANES + lane];
+
+            for (int t = 0; t < 80; t++) {
+                int f;
+
+                if (t < 20)
+                    f = d ^ (b & (c ^ d));
+                else if (t < 40 || t >= 60)
+                    f = b ^ c ^ d;
+                else
+                    f = (b & c) | (d & (b | c));
+
+                int temp = Integer.rotateLeft(a, 5) + f + e + SHA1_K[t / 20] + w[t];
+
+                e = d;
+                d = c;
+                c = Integer.rotateLeft(b, 30);
+                b = a;
+                a = temp;
+            }
+
+            state[lane] += a;
+            state[LANES + lane] += b;
+            state[2 * LANES + lane] += c;
+            state[3 * LANES + lane] += d;
+            state[4 * LANES + lane] += e;
+        }
+    }
+
+}
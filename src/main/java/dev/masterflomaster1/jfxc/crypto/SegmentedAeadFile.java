@@ -0,0 +1,468 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Segmented streaming AEAD container following the STREAM construction.
+ *
+ * <p>The plaintext is cut into fixed-size segments and every segment is sealed on its own with a nonce made of a
+ * random per-file prefix, the big-endian segment index and a flag marking the last segment. The file header is
+ * authenticated as associated data of every segment, so segments cannot be reordered, dropped, truncated or moved
+ * between files. Because no cipher ever sees more than one segment, memory use is bounded by the segment size per
+ * worker, segments are processed in parallel, and any byte range can be decrypted by reading only the segments that
+ * cover it. Segment sizes are limited to {@link #MAX_SEGMENT_SIZE}, a header asking for more is rejected before any
+ * buffer is allocated.</p>
+ *
+ * <pre>
+ * header:  magic "JFXS" | version (1) | algorithm id (1) | segment size (4) | nonce prefix (7)
+ * segment: ciphertext (segment size, last one shorter) | tag (16)
+ * </pre>
+ */
+public final class SegmentedAeadFile {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+    public static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    static final int HEADER_LENGTH = 17;
+    static final int TAG_LENGTH = 16;
+
+    private static final byte[] MAGIC = {'J', 'F', 'X', 'S'};
+    private static final byte VERSION = 1;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int NONCE_LENGTH = 12;
+    private static final int SEGMENTS_PER_TASK = 8;
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private SegmentedAeadFile() { }
+
+    public static void encrypt(Path target, Path destination, Algorithm algorithm, byte[] key) {
+        encrypt(target, destination, algorithm, key, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Same as {@link #encrypt(Path, Path, Algorithm, byte[])}, reporting every segment to {@code monitor}.
+     */
+    public static void encrypt(Path target,
+                               Path destination,
+                               Algorithm algorithm,
+                               byte[] key,
+                               ProgressMonitor monitor) {
+        encrypt(target, destination, algorithm, key, DEFAULT_SEGMENT_SIZE, ForkJoinPool.commonPool(), monitor);
+    }
+
+    public static void encrypt(Path target,
+                               Path destination,
+                               Algorithm algorithm,
+                               byte[] key,
+                               int segmentSize,
+                               ForkJoinPool pool) {
+        encrypt(target, destination, algorithm, key, segmentSize, pool, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Encrypts a file into the segmented container.
+     *
+     * @param target The path to the plaintext file.
+     * @param destination The path to the container file to create.
+     * @param algorithm The AEAD used for every segment.
+     * @param key The raw key material.
+     * @param segmentSize The plaintext length of every segment except the last one, at most
+     *                    {@link #MAX_SEGMENT_SIZE}.
+     * @param pool The pool the segments are sealed on.
+     * @param monitor Receives the plaintext bytes of every sealed segment and is polled for cancellation.
+     */
+    public static void encrypt(Path target,
+                               Path destination,
+                               Algorithm algorithm,
+                               byte[] key,
+                               int segmentSize,
+                               ForkJoinPool pool,
+                               ProgressMonitor monitor) {
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE)
+            throw new IllegalArgumentException("Segment size must be between 1 and %d: %d".formatted(
+                    MAX_SEGMENT_SIZE, segmentSize));
+
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        SECURE_RANDOM.nextBytes(noncePrefix);
+        byte[] header = writeHeader(algorithm, segmentSize, noncePrefix);
+
+        try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ);
+             FileChannel destChannel = FileChannel.open(destination,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            writeFully(destChannel, ByteBuffer.wrap(header), 0);
+
+            long size = sourceChannel.size();
+            long segments = Math.max(1, (size + segmentSize - 1) / segmentSize);
+            var context = new Context(Cipher.ENCRYPT_MODE, algorithm, key, header, noncePrefix, segmentSize,
+                    segments, size, sourceChannel, destChannel, monitor);
+
+            pool.invoke(new SegmentTask(context, 0, segments));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void decrypt(Path target, Path destination, byte[] key) {
+        decrypt(target, destination, key, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Same as {@link #decrypt(Path, Path, byte[])}, reporting every segment to {@code monitor}.
+     */
+    public static void decrypt(Path target, Path destination, byte[] key, ProgressMonitor monitor) {
+        decrypt(target, destination, key, ForkJoinPool.commonPool(), monitor);
+    }
+
+    public static void decrypt(Path target, Path destination, byte[] key, ForkJoinPool pool) {
+        decrypt(target, destination, key, pool, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Decrypts a segmented container. The destination is deleted if any segment fails authentication or the
+     * operation is cancelled.
+     *
+     * @param target The path to the container file.
+     * @param destination The path to the plaintext file to create.
+     * @param key The raw key material.
+     * @param pool The pool the segments are opened on.
+     * @param monitor Receives the container bytes of every opened segment and is polled for cancellation.
+     */
+    public static void decrypt(Path target, Path destination, byte[] key, ForkJoinPool pool, ProgressMonitor monitor) {
+        try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ);
+             FileChannel destChannel = FileChannel.open(destination,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            var header = readHeader(sourceChannel);
+            long segments = header.segmentCount(sourceChannel.size());
+            long plaintextSize = header.plaintextSize(sourceChannel.size());
+
+            var context = new Context(Cipher.DECRYPT_MODE, header.algorithm, key, header.raw, header.noncePrefix,
+                    header.segmentSize, segments, plaintextSize, sourceChannel, destChannel, monitor);
+
+            pool.invoke(new SegmentTask(context, 0, segments));
+        } catch (IOException e) {
+            deleteQuietly(destination);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(destination);
+            throw e;
+        }
+    }
+
+    /**
+     * Decrypts {@code length} bytes of plaintext starting at {@code offset}, reading and authenticating only the
+     * segments that overlap the range.
+     *
+     * @return The plaintext bytes, shorter than {@code length} if the range runs past the end of the file.
+     */
+    public static byte[] decryptRange(Path target, long offset, int length, byte[] key) {
+        if (offset < 0 || length < 0)
+            throw new IllegalArgumentException("Offset and length must not be negative");
+
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+            var header = readHeader(channel);
+            long fileSize = channel.size();
+            long plaintextSize = header.plaintextSize(fileSize);
+            long segments = header.segmentCount(fileSize);
+
+            long end = Math.min(plaintextSize, offset + length);
+            if (offset >= end)
+                return new byte[0];
+
+            byte[] result = new byte[(int) (end - offset)];
+            byte[] in = new byte[header.segmentSize + TAG_LENGTH];
+            byte[] out = new byte[header.segmentSize + TAG_LENGTH];
+            Cipher cipher = Cipher.getInstance(header.algorithm.transformation, "BC");
+            var secretKey = new SecretKeySpec(key, header.algorithm.keyAlgorithm);
+
+            for (long index = offset / header.segmentSize; index * header.segmentSize < end; index++) {
+                int plain = openSegment(cipher, secretKey, header.algorithm, header.raw, header.noncePrefix,
+                        header.segmentSize, segments, plaintextSize, index, channel, in, out);
+
+                long segmentStart = index * header.segmentSize;
+                long from = Math.max(offset, segmentStart);
+                long to = Math.min(end, segmentStart + plain);
+
+                System.arraycopy(out, (int) (from - segmentStart), result, (int) (from - offset), (int) (to - from));
+            }
+
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the file starts with the container magic.
+     */
+    public static boolean isPresent(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length);
+
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) { }
+
+            return !buffer.hasRemaining() && Arrays.equals(buffer.array(), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the plaintext length of a container without decrypting it.
+     */
+    public static long plaintextSize(Path target) {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+            return readHeader(channel).plaintextSize(channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Builds the 12 byte segment nonce: prefix, big-endian segment index and the last segment flag.
+     */
+    static byte[] nonce(byte[] noncePrefix, long index, boolean last) {
+        if (index > 0xFFFFFFFFL)
+            throw new IllegalArgumentException("Too many segments");
+
+        byte[] nonce = Arrays.copyOf(noncePrefix, NONCE_LENGTH);
+        nonce[7] = (byte) (index >>> 24);
+        nonce[8] = (byte) (index >>> 16);
+        nonce[9] = (byte) (index >>> 8);
+        nonce[10] = (byte) index;
+        nonce[11] = (byte) (last ? 1 : 0);
+        return nonce;
+    }
+
+    private static byte[] writeHeader(Algorithm algorithm, int segmentSize, byte[] noncePrefix) {
+        return ByteBuffer.allocate(HEADER_LENGTH)
+                .put(MAGIC)
+                .put(VERSION)
+                .put(algorithm.id)
+                .putInt(segmentSize)
+                .put(noncePrefix)
+                .array();
+    }
+
+    private static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0)
+                throw new IOException("File is too short to be a segmented AEAD container");
+        }
+
+        byte[] raw = buffer.array();
+        if (!Arrays.equals(raw, 0, MAGIC.length, MAGIC, 0, MAGIC.length))
+            throw new IOException("Not a segmented AEAD container");
+
+        if (raw[4] != VERSION)
+            throw new IOException("Unsupported container version: " + raw[4]);
+
+        Algorithm algorithm = Algorithm.fromId(raw[5]);
+        int segmentSize = buffer.getInt(6);
+        // Checked before any buffer is sized from it, the header is only authenticated along with a segment
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE)
+            throw new IOException("Invalid segment size: " + segmentSize);
+
+        byte[] noncePrefix = Arrays.copyOfRange(raw, 10, 10 + NONCE_PREFIX_LENGTH);
+        return new Header(raw, algorithm, segmentSize, noncePrefix);
+    }
+
+    /**
+     * @return The plaintext length of the segment.
+     */
+    private static int sealSegment(Cipher cipher,
+                                   SecretKeySpec secretKey,
+                                   Context ctx,
+                                   long index,
+                                   byte[] in,
+                                   byte[] out) throws IOException, GeneralSecurityException {
+        boolean last = index == ctx.segments - 1;
+        long plainStart = index * ctx.segmentSize;
+        int plain = (int) Math.min(ctx.segmentSize, ctx.plaintextSize - plainStart);
+
+        readFully(ctx.source, ByteBuffer.wrap(in, 0, plain), plainStart);
+
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, ctx.algorithm.parameters(nonce(ctx.noncePrefix, index, last)));
+        cipher.updateAAD(ctx.header);
+        int produced = cipher.doFinal(in, 0, plain, out, 0);
+
+        long cipherStart = HEADER_LENGTH + index * (ctx.segmentSize + TAG_LENGTH);
+        writeFully(ctx.destination, ByteBuffer.wrap(out, 0, produced), cipherStart);
+        return plain;
+    }
+
+    private static int openSegment(Cipher cipher,
+                                   SecretKeySpec secretKey,
+                                   Algorithm algorithm,
+                                   byte[] header,
+                                   byte[] noncePrefix,
+                                   int segmentSize,
+                                   long segments,
+                                   long plaintextSize,
+                                   long index,
+                                   FileChannel source,
+                                   byte[] in,
+                                   byte[] out) throws IOException, GeneralSecurityException {
+        boolean last = index == segments - 1;
+        long plainStart = index * segmentSize;
+        int plain = (int) Math.min(segmentSize, plaintextSize - plainStart);
+        long cipherStart = HEADER_LENGTH + index * (segmentSize + TAG_LENGTH);
+
+        readFully(source, ByteBuffer.wrap(in, 0, plain + TAG_LENGTH), cipherStart);
+
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, algorithm.parameters(nonce(noncePrefix, index, last)));
+        cipher.updateAAD(header);
+        return cipher.doFinal(in, 0, plain + TAG_LENGTH, out, 0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0)
+                throw new IOException("Unexpected end of file at " + (position + buffer.position() - start));
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position() - start);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) { }
+    }
+
+    public enum Algorithm {
+        CHACHA20_POLY1305((byte) 1, "CHACHA20-POLY1305", "CHACHA20-POLY1305"),
+        AES_GCM((byte) 2, "AES/GCM/NoPadding", "AES");
+
+        private final byte id;
+        private final String transformation;
+        private final String keyAlgorithm;
+
+        Algorithm(byte id, String transformation, String keyAlgorithm) {
+            this.id = id;
+            this.transformation = transformation;
+            this.keyAlgorithm = keyAlgorithm;
+        }
+
+        private AlgorithmParameterSpec parameters(byte[] nonce) {
+            return this == AES_GCM ? new GCMParameterSpec(TAG_LENGTH * 8, nonce) : new IvParameterSpec(nonce);
+        }
+
+        private static Algorithm fromId(byte id) throws IOException {
+            for (Algorithm a : values()) {
+                if (a.id == id)
+                    return a;
+            }
+
+            throw new IOException("Unknown AEAD algorithm id: " + id);
+        }
+    }
+
+    private record Header(byte[] raw, Algorithm algorithm, int segmentSize, byte[] noncePrefix) {
+
+        long segmentCount(long fileSize) throws IOException {
+            long body = fileSize - HEADER_LENGTH;
+            if (body < TAG_LENGTH)
+                throw new IOException("Container is truncated");
+
+            long fullSegment = segmentSize + (long) TAG_LENGTH;
+            long segments = (body + fullSegment - 1) / fullSegment;
+
+            if (body - (segments - 1) * fullSegment < TAG_LENGTH)
+                throw new IOException("Container is truncated");
+
+            return segments;
+        }
+
+        long plaintextSize(long fileSize) throws IOException {
+            return fileSize - HEADER_LENGTH - segmentCount(fileSize) * TAG_LENGTH;
+        }
+    }
+
+    private record Context(int opmode,
+                           Algorithm algorithm,
+                           byte[] key,
+                           byte[] header,
+                           byte[] noncePrefix,
+                           int segmentSize,
+                           long segments,
+                           long plaintextSize,
+                           FileChannel source,
+                           FileChannel destination,
+                           ProgressMonitor monitor) { }
+
+    private static final class SegmentTask extends RecursiveAction {
+
+        private final Context context;
+        private final long from;
+        private final long to;
+
+        private SegmentTask(Context context, long from, long to) {
+            this.context = context;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SEGMENTS_PER_TASK) {
+                long mid = (from + to) >>> 1;
+                invokeAll(new SegmentTask(context, from, mid), new SegmentTask(context, mid, to));
+                return;
+            }
+
+            var ctx = context;
+
+            try {
+                Cipher cipher = Cipher.getInstance(ctx.algorithm.transformation, "BC");
+                var secretKey = new SecretKeySpec(ctx.key, ctx.algorithm.keyAlgorithm);
+                byte[] in = new byte[ctx.segmentSize + TAG_LENGTH];
+                byte[] out = new byte[ctx.segmentSize + TAG_LENGTH];
+
+                for (long index = from; index < to; index++) {
+                    ctx.monitor.checkCancelled();
+
+                    if (ctx.opmode == Cipher.ENCRYPT_MODE) {
+                        ctx.monitor.worked(sealSegment(cipher, secretKey, ctx, index, in, out));
+                    } else {
+                        int plain = openSegment(cipher, secretKey, ctx.algorithm, ctx.header, ctx.noncePrefix,
+                                ctx.segmentSize, ctx.segments, ctx.plaintextSize, index, ctx.source, in, out);
+                        writeFully(ctx.destination, ByteBuffer.wrap(out, 0, plain), index * ctx.segmentSize);
+                        ctx.monitor.worked(plain + TAG_LENGTH);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+}
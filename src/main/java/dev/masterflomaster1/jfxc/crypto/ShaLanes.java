@@ -0,0 +1,25 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+/**
+ * Runs the SHA-256 or SHA-1 compression function on one block of several independent messages at once, for
+ * {@link MultiBufferDigest}.
+ *
+ * <p>Both arrays are word-major: word {@code w} of lane {@code l} sits at index {@code w * lanes() + l}. The state
+ * holds 8 words per lane for SHA-256 and 5 for SHA-1, the block 16 big-endian message words per lane. Every lane is
+ * compressed, lanes without a message just compute garbage. Instances keep scratch space and are not
+ * thread-safe.</p>
+ */
+interface ShaLanes {
+
+    int BLOCK_SIZE = 64;
+
+    /**
+     * Number of messages compressed per call.
+     */
+    int lanes();
+
+    void sha256(int[] state, int[] block);
+
+    void sha1(int[] state, int[] block);
+
+}
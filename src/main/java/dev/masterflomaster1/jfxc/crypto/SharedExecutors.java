@@ -0,0 +1,46 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pools background work of this package runs on.
+ *
+ * <p>Hashing and ciphering that keeps a core busy goes to {@link ForkJoinPool#commonPool()}. Work that blocks on a
+ * file goes to {@link #IO}. Features bound their own concurrency by the number of tasks they submit instead of
+ * starting pools of their own.</p>
+ */
+final class SharedExecutors {
+
+    /**
+     * Cached pool for blocking file I/O, idle threads exit after a minute.
+     */
+    static final ExecutorService IO = Executors.newCachedThreadPool(daemonThreads("jfxc-io-"));
+
+    /**
+     * Single thread for periodic progress sampling, tasks scheduled on it must be short.
+     */
+    static final ScheduledExecutorService TIMER =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("jfxc-timer-"));
+
+    private SharedExecutors() { }
+
+    /**
+     * Names threads {@code prefix} followed by a counter and marks them as daemons, so they never keep the
+     * application alive.
+     */
+    private static ThreadFactory daemonThreads(String prefix) {
+        var count = new AtomicInteger();
+
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
@@ -0,0 +1,275 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * ChaCha20 and Salsa20 keystream engine that computes several blocks per step, producing the same output as
+ * BouncyCastle's {@code CHACHA}, {@code CHACHA7539}, {@code SALSA20} and {@code XSALSA20}.
+ *
+ * <p>BC's engines compute one 64 byte block at a time. This engine asks an {@link ArxBlocks} implementation for a
+ * batch of consecutive blocks: on the incubating Vector API every SIMD lane computes one block, so a step yields 4 to
+ * 16 blocks depending on the vector width. The Vector API is used when {@link VectorSupport#isAvailable()}, otherwise
+ * a scalar implementation takes over.</p>
+ *
+ * <p>Encryption and decryption are the same operation. An instance keeps its position in the keystream and is not
+ * thread-safe.</p>
+ */
+public final class SimdStreamCipher {
+
+    /** "expand 32-byte k" */
+    private static final int[] SIGMA = {0x61707865, 0x3320646e, 0x79622d32, 0x6b206574};
+    /** "expand 16-byte k" */
+    private static final int[] TAU = {0x61707865, 0x3120646e, 0x79622d36, 0x6b206574};
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * RFC 7539 counts blocks with 32 bits.
+     */
+    private static final long CHACHA7539_MAX_BYTES = (1L << 32) * ArxBlocks.BLOCK_SIZE;
+
+    private final Variant variant;
+    private final ArxBlocks blocks;
+    private final int[] state = new int[16];
+    private final byte[] keystream;
+
+    private int keystreamOffset;
+    private long nextCounter;
+    private long position;
+
+    private SimdStreamCipher(Variant variant, byte[] key, byte[] iv, ArxBlocks blocks) {
+        this.variant = variant;
+        this.blocks = blocks;
+        this.keystream = new byte[blocks.blocks() * ArxBlocks.BLOCK_SIZE];
+        this.keystreamOffset = keystream.length;
+
+        variant.checkParameters(key, iv);
+
+        switch (variant) {
+            case CHACHA, CHACHA7539 -> chachaState(key, iv);
+            case SALSA20 -> salsaState(key, iv);
+            case XSALSA20 -> salsaState(hsalsa20(key, iv), Arrays.copyOfRange(iv, 16, 24));
+        }
+    }
+
+    /**
+     * Whether {@code algorithm} is one of the BC names this engine implements.
+     */
+    public static boolean isSupported(String algorithm) {
+        return Variant.of(algorithm) != null;
+    }
+
+    /**
+     * Creates an engine positioned at the start of the keystream.
+     *
+     * @param algorithm {@code CHACHA}, {@code CHACHA7539}, {@code SALSA20} or {@code XSALSA20}.
+     * @param key The key, 256 bits, or 128 bits for {@code CHACHA} and {@code SALSA20}.
+     * @param iv The nonce, 64 bits, 96 bits for {@code CHACHA7539} and 192 bits for {@code XSALSA20}.
+     */
+    public static SimdStreamCipher create(String algorithm, byte[] key, byte[] iv) {
+        return create(algorithm, key, iv, VectorSupport.isAvailable());
+    }
+
+    static SimdStreamCipher create(String algorithm, byte[] key, byte[] iv, boolean vectorized) {
+        Variant variant = Variant.of(algorithm);
+
+        if (variant == null)
+            throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+
+        ArxBlocks blocks = vectorized && VectorSupport.isAvailable() ? new VectorArxBlocks() : new ScalarArxBlocks();
+        return new SimdStreamCipher(variant, key, iv, blocks);
+    }
+
+    /**
+     * Describes the block implementation of this instance.
+     */
+    public String getImplementation() {
+        return blocks instanceof ScalarArxBlocks
+                ? "Scalar"
+                : "Vector API, %d lanes".formatted(blocks.blocks());
+    }
+
+    /**
+     * XORs {@code length} bytes of {@code input} with the next keystream bytes. {@code input} and {@code output} may
+     * be the same array.
+     */
+    public void process(byte[] input, int inputOffset, int length, byte[] output, int outputOffset) {
+        if (variant == Variant.CHACHA7539 && position + length > CHACHA7539_MAX_BYTES)
+            throw new IllegalStateException("Keystream of CHACHA7539 exhausted, at most 2^38 bytes per nonce");
+
+        int done = 0;
+
+        while (done < length) {
+            if (keystreamOffset == keystream.length)
+                refill();
+
+            int n = Math.min(length - done, keystream.length - keystreamOffset);
+            int in = inputOffset + done;
+            int out = outputOffset + done;
+
+            for (int i = 0; i < n; i++)
+                output[out + i] = (byte) (input[in + i] ^ keystream[keystreamOffset + i]);
+
+            keystreamOffset += n;
+            done += n;
+        }
+
+        position += length;
+    }
+
+    public byte[] process(byte[] input) {
+        byte[] output = new byte[input.length];
+        process(input, 0, input.length, output, 0);
+        return output;
+    }
+
+    /**
+     * Moves the keystream position by {@code bytes}, which may be negative.
+     */
+    public void skip(long bytes) {
+        long target = position + bytes;
+
+        if (target < 0)
+            throw new IllegalArgumentException("Cannot skip before the start of the keystream");
+
+        nextCounter = target / ArxBlocks.BLOCK_SIZE;
+        refill();
+        keystreamOffset = (int) (target % ArxBlocks.BLOCK_SIZE);
+        position = target;
+    }
+
+    /**
+     * Runs the rest of {@code source}, from its current position, through the engine and appends the result to
+     * {@code destination}.
+     */
+    void transform(FileChannel source, FileChannel destination, ProgressMonitor monitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        while (source.read(buffer) != -1) {
+            monitor.checkCancelled();
+            buffer.flip();
+            process(buffer.array(), 0, buffer.limit(), buffer.array(), 0);
+
+            while (buffer.hasRemaining())
+                destination.write(buffer);
+
+            monitor.worked(buffer.limit());
+            buffer.clear();
+        }
+    }
+
+    private void refill() {
+        switch (variant) {
+            case CHACHA -> blocks.chacha(state, nextCounter, true, keystream);
+            case CHACHA7539 -> blocks.chacha(state, nextCounter, false, keystream);
+            case SALSA20, XSALSA20 -> blocks.salsa(state, nextCounter, keystream);
+        }
+
+        nextCounter += blocks.blocks();
+        keystreamOffset = 0;
+    }
+
+    /**
+     * Constants, key, counter and nonce in ChaCha order. The counter words are left to {@link ArxBlocks}.
+     */
+    private void chachaState(byte[] key, byte[] iv) {
+        int[] keyWords = words(key);
+        int[] constants = key.length == 16 ? TAU : SIGMA;
+
+        System.arraycopy(constants, 0, state, 0, 4);
+        System.arraycopy(keyWords, 0, state, 4, 4);
+        // A 128-bit key is used twice
+        System.arraycopy(keyWords, keyWords.length - 4, state, 8, 4);
+
+        int[] nonce = words(iv);
+        System.arraycopy(nonce, 0, state, 16 - nonce.length, nonce.length);
+    }
+
+    /**
+     * Constants on the diagonal, key around them, nonce in words 6 and 7. The counter words are left to
+     * {@link ArxBlocks}.
+     */
+    private void salsaState(byte[] key, byte[] iv) {
+        int[] keyWords = words(key);
+        int[] constants = key.length == 16 ? TAU : SIGMA;
+        int[] nonce = words(iv);
+
+        state[0] = constants[0];
+        System.arraycopy(keyWords, 0, state, 1, 4);
+        state[5] = constants[1];
+        state[6] = nonce[0];
+        state[7] = nonce[1];
+        state[10] = constants[2];
+        System.arraycopy(keyWords, keyWords.length - 4, state, 11, 4);
+        state[15] = constants[3];
+    }
+
+    /**
+     * XSalsa20 encrypts with a subkey derived by HSalsa20 from the key and the first 128 bits of the nonce.
+     */
+    private static byte[] hsalsa20(byte[] key, byte[] iv) {
+        int[] keyWords = words(key);
+        int[] nonce = words(Arrays.copyOf(iv, 16));
+        int[] x = new int[16];
+
+        x[0] = SIGMA[0];
+        System.arraycopy(keyWords, 0, x, 1, 4);
+        x[5] = SIGMA[1];
+        System.arraycopy(nonce, 0, x, 6, 4);
+        x[10] = SIGMA[2];
+        System.arraycopy(keyWords, 4, x, 11, 4);
+        x[15] = SIGMA[3];
+
+        ScalarArxBlocks.salsaRounds(x);
+
+        ByteBuffer subkey = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+        subkey.asIntBuffer().put(new int[] {x[0], x[5], x[10], x[15], x[6], x[7], x[8], x[9]});
+        return subkey.array();
+    }
+
+    private static int[] words(byte[] bytes) {
+        IntBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        int[] words = new int[buffer.remaining()];
+        buffer.get(words);
+        return words;
+    }
+
+    private enum Variant {
+        CHACHA(8, true),
+        CHACHA7539(12, false),
+        SALSA20(8, true),
+        XSALSA20(24, false);
+
+        private final int ivLength;
+        private final boolean shortKeys;
+
+        Variant(int ivLength, boolean shortKeys) {
+            this.ivLength = ivLength;
+            this.shortKeys = shortKeys;
+        }
+
+        private static Variant of(String algorithm) {
+            for (Variant variant : values()) {
+                if (variant.name().equals(algorithm))
+                    return variant;
+            }
+
+            return null;
+        }
+
+        private void checkParameters(byte[] key, byte[] iv) {
+            if (key.length != 32 && !(shortKeys && key.length == 16))
+                throw new IllegalArgumentException("%s requires a %s key".formatted(this,
+                        shortKeys ? "128 or 256-bit" : "256-bit"));
+
+            if (iv == null || iv.length != ivLength)
+                throw new IllegalArgumentException("%s requires a %d-bit IV".formatted(this, ivLength * 8));
+        }
+    }
+
+}
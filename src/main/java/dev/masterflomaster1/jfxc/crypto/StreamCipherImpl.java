@@ -7,53 +7,108 @@ import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 public final class StreamCipherImpl {
 
     private StreamCipherImpl() { }
 
+    /**
+     * Keystream implementation used by the text and file paths.
+     */
+    public enum Engine {
+        /** BouncyCastle through the JCA, available for every algorithm. */
+        BOUNCY_CASTLE,
+        /**
+         * {@link SimdStreamCipher}, several ChaCha20 or Salsa20 blocks per step. Algorithms it does not implement
+         * fall back to BouncyCastle.
+         */
+        SIMD;
+
+        /**
+         * Whether this engine actually handles {@code algorithm}.
+         */
+        public boolean handles(String algorithm) {
+            return this == BOUNCY_CASTLE || SimdStreamCipher.isSupported(algorithm);
+        }
+    }
+
     public static byte[] encrypt(String algorithm, byte[] iv, byte[] inputData, byte[] key) {
-        try {
-            SecretKey secretKey = new SecretKeySpec(key, algorithm);
-            Cipher cipher = Cipher.getInstance(algorithm, "BC");
+        return doFinal(Cipher.ENCRYPT_MODE, algorithm, iv, inputData, key);
+    }
 
-            if (getCorrespondingIvLengthBits(algorithm).isPresent())
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey, new IvParameterSpec(iv));
-            else
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+    public static byte[] encrypt(String algorithm, byte[] iv, byte[] inputData, byte[] key, Engine engine) {
+        if (engine == Engine.SIMD && engine.handles(algorithm))
+            return SimdStreamCipher.create(algorithm, key, iv).process(inputData);
 
-            return cipher.doFinal(inputData);
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | NoSuchProviderException | InvalidKeyException |
-                 IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException e) {
-            throw new RuntimeException(e);
-        }
+        return encrypt(algorithm, iv, inputData, key);
     }
 
     public static byte[] decrypt(String algorithm, byte[] iv, byte[] inputData, byte[] key) {
-        try {
-            SecretKey secretKey = new SecretKeySpec(key, algorithm);
-            Cipher cipher = Cipher.getInstance(algorithm, "BC");
+        return doFinal(Cipher.DECRYPT_MODE, algorithm, iv, inputData, key);
+    }
 
-            if (getCorrespondingIvLengthBits(algorithm).isPresent())
-                cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
-            else
-                cipher.init(Cipher.DECRYPT_MODE, secretKey);
+    public static byte[] decrypt(String algorithm, byte[] iv, byte[] inputData, byte[] key, Engine engine) {
+        // Same keystream XOR in both directions
+        return encrypt(algorithm, iv, inputData, key, engine);
+    }
 
-            return cipher.doFinal(inputData);
+    private static byte[] doFinal(int opmode, String algorithm, byte[] iv, byte[] inputData, byte[] key) {
+        byte[] effectiveIv = getCorrespondingIvLengthBits(algorithm).isPresent() ? iv : null;
+
+        try {
+            // AEAD ciphers refuse to be re-used with the same key and nonce, so they are never pooled
+            if (isAead(algorithm)) {
+                SecretKey secretKey = new SecretKeySpec(key, algorithm);
+                Cipher cipher = Cipher.getInstance(algorithm, "BC");
+                cipher.init(opmode, secretKey, new IvParameterSpec(effectiveIv));
+                return cipher.doFinal(inputData);
+            }
+
+            try (var lease = CipherPool.shared().acquire(algorithm, opmode, algorithm, key, effectiveIv)) {
+                return lease.doFinal(inputData);
+            }
         } catch (NoSuchAlgorithmException | NoSuchPaddingException | NoSuchProviderException | InvalidKeyException |
                  IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException e) {
             throw new RuntimeException(e);
         }
     }
 
+    public static boolean isAead(String algorithm) {
+        return "CHACHA20-POLY1305".equals(algorithm);
+    }
+
     public static void nioEncrypt(Path target, Path destination, String algorithm, byte[] iv, byte[] key) {
+        nioEncrypt(target, destination, algorithm, iv, key, FileOperations.IoMode.NIO);
+    }
+
+    public static void nioEncrypt(Path target,
+                                  Path destination,
+                                  String algorithm,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode) {
+        nioEncrypt(target, destination, algorithm, iv, key, ioMode, ProgressMonitor.NONE);
+    }
+
+    public static void nioEncrypt(Path target,
+                                  Path destination,
+                                  String algorithm,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode,
+                                  ProgressMonitor monitor) {
         try {
             SecretKey secretKey = new SecretKeySpec(key, algorithm);
             Cipher cipher = Cipher.getInstance(algorithm, "BC");
@@ -63,13 +118,32 @@ public final class StreamCipherImpl {
             else
                 cipher.init(Cipher.ENCRYPT_MODE, secretKey);
 
-            FileOperations.nioEncryptAndDecrypt(cipher, target, destination);
+            FileOperations.encryptAndDecrypt(Cipher.ENCRYPT_MODE, cipher, target, destination, ioMode, monitor);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
     public static void nioDecrypt(Path target, Path destination, String algorithm, byte[] iv, byte[] key) {
+        nioDecrypt(target, destination, algorithm, iv, key, FileOperations.IoMode.NIO);
+    }
+
+    public static void nioDecrypt(Path target,
+                                  Path destination,
+                                  String algorithm,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode) {
+        nioDecrypt(target, destination, algorithm, iv, key, ioMode, ProgressMonitor.NONE);
+    }
+
+    public static void nioDecrypt(Path target,
+                                  Path destination,
+                                  String algorithm,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode,
+                                  ProgressMonitor monitor) {
         try {
             SecretKey secretKey = new SecretKeySpec(key, algorithm);
             Cipher cipher = Cipher.getInstance(algorithm, "BC");
@@ -79,12 +153,169 @@ public final class StreamCipherImpl {
             else
                 cipher.init(Cipher.DECRYPT_MODE, secretKey);
 
-            FileOperations.nioEncryptAndDecrypt(cipher, target, destination);
+            FileOperations.encryptAndDecrypt(Cipher.DECRYPT_MODE, cipher, target, destination, ioMode, monitor);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Same as {@link #nioEncrypt(Path, Path, String, byte[], byte[], FileOperations.IoMode, ProgressMonitor)} on the
+     * chosen keystream engine. {@link Engine#SIMD} always streams through a file channel, {@code ioMode} only applies
+     * to BouncyCastle.
+     */
+    public static void nioEncrypt(Path target,
+                                  Path destination,
+                                  String algorithm,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode,
+                                  Engine engine,
+                                  ProgressMonitor monitor) {
+        if (engine == Engine.SIMD && engine.handles(algorithm))
+            simdTransform(target, destination, algorithm, iv, key, monitor);
+        else
+            nioEncrypt(target, destination, algorithm, iv, key, ioMode, monitor);
+    }
+
+    /**
+     * Same as {@link #nioDecrypt(Path, Path, String, byte[], byte[], FileOperations.IoMode, ProgressMonitor)} on the
+     * chosen keystream engine.
+     */
+    public static void nioDecrypt(Path target,
+                                  Path destination,
+                                  String algorithm,
+                                  byte[] iv,
+                                  byte[] key,
+                                  FileOperations.IoMode ioMode,
+                                  Engine engine,
+                                  ProgressMonitor monitor) {
+        if (engine == Engine.SIMD && engine.handles(algorithm))
+            simdTransform(target, destination, algorithm, iv, key, monitor);
+        else
+            nioDecrypt(target, destination, algorithm, iv, key, ioMode, monitor);
+    }
+
+    /**
+     * Whether {@code algorithm} can be written as a {@link SegmentedAeadFile} container.
+     */
+    public static boolean isSegmentable(String algorithm) {
+        return isAead(algorithm);
+    }
+
+    /**
+     * Returns {@code true} if the file is a {@link SegmentedAeadFile} container.
+     */
+    public static boolean isSegmented(Path path) {
+        return SegmentedAeadFile.isPresent(path);
+    }
+
+    /**
+     * Encrypts a file into a {@link SegmentedAeadFile} container instead of a single AEAD message. Every segment is
+     * authenticated on its own, so decrypting it never holds more than one segment per worker in memory, whereas
+     * {@link #nioDecrypt} keeps the whole file until the final tag has been checked. The container draws a random
+     * nonce of its own, no IV is needed.
+     *
+     * @param algorithm An algorithm for which {@link #isSegmentable} holds.
+     */
+    public static void segmentedEncrypt(Path target,
+                                        Path destination,
+                                        String algorithm,
+                                        byte[] key,
+                                        ProgressMonitor monitor) {
+        if (!isSegmentable(algorithm))
+            throw new IllegalArgumentException("Not an AEAD stream cipher: " + algorithm);
+
+        SegmentedAeadFile.encrypt(target, destination, SegmentedAeadFile.Algorithm.CHACHA20_POLY1305, key, monitor);
+    }
+
+    /**
+     * Decrypts a container written by {@link #segmentedEncrypt}, the algorithm is taken from the container. The
+     * destination is deleted if any segment fails authentication.
+     */
+    public static void segmentedDecrypt(Path target, Path destination, byte[] key, ProgressMonitor monitor) {
+        SegmentedAeadFile.decrypt(target, destination, key, monitor);
+    }
+
+    private static void simdTransform(Path target,
+                                      Path destination,
+                                      String algorithm,
+                                      byte[] iv,
+                                      byte[] key,
+                                      ProgressMonitor monitor) {
+        var engine = SimdStreamCipher.create(algorithm, key, iv);
+
+        try (FileChannel sourceChannel = FileChannel.open(target, StandardOpenOption.READ);
+             FileChannel destChannel = FileChannel.open(destination, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            engine.transform(sourceChannel, destChannel, monitor);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Encrypts a file like {@link #nioEncrypt} without blocking the calling thread, see
+     * {@link FileOperations#asyncEncryptAndDecrypt(Cipher, Path, Path, ProgressMonitor)}.
+     *
+     * @return Completes with the number of bytes written, or exceptionally if the cipher cannot be created or the
+     * transfer fails.
+     */
+    public static CompletableFuture<Long> asyncEncrypt(Path target,
+                                                       Path destination,
+                                                       String algorithm,
+                                                       byte[] iv,
+                                                       byte[] key,
+                                                       ProgressMonitor monitor) {
+        return asyncTransform(Cipher.ENCRYPT_MODE, target, destination, algorithm, iv, key, monitor);
+    }
+
+    /**
+     * Decrypts a file like {@link #nioDecrypt} without blocking the calling thread, see
+     * {@link #asyncEncrypt(Path, Path, String, byte[], byte[], ProgressMonitor)}.
+     */
+    public static CompletableFuture<Long> asyncDecrypt(Path target,
+                                                       Path destination,
+                                                       String algorithm,
+                                                       byte[] iv,
+                                                       byte[] key,
+                                                       ProgressMonitor monitor) {
+        return asyncTransform(Cipher.DECRYPT_MODE, target, destination, algorithm, iv, key, monitor);
+    }
+
+    private static CompletableFuture<Long> asyncTransform(int opmode,
+                                                          Path target,
+                                                          Path destination,
+                                                          String algorithm,
+                                                          byte[] iv,
+                                                          byte[] key,
+                                                          ProgressMonitor monitor) {
+        try {
+            Cipher cipher = initCipher(opmode, algorithm, iv, key);
+            return FileOperations.asyncEncryptAndDecrypt(cipher, target, destination, monitor);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Creates a cipher initialized the same way as the file encryption paths.
+     */
+    static Cipher initCipher(int opmode, String algorithm, byte[] iv, byte[] key) throws GeneralSecurityException {
+        SecretKey secretKey = new SecretKeySpec(key, algorithm);
+        Cipher cipher = Cipher.getInstance(algorithm, "BC");
+
+        if (getCorrespondingIvLengthBits(algorithm).isPresent())
+            cipher.init(opmode, secretKey, new IvParameterSpec(iv));
+        else
+            cipher.init(opmode, secretKey);
+
+        return cipher;
+    }
+
     public static List<Integer> getCorrespondingKeyLengths(String algorithm) {
         return switch (algorithm) {
             case "ARC4", "Grain128", "HC128", "ZUC-128", "VMPC", "VMPC-KSA3" -> List.of(128);
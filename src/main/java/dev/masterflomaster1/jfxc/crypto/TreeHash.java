@@ -0,0 +1,47 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Hash whose leaves can be computed independently of each other, so a file is hashed by all cores of
+ * {@link java.util.concurrent.ForkJoinPool#commonPool()} at once.
+ *
+ * <p>Every leaf task reads its own part of the file with positional reads and the tree is combined as the tasks
+ * join. Cancellation is checked before every read.</p>
+ */
+abstract class TreeHash {
+
+    /**
+     * Hashes the whole file, the position of {@code channel} is left untouched.
+     */
+    abstract byte[] hash(FileChannel channel, ProgressMonitor monitor) throws IOException;
+
+    /**
+     * Reads {@code length} bytes at {@code position}, for use inside leaf tasks.
+     *
+     * @throws UncheckedIOException If the file cannot be read or ends early.
+     */
+    static byte[] read(FileChannel channel, long position, int length, ProgressMonitor monitor) {
+        monitor.checkCancelled();
+
+        byte[] data = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) == -1)
+                    throw new IOException("File changed while hashing, expected %d bytes at %d"
+                            .formatted(length, position));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        monitor.worked(length);
+        return data;
+    }
+
+}
@@ -1,24 +1,60 @@
 package dev.masterflomaster1.jfxc.crypto;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousFileChannel;
-import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public final class UnkeyedCryptoHash {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private UnkeyedCryptoHash() { }
 
+    /**
+     * Hashes built as a tree, whose leaves are hashed on all cores at once. See {@link #treeHash}.
+     */
+    public enum TreeMode {
+        BLAKE3("BLAKE3-256"),
+        PARALLEL_HASH_128("ParallelHash128, B = 8 KiB"),
+        PARALLEL_HASH_256("ParallelHash256, B = 8 KiB"),
+        MERKLE_SHA256("Merkle SHA-256, RFC 6962, 64 KiB leaves");
+
+        private final String displayName;
+
+        TreeMode(String displayName) {
+            this.displayName = displayName;
+        }
+
+        private TreeHash create() {
+            return switch (this) {
+                case BLAKE3 -> new Blake3TreeHash();
+                case PARALLEL_HASH_128 -> new ParallelTreeHash(128, ParallelTreeHash.BLOCK_SIZE);
+                case PARALLEL_HASH_256 -> new ParallelTreeHash(256, ParallelTreeHash.BLOCK_SIZE);
+                case MERKLE_SHA256 -> new MerkleTreeHash();
+            };
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
     public static byte[] hash(String algorithm, byte[] value) {
         try {
-            MessageDigest md = MessageDigest.getInstance(algorithm, "BC");
+            MessageDigest md = MessageDigest.getInstance(algorithm, ProviderRouter.digest(algorithm));
             md.update(value);
             return md.digest();
         } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
@@ -26,56 +62,120 @@ public final class UnkeyedCryptoHash {
         }
     }
 
-    public static CompletableFuture<byte[]> asyncHash(String algorithm, String filePath) {
-        CompletableFuture<byte[]> future = new CompletableFuture<>();
+    /**
+     * Hashes many independent messages, e.g. the values of a record pipeline, without creating a digest per message.
+     * SHA-256 and SHA-1 run several messages at once on SIMD lanes unless a provider with SHA intrinsics is routed to,
+     * see {@link MultiBufferDigest#isPreferred}. Everything else reuses a single {@link MessageDigest}.
+     *
+     * @param algorithm The digest algorithm.
+     * @param messages The messages.
+     * @return The digest of every message, in the order of {@code messages}.
+     */
+    public static List<byte[]> hashAll(String algorithm, List<byte[]> messages) {
+        if (MultiBufferDigest.isPreferred(algorithm))
+            return MultiBufferDigest.digest(algorithm, messages);
 
         try {
-            Path path = Paths.get(filePath);
-            AsynchronousFileChannel fileChannel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
-            MessageDigest digest = MessageDigest.getInstance(algorithm, "BC");
-
-            ByteBuffer buffer = ByteBuffer.allocate(1024);
-            long[] position = {0};
-
-            CompletionHandler<Integer, ByteBuffer> handler = new CompletionHandler<>() {
-                @Override
-                public void completed(Integer result, ByteBuffer attachment) {
-                    if (result == -1) {
-                        byte[] hashBytes = digest.digest();
-                        future.complete(hashBytes);
-                        try {
-                            fileChannel.close();
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
-                        return;
-                    }
-
-                    buffer.flip();
-                    digest.update(buffer);
-                    buffer.clear();
-
-                    position[0] += result;
-                    fileChannel.read(buffer, position[0], buffer, this);
-                }
-
-                @Override
-                public void failed(Throwable exc, ByteBuffer attachment) {
-                    future.completeExceptionally(exc);
-                    try {
-                        fileChannel.close();
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-            };
+            MessageDigest md = MessageDigest.getInstance(algorithm, ProviderRouter.digest(algorithm));
+            List<byte[]> digests = new ArrayList<>(messages.size());
+
+            for (byte[] message : messages)
+                digests.add(md.digest(message));
+
+            return digests;
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            fileChannel.read(buffer, 0, buffer, handler);
-        } catch (IOException | NoSuchProviderException | NoSuchAlgorithmException e) {
-            future.completeExceptionally(e);
+    /**
+     * Hashes a file on the calling thread, reporting every chunk to {@code monitor}.
+     *
+     * @param algorithm The digest algorithm.
+     * @param path The file to hash.
+     * @param monitor Receives the processed byte count and is polled for cancellation.
+     */
+    public static byte[] hash(String algorithm, Path path, ProgressMonitor monitor) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MessageDigest md = MessageDigest.getInstance(algorithm, ProviderRouter.digest(algorithm));
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            while (channel.read(buffer) != -1) {
+                monitor.checkCancelled();
+                buffer.flip();
+                monitor.worked(buffer.remaining());
+                md.update(buffer);
+                buffer.clear();
+            }
+
+            return md.digest();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new RuntimeException(e);
         }
+    }
+
+    /**
+     * Hashes a file with several algorithms in a single pass. Every chunk is read once and fanned out to all digests,
+     * which update in parallel while the next chunk is read. See {@link MultiDigest}.
+     *
+     * @param algorithms The digest algorithms, at least one.
+     * @param path The file to hash.
+     * @param mapped Memory-map the file instead of reading it into heap buffers.
+     * @param monitor Receives the processed byte count and is polled for cancellation.
+     * @return The digest of every algorithm, in the order of {@code algorithms}.
+     */
+    public static Map<String, byte[]> hash(List<String> algorithms,
+                                           Path path,
+                                           boolean mapped,
+                                           ProgressMonitor monitor) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MultiDigest multiDigest = new MultiDigest(algorithms, monitor);
+            return mapped ? multiDigest.map(channel) : multiDigest.read(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-        return future;
+    /**
+     * Hashes a file as a tree, the leaves are read and hashed in parallel on a fork-join pool. BLAKE3 and ParallelHash
+     * give the same result as their sequential implementations.
+     *
+     * @param mode The tree hash.
+     * @param path The file to hash.
+     * @param monitor Receives the processed byte count from the worker threads and is polled for cancellation.
+     */
+    public static byte[] treeHash(TreeMode mode, Path path, ProgressMonitor monitor) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return mode.create().hash(channel, monitor);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static CompletableFuture<byte[]> asyncHash(String algorithm, String filePath) {
+        return asyncHash(algorithm, Paths.get(filePath), ProgressMonitor.NONE);
+    }
+
+    /**
+     * Hashes a file without blocking, several large direct-buffer reads stay in flight while the digest takes the
+     * chunks in order. See {@link AsyncHashReader}.
+     *
+     * @param algorithm The digest algorithm.
+     * @param path The file to hash.
+     * @param monitor Receives the processed byte count and is polled for cancellation.
+     * @return Completes with the digest, or exceptionally with the I/O or provider error.
+     */
+    public static CompletableFuture<byte[]> asyncHash(String algorithm, Path path, ProgressMonitor monitor) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(algorithm, ProviderRouter.digest(algorithm));
+            return AsyncHashReader.start(digest, path, monitor);
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
 }
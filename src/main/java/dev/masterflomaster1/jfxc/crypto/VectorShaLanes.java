@@ -0,0 +1,176 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.ROL;
+import static jdk.incubator.vector.VectorOperators.ROR;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+/**
+ * SHA-256 and SHA-1 compression on the incubating Vector API.
+ *
+ * <p>Every lane compresses a block of its own message: word {@code i} of all states lives in one vector and the
+ * rounds run on all lanes at once. With the preferred species this is 4 messages per call on 128-bit SIMD, 8 on AVX2
+ * and 16 on AVX-512. The message schedule is expanded into a word-major scratch array first, so the rounds only load
+ * one vector per step.</p>
+ *
+ * <p>Only loaded by {@link MultiBufferDigest} when the {@code jdk.incubator.vector} module is present.</p>
+ */
+final class VectorShaLanes implements ShaLanes {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private final int[] w = new int[80 * LANES];
+
+    @Override
+    public int lanes() {
+        return LANES;
+    }
+
+    @Override
+    public void sha256(int[] state, int[] block) {
+        System.arraycopy(block, 0, w, 0, 16 * LANES);
+
+        for (int t = 16; t < 64; t++) {
+            IntVector w2 = IntVector.fromArray(SPECIES, w, (t - 2) * LANES);
+            IntVector w15 = IntVector.fromArray(SPECIES, w, (t - 15) * LANES);
+            IntVector s0 = w15.lanewise(ROR, 7)
+                    .lanewise(XOR, w15.lanewise(ROR, 18))
+                    .lanewise(XOR, w15.lanewise(LSHR, 3));
+            IntVector s1 = w2.lanewise(ROR, 17)
+                    .lanewise(XOR, w2.lanewise(ROR, 19))
+                    .lanewise(XOR, w2.lanewise(LSHR, 10));
+
+            IntVector.fromArray(SPECIES, w, (t - 16) * LANES)
+                    .add(s0)
+                    .add(IntVector.fromArray(SPECIES, w, (t - 7) * LANES))
+                    .add(s1)
+                    .intoArray(w, t * LANES);
+        }
+
+        IntVector a = IntVector.fromArray(SPECIES, state, 0);
+        IntVector b = IntVector.fromArray(SPECIES, state, LANES);
+        IntVector c = IntVector.fromArray(SPECIES, state, 2 * LANES);
+        IntVector d = IntVector.fromArray(SPECIES, state, 3 * LANES);
+        IntVector e = IntVector.fromArray(SPECIES, state, 4 * LANES);
+        IntVector f = IntVector.fromArray(SPECIES, state, 5 * LANES);
+        IntVector g = IntVector.fromArray(SPECIES, state, 6 * LANES);
+        IntVector h = IntVector.fromArray(SPECIES, state, 7 * LANES);
+
+        for (int t = 0; t < 64; t++) {
+            IntVector s1 = e.lanewise(ROR, 6).lanewise(XOR, e.lanewise(ROR, 11)).lanewise(XOR, e.lanewise(ROR, 25));
+            IntVector ch = g.lanewise(XOR, e.and(f.lanewise(XOR, g)));
+            IntVector t1 = h.add(s1)
+                    .add(ch)
+                    .add(ScalarShaLanes.SHA256_K[t])
+                    .add(IntVector.fromArray(SPECIES, w, t * LANES));
+            IntVector s0 = a.lanewise(ROR, 2).lanewise(XOR, a.lanewise(ROR, 13)).lanewise(XOR, a.lanewise(ROR, 22));
+            IntVector maj = a.and(b).or(c.and(a.or(b)));
+
+            h = g;
+            g = f;
+            f = e;
+            e = d.add(t1);
+            d = c;
+            c = b;
+            b = a;
+            a = t1.add(s0).add(maj);
+        }
+
+        a.add(IntVector.fromArray(SPECIES, state, 0)).intoArray(state, 0);
+        b.add(IntVector.fromArray(SPECIES, state, LANES)).intoArray(state, LANES);
+        c.add(IntVector.fromArray(SPECIES, state, 2 * LANES)).intoArray(state, 2 * LANES);
+        d.add(IntVector.fromArray(SPECIES, state, 3 * LANES)).intoArray(state, 3 * LANES);
+        e.add(IntVector.fromArray(SPECIES, state, 4 * LANES)).intoArray(state, 4 * LANES);
+        f.add(IntVector.fromArray(SPECIES, state, 5 * LANES)).intoArray(state, 5 * LANES);
+        g.add(IntVector.fromArray(SPECIES, state, 6 * LANES)).intoArray(state, 6 * LANES);
+        h.add(IntVector.fromArray(SPECIES, state, 7 * LANES)).intoArray(state, 7 * LANES);
+    }
+
+    @Override
+    public void sha1(int[] state, int[] block) {
+        System.arraycopy(block, 0, w, 0, 16 * LANES);
+
+        for (int t = 16; t < 80; t++) {
+            IntVector.fromArray(SPECIES, w, (t - 3) * LANES)
+                    .lanewise(XOR, IntVector.fromArray(SPECIES, w, (t - 8) * LANES))
+                    .lanewise(XOR, IntVector.fromArray(SPECIES, w, (t - 14) * LANES))
+                    .lanewise(XOR, IntVector.fromArray(SPECIES, w, (t - 16) * LANES))
+                    .lanewise(ROL, 1)
+                    .intoArray(w, t * LANES);
+        }
+
+        IntVector a = IntVector.fromArray(SPECIES, state, 0);
+        IntVector b = IntVector.fromArray(SPECIES, state, LANES);
+        IntVector c = IntVector.fromArray(SPECIES, state, 2 * LANES);
+        IntVector d = IntVector.fromArray(SPECIES, state, 3 * LANES);
+        IntVector e = IntVector.fromArray(SPECIES, state, 4 * LANES);
+
+        // One loop per round function, a branch inside the loop keeps C2 from holding the vectors in registers
+        for (int t = 0; t < 20; t++) {
+            IntVector temp = a.lanewise(ROL, 5)
+                    .add(d.lanewise(XOR, b.and(c.lanewise(XOR, d))))
+                    .add(e)
+                    .add(ScalarShaLanes.SHA1_K[0])
+                    .add(IntVector.fromArray(SPECIES, w, t * LANES));
+
+            e = d;
+            d = c;
+            c = b.lanewise(ROL, 30);
+            b = a;
+            a = temp;
+        }
+
+        for (int t = 20; t < 40; t++) {
+            IntVector temp = a.lanewise(ROL, 5)
+                    .add(b.lanewise(XOR, c).lanewise(XOR, d))
+                    .add(e)
+                    .add(ScalarShaLanes.SHA1_K[1])
+                    .add(IntVector.fromArray(SPECIES, w, t * LANES));
+
+            e = d;
+            d = c;
+            c = b.lanewise(ROL, 30);
+            b = a;
+            a = temp;
+        }
+
+        for (int t = 40; t < 60; t++) {
+            IntVector temp = a.lanewise(ROL, 5)
+                    .add(b.and(c).or(d.and(b.or(c))))
+                    .add(e)
+                    .add(ScalarShaLanes.SHA1_K[2])
+                    .add(IntVector.fromArray(SPECIES, w, t * LANES));
+
+            e = d;
+            d = c;
+            c = b.lanewise(ROL, 30);
+            b = a;
+            a = temp;
+        }
+
+        for (int t = 60; t < 80; t++) {
+            IntVector temp = a.lanewise(ROL, 5)
+                    .add(b.lanewise(XOR, c).lanewise(XOR, d))
+                    .add(e)
+                    .add(ScalarShaLanes.SHA1_K[3])
+                    .add(IntVector.fromArray(SPECIES, w, t * LANES));
+
+            e = d;
+            d = c;
+            c = b.lanewise(ROL, 30);
+            b = a;
+            a = temp;
+        }
+
+        a.add(IntVector.fromArray(SPECIES, state, 0)).intoArray(state, 0);
+        b.add(IntVector.fromArray(SPECIES, state, LANES)).intoArray(state, LANES);
+        c.add(IntVector.fromArray(SPECIES, state, 2 * LANES)).intoArray(state, 2 * LANES);
+        d.add(IntVector.fromArray(SPECIES, state, 3 * LANES)).intoArray(state, 3 * LANES);
+        e.add(IntVector.fromArray(SPECIES, state, 4 * LANES)).intoArray(state, 4 * LANES);
+    }
+
+}
@@ -0,0 +1,34 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import jdk.incubator.vector.IntVector;
+
+/**
+ * Tells whether the incubating Vector API can be used on this JVM.
+ *
+ * <p>The {@code jdk.incubator.vector} module is only there when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}. Classes that use the API must only be loaded after
+ * {@link #isAvailable()} returned {@code true}, loading them fails otherwise. Callers pick their vector or scalar
+ * implementation in one expression guarded by it, so the vector class is never touched on a JVM without the
+ * module.</p>
+ */
+public final class VectorSupport {
+
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private VectorSupport() { }
+
+    /**
+     * Whether vectorized implementations run on this JVM, {@code false} means the scalar fallbacks do.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Describes the backend the SIMD engines of this application pick on this JVM, e.g. for the UI.
+     */
+    public static String describeBackend() {
+        return AVAILABLE ? "Vector API, %d lanes".formatted(IntVector.SPECIES_PREFERRED.length()) : "Scalar";
+    }
+
+}
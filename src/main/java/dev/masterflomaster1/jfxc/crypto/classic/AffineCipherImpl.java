@@ -47,6 +47,36 @@ public final class AffineCipherImpl {
         return plaintext.toString();
     }
 
+    /**
+     * Same as {@link #encrypt(String, int, int)} for large texts, e.g. whole corpora. ASCII text runs on the Vector
+     * API when it is available, anything else takes the {@code String} path.
+     */
+    public static char[] encrypt(char[] plaintext, int a, int b) {
+        // Negative or overflowing a * x + b keeps the exact results of the original arithmetic
+        if (a < 0 || b < 0 || a > (Integer.MAX_VALUE - b) / (ALPHABET_SIZE - 1)
+                || !LetterKernels.upperCasesLikeString(plaintext))
+            return encrypt(new String(plaintext), a, b).toCharArray();
+
+        char[] output = new char[plaintext.length];
+        LetterKernels.INSTANCE.affine(plaintext, output, a % ALPHABET_SIZE, b % ALPHABET_SIZE);
+        return output;
+    }
+
+    /**
+     * Same as {@link #decrypt(String, int, int)} for large texts, see {@link #encrypt(char[], int, int)}.
+     */
+    public static char[] decrypt(char[] ciphertext, int a, int b) {
+        int aInverse = modInverse(a, ALPHABET_SIZE);
+
+        if (b < 0 || b > ALPHABET_SIZE || !LetterKernels.upperCasesLikeString(ciphertext))
+            return decrypt(new String(ciphertext), a, b).toCharArray();
+
+        // aInverse * (y - b + 26) is aInverse * y + aInverse * (26 - b), both non-negative for these b
+        char[] output = new char[ciphertext.length];
+        LetterKernels.INSTANCE.affine(ciphertext, output, aInverse, aInverse * (ALPHABET_SIZE - b) % ALPHABET_SIZE);
+        return output;
+    }
+
     // Function to find modular inverse of a under modulo m
     private static int modInverse(int a, int m) {
         a = a % m;
@@ -30,4 +30,22 @@ public final class AtbashCipherImpl {
         return encrypt(ciphertext);
     }
 
+    /**
+     * Same as {@link #encrypt(String)} for large texts, e.g. whole corpora. ASCII text runs on the Vector API when
+     * it is available, anything else takes the {@code String} path.
+     */
+    public static char[] encrypt(char[] plaintext) {
+        if (!LetterKernels.upperCasesLikeString(plaintext))
+            return encrypt(new String(plaintext)).toCharArray();
+
+        // 25 - x is (25 * x + 25) mod 26
+        char[] output = new char[plaintext.length];
+        LetterKernels.INSTANCE.affine(plaintext, output, ALPHABET.length() - 1, ALPHABET.length() - 1);
+        return output;
+    }
+
+    public static char[] decrypt(char[] ciphertext) {
+        return encrypt(ciphertext);
+    }
+
 }
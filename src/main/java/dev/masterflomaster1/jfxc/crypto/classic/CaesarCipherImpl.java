@@ -27,4 +27,22 @@ public final class CaesarCipherImpl {
         return encrypt(text, 26 - shift % 26);
     }
 
+    /**
+     * Same as {@link #encrypt(String, int)} for large texts, e.g. whole corpora. Runs on the Vector API when it is
+     * available and avoids the per-character {@link StringBuilder} otherwise.
+     */
+    public static char[] encrypt(char[] text, int shift) {
+        // Shifts that make the original arithmetic go negative or overflow keep its exact results
+        if (shift < 0 || shift > Integer.MAX_VALUE - Character.MAX_VALUE)
+            return encrypt(new String(text), shift).toCharArray();
+
+        char[] output = new char[text.length];
+        LetterKernels.INSTANCE.shift(text, output, shift % 26);
+        return output;
+    }
+
+    public static char[] decrypt(char[] text, int shift) {
+        return encrypt(text, 26 - shift % 26);
+    }
+
 }
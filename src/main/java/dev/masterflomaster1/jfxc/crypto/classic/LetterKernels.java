@@ -0,0 +1,59 @@
+package dev.masterflomaster1.jfxc.crypto.classic;
+
+import dev.masterflomaster1.jfxc.crypto.VectorSupport;
+
+/**
+ * Array transforms behind the bulk methods of the substitution ciphers. Every method writes {@code text.length}
+ * characters to {@code output}, which may be {@code text} itself.
+ *
+ * <p>{@link #INSTANCE} runs on the incubating Vector API when {@link VectorSupport#isAvailable()}, otherwise on
+ * plain array loops.</p>
+ */
+interface LetterKernels {
+
+    int ALPHABET_SIZE = 26;
+
+    LetterKernels INSTANCE = VectorSupport.isAvailable()
+            ? new VectorLetterKernels()
+            : new ScalarLetterKernels();
+
+    /**
+     * Whether every character is below {@code 0x80}.
+     */
+    boolean isAscii(char[] text);
+
+    /**
+     * Shifts letters by {@code shift} places and keeps their case, any other character is copied. Letters outside
+     * ASCII follow the same formula as {@link CaesarCipherImpl#encrypt(String, int)}.
+     *
+     * @param shift Between 0 and 25.
+     */
+    void shift(char[] text, char[] output, int shift);
+
+    /**
+     * Upper-cases the letters of an ASCII text and maps them to {@code (multiplier * x + increment) mod 26}, any
+     * other character is copied.
+     *
+     * @param multiplier Between 0 and 25.
+     * @param increment Between 0 and 25.
+     */
+    void affine(char[] text, char[] output, int multiplier, int increment);
+
+    /**
+     * Upper-cases the letters of an ASCII text and shifts the n-th letter by {@code shifts[n % shifts.length]}, any
+     * other character is copied.
+     *
+     * @param shifts Between 0 and 25 each.
+     */
+    void polyalphabetic(char[] text, char[] output, int[] shifts);
+
+    /**
+     * Whether {@link String#toUpperCase()} of {@code text} only maps {@code a} to {@code z} onto {@code A} to
+     * {@code Z} and keeps everything else, as the kernels that upper-case do. That takes ASCII text and a default
+     * locale other than Turkish or Azerbaijani, where the capital of {@code i} is dotted.
+     */
+    static boolean upperCasesLikeString(char[] text) {
+        return "i".toUpperCase().equals("I") && INSTANCE.isAscii(text);
+    }
+
+}
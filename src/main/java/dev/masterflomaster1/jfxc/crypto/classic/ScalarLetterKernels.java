@@ -0,0 +1,89 @@
+package dev.masterflomaster1.jfxc.crypto.classic;
+
+/**
+ * {@link LetterKernels} on plain array loops. The per-range methods also handle the chunks and tails the vector
+ * implementation cannot take.
+ */
+final class ScalarLetterKernels implements LetterKernels {
+
+    @Override
+    public boolean isAscii(char[] text) {
+        for (char c : text) {
+            if (c >= 0x80)
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public void shift(char[] text, char[] output, int shift) {
+        shift(text, output, 0, text.length, shift);
+    }
+
+    @Override
+    public void affine(char[] text, char[] output, int multiplier, int increment) {
+        affine(text, output, 0, text.length, multiplier, increment);
+    }
+
+    @Override
+    public void polyalphabetic(char[] text, char[] output, int[] shifts) {
+        polyalphabetic(text, output, 0, text.length, shifts, 0);
+    }
+
+    static void shift(char[] text, char[] output, int from, int to, int shift) {
+        for (int i = from; i < to; i++) {
+            char c = text[i];
+
+            if (Character.isLetter(c)) {
+                char base = Character.isUpperCase(c) ? 'A' : 'a';
+                output[i] = (char) ((c - base + shift) % ALPHABET_SIZE + base);
+            } else {
+                output[i] = c;
+            }
+        }
+    }
+
+    static void affine(char[] text, char[] output, int from, int to, int multiplier, int increment) {
+        for (int i = from; i < to; i++) {
+            int x = letterIndex(text[i]);
+            output[i] = x < 0 ? text[i] : (char) ((multiplier * x + increment) % ALPHABET_SIZE + 'A');
+        }
+    }
+
+    /**
+     * @param keyIndex Position in {@code shifts} of the first letter in the range.
+     * @return The position in {@code shifts} of the letter after the range.
+     */
+    static int polyalphabetic(char[] text, char[] output, int from, int to, int[] shifts, int keyIndex) {
+        for (int i = from; i < to; i++) {
+            int x = letterIndex(text[i]);
+
+            if (x < 0) {
+                output[i] = text[i];
+                continue;
+            }
+
+            output[i] = (char) ((x + shifts[keyIndex]) % ALPHABET_SIZE + 'A');
+
+            if (++keyIndex == shifts.length)
+                keyIndex = 0;
+        }
+
+        return keyIndex;
+    }
+
+    /**
+     * Position of an ASCII letter in the alphabet regardless of case, -1 for anything else.
+     */
+    private static int letterIndex(char c) {
+        if (c >= 'A' && c <= 'Z')
+            return c - 'A';
+
+        if (c >= 'a' && c <= 'z')
+            return c - 'a';
+
+        return -1;
+    }
+
+}
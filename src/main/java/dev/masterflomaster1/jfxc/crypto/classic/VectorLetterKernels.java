@@ -0,0 +1,139 @@
+package dev.masterflomaster1.jfxc.crypto.classic;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.GE;
+import static jdk.incubator.vector.VectorOperators.LE;
+import static jdk.incubator.vector.VectorOperators.LT;
+import static jdk.incubator.vector.VectorOperators.NE;
+
+/**
+ * {@link LetterKernels} on the incubating Vector API, one character per 16-bit lane.
+ *
+ * <p>Letters are found with lane-wise range compares and everything else is masked out of the result, so a chunk
+ * costs the same whatever it contains. The alphabet position is reduced mod 26 with conditional subtractions, the
+ * Vector API has no cheap lane-wise division. Chunks the lanes cannot handle, letters outside ASCII for
+ * {@link #shift} and chunks mixing letters with other characters for {@link #polyalphabetic}, and the tail shorter
+ * than a vector go through {@link ScalarLetterKernels}.</p>
+ */
+final class VectorLetterKernels implements LetterKernels {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    /**
+     * {@code 26 * 2^k}, enough to bring any {@code multiplier * x + increment} below 26.
+     */
+    private static final short[] MULTIPLES = {416, 208, 104, 52, 26};
+
+    private static final short NON_ASCII_BITS = (short) 0xFF80;
+
+    @Override
+    public boolean isAscii(char[] text) {
+        int upper = SPECIES.loopBound(text.length);
+        ShortVector bits = ShortVector.zero(SPECIES);
+
+        for (int i = 0; i < upper; i += SPECIES.length())
+            bits = bits.or(ShortVector.fromCharArray(SPECIES, text, i));
+
+        if (bits.and(NON_ASCII_BITS).compare(NE, 0).anyTrue())
+            return false;
+
+        for (int i = upper; i < text.length; i++) {
+            if (text[i] >= 0x80)
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public void shift(char[] text, char[] output, int shift) {
+        int upper = SPECIES.loopBound(text.length);
+
+        for (int i = 0; i < upper; i += SPECIES.length()) {
+            ShortVector c = ShortVector.fromCharArray(SPECIES, text, i);
+
+            // Characters from 0x8000 on are negative in a short lane
+            if (c.compare(LT, 0).or(c.compare(GE, 0x80)).anyTrue()) {
+                ScalarLetterKernels.shift(text, output, i, i + SPECIES.length(), shift);
+                continue;
+            }
+
+            VectorMask<Short> isUpper = c.compare(GE, 'A').and(c.compare(LE, 'Z'));
+            VectorMask<Short> isLower = c.compare(GE, 'a').and(c.compare(LE, 'z'));
+            ShortVector base = ShortVector.broadcast(SPECIES, (short) 'a').blend('A', isUpper);
+
+            ShortVector y = c.sub(base).add((short) shift);
+            y = y.sub((short) ALPHABET_SIZE, y.compare(GE, ALPHABET_SIZE));
+
+            c.blend(y.add(base), isUpper.or(isLower)).intoCharArray(output, i);
+        }
+
+        ScalarLetterKernels.shift(text, output, upper, text.length, shift);
+    }
+
+    @Override
+    public void affine(char[] text, char[] output, int multiplier, int increment) {
+        int upper = SPECIES.loopBound(text.length);
+
+        for (int i = 0; i < upper; i += SPECIES.length()) {
+            ShortVector c = ShortVector.fromCharArray(SPECIES, text, i);
+
+            VectorMask<Short> isUpper = c.compare(GE, 'A').and(c.compare(LE, 'Z'));
+            VectorMask<Short> isLower = c.compare(GE, 'a').and(c.compare(LE, 'z'));
+            ShortVector x = c.sub(ShortVector.broadcast(SPECIES, (short) 'a').blend('A', isUpper));
+
+            ShortVector y = mod26(x.mul((short) multiplier).add((short) increment));
+
+            c.blend(y.add((short) 'A'), isUpper.or(isLower)).intoCharArray(output, i);
+        }
+
+        ScalarLetterKernels.affine(text, output, upper, text.length, multiplier, increment);
+    }
+
+    @Override
+    public void polyalphabetic(char[] text, char[] output, int[] shifts) {
+        int upper = SPECIES.loopBound(text.length);
+        int keyIndex = 0;
+
+        // The key repeated far enough that a vector can be loaded from any key position
+        short[] repeated = new short[shifts.length + SPECIES.length()];
+        for (int i = 0; i < repeated.length; i++)
+            repeated[i] = (short) shifts[i % shifts.length];
+
+        for (int i = 0; i < upper; i += SPECIES.length()) {
+            ShortVector c = ShortVector.fromCharArray(SPECIES, text, i);
+
+            VectorMask<Short> isUpper = c.compare(GE, 'A').and(c.compare(LE, 'Z'));
+            VectorMask<Short> isLower = c.compare(GE, 'a').and(c.compare(LE, 'z'));
+
+            // Only a run of letters maps lanes to consecutive key positions
+            if (!isUpper.or(isLower).allTrue()) {
+                keyIndex = ScalarLetterKernels.polyalphabetic(text, output, i, i + SPECIES.length(), shifts, keyIndex);
+                continue;
+            }
+
+            ShortVector x = c.sub(ShortVector.broadcast(SPECIES, (short) 'a').blend('A', isUpper));
+            ShortVector y = x.add(ShortVector.fromArray(SPECIES, repeated, keyIndex));
+            y = y.sub((short) ALPHABET_SIZE, y.compare(GE, ALPHABET_SIZE));
+
+            y.add((short) 'A').intoCharArray(output, i);
+            keyIndex = (keyIndex + SPECIES.length()) % shifts.length;
+        }
+
+        ScalarLetterKernels.polyalphabetic(text, output, upper, text.length, shifts, keyIndex);
+    }
+
+    /**
+     * Only exact for lanes below {@code 26 * 32}.
+     */
+    private static ShortVector mod26(ShortVector y) {
+        for (short multiple : MULTIPLES)
+            y = y.sub(multiple, y.compare(GE, multiple));
+
+        return y;
+    }
+
+}
@@ -49,4 +49,60 @@ public final class VigenereCipherImpl {
         return plaintext.toString();
     }
 
+    /**
+     * Same as {@link #encrypt(String, String)} for large texts, e.g. whole corpora. ASCII text with a keyword of
+     * letters runs on the Vector API when it is available, anything else takes the {@code String} path.
+     */
+    public static char[] encrypt(char[] plaintext, String keyword) {
+        int[] shifts = shifts(keyword);
+
+        if (shifts == null || !LetterKernels.upperCasesLikeString(plaintext))
+            return encrypt(new String(plaintext), keyword).toCharArray();
+
+        char[] output = new char[plaintext.length];
+        LetterKernels.INSTANCE.polyalphabetic(plaintext, output, shifts);
+        return output;
+    }
+
+    /**
+     * Same as {@link #decrypt(String, String)} for large texts, see {@link #encrypt(char[], String)}.
+     */
+    public static char[] decrypt(char[] ciphertext, String keyword) {
+        int[] shifts = shifts(keyword);
+
+        if (shifts == null || !LetterKernels.upperCasesLikeString(ciphertext))
+            return decrypt(new String(ciphertext), keyword).toCharArray();
+
+        // Shifting back by k is shifting forward by 26 - k
+        for (int i = 0; i < shifts.length; i++)
+            shifts[i] = (ALPHABET_SIZE - shifts[i]) % ALPHABET_SIZE;
+
+        char[] output = new char[ciphertext.length];
+        LetterKernels.INSTANCE.polyalphabetic(ciphertext, output, shifts);
+        return output;
+    }
+
+    /**
+     * Alphabet positions of the keyword letters, {@code null} if it is empty or has anything but ASCII letters.
+     */
+    private static int[] shifts(String keyword) {
+        if (keyword.isEmpty())
+            return null;
+
+        int[] shifts = new int[keyword.length()];
+
+        for (int i = 0; i < shifts.length; i++) {
+            char c = keyword.charAt(i);
+
+            if (c >= 'A' && c <= 'Z')
+                shifts[i] = c - 'A';
+            else if (c >= 'a' && c <= 'z')
+                shifts[i] = c - 'a';
+            else
+                return null;
+        }
+
+        return shifts;
+    }
+
 }
@@ -0,0 +1,238 @@
+package dev.masterflomaster1.jfxc.gui.job;
+
+import dev.masterflomaster1.jfxc.crypto.ProgressMonitor;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A unit of background work submitted to the {@link JobScheduler}.
+ *
+ * <p>The work reports processed bytes through the {@link ProgressMonitor} it receives. The scheduler turns these
+ * counters into progress, throughput and ETA and publishes them on the JavaFX Application Thread, so the properties
+ * of a job can be bound directly to controls.</p>
+ *
+ * @param <T> The result type of the work.
+ */
+public final class Job<T> implements ProgressMonitor, Runnable, Comparable<Job<?>> {
+
+    /**
+     * Weight of the latest sample in the smoothed throughput.
+     */
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private final ReadOnlyObjectWrapper<State> state = new ReadOnlyObjectWrapper<>(State.QUEUED);
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(-1);
+    private final ReadOnlyDoubleWrapper bytesPerSecond = new ReadOnlyDoubleWrapper();
+    private final ReadOnlyObjectWrapper<Duration> eta = new ReadOnlyObjectWrapper<>();
+
+    private final String title;
+    private final Priority priority;
+    private final long totalBytes;
+    private final long sequence;
+    private final Work<T> work;
+    private final JobScheduler scheduler;
+
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final AtomicLong bytesDone = new AtomicLong();
+
+    private volatile boolean cancelled;
+    private volatile State currentState = State.QUEUED;
+    private volatile long startNanos;
+
+    // Sampling state, only touched by the scheduler ticker
+    private long lastSampleNanos;
+    private long lastSampleBytes;
+    private double smoothedRate;
+
+    Job(String title, Priority priority, long totalBytes, long sequence, Work<T> work, JobScheduler scheduler) {
+        this.title = title;
+        this.priority = priority;
+        this.totalBytes = totalBytes;
+        this.sequence = sequence;
+        this.work = work;
+        this.scheduler = scheduler;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public ReadOnlyObjectProperty<State> stateProperty() {
+        return state.getReadOnlyProperty();
+    }
+
+    /**
+     * Fraction of the work done, or {@code -1} while the size of the work is unknown.
+     */
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
+    public ReadOnlyDoubleProperty bytesPerSecondProperty() {
+        return bytesPerSecond.getReadOnlyProperty();
+    }
+
+    /**
+     * Estimated time left, or {@code null} while it cannot be estimated.
+     */
+    public ReadOnlyObjectProperty<Duration> etaProperty() {
+        return eta.getReadOnlyProperty();
+    }
+
+    /**
+     * Completes with the result of the work, or exceptionally with a {@link CancellationException} or the failure.
+     */
+    public CompletableFuture<T> result() {
+        return result;
+    }
+
+    /**
+     * Removes a queued job from the scheduler or asks a running one to stop at the next chunk.
+     */
+    public void cancel() {
+        cancelled = true;
+
+        if (scheduler.dequeue(this))
+            finish(State.CANCELLED, null, new CancellationException());
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void worked(long bytes) {
+        bytesDone.addAndGet(bytes);
+    }
+
+    @Override
+    public void run() {
+        if (cancelled) {
+            finish(State.CANCELLED, null, new CancellationException());
+            return;
+        }
+
+        startNanos = System.nanoTime();
+        currentState = State.RUNNING;
+        Platform.runLater(() -> state.set(State.RUNNING));
+
+        try {
+            T value = work.run(this);
+
+            if (cancelled)
+                finish(State.CANCELLED, null, new CancellationException());
+            else
+                finish(State.SUCCEEDED, value, null);
+        } catch (Throwable e) {
+            // Work that notices the cancellation fails with whatever exception its I/O path wraps it in
+            if (cancelled)
+                finish(State.CANCELLED, null, new CancellationException());
+            else
+                finish(State.FAILED, null, e);
+        }
+    }
+
+    @Override
+    public int compareTo(Job<?> other) {
+        int byPriority = priority.compareTo(other.priority);
+        return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+    }
+
+    /**
+     * Takes a throughput sample and publishes it. Called periodically by the scheduler while the job is running.
+     */
+    void sample() {
+        if (currentState != State.RUNNING)
+            return;
+
+        long now = System.nanoTime();
+        long done = bytesDone.get();
+        double elapsed = (now - (lastSampleNanos == 0 ? startNanos : lastSampleNanos)) / 1e9;
+
+        if (elapsed <= 0)
+            return;
+
+        double rate = (done - lastSampleBytes) / elapsed;
+        smoothedRate = smoothedRate == 0 ? rate : smoothedRate + RATE_SMOOTHING * (rate - smoothedRate);
+        lastSampleNanos = now;
+        lastSampleBytes = done;
+
+        double fraction = totalBytes > 0 ? Math.min(1.0, (double) done / totalBytes) : -1;
+        Duration remaining = totalBytes > 0 && smoothedRate > 0
+                ? Duration.ofMillis((long) (Math.max(0, totalBytes - done) / smoothedRate * 1000))
+                : null;
+        double currentRate = smoothedRate;
+
+        Platform.runLater(() -> {
+            // A sample taken just before the job finished must not overwrite the final values
+            if (state.get().isDone())
+                return;
+
+            progress.set(fraction);
+            bytesPerSecond.set(currentRate);
+            eta.set(remaining);
+        });
+    }
+
+    private void finish(State finalState, T value, Throwable failure) {
+        currentState = finalState;
+        scheduler.finished(this);
+
+        Platform.runLater(() -> {
+            state.set(finalState);
+            bytesPerSecond.set(0);
+            eta.set(null);
+
+            if (finalState == State.SUCCEEDED)
+                progress.set(1);
+        });
+
+        if (failure == null)
+            result.complete(value);
+        else
+            result.completeExceptionally(failure);
+    }
+
+    /**
+     * The background work of a job.
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(ProgressMonitor monitor) throws Exception;
+    }
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED;
+
+        public boolean isDone() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /**
+     * Queued jobs are started in priority order, jobs of equal priority in submission order.
+     */
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+}
@@ -0,0 +1,103 @@
+package dev.masterflomaster1.jfxc.gui.job;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs long crypto operations off the JavaFX Application Thread.
+ *
+ * <p>Jobs run on a bounded pool of daemon threads, so several independent jobs make progress at the same time while
+ * the rest wait in a priority queue. Running jobs are sampled a few times per second to publish progress, throughput
+ * and ETA.</p>
+ *
+ * <p>You can use the default scheduler instance {@link #getInstance}, which is shared by all pages.</p>
+ */
+public final class JobScheduler {
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 250;
+
+    private static final JobScheduler INSTANCE =
+            new JobScheduler(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService sampler;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Set<Job<?>> active = ConcurrentHashMap.newKeySet();
+    private final ObservableList<Job<?>> jobs = FXCollections.observableArrayList();
+
+    public JobScheduler(int parallelism) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        // Jobs are Comparable, so the queue hands out the highest priority first
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "jfxc-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jfxc-job-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> active.forEach(Job::sample),
+                SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static JobScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues a job.
+     *
+     * @param title Short description shown to the user.
+     * @param priority Position of the job in the queue.
+     * @param totalBytes Amount of work reported through the monitor, or {@code 0} if unknown.
+     * @param work The work to run on a scheduler thread.
+     * @return The job, whose properties are updated on the JavaFX Application Thread.
+     */
+    public <T> Job<T> submit(String title, Job.Priority priority, long totalBytes, Job.Work<T> work) {
+        var job = new Job<>(title, priority, totalBytes, sequence.incrementAndGet(), work, this);
+
+        active.add(job);
+        Platform.runLater(() -> jobs.add(job));
+        executor.execute(job);
+
+        return job;
+    }
+
+    /**
+     * Jobs that are queued or running. Modified on the JavaFX Application Thread only.
+     */
+    public ObservableList<Job<?>> getJobs() {
+        return jobs;
+    }
+
+    public int getParallelism() {
+        return executor.getMaximumPoolSize();
+    }
+
+    boolean dequeue(Job<?> job) {
+        return executor.remove(job);
+    }
+
+    void finished(Job<?> job) {
+        active.remove(job);
+        Platform.runLater(() -> jobs.remove(job));
+    }
+
+}
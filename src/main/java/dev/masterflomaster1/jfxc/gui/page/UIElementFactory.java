@@ -3,20 +3,36 @@ package dev.masterflomaster1.jfxc.gui.page;
 import atlantafx.base.controls.ModalPane;
 import atlantafx.base.layout.InputGroup;
 import atlantafx.base.theme.Styles;
+import atlantafx.base.util.Animations;
+import atlantafx.base.util.BBCodeParser;
+import dev.masterflomaster1.jfxc.JFXCrypto;
 import dev.masterflomaster1.jfxc.crypto.SecurityUtils;
+import dev.masterflomaster1.jfxc.gui.job.Job;
+import dev.masterflomaster1.jfxc.gui.page.viewmodel.DirectoryBatchViewModel;
+import dev.masterflomaster1.jfxc.utils.StringUtils;
+import javafx.beans.binding.Bindings;
+import javafx.beans.value.ObservableValue;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.ClipboardContent;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 import org.kordamp.ikonli.bootstrapicons.BootstrapIcons;
 import org.kordamp.ikonli.feather.Feather;
 import org.kordamp.ikonli.javafx.FontIcon;
 
+import java.io.File;
 import java.util.HexFormat;
+import java.util.function.Consumer;
 
 public final class UIElementFactory {
 
@@ -114,4 +130,158 @@ public final class UIElementFactory {
         );
     }
 
+    /**
+     * Creates the directory section of the files pages.
+     *
+     * @param viewModel The state of the section.
+     * @param action Starts the job, receives {@code true} to encrypt and {@code false} to decrypt.
+     */
+    public static Node createDirectoryBatchSection(DirectoryBatchViewModel viewModel, Consumer<Boolean> action) {
+        var description = BBCodeParser.createFormattedText(
+                "Encrypt or decrypt every file of a directory tree with the settings above. Each file gets its own " +
+                        "IV derived from the IV above and its relative path, so keep the tree layout to decrypt it."
+        );
+
+        var sourceTextField = new TextField();
+        sourceTextField.setMinWidth(534);
+        sourceTextField.setPromptText("Select directory to encrypt or decrypt");
+        var sourceBrowseButton = new Button("Browse");
+        var sourceGroup = new InputGroup(
+                new Label("", new FontIcon(BootstrapIcons.FOLDER)),
+                sourceTextField,
+                sourceBrowseButton
+        );
+        sourceBrowseButton.setOnAction(event -> {
+            File directory = new DirectoryChooser().showDialog(JFXCrypto.getStage());
+
+            if (directory == null)
+                return;
+
+            viewModel.setSourceDirectory(directory);
+            sourceTextField.setText(directory.getAbsolutePath());
+        });
+
+        var destinationTextField = new TextField();
+        destinationTextField.setMinWidth(534);
+        destinationTextField.setPromptText("Save result tree to..");
+        var destinationBrowseButton = new Button("Browse");
+        var destinationGroup = new InputGroup(
+                new Label("", new FontIcon(BootstrapIcons.FOLDER)),
+                destinationTextField,
+                destinationBrowseButton
+        );
+        destinationBrowseButton.setOnAction(event -> {
+            File directory = new DirectoryChooser().showDialog(JFXCrypto.getStage());
+
+            if (directory == null)
+                return;
+
+            viewModel.setDestinationDirectory(directory);
+            destinationTextField.setText(directory.getAbsolutePath());
+        });
+
+        var encryptButton = new Button("Encrypt");
+        var decryptButton = new Button("Decrypt");
+        var cancelButton = new Button("Cancel");
+        encryptButton.setOnAction(event -> action.accept(true));
+        decryptButton.setOnAction(event -> action.accept(false));
+        cancelButton.setOnAction(event -> viewModel.cancel());
+
+        encryptButton.disableProperty().bind(viewModel.runningProperty());
+        decryptButton.disableProperty().bind(viewModel.runningProperty());
+        cancelButton.disableProperty().bind(viewModel.runningProperty().not());
+
+        var progressBar = new ProgressBar();
+        progressBar.setMinWidth(300);
+        progressBar.progressProperty().bind(viewModel.progressProperty());
+
+        var statusLabel = new Label();
+        statusLabel.textProperty().bind(viewModel.statusTextProperty());
+
+        var progressHBox = new HBox(20, progressBar, statusLabel);
+        progressHBox.setAlignment(Pos.CENTER_LEFT);
+
+        var failuresListView = new ListView<>(viewModel.getFailuresList());
+        failuresListView.setPlaceholder(new Label("No failed files"));
+        failuresListView.setMaxHeight(150);
+
+        viewModel.setEmptySourceDirectoryAnimation(Animations.wobble(sourceGroup));
+        viewModel.setEmptyDestinationDirectoryAnimation(Animations.wobble(destinationGroup));
+
+        return new VBox(
+                20,
+                description,
+                sourceGroup,
+                destinationGroup,
+                new HBox(20, encryptButton, decryptButton, cancelButton),
+                progressHBox,
+                failuresListView
+        );
+    }
+
+    /**
+     * Creates a progress bar with throughput, ETA and a cancel button that follows the job currently held by
+     * {@code job}. Hidden until the first job is submitted.
+     */
+    public static Node createJobStatusBar(ObservableValue<Job<?>> job) {
+        var progressBar = new ProgressBar(0);
+        progressBar.setMinWidth(300);
+
+        var statusLabel = new Label();
+
+        var cancelButton = new Button("Cancel");
+        cancelButton.getStyleClass().add(Styles.DANGER);
+
+        var hBox = new HBox(20, progressBar, statusLabel, cancelButton);
+        hBox.setAlignment(Pos.CENTER_LEFT);
+        hBox.setVisible(false);
+        hBox.managedProperty().bind(hBox.visibleProperty());
+
+        job.addListener((obs, old, current) -> {
+            progressBar.progressProperty().unbind();
+            statusLabel.textProperty().unbind();
+            cancelButton.disableProperty().unbind();
+
+            if (current == null) {
+                hBox.setVisible(false);
+                return;
+            }
+
+            progressBar.progressProperty().bind(current.progressProperty());
+            statusLabel.textProperty().bind(Bindings.createStringBinding(
+                    () -> formatJobStatus(current),
+                    current.stateProperty(),
+                    current.bytesPerSecondProperty(),
+                    current.etaProperty()
+            ));
+            cancelButton.disableProperty().bind(Bindings.createBooleanBinding(
+                    () -> current.stateProperty().get().isDone(),
+                    current.stateProperty()
+            ));
+            cancelButton.setOnAction(event -> current.cancel());
+            hBox.setVisible(true);
+        });
+
+        return hBox;
+    }
+
+    private static String formatJobStatus(Job<?> job) {
+        var state = job.stateProperty().get();
+
+        return switch (state) {
+            case QUEUED -> "Waiting for a free worker";
+            case RUNNING -> {
+                var eta = job.etaProperty().get();
+                var rate = "%s/s".formatted(StringUtils.convert((long) job.bytesPerSecondProperty().get()));
+
+                yield eta == null
+                        ? rate
+                        : "%s, ETA %d:%02d".formatted(rate, eta.toMinutes(), eta.toSecondsPart());
+            }
+            case SUCCEEDED -> "Done";
+            case FAILED -> "Failed";
+            case CANCELLED -> "Cancelled";
+        };
+    }
+
 }
@@ -16,6 +16,7 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
@@ -54,6 +55,12 @@ public class BlockCipherFilesPage extends SimplePage {
         super();
 
         addSection("Block Cipher File Encryption", mainSection());
+        addSection("Block Cipher Directory Encryption",
+                UIElementFactory.createDirectoryBatchSection(
+                        viewModel.getDirectoryBatch(),
+                        viewModel::directoryAction
+                )
+        );
         bindComponents();
 
         viewModel.onAlgorithmSelection(null);
@@ -161,11 +168,40 @@ public class BlockCipherFilesPage extends SimplePage {
                 ivGroup
         );
 
+        var headerCheckBox = new CheckBox("Self-describing header");
+        headerCheckBox.selectedProperty().bindBidirectional(viewModel.headerProperty());
+        Tooltip.install(headerCheckBox, new Tooltip("Store algorithm and IV in the encrypted file, so only the " +
+                "key is needed to decrypt it."));
+
+        var compressCheckBox = new CheckBox("Compress");
+        compressCheckBox.selectedProperty().bindBidirectional(viewModel.compressProperty());
+        compressCheckBox.disableProperty().bind(headerCheckBox.selectedProperty().not());
+        Tooltip.install(compressCheckBox, new Tooltip("Deflate the file before encryption. Skipped automatically " +
+                "for data that is already compressed."));
+
+        var compressionLevelComboBox = new ComboBox<Integer>();
+        compressionLevelComboBox.valueProperty().bindBidirectional(viewModel.compressionLevelComboBoxProperty());
+        Bindings.bindContent(compressionLevelComboBox.getItems(), viewModel.getCompressionLevelsList());
+        var compressionLevelGroup = new InputGroup(new Label("Level"), compressionLevelComboBox);
+        compressionLevelGroup.disableProperty().bind(
+                headerCheckBox.selectedProperty().and(compressCheckBox.selectedProperty()).not());
+
+        var resumableCheckBox = new CheckBox("Resumable");
+        resumableCheckBox.selectedProperty().bindBidirectional(viewModel.resumableProperty());
+        resumableCheckBox.disableProperty().bind(headerCheckBox.selectedProperty());
+        Tooltip.install(resumableCheckBox, new Tooltip("Write checkpoints while encrypting, so a cancelled or " +
+                "interrupted run continues where it stopped when started again."));
+
         var controlsHBox2 = new HBox(
                 20,
                 encryptButton,
-                decryptButton
+                decryptButton,
+                headerCheckBox,
+                compressCheckBox,
+                compressionLevelGroup,
+                resumableCheckBox
         );
+        controlsHBox2.setAlignment(Pos.CENTER_LEFT);
 
         var footerHBox = new HBox(
                 20,
@@ -185,6 +221,7 @@ public class BlockCipherFilesPage extends SimplePage {
                 cipherSettingsContainer,
                 keyGroup,
                 controlsHBox2,
+                UIElementFactory.createJobStatusBar(viewModel.jobProperty()),
                 footerHBox
         );
     }
@@ -4,34 +4,51 @@ import atlantafx.base.layout.InputGroup;
 import atlantafx.base.theme.Styles;
 import atlantafx.base.util.BBCodeParser;
 import dev.masterflomaster1.jfxc.JFXCrypto;
+import dev.masterflomaster1.jfxc.crypto.ChecksumVerifier;
+import dev.masterflomaster1.jfxc.crypto.UnkeyedCryptoHash;
 import dev.masterflomaster1.jfxc.gui.page.SimplePage;
 import dev.masterflomaster1.jfxc.gui.page.UIElementFactory;
 import dev.masterflomaster1.jfxc.gui.page.viewmodel.HashFilesViewModel;
-import javafx.beans.binding.Bindings;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.geometry.Orientation;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
 import javafx.scene.control.Separator;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.ToggleGroup;
+import javafx.scene.control.cell.CheckBoxListCell;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import org.kordamp.ikonli.bootstrapicons.BootstrapIcons;
 import org.kordamp.ikonli.javafx.FontIcon;
 
 import java.io.File;
+import java.util.List;
+import java.util.function.Function;
 
 public final class HashFilesPage extends SimplePage {
 
     public static final String NAME = "Hash Files";
 
-    private final ComboBox<String> hashComboBox = new ComboBox<>();
+    private final ListView<String> hashListView = new ListView<>();
+    private final CheckBox mappedCheckBox = new CheckBox("Memory-mapped");
+    private final CheckBox treeCheckBox = new CheckBox("Tree hash");
+    private final ComboBox<UnkeyedCryptoHash.TreeMode> treeModeComboBox = new ComboBox<>();
     private final TextArea outputTextArea = UIElementFactory.createOuputTextArea("Result", 100);
+    private final TextArea manifestOutputTextArea = UIElementFactory.createOuputTextArea("Summary", 100);
+    private final TableView<ChecksumVerifier.Result> verifyTableView = new TableView<>();
+    private final CheckBox stopOnFailureCheckBox = new CheckBox("Stop on first failure");
+    private final Label verifySummaryLabel = new Label();
 
     private final ToggleButton hexModeToggleBtn = new ToggleButton("Hex");
     private final ToggleButton b64ModeToggleBtn = new ToggleButton("Base64");
@@ -43,6 +60,8 @@ public final class HashFilesPage extends SimplePage {
     public HashFilesPage() {
         super();
         addSection("Hash Files", mainSection());
+        addSection("Directory Manifest", manifestSection());
+        addSection("Verify Checksums", verifySection());
         bindComponents();
 
         viewModel.onInit();
@@ -51,6 +70,8 @@ public final class HashFilesPage extends SimplePage {
     private Node mainSection() {
         var description = BBCodeParser.createFormattedText("""
             Calculation of hash function values for files using 60+ different algorithms. For large files operation may take some time.
+            All ticked algorithms are calculated in a single pass over the file. A tree hash splits the file into leaves
+            that are hashed on all cores at once, which is much faster for huge files.
             
             [ul]
             [li]For [code]HARAKA-256[/code] - input [color="-color-danger-fg"]must be exactly 32 bytes[/color].[/li]
@@ -89,25 +110,161 @@ public final class HashFilesPage extends SimplePage {
         var runButton = new Button("Run");
         runButton.setOnAction(event -> viewModel.action());
 
+        hashListView.setCellFactory(CheckBoxListCell.forListView(viewModel::algorithmSelectedProperty));
+        hashListView.setMaxHeight(150);
+
         var controlsHBox = new HBox(
-                20, hashComboBox, runButton, outputModeHBox
+                20, runButton, outputModeHBox, mappedCheckBox, treeCheckBox, treeModeComboBox
         );
 
         return new VBox(
                 20,
                 description,
                 fileInputGroup,
+                hashListView,
                 controlsHBox,
+                UIElementFactory.createJobStatusBar(viewModel.jobProperty()),
                 new Separator(Orientation.HORIZONTAL),
                 outputTextArea,
                 copyResultButton
         );
     }
 
+    private Node manifestSection() {
+        var description = BBCodeParser.createFormattedText("""
+            Write a [code]sha256sum[/code] compatible manifest of every file in a directory tree, check it with \
+            [code]sha256sum -c[/code]. A cache next to the manifest remembers size, modification time and inode of \
+            every file, so later runs only read files that changed. The Merkle root over the manifest tells at a \
+            glance whether anything changed."""
+        );
+
+        var directoryTextField = new TextField();
+        directoryTextField.setMinWidth(534);
+        directoryTextField.setPromptText("Select directory");
+        var directoryBrowseButton = new Button("Browse");
+        var directoryInputGroup = new InputGroup(
+                new Label("", new FontIcon(BootstrapIcons.FOLDER)), directoryTextField, directoryBrowseButton
+        );
+
+        directoryBrowseButton.setOnAction(event -> {
+            File directory = new DirectoryChooser().showDialog(JFXCrypto.getStage());
+
+            if (directory == null)
+                return;
+
+            viewModel.setManifestDirectory(directory);
+            directoryTextField.setText(directory.getAbsolutePath());
+        });
+
+        var manifestTextField = new TextField();
+        manifestTextField.setMinWidth(534);
+        manifestTextField.setPromptText("Select manifest file");
+        var manifestBrowseButton = new Button("Browse");
+        var manifestInputGroup = new InputGroup(
+                new Label("", new FontIcon(BootstrapIcons.FILE_EARMARK_TEXT)), manifestTextField, manifestBrowseButton
+        );
+
+        manifestBrowseButton.setOnAction(event -> {
+            var fileChooser = new FileChooser();
+            fileChooser.setInitialFileName("SHA256SUMS");
+            File file = fileChooser.showSaveDialog(JFXCrypto.getStage());
+
+            if (file == null)
+                return;
+
+            viewModel.setManifestFile(file);
+            manifestTextField.setText(file.getAbsolutePath());
+        });
+
+        var runButton = new Button("Run");
+        runButton.setOnAction(event -> viewModel.manifestAction());
+
+        return new VBox(
+                20,
+                description,
+                directoryInputGroup,
+                manifestInputGroup,
+                runButton,
+                UIElementFactory.createJobStatusBar(viewModel.manifestJobProperty()),
+                new Separator(Orientation.HORIZONTAL),
+                manifestOutputTextArea
+        );
+    }
+
+    private Node verifySection() {
+        var description = BBCodeParser.createFormattedText("""
+            Check the files listed in a [code]SHA256SUMS[/code] style file, as written by [code]sha256sum[/code], \
+            [code]md5sum[/code] and the like, with or without [code]--tag[/code]. The algorithm is taken from the \
+            tag, the file name or the digest length. Files are read in parallel and results appear as they come in."""
+        );
+
+        var checksumTextField = new TextField();
+        checksumTextField.setMinWidth(534);
+        checksumTextField.setPromptText("Select checksum file");
+        var checksumBrowseButton = new Button("Browse");
+        var checksumInputGroup = new InputGroup(
+                new Label("", new FontIcon(BootstrapIcons.FILE_EARMARK_CHECK)), checksumTextField, checksumBrowseButton
+        );
+
+        checksumBrowseButton.setOnAction(event -> {
+            File file = new FileChooser().showOpenDialog(JFXCrypto.getStage());
+
+            if (file == null)
+                return;
+
+            viewModel.setChecksumFile(file);
+            checksumTextField.setText(file.getAbsolutePath());
+        });
+
+        var runButton = new Button("Run");
+        runButton.setOnAction(event -> viewModel.verifyAction());
+
+        verifyTableView.getColumns().setAll(List.of(
+                createColumn("Status", 90, result -> result.status().name()),
+                createColumn("File", 300, result -> result.entry().path()),
+                createColumn("Algorithm", 110, result -> result.entry().algorithm()),
+                createColumn("Message", 300, ChecksumVerifier.Result::message)
+        ));
+        verifyTableView.setPlaceholder(new Label("No results"));
+        verifyTableView.setPrefHeight(300);
+        verifySummaryLabel.getStyleClass().add(Styles.TEXT_BOLD);
+
+        return new VBox(
+                20,
+                description,
+                checksumInputGroup,
+                new HBox(20, runButton, stopOnFailureCheckBox),
+                UIElementFactory.createJobStatusBar(viewModel.verifyJobProperty()),
+                new Separator(Orientation.HORIZONTAL),
+                verifySummaryLabel,
+                verifyTableView
+        );
+    }
+
+    private static TableColumn<ChecksumVerifier.Result, String> createColumn(
+            String title, double width, Function<ChecksumVerifier.Result, String> value) {
+        var column = new TableColumn<ChecksumVerifier.Result, String>(title);
+        column.setPrefWidth(width);
+        column.setCellValueFactory(cell -> new ReadOnlyStringWrapper(value.apply(cell.getValue())));
+        return column;
+    }
+
     private void bindComponents() {
         outputTextArea.textProperty().bindBidirectional(viewModel.outputTextProperty());
-        hashComboBox.valueProperty().bindBidirectional(viewModel.hashComboBoxPropertyProperty());
-        Bindings.bindContent(hashComboBox.getItems(), viewModel.hashAlgorithmsList());
+        manifestOutputTextArea.textProperty().bindBidirectional(viewModel.manifestOutputTextProperty());
+        verifyTableView.setItems(viewModel.verifyResultsList());
+        verifySummaryLabel.textProperty().bind(viewModel.verifySummaryTextProperty());
+        stopOnFailureCheckBox.selectedProperty().bindBidirectional(viewModel.stopOnFailureProperty());
+        hashListView.setItems(viewModel.hashAlgorithmsList());
+        mappedCheckBox.selectedProperty().bindBidirectional(viewModel.mappedProperty());
+        treeCheckBox.selectedProperty().bindBidirectional(viewModel.treeProperty());
+        treeModeComboBox.setItems(viewModel.treeModesList());
+        treeModeComboBox.valueProperty().bindBidirectional(viewModel.treeModeProperty());
+
+        // A tree hash replaces the ticked algorithms and reads the file its own way
+        treeModeComboBox.disableProperty().bind(treeCheckBox.selectedProperty().not());
+        hashListView.disableProperty().bind(treeCheckBox.selectedProperty());
+        mappedCheckBox.disableProperty().bind(treeCheckBox.selectedProperty());
         hexModeToggleBtn.selectedProperty().bindBidirectional(viewModel.hexModeToggleButtonPropertyProperty());
         b64ModeToggleBtn.selectedProperty().bindBidirectional(viewModel.b64ModeToggleButtonPropertyProperty());
 
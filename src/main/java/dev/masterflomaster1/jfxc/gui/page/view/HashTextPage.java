@@ -25,6 +25,7 @@ public final class HashTextPage extends SimplePage {
     public static final String NAME = "Hash Text";
 
     private final Map<String, TextField> fields = new HashMap<>();
+    private final Map<String, Label> timeLabels = new HashMap<>();
 
     private final TextField inputTextField = new TextField();
     private final ToggleButton hexModeToggleBtn = new ToggleButton("Hex");
@@ -45,7 +46,7 @@ public final class HashTextPage extends SimplePage {
 
     private Node mainSection() {
         var description = BBCodeParser.createFormattedText("""
-            Calculate hashes for input text
+            Calculate hashes for input text. All algorithms run in parallel, next to each result is the time it took.
             
             [ul]
             [li]For [code]HARAKA-256[/code] - input [color="-color-danger-fg"]must be exactly 32 bytes[/color].[/li]
@@ -95,9 +96,13 @@ public final class HashTextPage extends SimplePage {
             tf.setPrefWidth(500);
             tf.setEditable(false);
 
+            var timeLabel = new Label();
+            timeLabel.getStyleClass().add(Styles.TEXT_MUTED);
+
             fields.put(item, tf);
+            timeLabels.put(item, timeLabel);
 
-            grid.addRow(index, new Label(item), tf, UIElementFactory.createCopyButton(tf));
+            grid.addRow(index, new Label(item), tf, UIElementFactory.createCopyButton(tf), timeLabel);
             index++;
         }
 
@@ -117,6 +122,13 @@ public final class HashTextPage extends SimplePage {
             textField.textProperty().bindBidirectional(stringProperty);
         });
 
+        timeLabels.forEach((algo, label) -> {
+            var stringProperty = new SimpleStringProperty();
+
+            viewModel.getHashTimeMap().put(algo, stringProperty);
+            label.textProperty().bind(stringProperty);
+        });
+
         hexModeToggleBtn.setSelected(true);
         toggleGroup.selectedToggleProperty().addListener(viewModel::onToggleChanged);
     }
@@ -121,6 +121,7 @@ public final class Pbkdf2Page extends SimplePage {
                 description,
                 container,
                 runButton,
+                UIElementFactory.createJobStatusBar(viewModel.jobProperty()),
                 outputTextArea,
                 footerHBox
         );
@@ -6,6 +6,7 @@ import atlantafx.base.layout.ModalBox;
 import atlantafx.base.util.Animations;
 import atlantafx.base.util.BBCodeParser;
 import dev.masterflomaster1.jfxc.JFXCrypto;
+import dev.masterflomaster1.jfxc.crypto.VectorSupport;
 import dev.masterflomaster1.jfxc.gui.page.SimplePage;
 import dev.masterflomaster1.jfxc.gui.page.UIElementFactory;
 import dev.masterflomaster1.jfxc.gui.page.viewmodel.StreamCipherFilesViewModel;
@@ -15,6 +16,7 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
@@ -50,6 +52,12 @@ public class StreamCipherFilesPage extends SimplePage {
         super();
 
         addSection("Stream Cipher File Encryption", mainSection());
+        addSection("Stream Cipher Directory Encryption",
+                UIElementFactory.createDirectoryBatchSection(
+                        viewModel.getDirectoryBatch(),
+                        viewModel::directoryAction
+                )
+        );
         bindComponents();
 
         onAlgorithmSelection();
@@ -145,11 +153,49 @@ public class StreamCipherFilesPage extends SimplePage {
                 ivGroup
         );
 
+        var headerCheckBox = new CheckBox("Self-describing header");
+        headerCheckBox.selectedProperty().bindBidirectional(viewModel.headerProperty());
+        Tooltip.install(headerCheckBox, new Tooltip("Store algorithm and IV in the encrypted file, so only the " +
+                "key is needed to decrypt it."));
+
+        var compressCheckBox = new CheckBox("Compress");
+        compressCheckBox.selectedProperty().bindBidirectional(viewModel.compressProperty());
+        compressCheckBox.disableProperty().bind(headerCheckBox.selectedProperty().not());
+        Tooltip.install(compressCheckBox, new Tooltip("Deflate the file before encryption. Skipped automatically " +
+                "for data that is already compressed."));
+
+        var compressionLevelComboBox = new ComboBox<Integer>();
+        compressionLevelComboBox.valueProperty().bindBidirectional(viewModel.compressionLevelComboBoxProperty());
+        Bindings.bindContent(compressionLevelComboBox.getItems(), viewModel.getCompressionLevelsList());
+        var compressionLevelGroup = new InputGroup(new Label("Level"), compressionLevelComboBox);
+        compressionLevelGroup.disableProperty().bind(
+                headerCheckBox.selectedProperty().and(compressCheckBox.selectedProperty()).not());
+
+        var simdCheckBox = new CheckBox("SIMD engine");
+        simdCheckBox.selectedProperty().bindBidirectional(viewModel.simdProperty());
+        simdCheckBox.disableProperty().bind(
+                viewModel.simdAvailableProperty().not().or(headerCheckBox.selectedProperty()));
+        Tooltip.install(simdCheckBox, new Tooltip("Compute several ChaCha20 or Salsa20 blocks per step instead of " +
+                "using BouncyCastle, same output. Running on: " + VectorSupport.describeBackend()));
+
+        var segmentedCheckBox = new CheckBox("Segmented container");
+        segmentedCheckBox.selectedProperty().bindBidirectional(viewModel.segmentedProperty());
+        segmentedCheckBox.disableProperty().bind(
+                viewModel.segmentedAvailableProperty().not().or(headerCheckBox.selectedProperty()));
+        Tooltip.install(segmentedCheckBox, new Tooltip("Seal the file in independently authenticated segments, so " +
+                "decryption does not hold the whole file in memory. Uses a nonce of its own instead of the IV."));
+
         var controlsHBox2 = new HBox(
                 20,
                 encryptButton,
-                decryptButton
+                decryptButton,
+                headerCheckBox,
+                compressCheckBox,
+                compressionLevelGroup,
+                simdCheckBox,
+                segmentedCheckBox
         );
+        controlsHBox2.setAlignment(Pos.CENTER_LEFT);
 
         var footerHBox = new HBox(
                 20,
@@ -169,6 +215,7 @@ public class StreamCipherFilesPage extends SimplePage {
                 cipherSettingsContainer,
                 keyGroup,
                 controlsHBox2,
+                UIElementFactory.createJobStatusBar(viewModel.jobProperty()),
                 footerHBox
         );
     }
@@ -6,6 +6,7 @@ import atlantafx.base.layout.ModalBox;
 import atlantafx.base.theme.Styles;
 import atlantafx.base.util.Animations;
 import atlantafx.base.util.BBCodeParser;
+import dev.masterflomaster1.jfxc.crypto.VectorSupport;
 import dev.masterflomaster1.jfxc.gui.page.SimplePage;
 import dev.masterflomaster1.jfxc.gui.page.UIElementFactory;
 import dev.masterflomaster1.jfxc.gui.page.viewmodel.StreamCipherTextViewModel;
@@ -15,6 +16,7 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
@@ -40,6 +42,7 @@ public class StreamCipherTextPage extends SimplePage {
     private final ComboBox<String> streamCipherComboBox = new ComboBox<>();
     private final ToggleButton hexModeToggleBtn = new ToggleButton("Hex");
     private final ToggleButton b64ModeToggleBtn = new ToggleButton("Base64");
+    private final CheckBox simdCheckBox = new CheckBox("SIMD engine");
 
     private Timeline emptyIvAnimation;
     private Timeline emptyKeyAnimation;
@@ -113,9 +116,13 @@ public class StreamCipherTextPage extends SimplePage {
                 keyGroup
         );
 
+        Tooltip.install(simdCheckBox, new Tooltip("Compute several ChaCha20 or Salsa20 blocks per step instead of " +
+                "using BouncyCastle, same output. Running on: " + VectorSupport.describeBackend()));
+
         var controlsHBox2 = new HBox(
-                20, encryptButton, decryptButton
+                20, encryptButton, decryptButton, simdCheckBox
         );
+        controlsHBox2.setAlignment(Pos.CENTER_LEFT);
 
         toggleGroup = new ToggleGroup();
         hexModeToggleBtn.setToggleGroup(toggleGroup);
@@ -168,6 +175,8 @@ public class StreamCipherTextPage extends SimplePage {
 
         hexModeToggleBtn.selectedProperty().bindBidirectional(viewModel.hexModeToggleButtonPropertyProperty());
         b64ModeToggleBtn.selectedProperty().bindBidirectional(viewModel.b64ModeToggleButtonPropertyProperty());
+        simdCheckBox.selectedProperty().bindBidirectional(viewModel.simdProperty());
+        simdCheckBox.disableProperty().bind(viewModel.simdAvailableProperty().not());
         toggleGroup.selectedToggleProperty().addListener(viewModel::onToggleChanged);
         hexModeToggleBtn.setSelected(true);
     }
@@ -1,11 +1,21 @@
 package dev.masterflomaster1.jfxc.gui.page.viewmodel;
 
 import dev.masterflomaster1.jfxc.MemCache;
+import dev.masterflomaster1.jfxc.crypto.BatchFileProcessor;
 import dev.masterflomaster1.jfxc.crypto.BlockCipherImpl;
+import dev.masterflomaster1.jfxc.crypto.CompressionStage;
+import dev.masterflomaster1.jfxc.crypto.EncryptedFileHeader;
+import dev.masterflomaster1.jfxc.crypto.FileOperations;
+import dev.masterflomaster1.jfxc.crypto.ResumableEncryption;
 import dev.masterflomaster1.jfxc.crypto.SecurityUtils;
+import dev.masterflomaster1.jfxc.gui.job.Job;
+import dev.masterflomaster1.jfxc.gui.job.JobScheduler;
 import dev.masterflomaster1.jfxc.utils.StringUtils;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
@@ -15,6 +25,8 @@ import javafx.event.ActionEvent;
 
 import java.io.File;
 import java.util.HexFormat;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BlockCipherFilesViewModel extends AbstractViewModel {
 
@@ -29,6 +41,14 @@ public class BlockCipherFilesViewModel extends AbstractViewModel {
     private final ObjectProperty<Integer> keyLengthComboBoxProperty = new SimpleObjectProperty<>();
     private final ObservableList<Integer> keyLengthList = FXCollections.observableArrayList();
     private final StringProperty counterText = new SimpleStringProperty();
+    private final DirectoryBatchViewModel directoryBatch = new DirectoryBatchViewModel();
+    private final ObjectProperty<Job<?>> job = new SimpleObjectProperty<>();
+    private final BooleanProperty headerProperty = new SimpleBooleanProperty();
+    private final BooleanProperty compressProperty = new SimpleBooleanProperty();
+    private final ObjectProperty<Integer> compressionLevelComboBoxProperty = new SimpleObjectProperty<>();
+    private final ObservableList<Integer> compressionLevelsList = FXCollections.observableArrayList(
+            1, 2, 3, 4, 5, 6, 7, 8, 9);
+    private final BooleanProperty resumableProperty = new SimpleBooleanProperty();
 
     private Timeline emptyIvAnimation;
     private Timeline emptyTargetFileAnimation;
@@ -63,6 +83,40 @@ public class BlockCipherFilesViewModel extends AbstractViewModel {
         return counterText;
     }
 
+    public BooleanProperty headerProperty() {
+        return headerProperty;
+    }
+
+    /**
+     * Deflate the file before encrypting it. Needs the header, which tells the decrypt side to inflate.
+     */
+    public BooleanProperty compressProperty() {
+        return compressProperty;
+    }
+
+    public ObjectProperty<Integer> compressionLevelComboBoxProperty() {
+        return compressionLevelComboBoxProperty;
+    }
+
+    public ObservableList<Integer> getCompressionLevelsList() {
+        return compressionLevelsList;
+    }
+
+    /**
+     * Encrypt through a checkpoint journal that lets an interrupted run continue. Not combined with the header.
+     */
+    public BooleanProperty resumableProperty() {
+        return resumableProperty;
+    }
+
+    public ObjectProperty<Job<?>> jobProperty() {
+        return job;
+    }
+
+    public DirectoryBatchViewModel getDirectoryBatch() {
+        return directoryBatch;
+    }
+
     public ObjectProperty<String> blockCipherComboBoxProperty() {
         return blockCipherComboBoxProperty;
     }
@@ -95,8 +149,28 @@ public class BlockCipherFilesViewModel extends AbstractViewModel {
         return keyLengthList;
     }
 
+    /**
+     * Selects the file to process. If it starts with a self-describing header, the cipher settings are taken from it.
+     */
     public void setTargetFile(File targetFile) {
         this.targetFile = targetFile;
+
+        if (!EncryptedFileHeader.isPresent(targetFile.toPath()))
+            return;
+
+        try {
+            var header = EncryptedFileHeader.inspect(targetFile.toPath());
+
+            if (header.type() != EncryptedFileHeader.Type.BLOCK)
+                return;
+
+            blockCipherComboBoxProperty.set(header.algorithm());
+            modesComboBoxProperty.set(header.mode().getMode());
+            paddingsComboBoxProperty.set(header.padding().getPadding());
+            ivText.set(HexFormat.of().formatHex(header.iv()));
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+        }
     }
 
     public void setDestinationFile(File destinationFile) {
@@ -156,31 +230,106 @@ public class BlockCipherFilesViewModel extends AbstractViewModel {
         var padding = BlockCipherImpl.Padding.fromString(paddingsComboBoxProperty.get());
         var iv = HexFormat.of().parseHex(ivText.get());
 
-        if (encrypt) {
-            BlockCipherImpl.nioEncrypt(
-                    targetFile.getAbsolutePath(),
-                    destinationFile.getAbsolutePath(),
-                    algo,
-                    mode,
-                    padding,
-                    iv,
-                    key
-            );
-
-            counterText.set("Encoded %s".formatted(StringUtils.convert(destinationFile.length())));
-        } else {
-            BlockCipherImpl.nioDecrypt(
-                    targetFile.getAbsolutePath(),
-                    destinationFile.getAbsolutePath(),
-                    algo,
-                    mode,
-                    padding,
-                    iv,
-                    key
-            );
-
-            counterText.set("Decoded %s".formatted(StringUtils.convert(destinationFile.length())));
+        var target = targetFile.toPath();
+        var destination = destinationFile;
+        var writeHeader = headerProperty.get();
+        var compression = compressProperty.get()
+                ? EncryptedFileHeader.Compression.deflate(compressionLevelComboBoxProperty.get())
+                : null;
+        var resumable = encrypt && !writeHeader && resumableProperty.get();
+        var resumedFrom = new AtomicLong();
+
+        Job<CompressionStage.Stats> fileJob = JobScheduler.getInstance().submit(
+                "%s %s".formatted(encrypt ? "Encrypt" : "Decrypt", targetFile.getName()),
+                Job.Priority.NORMAL,
+                targetFile.length(),
+                monitor -> {
+                    if (encrypt && writeHeader) {
+                        return EncryptedFileHeader.forBlockCipher(algo, mode, padding, iv)
+                                .withCompression(compression)
+                                .encrypt(target, destination.toPath(), key, monitor);
+                    } else if (!encrypt && EncryptedFileHeader.isPresent(target)) {
+                        // The header carries the cipher settings, only the key is taken from the form
+                        return EncryptedFileHeader.decrypt(target, destination.toPath(), key, monitor).stats();
+                    } else if (resumable) {
+                        resumedFrom.set(BlockCipherImpl.resumableEncrypt(target.toString(),
+                                destination.getAbsolutePath(), algo, mode, padding, iv, key, monitor).resumedFrom());
+                    } else if (encrypt) {
+                        BlockCipherImpl.nioEncrypt(target.toString(), destination.getAbsolutePath(), algo, mode,
+                                padding, iv, key, FileOperations.IoMode.AUTO, monitor);
+                    } else {
+                        BlockCipherImpl.nioDecrypt(target.toString(), destination.getAbsolutePath(), algo, mode,
+                                padding, iv, key, FileOperations.IoMode.AUTO, monitor);
+                    }
+                    return null;
+                }
+        );
+
+        job.set(fileJob);
+        counterText.set("");
+        fileJob.result().whenComplete((stats, e) -> {
+            String text = resumable
+                    ? formatResumableResult(e, resumedFrom.get(), destination)
+                    : formatResult(e, stats, encrypt ? "Encoded" : "Decoded", destination);
+            Platform.runLater(() -> counterText.set(text));
+        });
+    }
+
+    /**
+     * Runs on the job thread, so the partial output of a cancelled job is removed before the UI is updated.
+     */
+    private static String formatResult(Throwable e, CompressionStage.Stats stats, String verb, File destination) {
+        if (e == null && stats != null && stats.compressed())
+            return "%s %s, compressed %.1fx, %d ms cipher time saved".formatted(verb,
+                    StringUtils.convert(destination.length()), stats.ratio(), stats.timeSaved().toMillis());
+
+        if (e == null)
+            return "%s %s".formatted(verb, StringUtils.convert(destination.length()));
+
+        if (e instanceof CancellationException) {
+            destination.delete();
+            return "Cancelled";
         }
+
+        return "Failed: %s".formatted(e.getMessage());
+    }
+
+    /**
+     * A cancelled resumable job keeps its partial output and checkpoint for the next run.
+     */
+    private static String formatResumableResult(Throwable e, long resumedFrom, File destination) {
+        if (e == null && resumedFrom > 0)
+            return "Encoded %s, resumed at %s".formatted(StringUtils.convert(destination.length()),
+                    StringUtils.convert(resumedFrom));
+
+        if (e == null)
+            return "Encoded %s".formatted(StringUtils.convert(destination.length()));
+
+        if (e instanceof CancellationException)
+            return ResumableEncryption.hasCheckpoint(destination.toPath())
+                    ? "Cancelled, encrypt again to resume"
+                    : "Cancelled";
+
+        return "Failed: %s".formatted(e.getMessage());
+    }
+
+    public void directoryAction(boolean encrypt) {
+        if (!directoryBatch.validate())
+            return;
+
+        var algo = blockCipherComboBoxProperty.get();
+        var mode = BlockCipherImpl.Mode.fromString(modesComboBoxProperty.get());
+
+        if (mode != BlockCipherImpl.Mode.ECB && ivText.get().isEmpty()) {
+            emptyIvAnimation.playFromStart();
+            return;
+        }
+
+        byte[] key = HexFormat.of().parseHex(keyText.get());
+        var padding = BlockCipherImpl.Padding.fromString(paddingsComboBoxProperty.get());
+        var iv = HexFormat.of().parseHex(ivText.get());
+
+        directoryBatch.start(BatchFileProcessor.blockCipher(encrypt, algo, mode, padding, iv, key));
     }
 
     @Override
@@ -190,6 +339,11 @@ public class BlockCipherFilesViewModel extends AbstractViewModel {
         modesComboBoxProperty.set(modesList.get(MemCache.readInteger("block.files.mode", 0)));
         paddingsComboBoxProperty.set(paddingsList.get(MemCache.readInteger("block.files.padding", 0)));
         ivText.set(MemCache.readString("block.files.iv", ""));
+        headerProperty.set(MemCache.readBoolean("block.files.header", false));
+        compressProperty.set(MemCache.readBoolean("block.files.compress", false));
+        compressionLevelComboBoxProperty.set(compressionLevelsList.get(
+                MemCache.readInteger("block.files.compress.level", CompressionStage.DEFAULT_LEVEL - 1)));
+        resumableProperty.set(MemCache.readBoolean("block.files.resumable", false));
     }
 
     @Override
@@ -199,5 +353,10 @@ public class BlockCipherFilesViewModel extends AbstractViewModel {
         MemCache.writeInteger("block.files.mode", modesList.indexOf(modesComboBoxProperty.get()));
         MemCache.writeInteger("block.files.padding", paddingsList.indexOf(paddingsComboBoxProperty.get()));
         MemCache.writeString("block.files.iv", ivText.get());
+        MemCache.writeBoolean("block.files.header", headerProperty.get());
+        MemCache.writeBoolean("block.files.compress", compressProperty.get());
+        MemCache.writeInteger("block.files.compress.level",
+                compressionLevelsList.indexOf(compressionLevelComboBoxProperty.get()));
+        MemCache.writeBoolean("block.files.resumable", resumableProperty.get());
     }
 }
@@ -0,0 +1,144 @@
+package dev.masterflomaster1.jfxc.gui.page.viewmodel;
+
+import dev.masterflomaster1.jfxc.crypto.BatchFileProcessor;
+import dev.masterflomaster1.jfxc.utils.StringUtils;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Shared state of the directory section on the block and stream cipher files pages.
+ */
+public class DirectoryBatchViewModel {
+
+    private final StringProperty statusText = new SimpleStringProperty();
+    private final DoubleProperty progress = new SimpleDoubleProperty();
+    private final BooleanProperty running = new SimpleBooleanProperty();
+    private final ObservableList<String> failuresList = FXCollections.observableArrayList();
+
+    private Timeline emptySourceDirectoryAnimation;
+    private Timeline emptyDestinationDirectoryAnimation;
+
+    private File sourceDirectory;
+    private File destinationDirectory;
+
+    private BatchFileProcessor.Job job;
+
+    public StringProperty statusTextProperty() {
+        return statusText;
+    }
+
+    public DoubleProperty progressProperty() {
+        return progress;
+    }
+
+    public BooleanProperty runningProperty() {
+        return running;
+    }
+
+    public ObservableList<String> getFailuresList() {
+        return failuresList;
+    }
+
+    public void setSourceDirectory(File sourceDirectory) {
+        this.sourceDirectory = sourceDirectory;
+    }
+
+    public void setDestinationDirectory(File destinationDirectory) {
+        this.destinationDirectory = destinationDirectory;
+    }
+
+    public void setEmptySourceDirectoryAnimation(Timeline emptySourceDirectoryAnimation) {
+        this.emptySourceDirectoryAnimation = emptySourceDirectoryAnimation;
+    }
+
+    public void setEmptyDestinationDirectoryAnimation(Timeline emptyDestinationDirectoryAnimation) {
+        this.emptyDestinationDirectoryAnimation = emptyDestinationDirectoryAnimation;
+    }
+
+    /**
+     * Plays the matching animation and returns {@code false} if a directory is missing or a job is already running.
+     */
+    public boolean validate() {
+        if (running.get())
+            return false;
+
+        if (sourceDirectory == null) {
+            emptySourceDirectoryAnimation.playFromStart();
+            return false;
+        }
+
+        if (destinationDirectory == null) {
+            emptyDestinationDirectoryAnimation.playFromStart();
+            return false;
+        }
+
+        return true;
+    }
+
+    public void start(BatchFileProcessor.FileAction action) {
+        failuresList.clear();
+        progress.set(0);
+        statusText.set("Scanning %s".formatted(sourceDirectory.getName()));
+        running.set(true);
+
+        job = BatchFileProcessor.start(
+                sourceDirectory.toPath(),
+                destinationDirectory.toPath(),
+                action,
+                p -> Platform.runLater(() -> onProgress(p))
+        );
+
+        job.completion().whenComplete((report, e) -> Platform.runLater(() -> {
+            running.set(false);
+
+            if (e != null) {
+                statusText.set("Failed: %s".formatted(e.getMessage()));
+                return;
+            }
+
+            report.failures().forEach(f -> failuresList.add("%s: %s".formatted(f.path(), f.message())));
+            statusText.set("%s %d files (%s) in %s, %d failed".formatted(
+                    report.cancelled() ? "Cancelled after" : "Processed",
+                    report.filesProcessed(),
+                    StringUtils.convert(report.bytesProcessed()),
+                    formatDuration(report.elapsed()),
+                    report.failures().size()
+            ));
+        }));
+    }
+
+    public void cancel() {
+        if (job != null)
+            job.cancel();
+    }
+
+    private void onProgress(BatchFileProcessor.Progress p) {
+        if (!running.get())
+            return;
+
+        progress.set(p.fraction());
+        statusText.set("%d / %d files, %.0f files/s, %s/s, ETA %s".formatted(
+                p.filesDone(),
+                p.filesTotal(),
+                p.filesPerSecond(),
+                StringUtils.convert((long) p.bytesPerSecond()),
+                formatDuration(p.eta())
+        ));
+    }
+
+    private static String formatDuration(Duration duration) {
+        long seconds = duration.toSeconds();
+        return "%d:%02d:%02d".formatted(seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+    }
+}
@@ -1,8 +1,14 @@
 package dev.masterflomaster1.jfxc.gui.page.viewmodel;
 
 import dev.masterflomaster1.jfxc.MemCache;
+import dev.masterflomaster1.jfxc.crypto.ChecksumVerifier;
+import dev.masterflomaster1.jfxc.crypto.DirectoryManifest;
 import dev.masterflomaster1.jfxc.crypto.SecurityUtils;
 import dev.masterflomaster1.jfxc.crypto.UnkeyedCryptoHash;
+import dev.masterflomaster1.jfxc.gui.job.Job;
+import dev.masterflomaster1.jfxc.gui.job.JobScheduler;
+import dev.masterflomaster1.jfxc.utils.StringUtils;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
@@ -16,20 +22,54 @@ import javafx.scene.control.Toggle;
 import javafx.scene.control.ToggleButton;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 public class HashFilesViewModel extends AbstractViewModel {
 
     private final StringProperty outputText = new SimpleStringProperty();
-    private final ObjectProperty<String> hashComboBoxProperty = new SimpleObjectProperty<>();
     private final ObservableList<String> hashAlgorithmsList = FXCollections.observableArrayList();
+    private final Map<String, BooleanProperty> selectedAlgorithms = new HashMap<>();
+    private final BooleanProperty mappedProperty = new SimpleBooleanProperty();
+
+    private final BooleanProperty treeProperty = new SimpleBooleanProperty();
+    private final ObjectProperty<UnkeyedCryptoHash.TreeMode> treeModeProperty = new SimpleObjectProperty<>();
+    private final ObservableList<UnkeyedCryptoHash.TreeMode> treeModesList =
+            FXCollections.observableArrayList(UnkeyedCryptoHash.TreeMode.values());
 
     private final BooleanProperty hexModeToggleButtonProperty = new SimpleBooleanProperty();
     private final BooleanProperty b64ModeToggleButtonProperty = new SimpleBooleanProperty();
 
+    private final ObjectProperty<Job<?>> job = new SimpleObjectProperty<>();
+
     private File selectedFile;
 
+    private final StringProperty manifestOutputText = new SimpleStringProperty();
+    private final ObjectProperty<Job<?>> manifestJob = new SimpleObjectProperty<>();
+
+    private File manifestDirectory;
+    private File manifestFile;
+
+    private final ObservableList<ChecksumVerifier.Result> verifyResultsList = FXCollections.observableArrayList();
+    private final StringProperty verifySummaryText = new SimpleStringProperty();
+    private final BooleanProperty stopOnFailureProperty = new SimpleBooleanProperty();
+    private final ObjectProperty<Job<?>> verifyJob = new SimpleObjectProperty<>();
+
+    /**
+     * The latest verification, only touched on the FX thread. Results of a run that has been replaced are dropped.
+     */
+    private VerifyRun verifyRun;
+
+    private File checksumFile;
+
     public HashFilesViewModel() {
         hashAlgorithmsList.setAll(SecurityUtils.getDigests());
     }
@@ -38,14 +78,39 @@ public class HashFilesViewModel extends AbstractViewModel {
         return outputText;
     }
 
-    public ObjectProperty<String> hashComboBoxPropertyProperty() {
-        return hashComboBoxProperty;
-    }
-
     public ObservableList<String> hashAlgorithmsList() {
         return hashAlgorithmsList;
     }
 
+    /**
+     * Ticked algorithms are all computed from a single pass over the file.
+     */
+    public BooleanProperty algorithmSelectedProperty(String algorithm) {
+        return selectedAlgorithms.computeIfAbsent(algorithm, key -> new SimpleBooleanProperty());
+    }
+
+    /**
+     * Memory-map the file instead of reading it into heap buffers.
+     */
+    public BooleanProperty mappedProperty() {
+        return mappedProperty;
+    }
+
+    /**
+     * Hash the file as a tree on all cores instead of with the ticked algorithms.
+     */
+    public BooleanProperty treeProperty() {
+        return treeProperty;
+    }
+
+    public ObjectProperty<UnkeyedCryptoHash.TreeMode> treeModeProperty() {
+        return treeModeProperty;
+    }
+
+    public ObservableList<UnkeyedCryptoHash.TreeMode> treeModesList() {
+        return treeModesList;
+    }
+
     public BooleanProperty hexModeToggleButtonPropertyProperty() {
         return hexModeToggleButtonProperty;
     }
@@ -54,10 +119,50 @@ public class HashFilesViewModel extends AbstractViewModel {
         return b64ModeToggleButtonProperty;
     }
 
+    public ObjectProperty<Job<?>> jobProperty() {
+        return job;
+    }
+
     public void setSelectedFile(File selectedFile) {
         this.selectedFile = selectedFile;
     }
 
+    public StringProperty manifestOutputTextProperty() {
+        return manifestOutputText;
+    }
+
+    public ObjectProperty<Job<?>> manifestJobProperty() {
+        return manifestJob;
+    }
+
+    public void setManifestDirectory(File manifestDirectory) {
+        this.manifestDirectory = manifestDirectory;
+    }
+
+    public void setManifestFile(File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    public ObservableList<ChecksumVerifier.Result> verifyResultsList() {
+        return verifyResultsList;
+    }
+
+    public StringProperty verifySummaryTextProperty() {
+        return verifySummaryText;
+    }
+
+    public BooleanProperty stopOnFailureProperty() {
+        return stopOnFailureProperty;
+    }
+
+    public ObjectProperty<Job<?>> verifyJobProperty() {
+        return verifyJob;
+    }
+
+    public void setChecksumFile(File checksumFile) {
+        this.checksumFile = checksumFile;
+    }
+
     @SuppressWarnings("unused")
     public void onToggleChanged(ObservableValue<? extends Toggle> observable, Toggle oldValue, Toggle newValue) {
         if (newValue == null) {
@@ -82,15 +187,155 @@ public class HashFilesViewModel extends AbstractViewModel {
         if (selectedFile == null)
             return;
 
-        var completableFuture = UnkeyedCryptoHash.asyncHash(hashComboBoxProperty.get(), selectedFile.getAbsolutePath());
-        completableFuture
-                .thenAccept(hash -> outputText.set(formatOutput(hash)))
+        var path = selectedFile.toPath();
+        var algorithms = getSelectedAlgorithms();
+        var mapped = mappedProperty.get();
+        var treeMode = treeProperty.get() ? treeModeProperty.get() : null;
+
+        if (treeMode == null && algorithms.isEmpty())
+            return;
+
+        Job.Work<Map<String, byte[]>> work = treeMode != null
+                ? monitor -> Map.of(treeMode.toString(), UnkeyedCryptoHash.treeHash(treeMode, path, monitor))
+                : monitor -> UnkeyedCryptoHash.hash(algorithms, path, mapped, monitor);
+
+        Job<Map<String, byte[]>> hashJob = JobScheduler.getInstance().submit(
+                "Hash %s".formatted(selectedFile.getName()),
+                Job.Priority.NORMAL,
+                selectedFile.length(),
+                work
+        );
+
+        job.set(hashJob);
+        hashJob.result()
+                .thenAccept(hashes -> Platform.runLater(() -> outputText.set(formatOutput(hashes))))
                 .exceptionally(ex -> {
                     System.out.println(ex.getMessage());
                     return null;
                 });
     }
 
+    /**
+     * Writes the checksum manifest of the selected directory, only files changed since the last run are read.
+     */
+    public void manifestAction() {
+        if (manifestDirectory == null || manifestFile == null)
+            return;
+
+        var root = manifestDirectory.toPath();
+        var manifest = manifestFile.toPath();
+
+        Job<DirectoryManifest.Result> updateJob = JobScheduler.getInstance().submit(
+                "Manifest of %s".formatted(manifestDirectory.getName()),
+                Job.Priority.NORMAL,
+                0,
+                monitor -> DirectoryManifest.update(root, manifest, monitor)
+        );
+
+        manifestJob.set(updateJob);
+        updateJob.result()
+                .thenAccept(result -> Platform.runLater(() -> manifestOutputText.set(formatManifest(result))))
+                .exceptionally(ex -> {
+                    System.out.println(ex.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Checks every file listed in the selected checksum file, results show up in the table as they come in.
+     */
+    public void verifyAction() {
+        if (checksumFile == null)
+            return;
+
+        var path = checksumFile.toPath();
+        var stopOnFailure = stopOnFailureProperty.get();
+
+        var previous = verifyJob.get();
+        if (previous != null)
+            previous.cancel();
+
+        var run = new VerifyRun();
+        verifyRun = run;
+        verifyResultsList.clear();
+        verifySummaryText.set("");
+
+        Job<ChecksumVerifier.Summary> checkJob = JobScheduler.getInstance().submit(
+                "Verify %s".formatted(checksumFile.getName()),
+                Job.Priority.NORMAL,
+                0,
+                monitor -> ChecksumVerifier.verify(
+                        path, ChecksumVerifier.DEFAULT_IO_CONCURRENCY, stopOnFailure, run::publish, monitor)
+        );
+
+        verifyJob.set(checkJob);
+        checkJob.result()
+                .thenAccept(summary -> Platform.runLater(() -> {
+                    if (verifyRun != run)
+                        return;
+
+                    run.flush();
+                    verifySummaryText.set(formatSummary(summary));
+                }))
+                .exceptionally(ex -> {
+                    Platform.runLater(() -> {
+                        if (verifyRun == run)
+                            verifySummaryText.set(ex.getMessage());
+                    });
+                    return null;
+                });
+    }
+
+    private static String formatSummary(ChecksumVerifier.Summary summary) {
+        return "%s: %d OK, %d failed, %d missing, %d errors, %d skipped in %d ms".formatted(
+                summary.passed() ? "Passed" : "Not passed",
+                summary.ok(),
+                summary.failed(),
+                summary.missing(),
+                summary.errors(),
+                summary.skipped(),
+                summary.elapsed().toMillis()
+        );
+    }
+
+    private static String formatManifest(DirectoryManifest.Result result) {
+        var builder = new StringBuilder();
+
+        builder.append("%d files, %d hashed (%s), %d unchanged, %d failed in %d ms%n".formatted(
+                result.entries().size(),
+                result.filesHashed(),
+                StringUtils.convert(result.bytesHashed()),
+                result.filesReused(),
+                result.failures().size(),
+                result.elapsed().toMillis()
+        ));
+        builder.append("Merkle root: %s%n".formatted(HexFormat.of().formatHex(result.merkleRoot())));
+        builder.append(result.previousMerkleRoot() == null
+                ? "First run, nothing to compare with"
+                : result.changed() ? "Changed since the last run" : "Nothing changed since the last run");
+
+        result.failures().forEach(f -> builder.append("%n%s: %s".formatted(f.path(), f.message())));
+        return builder.toString();
+    }
+
+    private List<String> getSelectedAlgorithms() {
+        return hashAlgorithmsList.stream()
+                .filter(algorithm -> algorithmSelectedProperty(algorithm).get())
+                .toList();
+    }
+
+    /**
+     * A single digest is shown as is, several get one line each prefixed with the algorithm.
+     */
+    private String formatOutput(Map<String, byte[]> hashes) {
+        if (hashes.size() == 1)
+            return formatOutput(hashes.values().iterator().next());
+
+        return hashes.entrySet().stream()
+                .map(entry -> "%s: %s".formatted(entry.getKey(), formatOutput(entry.getValue())))
+                .collect(Collectors.joining("\n"));
+    }
+
     private String formatOutput(byte[] value) {
         if (hexModeToggleButtonProperty.get()) {
             return HexFormat.of().formatHex(value);
@@ -103,13 +348,64 @@ public class HashFilesViewModel extends AbstractViewModel {
 
     @Override
     public void onInit() {
-        hashComboBoxProperty.set(hashAlgorithmsList.get(MemCache.readInteger("hash.files.algo", 0)));
+        // Falls back to the single algorithm stored before several could be ticked
+        var fallback = hashAlgorithmsList.get(MemCache.readInteger("hash.files.algo", 0));
+
+        for (String algorithm : MemCache.readString("hash.files.algos", fallback).split(",")) {
+            if (hashAlgorithmsList.contains(algorithm))
+                algorithmSelectedProperty(algorithm).set(true);
+        }
+
+        mappedProperty.set(MemCache.readBoolean("hash.files.mapped", false));
+        treeProperty.set(MemCache.readBoolean("hash.files.tree", false));
+        treeModeProperty.set(UnkeyedCryptoHash.TreeMode.valueOf(
+                MemCache.readString("hash.files.tree.mode", UnkeyedCryptoHash.TreeMode.BLAKE3.name())));
         outputText.set(MemCache.readString("hash.files.output", ""));
+        manifestOutputText.set(MemCache.readString("hash.files.manifest.output", ""));
+        stopOnFailureProperty.set(MemCache.readBoolean("hash.files.verify.stop", false));
     }
 
     @Override
     public void onReset() {
-        MemCache.writeInteger("hash.files.algo", hashAlgorithmsList.indexOf(hashComboBoxProperty.get()));
+        MemCache.writeString("hash.files.algos", String.join(",", getSelectedAlgorithms()));
+        MemCache.writeBoolean("hash.files.mapped", mappedProperty.get());
+        MemCache.writeBoolean("hash.files.tree", treeProperty.get());
+        MemCache.writeString("hash.files.tree.mode", treeModeProperty.get().name());
         MemCache.writeString("hash.files.output", outputText.get());
+        MemCache.writeString("hash.files.manifest.output", manifestOutputText.get());
+        MemCache.writeBoolean("hash.files.verify.stop", stopOnFailureProperty.get());
+    }
+
+    /**
+     * Results of one verification, moved from the worker threads to {@link #verifyResultsList} in batches on the FX
+     * thread.
+     */
+    private final class VerifyRun {
+
+        private final Queue<ChecksumVerifier.Result> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+        /**
+         * Called from the worker threads, at most one flush is waiting on the FX thread at any time.
+         */
+        private void publish(ChecksumVerifier.Result result) {
+            pending.add(result);
+
+            if (flushScheduled.compareAndSet(false, true))
+                Platform.runLater(this::flush);
+        }
+
+        private void flush() {
+            flushScheduled.set(false);
+
+            var batch = new ArrayList<ChecksumVerifier.Result>();
+            ChecksumVerifier.Result result;
+
+            while ((result = pending.poll()) != null)
+                batch.add(result);
+
+            if (verifyRun == this)
+                verifyResultsList.addAll(batch);
+        }
     }
 }
@@ -1,6 +1,8 @@
 package dev.masterflomaster1.jfxc.gui.page.viewmodel;
 
-import dev.masterflomaster1.jfxc.crypto.UnkeyedCryptoHash;
+import dev.masterflomaster1.jfxc.crypto.IncrementalDigest;
+import dev.masterflomaster1.jfxc.crypto.ProgressMonitor;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -10,16 +12,40 @@ import javafx.scene.control.Toggle;
 import javafx.scene.control.ToggleButton;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 public class HashTextViewModel extends AbstractViewModel {
 
     private final StringProperty inputText = new SimpleStringProperty();
 
     private final Map<String, StringProperty> hashOutputMap = new HashMap<>();
+    private final Map<String, StringProperty> hashTimeMap = new HashMap<>();
+
+    /**
+     * One per algorithm, created by the first worker that needs it. Each resumes from the previous input, so typing
+     * at the end of a long text only hashes the new bytes.
+     */
+    private final Map<String, IncrementalDigest> digests = new ConcurrentHashMap<>();
+
+    /**
+     * Digests of the latest input, only touched on the JavaFX Application Thread.
+     */
+    private final List<Future<?>> pending = new ArrayList<>();
+
+    /**
+     * Raised for every new input, digests started for an older value stop at their next chunk.
+     */
+    private volatile long generation;
 
     private final BooleanProperty hexModeToggleButtonProperty = new SimpleBooleanProperty();
     private final BooleanProperty b64ModeToggleButtonProperty = new SimpleBooleanProperty();
@@ -38,6 +64,13 @@ public class HashTextViewModel extends AbstractViewModel {
         return hashOutputMap;
     }
 
+    /**
+     * Time each algorithm took for the current input, or why it failed.
+     */
+    public Map<String, StringProperty> getHashTimeMap() {
+        return hashTimeMap;
+    }
+
     public BooleanProperty hexModeToggleButtonPropertyProperty() {
         return hexModeToggleButtonProperty;
     }
@@ -66,27 +99,77 @@ public class HashTextViewModel extends AbstractViewModel {
         }
     }
 
+    /**
+     * Computes every digest of the input on the common fork-join pool and publishes each one as soon as it is
+     * done. Calling it again cancels whatever is still running for the previous input, work up to the last checkpoint
+     * is kept.
+     */
     public void action() {
+        long current = ++generation;
+
+        pending.forEach(future -> future.cancel(false));
+        pending.clear();
+
         if (inputText.get().isEmpty())
             return;
 
         byte[] value = inputText.get().getBytes(StandardCharsets.UTF_8);
+        var format = outputFormat();
+        var monitor = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) { }
+
+            @Override
+            public boolean isCancelled() {
+                return generation != current;
+            }
+        };
+
+        hashOutputMap.forEach((algorithm, output) -> pending.add(ForkJoinPool.commonPool().submit(() -> {
+            long start = System.nanoTime();
+            String result;
+            String time;
 
-        hashOutputMap.forEach((k, v) -> {
             try {
-                v.set(formatOutput(UnkeyedCryptoHash.hash(k, value)));
-            } catch (Exception e) { }
+                var digest = digests.computeIfAbsent(algorithm, IncrementalDigest::new);
+                result = format.apply(digest.digest(value, monitor));
+                time = "%.2f ms".formatted((System.nanoTime() - start) / 1e6);
+            } catch (CancellationException e) {
+                return;
+            } catch (RuntimeException e) {
+                // e.g. HARAKA only takes inputs of one exact length
+                result = "";
+                time = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            }
+
+            publish(current, algorithm, result, time);
+        })));
+    }
+
+    private void publish(long current, String algorithm, String result, String time) {
+        Platform.runLater(() -> {
+            if (generation != current)
+                return;
+
+            hashOutputMap.get(algorithm).set(result);
+
+            var timeProperty = hashTimeMap.get(algorithm);
+            if (timeProperty != null)
+                timeProperty.set(time);
         });
     }
 
-    private String formatOutput(byte[] value) {
+    /**
+     * Read on the JavaFX Application Thread, the workers only see the returned function.
+     */
+    private Function<byte[], String> outputFormat() {
         if (hexModeToggleButtonProperty.get()) {
-            return HexFormat.of().formatHex(value);
+            return HexFormat.of()::formatHex;
         } else if (b64ModeToggleButtonProperty.get()) {
-            return Base64.getEncoder().encodeToString(value);
+            return Base64.getEncoder()::encodeToString;
         }
 
-        return "";
+        return value -> "";
     }
 
     @Override
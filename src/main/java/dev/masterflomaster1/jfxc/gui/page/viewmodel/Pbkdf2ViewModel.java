@@ -3,7 +3,10 @@ package dev.masterflomaster1.jfxc.gui.page.viewmodel;
 import dev.masterflomaster1.jfxc.MemCache;
 import dev.masterflomaster1.jfxc.crypto.PbeImpl;
 import dev.masterflomaster1.jfxc.crypto.SecurityUtils;
+import dev.masterflomaster1.jfxc.gui.job.Job;
+import dev.masterflomaster1.jfxc.gui.job.JobScheduler;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
@@ -34,6 +37,8 @@ public class Pbkdf2ViewModel extends AbstractViewModel {
     private final BooleanProperty hexModeToggleButtonProperty = new SimpleBooleanProperty();
     private final BooleanProperty b64ModeToggleButtonProperty = new SimpleBooleanProperty();
 
+    private final ObjectProperty<Job<?>> job = new SimpleObjectProperty<>();
+
     private Timeline emptyPasswordAnimation;
     private Timeline emptyIterationsAnimation;
     private Timeline emptyKeyLengthAnimation;
@@ -79,6 +84,10 @@ public class Pbkdf2ViewModel extends AbstractViewModel {
         return b64ModeToggleButtonProperty;
     }
 
+    public ObjectProperty<Job<?>> jobProperty() {
+        return job;
+    }
+
     public void setEmptyPasswordAnimation(Timeline emptyPasswordAnimation) {
         this.emptyPasswordAnimation = emptyPasswordAnimation;
     }
@@ -147,16 +156,21 @@ public class Pbkdf2ViewModel extends AbstractViewModel {
         var iter = Integer.parseInt(iterationsTextProperty.get());
         var lKey = Integer.parseInt(keyLengthTextProperty.get());
 
-        var completableFuture = PbeImpl.asyncHash(algo, pass, salt, iter, lKey);
-        completableFuture
-                .thenAccept(bytes -> {
-                    outputText.set(formatOutput(bytes));
-                })
+        // Key derivation cannot report progress, the job only keeps it off the UI thread and lets the user drop it
+        Job<byte[]> kdfJob = JobScheduler.getInstance().submit(
+                "Derive %s key".formatted(algo),
+                Job.Priority.HIGH,
+                0,
+                monitor -> PbeImpl.hash(algo, pass, salt, iter, lKey)
+        );
+
+        job.set(kdfJob);
+        kdfJob.result()
+                .thenAccept(bytes -> Platform.runLater(() -> outputText.set(formatOutput(bytes))))
                 .exceptionally(ex -> {
                     System.err.println(ex.getMessage());
                     return null;
                 });
-
     }
 
     private String formatOutput(byte[] value) {
@@ -1,11 +1,22 @@
 package dev.masterflomaster1.jfxc.gui.page.viewmodel;
 
 import dev.masterflomaster1.jfxc.MemCache;
+import dev.masterflomaster1.jfxc.crypto.BatchFileProcessor;
+import dev.masterflomaster1.jfxc.crypto.CompressionStage;
+import dev.masterflomaster1.jfxc.crypto.EncryptedFileHeader;
+import dev.masterflomaster1.jfxc.crypto.FileOperations;
 import dev.masterflomaster1.jfxc.crypto.SecurityUtils;
+import dev.masterflomaster1.jfxc.crypto.SegmentedAeadFile;
+import dev.masterflomaster1.jfxc.crypto.SimdStreamCipher;
 import dev.masterflomaster1.jfxc.crypto.StreamCipherImpl;
+import dev.masterflomaster1.jfxc.gui.job.Job;
+import dev.masterflomaster1.jfxc.gui.job.JobScheduler;
 import dev.masterflomaster1.jfxc.utils.StringUtils;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
@@ -15,6 +26,7 @@ import javafx.event.ActionEvent;
 
 import java.io.File;
 import java.util.HexFormat;
+import java.util.concurrent.CancellationException;
 
 public class StreamCipherFilesViewModel extends AbstractViewModel {
 
@@ -25,6 +37,17 @@ public class StreamCipherFilesViewModel extends AbstractViewModel {
     private final ObjectProperty<Integer> keyLengthComboBoxProperty = new SimpleObjectProperty<>();
     private final ObservableList<Integer> keyLengthList = FXCollections.observableArrayList();
     private final StringProperty counterText = new SimpleStringProperty();
+    private final DirectoryBatchViewModel directoryBatch = new DirectoryBatchViewModel();
+    private final ObjectProperty<Job<?>> job = new SimpleObjectProperty<>();
+    private final BooleanProperty headerProperty = new SimpleBooleanProperty();
+    private final BooleanProperty compressProperty = new SimpleBooleanProperty();
+    private final BooleanProperty simdProperty = new SimpleBooleanProperty();
+    private final BooleanProperty simdAvailableProperty = new SimpleBooleanProperty();
+    private final BooleanProperty segmentedProperty = new SimpleBooleanProperty();
+    private final BooleanProperty segmentedAvailableProperty = new SimpleBooleanProperty();
+    private final ObjectProperty<Integer> compressionLevelComboBoxProperty = new SimpleObjectProperty<>();
+    private final ObservableList<Integer> compressionLevelsList = FXCollections.observableArrayList(
+            1, 2, 3, 4, 5, 6, 7, 8, 9);
 
     private Timeline emptyIvAnimation;
     private Timeline emptyTargetFileAnimation;
@@ -50,6 +73,63 @@ public class StreamCipherFilesViewModel extends AbstractViewModel {
         return counterText;
     }
 
+    public BooleanProperty headerProperty() {
+        return headerProperty;
+    }
+
+    /**
+     * Deflate the file before encrypting it. Needs the header, which tells the decrypt side to inflate.
+     */
+    public BooleanProperty compressProperty() {
+        return compressProperty;
+    }
+
+    /**
+     * Use {@link SimdStreamCipher} instead of BouncyCastle for the ChaCha20 and Salsa20 family. Files with a header
+     * always go through BouncyCastle.
+     */
+    public BooleanProperty simdProperty() {
+        return simdProperty;
+    }
+
+    /**
+     * Whether the selected algorithm can run on {@link SimdStreamCipher}.
+     */
+    public BooleanProperty simdAvailableProperty() {
+        return simdAvailableProperty;
+    }
+
+    /**
+     * Encrypt AEAD ciphers into a {@link SegmentedAeadFile} container, which is decrypted segment by segment instead
+     * of being held in memory as a whole. Containers are recognised on decryption regardless of this setting.
+     */
+    public BooleanProperty segmentedProperty() {
+        return segmentedProperty;
+    }
+
+    /**
+     * Whether the selected algorithm can be written as a {@link SegmentedAeadFile} container.
+     */
+    public BooleanProperty segmentedAvailableProperty() {
+        return segmentedAvailableProperty;
+    }
+
+    public ObjectProperty<Integer> compressionLevelComboBoxProperty() {
+        return compressionLevelComboBoxProperty;
+    }
+
+    public ObservableList<Integer> getCompressionLevelsList() {
+        return compressionLevelsList;
+    }
+
+    public ObjectProperty<Job<?>> jobProperty() {
+        return job;
+    }
+
+    public DirectoryBatchViewModel getDirectoryBatch() {
+        return directoryBatch;
+    }
+
     public ObjectProperty<String> streamCipherComboBoxProperty() {
         return streamCipherComboBoxProperty;
     }
@@ -66,8 +146,26 @@ public class StreamCipherFilesViewModel extends AbstractViewModel {
         return keyLengthList;
     }
 
+    /**
+     * Selects the file to process. If it starts with a self-describing header, the cipher settings are taken from it.
+     */
     public void setTargetFile(File targetFile) {
         this.targetFile = targetFile;
+
+        if (!EncryptedFileHeader.isPresent(targetFile.toPath()))
+            return;
+
+        try {
+            var header = EncryptedFileHeader.inspect(targetFile.toPath());
+
+            if (header.type() != EncryptedFileHeader.Type.STREAM)
+                return;
+
+            streamCipherComboBoxProperty.set(header.algorithm());
+            ivText.set(HexFormat.of().formatHex(header.iv()));
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+        }
     }
 
     public void setDestinationFile(File destinationFile) {
@@ -92,6 +190,8 @@ public class StreamCipherFilesViewModel extends AbstractViewModel {
 
         keyLengthList.setAll(StreamCipherImpl.getCorrespondingKeyLengths(algo));
         keyLengthComboBoxProperty.set(keyLengthList.get(0));
+        simdAvailableProperty.set(SimdStreamCipher.isSupported(algo));
+        segmentedAvailableProperty.set(StreamCipherImpl.isSegmentable(algo));
     }
 
     @SuppressWarnings("unused")
@@ -122,8 +222,14 @@ public class StreamCipherFilesViewModel extends AbstractViewModel {
         }
 
         var algo = streamCipherComboBoxProperty.get();
-
-        if (StreamCipherImpl.getCorrespondingIvLengthBits(algo).isPresent() && ivText.get().isEmpty()) {
+        var target = targetFile.toPath();
+        var writeHeader = headerProperty.get();
+        // Containers carry a nonce of their own, the IV field is not used for them
+        var segmented = encrypt
+                ? segmentedProperty.get() && StreamCipherImpl.isSegmentable(algo) && !writeHeader
+                : StreamCipherImpl.isSegmented(target);
+
+        if (!segmented && StreamCipherImpl.getCorrespondingIvLengthBits(algo).isPresent() && ivText.get().isEmpty()) {
             emptyIvAnimation.playFromStart();
             return;
         }
@@ -131,28 +237,81 @@ public class StreamCipherFilesViewModel extends AbstractViewModel {
         byte[] key = HexFormat.of().parseHex(keyText.get());
         var iv = HexFormat.of().parseHex(ivText.get());
 
-        if (encrypt) {
-            StreamCipherImpl.nioEncrypt(
-                    targetFile.toPath(),
-                    destinationFile.toPath(),
-                    algo,
-                    iv,
-                    key
-            );
-
-            counterText.set("Encoded %s".formatted(StringUtils.convert(destinationFile.length())));
-        } else {
-            StreamCipherImpl.nioDecrypt(
-                    targetFile.toPath(),
-                    destinationFile.toPath(),
-                    algo,
-                    iv,
-                    key
-            );
-
-            counterText.set("Decoded %s".formatted(StringUtils.convert(destinationFile.length())));
+        var destination = destinationFile;
+        var engine = simdProperty.get() ? StreamCipherImpl.Engine.SIMD : StreamCipherImpl.Engine.BOUNCY_CASTLE;
+        var compression = compressProperty.get()
+                ? EncryptedFileHeader.Compression.deflate(compressionLevelComboBoxProperty.get())
+                : null;
+
+        Job<CompressionStage.Stats> fileJob = JobScheduler.getInstance().submit(
+                "%s %s".formatted(encrypt ? "Encrypt" : "Decrypt", targetFile.getName()),
+                Job.Priority.NORMAL,
+                targetFile.length(),
+                monitor -> {
+                    if (segmented && encrypt) {
+                        StreamCipherImpl.segmentedEncrypt(target, destination.toPath(), algo, key, monitor);
+                    } else if (segmented) {
+                        StreamCipherImpl.segmentedDecrypt(target, destination.toPath(), key, monitor);
+                    } else if (encrypt && writeHeader) {
+                        return EncryptedFileHeader.forStreamCipher(algo, iv)
+                                .withCompression(compression)
+                                .encrypt(target, destination.toPath(), key, monitor);
+                    } else if (!encrypt && EncryptedFileHeader.isPresent(target)) {
+                        // The header carries the cipher settings, only the key is taken from the form
+                        return EncryptedFileHeader.decrypt(target, destination.toPath(), key, monitor).stats();
+                    } else if (encrypt) {
+                        StreamCipherImpl.nioEncrypt(target, destination.toPath(), algo, iv, key,
+                                FileOperations.IoMode.AUTO, engine, monitor);
+                    } else {
+                        StreamCipherImpl.nioDecrypt(target, destination.toPath(), algo, iv, key,
+                                FileOperations.IoMode.AUTO, engine, monitor);
+                    }
+                    return null;
+                }
+        );
+
+        job.set(fileJob);
+        counterText.set("");
+        fileJob.result().whenComplete((stats, e) -> {
+            String text = formatResult(e, stats, encrypt ? "Encoded" : "Decoded", destination);
+            Platform.runLater(() -> counterText.set(text));
+        });
+    }
+
+    /**
+     * Runs on the job thread, so the partial output of a cancelled job is removed before the UI is updated.
+     */
+    private static String formatResult(Throwable e, CompressionStage.Stats stats, String verb, File destination) {
+        if (e == null && stats != null && stats.compressed())
+            return "%s %s, compressed %.1fx, %d ms cipher time saved".formatted(verb,
+                    StringUtils.convert(destination.length()), stats.ratio(), stats.timeSaved().toMillis());
+
+        if (e == null)
+            return "%s %s".formatted(verb, StringUtils.convert(destination.length()));
+
+        if (e instanceof CancellationException) {
+            destination.delete();
+            return "Cancelled";
         }
 
+        return "Failed: %s".formatted(e.getMessage());
+    }
+
+    public void directoryAction(boolean encrypt) {
+        if (!directoryBatch.validate())
+            return;
+
+        var algo = streamCipherComboBoxProperty.get();
+
+        if (StreamCipherImpl.getCorrespondingIvLengthBits(algo).isPresent() && ivText.get().isEmpty()) {
+            emptyIvAnimation.playFromStart();
+            return;
+        }
+
+        byte[] key = HexFormat.of().parseHex(keyText.get());
+        var iv = HexFormat.of().parseHex(ivText.get());
+
+        directoryBatch.start(BatchFileProcessor.streamCipher(encrypt, algo, iv, key));
     }
 
     @Override
@@ -161,6 +320,12 @@ public class StreamCipherFilesViewModel extends AbstractViewModel {
         keyLengthComboBoxProperty.set(keyLengthList.get(MemCache.readInteger("stream.files.key.len", 0)));
         keyText.set(MemCache.readString("stream.files.key", ""));
         ivText.set(MemCache.readString("stream.files.iv", ""));
+        headerProperty.set(MemCache.readBoolean("stream.files.header", false));
+        compressProperty.set(MemCache.readBoolean("stream.files.compress", false));
+        simdProperty.set(MemCache.readBoolean("stream.files.simd", false));
+        segmentedProperty.set(MemCache.readBoolean("stream.files.segmented", false));
+        compressionLevelComboBoxProperty.set(compressionLevelsList.get(
+                MemCache.readInteger("stream.files.compress.level", CompressionStage.DEFAULT_LEVEL - 1)));
     }
 
     @Override
@@ -169,5 +334,11 @@ public class StreamCipherFilesViewModel extends AbstractViewModel {
         MemCache.writeInteger("stream.files.key.len", keyLengthList.indexOf(keyLengthComboBoxProperty.get()));
         MemCache.writeString("stream.files.key", keyText.get());
         MemCache.writeString("stream.files.iv", ivText.get());
+        MemCache.writeBoolean("stream.files.header", headerProperty.get());
+        MemCache.writeBoolean("stream.files.compress", compressProperty.get());
+        MemCache.writeBoolean("stream.files.simd", simdProperty.get());
+        MemCache.writeBoolean("stream.files.segmented", segmentedProperty.get());
+        MemCache.writeInteger("stream.files.compress.level",
+                compressionLevelsList.indexOf(compressionLevelComboBoxProperty.get()));
     }
 }
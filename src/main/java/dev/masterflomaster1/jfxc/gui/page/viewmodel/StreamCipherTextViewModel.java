@@ -2,6 +2,7 @@ package dev.masterflomaster1.jfxc.gui.page.viewmodel;
 
 import dev.masterflomaster1.jfxc.MemCache;
 import dev.masterflomaster1.jfxc.crypto.SecurityUtils;
+import dev.masterflomaster1.jfxc.crypto.SimdStreamCipher;
 import dev.masterflomaster1.jfxc.crypto.StreamCipherImpl;
 import javafx.animation.Timeline;
 import javafx.beans.property.BooleanProperty;
@@ -35,6 +36,8 @@ public class StreamCipherTextViewModel extends AbstractViewModel {
 
     private final BooleanProperty hexModeToggleButtonProperty = new SimpleBooleanProperty();
     private final BooleanProperty b64ModeToggleButtonProperty = new SimpleBooleanProperty();
+    private final BooleanProperty simdProperty = new SimpleBooleanProperty();
+    private final BooleanProperty simdAvailableProperty = new SimpleBooleanProperty();
 
     private Timeline emptyIvAnimation;
     private Timeline emptyKeyAnimation;
@@ -88,6 +91,20 @@ public class StreamCipherTextViewModel extends AbstractViewModel {
         return b64ModeToggleButtonProperty;
     }
 
+    /**
+     * Use {@link SimdStreamCipher} instead of BouncyCastle for the ChaCha20 and Salsa20 family.
+     */
+    public BooleanProperty simdProperty() {
+        return simdProperty;
+    }
+
+    /**
+     * Whether the selected algorithm can run on {@link SimdStreamCipher}.
+     */
+    public BooleanProperty simdAvailableProperty() {
+        return simdAvailableProperty;
+    }
+
     public void setEmptyIvAnimation(Timeline emptyIvAnimation) {
         this.emptyIvAnimation = emptyIvAnimation;
     }
@@ -102,6 +119,7 @@ public class StreamCipherTextViewModel extends AbstractViewModel {
 
         keyLengthList.setAll(StreamCipherImpl.getCorrespondingKeyLengths(algo));
         keyLengthComboBoxProperty.set(keyLengthList.get(0)); // Select first element
+        simdAvailableProperty.set(SimdStreamCipher.isSupported(algo));
     }
 
     @SuppressWarnings("unused")
@@ -164,14 +182,16 @@ public class StreamCipherTextViewModel extends AbstractViewModel {
         if (StreamCipherImpl.getCorrespondingIvLengthBits(algo).isPresent())
             iv = HexFormat.of().parseHex(ivText.get());
 
+        var engine = simdProperty.get() ? StreamCipherImpl.Engine.SIMD : StreamCipherImpl.Engine.BOUNCY_CASTLE;
+
         if (encrypt) {
-            value = StreamCipherImpl.encrypt(algo, iv, text, key);
+            value = StreamCipherImpl.encrypt(algo, iv, text, key, engine);
             counterText.set("Encoded %d bytes".formatted(value.length));
             outputText.set(formatOutput(value));
         } else {
             var input = HexFormat.of().parseHex(inputText.get());
 
-            value = StreamCipherImpl.decrypt(algo, iv, input, key);
+            value = StreamCipherImpl.decrypt(algo, iv, input, key, engine);
             counterText.set("Decoded %d bytes".formatted(value.length));
             outputText.set(new String(value));
         }
@@ -196,6 +216,7 @@ public class StreamCipherTextViewModel extends AbstractViewModel {
         streamCipherComboBoxProperty.set(streamCipherAlgorithmsList.get(MemCache.readInteger("stream.algo", 0)));
         keyLengthComboBoxProperty.set(keyLengthList.get(MemCache.readInteger("stream.key.length", 0)));
         outputText.set(MemCache.readString("stream.output", ""));
+        simdProperty.set(MemCache.readBoolean("stream.simd", false));
     }
 
     @Override
@@ -206,5 +227,6 @@ public class StreamCipherTextViewModel extends AbstractViewModel {
         MemCache.writeInteger("stream.algo", streamCipherAlgorithmsList.indexOf(streamCipherComboBoxProperty.get()));
         MemCache.writeInteger("stream.key.length", keyLengthList.indexOf(keyLengthComboBoxProperty.get()));
         MemCache.writeString("stream.output", outputText.get());
+        MemCache.writeBoolean("stream.simd", simdProperty.get());
     }
 }
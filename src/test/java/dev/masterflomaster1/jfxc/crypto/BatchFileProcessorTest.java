@@ -0,0 +1,154 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchFileProcessorTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldEncryptAndDecryptDirectoryTree() throws IOException {
+        Path source = createTree();
+        Path encrypted = Files.createTempDirectory("batch-enc");
+        Path decrypted = Files.createTempDirectory("batch-dec");
+
+        try {
+            var key = BlockCipherImpl.generateKey("AES", 256);
+            var iv = BlockCipherImpl.generateIV("AES");
+            var progress = new ArrayList<BatchFileProcessor.Progress>();
+
+            var report = BatchFileProcessor.start(source, encrypted,
+                    BatchFileProcessor.blockCipher(true, "AES", BlockCipherImpl.Mode.CTR,
+                            BlockCipherImpl.Padding.PKCS7Padding, iv, key), 4, progress::add).await();
+
+            assertEquals(52, report.filesProcessed());
+            assertTrue(report.failures().isEmpty());
+            assertFalse(progress.isEmpty());
+            assertEquals(1.0, progress.get(progress.size() - 1).fraction(), 1e-9);
+
+            report = BatchFileProcessor.start(encrypted, decrypted,
+                    BatchFileProcessor.blockCipher(false, "AES", BlockCipherImpl.Mode.CTR,
+                            BlockCipherImpl.Padding.PKCS7Padding, iv, key), null).await();
+
+            assertEquals(52, report.filesProcessed());
+            assertTreesEqual(source, decrypted);
+
+            // Same plaintext in two files must not encrypt to the same ciphertext
+            assertFalse(java.util.Arrays.equals(
+                    Files.readAllBytes(encrypted.resolve("a/same1.txt")),
+                    Files.readAllBytes(encrypted.resolve("b/same2.txt"))));
+        } finally {
+            deleteTree(source);
+            deleteTree(encrypted);
+            deleteTree(decrypted);
+        }
+    }
+
+    @Test
+    void shouldReportFailuresPerFile() throws IOException {
+        Path source = createTree();
+        Path destination = Files.createTempDirectory("batch-fail");
+
+        try {
+            var report = BatchFileProcessor.start(source, destination, (src, dst, rel) -> {
+                if (rel.getFileName().toString().startsWith("same"))
+                    throw new IOException("boom");
+
+                Files.copy(src, dst);
+            }, null).await();
+
+            assertEquals(50, report.filesProcessed());
+            assertEquals(2, report.failures().size());
+            assertEquals("boom", report.failures().get(0).message());
+            assertFalse(Files.exists(destination.resolve("a/same1.txt")));
+        } finally {
+            deleteTree(source);
+            deleteTree(destination);
+        }
+    }
+
+    @Test
+    void shouldRejectDestinationInsideSource() throws IOException {
+        Path source = Files.createTempDirectory("batch-src");
+
+        try {
+            BatchFileProcessor.FileAction copy = (from, to, relativePath) -> Files.copy(from, to);
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> BatchFileProcessor.start(source, source, copy, null));
+            assertThrows(IllegalArgumentException.class,
+                    () -> BatchFileProcessor.start(source, source.resolve("out"), copy, null));
+            assertThrows(IllegalArgumentException.class,
+                    () -> BatchFileProcessor.start(source.resolve("out"), source.resolve("out/../out/x"), copy, null));
+        } finally {
+            deleteTree(source);
+        }
+    }
+
+    @Test
+    void shouldGroupSmallFilesAndScheduleLargeFilesFirst() {
+        var files = new ArrayList<BatchFileProcessor.FileEntry>();
+        for (int i = 0; i < 600; i++)
+            files.add(new BatchFileProcessor.FileEntry(Path.of("small" + i), 10));
+        files.add(new BatchFileProcessor.FileEntry(Path.of("large"), BatchFileProcessor.SMALL_FILE_THRESHOLD * 4));
+
+        var tasks = BatchFileProcessor.plan(files);
+
+        assertEquals(Path.of("large"), tasks.get(0).get(0).relativePath());
+        assertEquals(1, tasks.get(0).size());
+        assertEquals(600, tasks.stream().skip(1).mapToInt(List::size).sum());
+        assertTrue(tasks.size() < 10);
+    }
+
+    private static Path createTree() throws IOException {
+        Path root = Files.createTempDirectory("batch-src");
+        var random = new Random(42);
+
+        for (int i = 0; i < 50; i++) {
+            Path file = root.resolve("dir" + (i % 5)).resolve("file" + i + ".bin");
+            Files.createDirectories(file.getParent());
+
+            byte[] data = new byte[i == 0 ? 3 * 1024 * 1024 : random.nextInt(4096)];
+            random.nextBytes(data);
+            Files.write(file, data);
+        }
+
+        Files.createDirectories(root.resolve("a"));
+        Files.createDirectories(root.resolve("b"));
+        Files.writeString(root.resolve("a/same1.txt"), "identical content");
+        Files.writeString(root.resolve("b/same2.txt"), "identical content");
+        return root;
+    }
+
+    private static void assertTreesEqual(Path expected, Path actual) throws IOException {
+        try (Stream<Path> stream = Files.walk(expected)) {
+            for (var path : stream.filter(Files::isRegularFile).toList()) {
+                assertArrayEquals(Files.readAllBytes(path),
+                        Files.readAllBytes(actual.resolve(expected.relativize(path))), path.toString());
+            }
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            for (var path : stream.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(path);
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChecksumVerifierTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldVerifyGnuAndBsdFormats() throws IOException {
+        Path directory = Files.createTempDirectory("sums");
+
+        try {
+            Files.writeString(directory.resolve("a.txt"), "alpha");
+            Files.createDirectories(directory.resolve("sub"));
+            Files.writeString(directory.resolve("sub/b.txt"), "beta");
+
+            Path sums = directory.resolve("SHA256SUMS");
+            Files.writeString(sums, """
+                    # comment
+                    %s  a.txt
+                    %s *sub/b.txt
+                    %s  missing.txt
+
+                    %s  a.txt
+                    """.formatted(hex("SHA-256", "alpha"), hex("SHA-256", "beta"), hex("SHA-256", "x"),
+                    hex("SHA-256", "not alpha")));
+
+            List<ChecksumVerifier.Result> results = Collections.synchronizedList(new ArrayList<>());
+            var summary = ChecksumVerifier.verify(sums, 4, false, results::add, ProgressMonitor.NONE);
+
+            assertEquals(2, summary.ok());
+            assertEquals(1, summary.failed());
+            assertEquals(1, summary.missing());
+            assertEquals(0, summary.skipped());
+            assertFalse(summary.passed());
+            assertEquals(4, results.size());
+
+            results.sort(Comparator.comparingInt(result -> result.entry().line()));
+            assertEquals(List.of(ChecksumVerifier.Status.OK, ChecksumVerifier.Status.OK,
+                            ChecksumVerifier.Status.MISSING, ChecksumVerifier.Status.FAILED),
+                    results.stream().map(ChecksumVerifier.Result::status).toList());
+
+            Path tagged = directory.resolve("CHECKSUMS");
+            Files.writeString(tagged, """
+                    MD5 (a.txt) = %s
+                    SHA1 (sub/b.txt) = %s
+                    SHA512 (a.txt) = %s
+                    BLAKE2b (a.txt) = %s
+                    """.formatted(hex("MD5", "alpha"), hex("SHA-1", "beta"), hex("SHA-512", "alpha"),
+                    hex("BLAKE2B-512", "alpha")));
+
+            summary = ChecksumVerifier.verify(tagged, 2, false, result -> { }, ProgressMonitor.NONE);
+
+            assertEquals(4, summary.ok());
+            assertTrue(summary.passed());
+        } finally {
+            deleteTree(directory);
+        }
+    }
+
+    @Test
+    void shouldStopOnFirstFailure() throws IOException {
+        Path directory = Files.createTempDirectory("sums");
+
+        try {
+            var lines = new StringBuilder(hex("SHA-256", "x") + "  missing.txt\n");
+
+            for (int i = 0; i < 20; i++) {
+                Files.writeString(directory.resolve(i + ".txt"), "file " + i);
+                lines.append(hex("SHA-256", "file " + i)).append("  ").append(i).append(".txt\n");
+            }
+
+            Path sums = directory.resolve("list.sha256");
+            Files.writeString(sums, lines);
+
+            List<ChecksumVerifier.Result> results = new ArrayList<>();
+            var summary = ChecksumVerifier.verify(sums, 1, true, results::add, ProgressMonitor.NONE);
+
+            assertEquals(1, results.size());
+            assertEquals(1, summary.missing());
+            assertEquals(20, summary.skipped());
+        } finally {
+            deleteTree(directory);
+        }
+    }
+
+    @Test
+    void shouldDetectAlgorithm() {
+        String sha512 = "0".repeat(128);
+
+        assertEquals("SHA-512", ChecksumVerifier.parseLine(1, sha512 + "  f", null).algorithm());
+        assertEquals("BLAKE2B-512", ChecksumVerifier.parseLine(1, sha512 + "  f",
+                ChecksumVerifier.algorithmFromFileName("B2SUMS")).algorithm());
+        // A name that contradicts the length loses
+        assertEquals("MD5", ChecksumVerifier.parseLine(1, "0".repeat(32) + "  f",
+                ChecksumVerifier.algorithmFromFileName("SHA256SUMS")).algorithm());
+        assertEquals("BLAKE2B-256", ChecksumVerifier.parseLine(1, "BLAKE2b-256 (f) = " + "0".repeat(64), null)
+                .algorithm());
+
+        // Escaped names as sha256sum writes them
+        assertEquals("a\\b\nc", ChecksumVerifier.parseLine(1, "\\" + "0".repeat(64) + "  a\\\\b\\nc", null).path());
+
+        assertThrows(IllegalArgumentException.class, () -> ChecksumVerifier.parseLine(1, "not a checksum", null));
+        assertThrows(IllegalArgumentException.class, () -> ChecksumVerifier.parseLine(1, "00ff  f", null));
+    }
+
+    private static String hex(String algorithm, String content) {
+        return HexFormat.of().formatHex(UnkeyedCryptoHash.hash(algorithm, content.getBytes()));
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(path);
+        }
+    }
+
+}
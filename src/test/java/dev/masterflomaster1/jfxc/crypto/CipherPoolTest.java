@@ -0,0 +1,124 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CipherPoolTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldReusePooledCipherAndCountHits() throws Exception {
+        var pool = new CipherPool(4);
+        var key = BlockCipherImpl.generateKey("AES", 128);
+        var iv = BlockCipherImpl.generateIV("AES");
+        byte[] data = "Payload".getBytes(StandardCharsets.UTF_8);
+
+        byte[] first;
+        try (var lease = pool.acquire("AES/CBC/PKCS7Padding", Cipher.ENCRYPT_MODE, "AES", key, iv)) {
+            first = lease.doFinal(data);
+        }
+
+        byte[] second;
+        try (var lease = pool.acquire("AES/CBC/PKCS7Padding", Cipher.ENCRYPT_MODE, "AES", key, iv)) {
+            second = lease.doFinal(data);
+        }
+
+        assertArrayEquals(first, second);
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void shouldReinitializeWhenIvChanges() throws Exception {
+        var pool = new CipherPool(4);
+        var key = BlockCipherImpl.generateKey("AES", 128);
+        var iv1 = BlockCipherImpl.generateIV("AES");
+        var iv2 = BlockCipherImpl.generateIV("AES");
+        byte[] data = "Payload".getBytes(StandardCharsets.UTF_8);
+
+        try (var lease = pool.acquire("AES/CBC/PKCS7Padding", Cipher.ENCRYPT_MODE, "AES", key, iv1)) {
+            lease.doFinal(data);
+        }
+
+        byte[] pooled;
+        try (var lease = pool.acquire("AES/CBC/PKCS7Padding", Cipher.ENCRYPT_MODE, "AES", key, iv2)) {
+            pooled = lease.doFinal(data);
+        }
+
+        var expected = BlockCipherImpl.encrypt("AES", BlockCipherImpl.Mode.CBC, BlockCipherImpl.Padding.PKCS7Padding,
+                iv2, data, key);
+
+        assertArrayEquals(expected, pooled);
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedAboveCapacity() throws Exception {
+        var pool = new CipherPool(2);
+        byte[] data = "Payload".getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 3; i++) {
+            var key = BlockCipherImpl.generateKey("AES", 128);
+            try (var lease = pool.acquire("AES/ECB/PKCS7Padding", Cipher.ENCRYPT_MODE, "AES", key, null)) {
+                lease.doFinal(data);
+            }
+        }
+
+        assertEquals(2, pool.size());
+        assertEquals(3, pool.getMisses());
+        assertEquals(1, pool.getEvictions());
+    }
+
+    @Test
+    void shouldDestroyKeysOfCiphersLeavingThePool() throws Exception {
+        var pool = new CipherPool(1);
+        byte[] data = "Payload".getBytes(StandardCharsets.UTF_8);
+        var leases = new ArrayList<CipherPool.Lease>();
+
+        for (int i = 0; i < 3; i++) {
+            var key = BlockCipherImpl.generateKey("AES", 128);
+            try (var lease = pool.acquire("AES/ECB/PKCS7Padding", Cipher.ENCRYPT_MODE, "AES", key, null)) {
+                lease.doFinal(data);
+                leases.add(lease);
+            }
+        }
+
+        var broken = pool.acquire("AES/ECB/PKCS7Padding", Cipher.DECRYPT_MODE, "AES",
+                BlockCipherImpl.generateKey("AES", 128), null);
+        broken.invalidate();
+        broken.close();
+
+        assertTrue(leases.get(0).key().isDestroyed());
+        assertTrue(leases.get(1).key().isDestroyed());
+        assertFalse(leases.get(2).key().isDestroyed());
+        assertTrue(broken.key().isDestroyed());
+
+        pool.clear();
+
+        assertTrue(leases.get(2).key().isDestroyed());
+    }
+
+    @Test
+    void shouldDiscardCipherAfterFailure() throws Exception {
+        var pool = new CipherPool(4);
+        var key = BlockCipherImpl.generateKey("AES", 128);
+
+        try (var lease = pool.acquire("AES/ECB/PKCS7Padding", Cipher.DECRYPT_MODE, "AES", key, null)) {
+            assertThrows(Exception.class, () -> lease.doFinal(new byte[] {1, 2, 3}));
+        }
+
+        assertEquals(0, pool.size());
+    }
+
+}
@@ -0,0 +1,119 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionStageTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldEstimateEntropy() throws IOException {
+        Path zeros = Files.write(Files.createTempFile("zeros", ".bin"), new byte[100_000]);
+        Path random = createRandomInput(1_000_000);
+
+        try {
+            assertEquals(0, CompressionStage.estimateEntropy(zeros), 1e-9);
+            assertTrue(CompressionStage.estimateEntropy(random) > 7.9);
+            assertTrue(CompressionStage.isCompressible(zeros));
+            assertFalse(CompressionStage.isCompressible(random));
+        } finally {
+            deleteAll(zeros, random);
+        }
+    }
+
+    @Test
+    void shouldCompressTextBeforeEncryption() throws IOException {
+        var key = BlockCipherImpl.generateKey("AES", 256);
+        var headers = new EncryptedFileHeader[] {
+                EncryptedFileHeader.forBlockCipher("AES", BlockCipherImpl.Mode.CBC,
+                        BlockCipherImpl.Padding.PKCS7Padding, BlockCipherImpl.generateIV("AES")),
+                EncryptedFileHeader.forStreamCipher("CHACHA7539", SecurityUtils.generateIV(96))
+        };
+
+        for (var header : headers) {
+            Path input = createCsvInput(20_000);
+            Path encrypted = Files.createTempFile("compressed", ".enc");
+            Path decrypted = Files.createTempFile("compressed", ".dec");
+
+            try {
+                var stats = header.withCompression(EncryptedFileHeader.Compression.deflate(6))
+                        .encrypt(input, encrypted, key, ProgressMonitor.NONE);
+                var decryption = EncryptedFileHeader.decrypt(encrypted, decrypted, key, ProgressMonitor.NONE);
+
+                assertTrue(stats.compressed());
+                assertEquals(Files.size(input), stats.originalBytes());
+                assertTrue(stats.ratio() > 3, "ratio " + stats.ratio());
+                assertTrue(Files.size(encrypted) < Files.size(input) / 3);
+
+                assertEquals(EncryptedFileHeader.Compression.deflate(6), decryption.header().compression());
+                assertEquals(stats.storedBytes(), decryption.stats().storedBytes());
+                assertArrayEquals(Files.readAllBytes(input), Files.readAllBytes(decrypted));
+            } finally {
+                deleteAll(input, encrypted, decrypted);
+            }
+        }
+    }
+
+    @Test
+    void shouldSkipCompressionForHighEntropyInput() throws IOException {
+        var key = BlockCipherImpl.generateKey("AES", 256);
+        var header = EncryptedFileHeader.forBlockCipher("AES", BlockCipherImpl.Mode.CTR,
+                BlockCipherImpl.Padding.PKCS7Padding, BlockCipherImpl.generateIV("AES"))
+                .withCompression(EncryptedFileHeader.Compression.deflate(9));
+
+        Path input = createRandomInput(300_000);
+        Path encrypted = Files.createTempFile("skipped", ".enc");
+        Path decrypted = Files.createTempFile("skipped", ".dec");
+
+        try {
+            var stats = header.encrypt(input, encrypted, key, ProgressMonitor.NONE);
+
+            assertFalse(stats.compressed());
+            assertNull(EncryptedFileHeader.inspect(encrypted).compression());
+
+            EncryptedFileHeader.decrypt(encrypted, decrypted, key, ProgressMonitor.NONE);
+            assertArrayEquals(Files.readAllBytes(input), Files.readAllBytes(decrypted));
+        } finally {
+            deleteAll(input, encrypted, decrypted);
+        }
+    }
+
+    private static Path createCsvInput(int rows) throws IOException {
+        var random = new Random(rows);
+        var csv = new StringBuilder("id,timestamp,level,message\n");
+
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(',')
+                    .append(1_700_000_000L + random.nextInt(100_000)).append(',')
+                    .append(random.nextBoolean() ? "INFO" : "WARN").append(',')
+                    .append("request served in ").append(random.nextInt(500)).append(" ms\n");
+        }
+
+        return Files.writeString(Files.createTempFile("plain", ".csv"), csv, StandardCharsets.UTF_8);
+    }
+
+    private static Path createRandomInput(int length) throws IOException {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+
+        return Files.write(Files.createTempFile("plain", ".bin"), data);
+    }
+
+    private static void deleteAll(Path... paths) throws IOException {
+        for (var path : paths)
+            Files.deleteIfExists(path);
+    }
+
+}
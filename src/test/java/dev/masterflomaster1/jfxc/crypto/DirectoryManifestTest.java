@@ -0,0 +1,167 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryManifestTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldWriteSha256sumManifest() throws IOException {
+        Path root = createTree();
+        Path manifest = root.resolve("SHA256SUMS");
+
+        try {
+            var result = DirectoryManifest.update(root, manifest, ProgressMonitor.NONE);
+
+            // The manifest and its cache inside the tree are not listed
+            List<String> expected = List.of(
+                    line(root, "a.txt"),
+                    line(root, "dir/b.bin"),
+                    line(root, "dir/sub/c.txt"),
+                    line(root, "empty")
+            );
+
+            assertEquals(expected, Files.readAllLines(manifest, StandardCharsets.UTF_8));
+            assertEquals(4, result.filesHashed());
+            assertEquals(0, result.filesReused());
+            assertTrue(result.failures().isEmpty());
+            assertNull(result.previousMerkleRoot());
+            assertTrue(result.changed());
+            assertArrayEquals(DirectoryManifest.merkleRoot(result.entries()), result.merkleRoot());
+        } finally {
+            deleteTree(root);
+        }
+    }
+
+    @Test
+    void shouldOnlyHashChangedFiles() throws IOException {
+        Path root = createTree();
+        Path manifest = Files.createTempFile("manifest", ".sha256");
+
+        try {
+            var first = DirectoryManifest.update(root, manifest, ProgressMonitor.NONE);
+            var second = DirectoryManifest.update(root, manifest, ProgressMonitor.NONE);
+
+            assertEquals(0, second.filesHashed());
+            assertEquals(4, second.filesReused());
+            assertEquals(0, second.bytesHashed());
+            assertFalse(second.changed());
+            assertArrayEquals(first.merkleRoot(), second.merkleRoot());
+
+            // Same size, new content and time
+            Path changed = root.resolve("dir/sub/c.txt");
+            Files.writeString(changed, "gamma!");
+            Files.setLastModifiedTime(changed, FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+
+            var third = DirectoryManifest.update(root, manifest, ProgressMonitor.NONE);
+
+            assertEquals(1, third.filesHashed());
+            assertEquals(3, third.filesReused());
+            assertTrue(third.changed());
+            assertEquals(line(root, "dir/sub/c.txt"), third.entries().get(2).line());
+
+            Files.delete(root.resolve("a.txt"));
+            var fourth = DirectoryManifest.update(root, manifest, ProgressMonitor.NONE);
+
+            assertEquals(0, fourth.filesHashed());
+            assertEquals(3, fourth.entries().size());
+            assertTrue(fourth.changed());
+        } finally {
+            deleteTree(root);
+            Files.deleteIfExists(manifest);
+            Files.deleteIfExists(Path.of(manifest + DirectoryManifest.CACHE_SUFFIX));
+        }
+    }
+
+    @Test
+    void shouldKeepManifestWhenCancelled() throws IOException {
+        Path root = createTree();
+        Path manifest = Files.createTempFile("manifest", ".sha256");
+
+        var cancelled = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) { }
+
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+
+        try {
+            assertThrows(CancellationException.class, () -> DirectoryManifest.update(root, manifest, cancelled));
+            assertEquals(0, Files.size(manifest));
+
+            var result = DirectoryManifest.update(root, manifest, ProgressMonitor.NONE);
+            assertEquals(4, result.filesHashed());
+        } finally {
+            deleteTree(root);
+            Files.deleteIfExists(manifest);
+            Files.deleteIfExists(Path.of(manifest + DirectoryManifest.CACHE_SUFFIX));
+        }
+    }
+
+    @Test
+    void shouldEscapeLikeSha256sum() {
+        byte[] digest = new byte[32];
+        String hex = HexFormat.of().formatHex(digest);
+
+        assertEquals(hex + "  plain name", new DirectoryManifest.Entry("plain name", 0, digest).line());
+        assertEquals("\\" + hex + "  a\\\\b\\nc", new DirectoryManifest.Entry("a\\b\nc", 0, digest).line());
+    }
+
+    private static String line(Path root, String path) throws IOException {
+        byte[] digest = UnkeyedCryptoHash.hash("SHA-256", Files.readAllBytes(root.resolve(path)));
+        return HexFormat.of().formatHex(digest) + "  " + path;
+    }
+
+    /**
+     * Files dated back, so the cache does not treat them as changed in the same clock tick.
+     */
+    private static Path createTree() throws IOException {
+        Path root = Files.createTempDirectory("manifest");
+        Files.createDirectories(root.resolve("dir/sub"));
+
+        Files.writeString(root.resolve("a.txt"), "alpha");
+        Files.write(root.resolve("dir/b.bin"), new byte[300_000]);
+        Files.writeString(root.resolve("dir/sub/c.txt"), "gamma.");
+        Files.createFile(root.resolve("empty"));
+
+        FileTime old = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.filter(Files::isRegularFile).toList())
+                Files.setLastModifiedTime(file, old);
+        }
+
+        return root;
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(path);
+        }
+    }
+
+}
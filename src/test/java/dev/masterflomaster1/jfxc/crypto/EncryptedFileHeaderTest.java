@@ -0,0 +1,151 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncryptedFileHeaderTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldDecryptBlockCipherFileUsingOnlyTheKey() throws IOException {
+        var key = BlockCipherImpl.generateKey("AES", 256);
+        var iv = BlockCipherImpl.generateIV("AES");
+
+        for (var mode : BlockCipherImpl.Mode.values()) {
+            var header = EncryptedFileHeader.forBlockCipher("AES", mode, BlockCipherImpl.Padding.PKCS7Padding, iv);
+            assertRoundTrip(header, key, 10_000);
+        }
+    }
+
+    @Test
+    void shouldDecryptStreamCipherFileUsingOnlyTheKey() throws IOException {
+        var key = SecurityUtils.generateIV(256);
+
+        assertRoundTrip(EncryptedFileHeader.forStreamCipher("CHACHA7539", SecurityUtils.generateIV(96)), key, 10_000);
+        assertRoundTrip(EncryptedFileHeader.forStreamCipher("ARC4", new byte[0]), SecurityUtils.generateIV(128), 0);
+    }
+
+    @Test
+    void shouldStoreKdfParameters() throws IOException {
+        var kdf = new EncryptedFileHeader.Kdf("PBKDF2", SecurityUtils.generateSalt(), 1000);
+        var key = kdf.deriveKey("secret".toCharArray(), 256);
+        var header = EncryptedFileHeader.forBlockCipher("AES", BlockCipherImpl.Mode.CBC,
+                BlockCipherImpl.Padding.PKCS7Padding, BlockCipherImpl.generateIV("AES")).withKdf(kdf);
+
+        Path input = createInput(1000);
+        Path encrypted = Files.createTempFile("header", ".enc");
+
+        try {
+            header.encrypt(input, encrypted, key, ProgressMonitor.NONE);
+            var inspected = EncryptedFileHeader.inspect(encrypted);
+
+            assertEquals("PBKDF2", inspected.kdf().algorithm());
+            assertArrayEquals(kdf.salt(), inspected.kdf().salt());
+            assertEquals(1000, inspected.kdf().iterations());
+            assertArrayEquals(key, inspected.kdf().deriveKey("secret".toCharArray(), 256));
+        } finally {
+            deleteAll(input, encrypted);
+        }
+    }
+
+    @Test
+    void shouldRejectTamperedHeaderAndWrongKey() throws IOException {
+        var key = BlockCipherImpl.generateKey("AES", 256);
+        var header = EncryptedFileHeader.forBlockCipher("AES", BlockCipherImpl.Mode.CBC,
+                BlockCipherImpl.Padding.PKCS7Padding, BlockCipherImpl.generateIV("AES"));
+
+        Path input = createInput(1000);
+        Path encrypted = Files.createTempFile("header", ".enc");
+        Path decrypted = Files.createTempFile("header", ".dec");
+
+        try {
+            header.encrypt(input, encrypted, key, ProgressMonitor.NONE);
+
+            assertThrows(IllegalArgumentException.class, () -> EncryptedFileHeader.decrypt(
+                    encrypted, decrypted, BlockCipherImpl.generateKey("AES", 256), ProgressMonitor.NONE));
+
+            byte[] tampered = Files.readAllBytes(encrypted);
+            tampered[10] ^= 1;
+            Files.write(encrypted, tampered);
+
+            assertThrows(IllegalArgumentException.class, () -> EncryptedFileHeader.decrypt(
+                    encrypted, decrypted, key, ProgressMonitor.NONE));
+        } finally {
+            deleteAll(input, encrypted, decrypted);
+        }
+    }
+
+    @Test
+    void shouldInspectManyFilesWithoutKey() throws IOException {
+        var key = BlockCipherImpl.generateKey("AES", 128);
+        var header = EncryptedFileHeader.forBlockCipher("AES", BlockCipherImpl.Mode.CTR,
+                BlockCipherImpl.Padding.PKCS7Padding, BlockCipherImpl.generateIV("AES"));
+
+        Path input = createInput(100);
+        Path encrypted = Files.createTempFile("header", ".enc");
+        Path plain = createInput(3);
+
+        try {
+            header.encrypt(input, encrypted, key, ProgressMonitor.NONE);
+
+            var inspections = EncryptedFileHeader.inspectAll(List.of(encrypted, plain));
+
+            assertEquals(2, inspections.size());
+            assertEquals(BlockCipherImpl.Mode.CTR, inspections.get(0).header().mode());
+            assertNull(inspections.get(0).error());
+            assertNull(inspections.get(1).header());
+            assertNotNull(inspections.get(1).error());
+            assertTrue(EncryptedFileHeader.isPresent(encrypted));
+            assertFalse(EncryptedFileHeader.isPresent(plain));
+        } finally {
+            deleteAll(input, encrypted, plain);
+        }
+    }
+
+    private static void assertRoundTrip(EncryptedFileHeader header, byte[] key, int length) throws IOException {
+        Path input = createInput(length);
+        Path encrypted = Files.createTempFile("header", ".enc");
+        Path decrypted = Files.createTempFile("header", ".dec");
+
+        try {
+            header.encrypt(input, encrypted, key, ProgressMonitor.NONE);
+            var parsed = EncryptedFileHeader.decrypt(encrypted, decrypted, key, ProgressMonitor.NONE).header();
+
+            assertEquals(header.type(), parsed.type());
+            assertEquals(header.algorithm(), parsed.algorithm());
+            assertEquals(header.mode(), parsed.mode());
+            assertEquals(header.padding(), parsed.padding());
+            assertArrayEquals(header.iv(), parsed.iv());
+            assertArrayEquals(Files.readAllBytes(input), Files.readAllBytes(decrypted), String.valueOf(header.mode()));
+        } finally {
+            deleteAll(input, encrypted, decrypted);
+        }
+    }
+
+    private static Path createInput(int length) throws IOException {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+
+        Path input = Files.createTempFile("plain", ".bin");
+        Files.write(input, data);
+        return input;
+    }
+
+    private static void deleteAll(Path... paths) throws IOException {
+        for (var path : paths)
+            Files.deleteIfExists(path);
+    }
+
+}
@@ -0,0 +1,315 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileOperationsTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldProduceSameOutputWithMappedAndNioBlockCipher() throws IOException {
+        var key = BlockCipherImpl.generateKey("AES", 256);
+        var iv = BlockCipherImpl.generateIV("AES");
+
+        for (int length : new int[] {0, 15, 8192 * 3 + 7}) {
+            Path input = createInput(length);
+            Path nio = Files.createTempFile("nio", ".enc");
+            Path mapped = Files.createTempFile("mapped", ".enc");
+            Path decrypted = Files.createTempFile("mapped", ".dec");
+
+            try {
+                BlockCipherImpl.nioEncrypt(input.toString(), nio.toString(), "AES", BlockCipherImpl.Mode.CBC,
+                        BlockCipherImpl.Padding.PKCS7Padding, iv, key, FileOperations.IoMode.NIO);
+                BlockCipherImpl.nioEncrypt(input.toString(), mapped.toString(), "AES", BlockCipherImpl.Mode.CBC,
+                        BlockCipherImpl.Padding.PKCS7Padding, iv, key, FileOperations.IoMode.MAPPED);
+                BlockCipherImpl.nioDecrypt(mapped.toString(), decrypted.toString(), "AES", BlockCipherImpl.Mode.CBC,
+                        BlockCipherImpl.Padding.PKCS7Padding, iv, key, FileOperations.IoMode.MAPPED);
+
+                assertArrayEquals(Files.readAllBytes(nio), Files.readAllBytes(mapped));
+                assertArrayEquals(Files.readAllBytes(input), Files.readAllBytes(decrypted));
+            } finally {
+                deleteAll(input, nio, mapped, decrypted);
+            }
+        }
+    }
+
+    @Test
+    void shouldProduceSameOutputWithMappedAndNioStreamCipher() throws IOException {
+        for (var algorithm : new String[] {"CHACHA7539", "CHACHA20-POLY1305"}) {
+            var key = SecurityUtils.generateIV(256);
+            var iv = SecurityUtils.generateIV(96);
+
+            Path input = createInput(100_000);
+            Path nio = Files.createTempFile("nio", ".enc");
+            Path mapped = Files.createTempFile("mapped", ".enc");
+            Path decrypted = Files.createTempFile("mapped", ".dec");
+
+            try {
+                StreamCipherImpl.nioEncrypt(input, nio, algorithm, iv, key, FileOperations.IoMode.NIO);
+                StreamCipherImpl.nioEncrypt(input, mapped, algorithm, iv, key, FileOperations.IoMode.MAPPED);
+                StreamCipherImpl.nioDecrypt(mapped, decrypted, algorithm, iv, key, FileOperations.IoMode.MAPPED);
+
+                assertArrayEquals(Files.readAllBytes(nio), Files.readAllBytes(mapped));
+                assertArrayEquals(Files.readAllBytes(input), Files.readAllBytes(decrypted));
+            } finally {
+                deleteAll(input, nio, mapped, decrypted);
+            }
+        }
+    }
+
+    @Test
+    void shouldProduceSameOutputWithPipelinedAndNio() throws IOException {
+        var key = BlockCipherImpl.generateKey("AES", 256);
+        var iv = BlockCipherImpl.generateIV("AES");
+        var streamKey = SecurityUtils.generateIV(256);
+        var streamIv = SecurityUtils.generateIV(96);
+
+        for (int length : new int[] {0, CipherPipeline.CHUNK_SIZE * 2, CipherPipeline.CHUNK_SIZE * 5 + 7}) {
+            for (var mode : new BlockCipherImpl.Mode[] {BlockCipherImpl.Mode.CBC, BlockCipherImpl.Mode.OFB}) {
+                Path input = createInput(length);
+                Path nio = Files.createTempFile("nio", ".enc");
+                Path pipelined = Files.createTempFile("pipelined", ".enc");
+                Path decrypted = Files.createTempFile("pipelined", ".dec");
+
+                try {
+                    BlockCipherImpl.nioEncrypt(input.toString(), nio.toString(), "AES", mode,
+                            BlockCipherImpl.Padding.PKCS7Padding, iv, key, FileOperations.IoMode.NIO);
+                    BlockCipherImpl.nioEncrypt(input.toString(), pipelined.toString(), "AES", mode,
+                            BlockCipherImpl.Padding.PKCS7Padding, iv, key, FileOperations.IoMode.PIPELINED);
+                    BlockCipherImpl.nioDecrypt(pipelined.toString(), decrypted.toString(), "AES", mode,
+                            BlockCipherImpl.Padding.PKCS7Padding, iv, key, FileOperations.IoMode.PIPELINED);
+
+                    assertArrayEquals(Files.readAllBytes(nio), Files.readAllBytes(pipelined), mode + " " + length);
+                    assertArrayEquals(Files.readAllBytes(input), Files.readAllBytes(decrypted), mode + " " + length);
+                } finally {
+                    deleteAll(input, nio, pipelined, decrypted);
+                }
+            }
+
+            Path input = createInput(length);
+            Path nio = Files.createTempFile("nio", ".enc");
+            Path pipelined = Files.createTempFile("pipelined", ".enc");
+
+            try {
+                StreamCipherImpl.nioEncrypt(input, nio, "CHACHA7539", streamIv, streamKey,
+                        FileOperations.IoMode.NIO);
+                StreamCipherImpl.nioEncrypt(input, pipelined, "CHACHA7539", streamIv, streamKey,
+                        FileOperations.IoMode.PIPELINED);
+
+                assertArrayEquals(Files.readAllBytes(nio), Files.readAllBytes(pipelined));
+            } finally {
+                deleteAll(input, nio, pipelined);
+            }
+        }
+    }
+
+    @Test
+    void shouldDecryptAeadPipelined() throws IOException {
+        var key = SecurityUtils.generateIV(256);
+        var iv = SecurityUtils.generateIV(96);
+
+        // AEAD decryption releases the whole plaintext at doFinal, more than one chunk of the ring holds
+        Path input = createInput(CipherPipeline.CHUNK_SIZE * 3 + 77);
+        Path encrypted = Files.createTempFile("pipelined", ".enc");
+        Path decrypted = Files.createTempFile("pipelined", ".dec");
+
+        try {
+            StreamCipherImpl.nioEncrypt(input, encrypted, "CHACHA20-POLY1305", iv, key, FileOperations.IoMode.NIO);
+            StreamCipherImpl.nioDecrypt(encrypted, decrypted, "CHACHA20-POLY1305", iv, key,
+                    FileOperations.IoMode.PIPELINED);
+
+            assertArrayEquals(Files.readAllBytes(input), Files.readAllBytes(decrypted));
+        } finally {
+            deleteAll(input, encrypted, decrypted);
+        }
+    }
+
+    @Test
+    void shouldReportProgressForEveryIoMode() throws IOException {
+        var key = BlockCipherImpl.generateKey("AES", 256);
+        var iv = BlockCipherImpl.generateIV("AES");
+        int length = 100_000;
+
+        for (var mode : new BlockCipherImpl.Mode[] {BlockCipherImpl.Mode.CBC, BlockCipherImpl.Mode.CTR}) {
+            for (var ioMode : FileOperations.IoMode.values()) {
+                Path input = createInput(length);
+                Path output = Files.createTempFile("progress", ".enc");
+                var done = new AtomicLong();
+
+                try {
+                    BlockCipherImpl.nioEncrypt(input.toString(), output.toString(), "AES", mode,
+                            BlockCipherImpl.Padding.PKCS7Padding, iv, key, ioMode, new ProgressMonitor() {
+                                @Override
+                                public void worked(long bytes) {
+                                    done.addAndGet(bytes);
+                                }
+
+                                @Override
+                                public boolean isCancelled() {
+                                    return false;
+                                }
+                            });
+
+                    assertEquals(length, done.get(), mode + " " + ioMode);
+                } finally {
+                    deleteAll(input, output);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldStopWhenCancelled() throws IOException {
+        var key = SecurityUtils.generateIV(256);
+        var iv = SecurityUtils.generateIV(96);
+
+        Path input = createInput(100_000);
+        Path output = Files.createTempFile("cancelled", ".enc");
+
+        var cancelled = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) { }
+
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+
+        try {
+            var e = assertThrows(RuntimeException.class, () -> StreamCipherImpl.nioEncrypt(
+                    input, output, "CHACHA7539", iv, key, FileOperations.IoMode.NIO, cancelled));
+
+            assertInstanceOf(CancellationException.class, e.getCause());
+            assertEquals(0, Files.size(output));
+        } finally {
+            deleteAll(input, output);
+        }
+    }
+
+    @Test
+    void shouldProduceSameOutputAsyncAndNio() throws IOException {
+        var key = BlockCipherImpl.generateKey("AES", 256);
+        var iv = BlockCipherImpl.generateIV("AES");
+        int chunk = AsyncCipherTransfer.CHUNK_SIZE;
+
+        for (int length : new int[] {0, 15, chunk * 2, chunk * AsyncCipherTransfer.SLOTS * 2 + 7}) {
+            for (var mode : new BlockCipherImpl.Mode[] {BlockCipherImpl.Mode.CBC, BlockCipherImpl.Mode.CTR}) {
+                Path input = createInput(length);
+                Path nio = Files.createTempFile("nio", ".enc");
+                Path async = Files.createTempFile("async", ".enc");
+                Path decrypted = Files.createTempFile("async", ".dec");
+
+                try {
+                    BlockCipherImpl.nioEncrypt(input.toString(), nio.toString(), "AES", mode,
+                            BlockCipherImpl.Padding.PKCS7Padding, iv, key, FileOperations.IoMode.NIO);
+                    long written = BlockCipherImpl.asyncEncrypt(input.toString(), async.toString(), "AES", mode,
+                            BlockCipherImpl.Padding.PKCS7Padding, iv, key, ProgressMonitor.NONE).join();
+                    BlockCipherImpl.asyncDecrypt(async.toString(), decrypted.toString(), "AES", mode,
+                            BlockCipherImpl.Padding.PKCS7Padding, iv, key, ProgressMonitor.NONE).join();
+
+                    assertEquals(Files.size(nio), written, mode + " " + length);
+                    assertArrayEquals(Files.readAllBytes(nio), Files.readAllBytes(async), mode + " " + length);
+                    assertArrayEquals(Files.readAllBytes(input), Files.readAllBytes(decrypted), mode + " " + length);
+                } finally {
+                    deleteAll(input, nio, async, decrypted);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldRunManyAsyncTransfersAtOnce() throws IOException {
+        var key = SecurityUtils.generateIV(256);
+        var iv = SecurityUtils.generateIV(96);
+        var inputs = new ArrayList<Path>();
+        var outputs = new ArrayList<Path>();
+        var futures = new ArrayList<CompletableFuture<Long>>();
+
+        try {
+            for (int i = 0; i < 24; i++) {
+                inputs.add(createInput(300_000 + i * 100_000));
+                outputs.add(Files.createTempFile("many", ".enc"));
+                futures.add(StreamCipherImpl.asyncEncrypt(inputs.get(i), outputs.get(i), "CHACHA20-POLY1305", iv, key,
+                        ProgressMonitor.NONE));
+            }
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+            for (int i = 0; i < inputs.size(); i++) {
+                byte[] expected = StreamCipherImpl.encrypt("CHACHA20-POLY1305", iv, Files.readAllBytes(inputs.get(i)),
+                        key);
+                assertArrayEquals(expected, Files.readAllBytes(outputs.get(i)));
+            }
+
+            // AEAD decryption releases the whole plaintext at doFinal
+            Path decrypted = Files.createTempFile("many", ".dec");
+            outputs.add(decrypted);
+            StreamCipherImpl.asyncDecrypt(outputs.get(23), decrypted, "CHACHA20-POLY1305", iv, key,
+                    ProgressMonitor.NONE).join();
+
+            assertArrayEquals(Files.readAllBytes(inputs.get(23)), Files.readAllBytes(decrypted));
+        } finally {
+            deleteAll(inputs.toArray(Path[]::new));
+            deleteAll(outputs.toArray(Path[]::new));
+        }
+    }
+
+    @Test
+    void shouldCompleteAsyncTransferExceptionallyWhenCancelled() throws IOException {
+        var key = SecurityUtils.generateIV(256);
+        var iv = SecurityUtils.generateIV(96);
+
+        Path input = createInput(AsyncCipherTransfer.CHUNK_SIZE * 3);
+        Path output = Files.createTempFile("cancelled", ".enc");
+
+        var cancelled = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) { }
+
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+
+        try {
+            var future = StreamCipherImpl.asyncEncrypt(input, output, "CHACHA7539", iv, key, cancelled);
+
+            assertThrows(CancellationException.class, future::join);
+            assertEquals(0, Files.size(output));
+        } finally {
+            deleteAll(input, output);
+        }
+    }
+
+    private static Path createInput(int length) throws IOException {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+
+        Path input = Files.createTempFile("plain", ".bin");
+        Files.write(input, data);
+        return input;
+    }
+
+    private static void deleteAll(Path... paths) throws IOException {
+        for (var path : paths)
+            Files.deleteIfExists(path);
+    }
+
+}
@@ -0,0 +1,121 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalDigestTest {
+
+    private static final int INTERVAL = IncrementalDigest.CHECKPOINT_INTERVAL;
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldMatchFullHashForEveryAlgorithm() {
+        byte[] text = new byte[3 * INTERVAL + 100];
+        new Random(1).nextBytes(text);
+
+        for (String algorithm : SecurityUtils.getDigests()) {
+            // HARAKA only takes inputs of one exact length
+            if (algorithm.startsWith("HARAKA"))
+                continue;
+
+            var digest = new IncrementalDigest(algorithm);
+
+            for (int length : new int[] {0, 10, INTERVAL, 2 * INTERVAL + 5, text.length, INTERVAL + 1}) {
+                byte[] input = Arrays.copyOf(text, length);
+                assertArrayEquals(UnkeyedCryptoHash.hash(algorithm, input), digest.digest(input, ProgressMonitor.NONE),
+                        algorithm + " at " + length);
+            }
+        }
+    }
+
+    @Test
+    void shouldOnlyHashNewBytesWhenAppending() {
+        byte[] text = new byte[10 * INTERVAL];
+        new Random(2).nextBytes(text);
+
+        var digest = new IncrementalDigest("SHA-256");
+        var worked = new AtomicLong();
+        var monitor = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) {
+                worked.addAndGet(bytes);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+
+        digest.digest(Arrays.copyOf(text, 8 * INTERVAL + 7), monitor);
+        worked.set(0);
+
+        byte[] appended = Arrays.copyOf(text, 8 * INTERVAL + 8);
+        assertArrayEquals(UnkeyedCryptoHash.hash("SHA-256", appended), digest.digest(appended, monitor));
+        assertEquals(8, worked.get());
+
+        // An edit in the middle resumes from the checkpoint before it
+        byte[] edited = appended.clone();
+        edited[3 * INTERVAL + 10] ^= 1;
+        worked.set(0);
+
+        assertArrayEquals(UnkeyedCryptoHash.hash("SHA-256", edited), digest.digest(edited, monitor));
+        assertEquals(edited.length - 3 * INTERVAL, worked.get());
+    }
+
+    @Test
+    void shouldKeepCheckpointsWhenCancelled() {
+        byte[] text = new byte[4 * INTERVAL];
+        new Random(3).nextBytes(text);
+
+        var digest = new IncrementalDigest("SHA-512");
+        var calls = new AtomicLong();
+        var cancelAfterTwoChunks = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) { }
+
+            @Override
+            public boolean isCancelled() {
+                return calls.incrementAndGet() > 2;
+            }
+        };
+
+        assertThrows(CancellationException.class, () -> digest.digest(text, cancelAfterTwoChunks));
+        assertArrayEquals(UnkeyedCryptoHash.hash("SHA-512", text), digest.digest(text, ProgressMonitor.NONE));
+
+        byte[] shorter = Arrays.copyOf(text, INTERVAL / 2);
+        assertArrayEquals(UnkeyedCryptoHash.hash("SHA-512", shorter), digest.digest(shorter, ProgressMonitor.NONE));
+    }
+
+    @Test
+    void shouldCancelTupleHashBeforeHashing() {
+        var digest = new IncrementalDigest("TUPLEHASH256");
+        var worked = new AtomicLong();
+        var cancelled = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) {
+                worked.addAndGet(bytes);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+
+        assertThrows(CancellationException.class, () -> digest.digest(new byte[3 * INTERVAL], cancelled));
+        assertEquals(0, worked.get());
+    }
+
+}
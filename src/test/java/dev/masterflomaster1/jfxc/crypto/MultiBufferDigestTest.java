@@ -0,0 +1,90 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiBufferDigestTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldMatchBouncyCastleAcrossPaddingBoundaries() {
+        Random random = new Random(11);
+        List<byte[]> messages = new ArrayList<>();
+
+        // Every length up to three blocks, then random ones so lanes finish at different steps
+        for (int length = 0; length <= 3 * ShaLanes.BLOCK_SIZE; length++)
+            messages.add(bytes(random, length));
+
+        for (int i = 0; i < 500; i++)
+            messages.add(bytes(random, 50 + random.nextInt(451)));
+
+        assertBatch("SHA-256", SHA256Digest::new, messages);
+        assertBatch("SHA-1", SHA1Digest::new, messages);
+    }
+
+    @Test
+    void shouldHandleBatchesSmallerThanTheLaneCount() {
+        Random random = new Random(12);
+
+        assertBatch("SHA-256", SHA256Digest::new, List.of());
+        assertBatch("SHA-256", SHA256Digest::new, List.of(bytes(random, 100)));
+        assertBatch("SHA1", SHA1Digest::new, List.of(bytes(random, 1000), bytes(random, 3)));
+    }
+
+    @Test
+    void shouldHashAllWithAnyAlgorithm() {
+        Random random = new Random(13);
+        List<byte[]> messages = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++)
+            messages.add(bytes(random, random.nextInt(600)));
+
+        for (String algorithm : List.of("SHA-256", "SHA-1", "SHA3-256", "MD5")) {
+            List<byte[]> digests = UnkeyedCryptoHash.hashAll(algorithm, messages);
+
+            for (int i = 0; i < messages.size(); i++)
+                assertArrayEquals(UnkeyedCryptoHash.hash(algorithm, messages.get(i)), digests.get(i), algorithm);
+        }
+
+        assertFalse(MultiBufferDigest.isSupported("SHA-512"));
+        assertThrows(IllegalArgumentException.class, () -> MultiBufferDigest.digest("SHA-512", messages));
+    }
+
+    private static void assertBatch(String algorithm, Supplier<Digest> reference, List<byte[]> messages) {
+        for (boolean vectorized : new boolean[] {false, true}) {
+            List<byte[]> digests = MultiBufferDigest.digest(algorithm, messages, vectorized);
+            assertEquals(messages.size(), digests.size());
+
+            for (int i = 0; i < messages.size(); i++) {
+                Digest digest = reference.get();
+                byte[] expected = new byte[digest.getDigestSize()];
+                digest.update(messages.get(i), 0, messages.get(i).length);
+                digest.doFinal(expected, 0);
+
+                assertArrayEquals(expected, digests.get(i), "%s, %d bytes, vectorized %b".formatted(
+                        algorithm, messages.get(i).length, vectorized));
+            }
+        }
+    }
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,128 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelCtrFileEngineTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldMatchSequentialCtrOutput() throws Exception {
+        for (var algorithm : new String[] {"AES", "DES", "Threefish-512"}) {
+            for (var padding : new BlockCipherImpl.Padding[] {
+                    BlockCipherImpl.Padding.PKCS7Padding, BlockCipherImpl.Padding.ZeroBytePadding}) {
+                for (int length : new int[] {0, 1, 4096, 4096 * 5 + 13}) {
+                    var key = BlockCipherImpl.generateKey(algorithm, BlockCipherImpl.getAvailableKeyLengths(algorithm).get(0));
+                    var iv = BlockCipherImpl.generateIV(algorithm);
+
+                    assertParallelMatchesSequential(algorithm, padding, key, iv, length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldCarryCounterAcrossSegments() throws Exception {
+        var key = BlockCipherImpl.generateKey("AES", 128);
+        var iv = new byte[16];
+        Arrays.fill(iv, 8, 16, (byte) 0xFF);
+
+        assertParallelMatchesSequential("AES", BlockCipherImpl.Padding.PKCS7Padding, key, iv, 4096 * 3 + 1);
+    }
+
+    @Test
+    void shouldKeepKctrOnASingleCipher() throws Exception {
+        assertFalse(ParallelCtrFileEngine.isSupported("DSTU7624"));
+        assertFalse(ParallelCtrFileEngine.isSupported("GOST3412-2015"));
+
+        // Past the first segment boundary, where a counter added to the IV would diverge from KCTR
+        var key = BlockCipherImpl.generateKey("DSTU7624", 128);
+        var iv = BlockCipherImpl.generateIV("DSTU7624");
+        Path input = Files.createTempFile("kctr", ".in");
+        Path sequential = Files.createTempFile("kctr", ".seq");
+        Path routed = Files.createTempFile("kctr", ".nio");
+
+        try {
+            byte[] data = new byte[ParallelCtrFileEngine.DEFAULT_SEGMENT_SIZE + 4096];
+            new Random(5).nextBytes(data);
+            Files.write(input, data);
+
+            Cipher cipher = Cipher.getInstance("DSTU7624/CTR/PKCS7Padding", "BC");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "DSTU7624"), new IvParameterSpec(iv));
+            FileOperations.nioEncryptAndDecrypt(cipher, input, sequential);
+
+            BlockCipherImpl.nioEncrypt(input.toString(), routed.toString(), "DSTU7624", BlockCipherImpl.Mode.CTR,
+                    BlockCipherImpl.Padding.PKCS7Padding, iv, key, FileOperations.IoMode.NIO);
+
+            assertArrayEquals(Files.readAllBytes(sequential), Files.readAllBytes(routed));
+        } finally {
+            deleteAll(input, sequential, routed);
+        }
+    }
+
+    @Test
+    void shouldAddToCounterAsBigEndianInteger() {
+        var counter = new byte[] {0, 0, (byte) 0xFF, (byte) 0xFE};
+
+        assertArrayEquals(new byte[] {0, 1, 0, 0}, ParallelCtrFileEngine.addToCounter(counter, 2));
+        assertArrayEquals(new byte[] {0, 1, 1, 0}, ParallelCtrFileEngine.addToCounter(counter, 258));
+    }
+
+    private static void assertParallelMatchesSequential(String algorithm,
+                                                        BlockCipherImpl.Padding padding,
+                                                        byte[] key,
+                                                        byte[] iv,
+                                                        int length) throws Exception {
+        Path input = Files.createTempFile("ctr", ".in");
+        Path sequential = Files.createTempFile("ctr", ".seq");
+        Path parallel = Files.createTempFile("ctr", ".par");
+        Path decrypted = Files.createTempFile("ctr", ".dec");
+
+        try {
+            byte[] data = new byte[length];
+            new Random(length).nextBytes(data);
+            Files.write(input, data);
+
+            Cipher cipher = Cipher.getInstance(algorithm + "/CTR/" + padding.getPadding(), "BC");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, algorithm), new IvParameterSpec(iv));
+            FileOperations.nioEncryptAndDecrypt(cipher, input, sequential);
+
+            var pool = new ForkJoinPool(4);
+            ParallelCtrFileEngine.encryptAndDecrypt(Cipher.ENCRYPT_MODE, algorithm, padding, key, iv,
+                    input, parallel, 4096, pool);
+            ParallelCtrFileEngine.encryptAndDecrypt(Cipher.DECRYPT_MODE, algorithm, padding, key, iv,
+                    parallel, decrypted, 4096, pool);
+            pool.shutdown();
+
+            assertArrayEquals(Files.readAllBytes(sequential), Files.readAllBytes(parallel),
+                    algorithm + " " + padding + " " + length);
+
+            if (padding != BlockCipherImpl.Padding.ZeroBytePadding)
+                assertArrayEquals(data, Files.readAllBytes(decrypted));
+        } finally {
+            deleteAll(input, sequential, parallel, decrypted);
+        }
+    }
+
+    private static void deleteAll(Path... paths) throws IOException {
+        for (var path : paths)
+            Files.deleteIfExists(path);
+    }
+
+}
@@ -0,0 +1,116 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreparedBlockCipherTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @AfterEach
+    void afterEach() {
+        ProviderRouter.setEnabled(true);
+    }
+
+    @Test
+    void shouldMatchUnpreparedCipherForEveryCombination() {
+        byte[] data = new byte[77];
+        new Random(3).nextBytes(data);
+
+        // Without routing every transformation runs on the BouncyCastle engines
+        for (boolean routed : new boolean[] {true, false}) {
+            ProviderRouter.setEnabled(routed);
+
+            for (String algorithm : SecurityUtils.getBlockCiphers()) {
+                var keyLengths = BlockCipherImpl.getAvailableKeyLengths(algorithm);
+
+                if (keyLengths.isEmpty())
+                    continue;
+
+                byte[] key = BlockCipherImpl.generateKey(algorithm, keyLengths.get(keyLengths.size() - 1));
+
+                for (var mode : BlockCipherImpl.Mode.values()) {
+                    for (var padding : BlockCipherImpl.Padding.values()) {
+                        String name = algorithm + "/" + mode + "/" + padding + ", routed " + routed;
+
+                        try (var prepared = BlockCipherImpl.prepare(algorithm, mode, padding, key)) {
+                            for (int i = 0; i < 2; i++) {
+                                byte[] iv = BlockCipherImpl.generateIV(algorithm);
+                                byte[] expected = BlockCipherImpl.encrypt(algorithm, mode, padding, iv, data, key);
+                                byte[] actual = prepared.encrypt(iv, data);
+
+                                // ISO 10126 pads with random bytes, only the decryption is comparable
+                                if (padding != BlockCipherImpl.Padding.ISO10126Padding)
+                                    assertArrayEquals(expected, actual, name);
+
+                                assertArrayEquals(data, prepared.decrypt(iv, expected), name);
+                                assertArrayEquals(data, prepared.decrypt(iv, actual), name);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldEncryptConcurrentlyWithDifferentIvs() throws Exception {
+        byte[] key = BlockCipherImpl.generateKey("Serpent", 256);
+        byte[] data = "Payload shared by every thread".getBytes(StandardCharsets.UTF_8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try (var prepared = BlockCipherImpl.prepare("Serpent", BlockCipherImpl.Mode.CBC,
+                BlockCipherImpl.Padding.PKCS7Padding, key)) {
+
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        byte[] iv = BlockCipherImpl.generateIV("Serpent");
+                        byte[] encrypted = prepared.encrypt(iv, data);
+
+                        assertArrayEquals(BlockCipherImpl.encrypt("Serpent", BlockCipherImpl.Mode.CBC,
+                                BlockCipherImpl.Padding.PKCS7Padding, iv, data, key), encrypted);
+                        assertArrayEquals(data, prepared.decrypt(iv, encrypted));
+                    }
+                    return null;
+                }));
+            }
+
+            for (var future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldRejectUseAfterClose() {
+        byte[] key = BlockCipherImpl.generateKey("AES", 128);
+        byte[] iv = BlockCipherImpl.generateIV("AES");
+        var prepared = BlockCipherImpl.prepare("AES", BlockCipherImpl.Mode.CTR, BlockCipherImpl.Padding.PKCS7Padding,
+                key);
+
+        assertNotNull(prepared.encrypt(iv, new byte[10]));
+        prepared.close();
+
+        assertThrows(IllegalStateException.class, () -> prepared.encrypt(iv, new byte[10]));
+        assertThrows(IllegalStateException.class, () -> prepared.decrypt(iv, new byte[16]));
+    }
+
+}
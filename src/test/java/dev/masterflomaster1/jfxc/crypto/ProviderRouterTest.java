@@ -0,0 +1,115 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProviderRouterTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @AfterEach
+    void afterEach() {
+        ProviderRouter.setEnabled(true);
+        ProviderRouter.setForegroundThread(null);
+    }
+
+    @Test
+    void shouldKeepBcForAlgorithmsOnlyBcHas() {
+        assertEquals("BC", ProviderRouter.cipher("GOST3412-2015/CBC/PKCS5Padding"));
+        assertEquals("BC", ProviderRouter.cipher("AES/CBC/PKCS7Padding"));
+        assertEquals("BC", ProviderRouter.digest("BLAKE2B-512"));
+        assertEquals("BC", ProviderRouter.mac("HMACSM3"));
+    }
+
+    @Test
+    void shouldOnlyRouteToProvidersThatMatchBc() throws GeneralSecurityException {
+        byte[] data = new byte[1000];
+        byte[] key = new byte[32];
+        byte[] iv = new byte[16];
+
+        for (var transformation : new String[] {"AES/CBC/PKCS5Padding", "AES/CTR/NoPadding", "AES/ECB/PKCS5Padding"}) {
+            var routed = Cipher.getInstance(transformation, ProviderRouter.cipher(transformation));
+            var bc = Cipher.getInstance(transformation, "BC");
+            var spec = new SecretKeySpec(key, "AES");
+
+            if (transformation.contains("/ECB/")) {
+                routed.init(Cipher.ENCRYPT_MODE, spec);
+                bc.init(Cipher.ENCRYPT_MODE, spec);
+            } else {
+                routed.init(Cipher.ENCRYPT_MODE, spec, new IvParameterSpec(iv));
+                bc.init(Cipher.ENCRYPT_MODE, spec, new IvParameterSpec(iv));
+            }
+
+            assertArrayEquals(bc.doFinal(data), routed.doFinal(data), transformation);
+        }
+
+        for (var digest : new String[] {"SHA-1", "SHA-256", "SHA-512"}) {
+            assertArrayEquals(MessageDigest.getInstance(digest, "BC").digest(data),
+                    UnkeyedCryptoHash.hash(digest, data), digest);
+        }
+
+        var mac = Mac.getInstance("HMACSHA256", "BC");
+        mac.init(new SecretKeySpec(key, "HMACSHA256"));
+        assertArrayEquals(mac.doFinal(data), MacImpl.hmac("HMACSHA256", key, data));
+    }
+
+    @Test
+    void shouldUseBcWhenDisabled() {
+        ProviderRouter.setEnabled(false);
+
+        assertEquals("BC", ProviderRouter.digest("SHA-256"));
+        assertEquals("BC", ProviderRouter.cipher("AES/CTR/NoPadding"));
+    }
+
+    @Test
+    void shouldNeverProbeOnForegroundThread() {
+        ProviderRouter.reset();
+        ProviderRouter.setForegroundThread(Thread.currentThread());
+
+        assertEquals("BC", ProviderRouter.digest("SHA-384"));
+
+        // Off the foreground thread the lookup waits for the probe that is already running
+        ProviderRouter.setForegroundThread(null);
+        String route = ProviderRouter.digest("SHA-384");
+
+        assertEquals(route, ProviderRouter.getRoutes().get("MessageDigest.SHA-384"));
+    }
+
+    @Test
+    void shouldSaveAndLoadRoutes() throws IOException {
+        ProviderRouter.digest("SHA-256");
+        ProviderRouter.mac("HMACSHA256");
+        var routes = ProviderRouter.getRoutes();
+
+        Path file = Files.createTempFile("routes", ".properties");
+
+        try {
+            ProviderRouter.save(file);
+            ProviderRouter.reset();
+            assertTrue(ProviderRouter.load(file));
+            assertEquals(routes, ProviderRouter.getRoutes());
+
+            Files.writeString(file, Files.readString(file).replaceAll("environment=.*", "environment=other"));
+            assertFalse(ProviderRouter.load(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResumableEncryptionTest {
+
+    private static final int SIZE = 5 * 1024 * 1024 + 5;
+    private static final long INTERVAL = 256 * 1024;
+
+    private static final byte[] KEY = new byte[32];
+    private static final byte[] IV = new byte[16];
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+        new Random(7).nextBytes(KEY);
+        new Random(8).nextBytes(IV);
+    }
+
+    @Test
+    void shouldResumeToSameOutputInEveryMode() throws IOException, NoSuchAlgorithmException {
+        byte[] data = randomData();
+
+        // DSTU7624 runs CTR as KCTR, BLOWFISH has 64-bit blocks
+        for (String algorithm : List.of("AES", "DSTU7624", "BLOWFISH")) {
+            byte[] iv = Arrays.copyOf(IV, BlockCipherImpl.getBlockLengthBits(algorithm) / 8);
+
+            for (var mode : BlockCipherImpl.Mode.values()) {
+                String name = algorithm + "/" + mode;
+                boolean resumable = !(mode == BlockCipherImpl.Mode.CTR && algorithm.equals("DSTU7624"));
+                Path dir = Files.createTempDirectory("resumable");
+                Path input = Files.write(dir.resolve("plain.bin"), data);
+                Path output = dir.resolve("plain.bin.enc");
+
+                try {
+                    interrupt(input, output, algorithm, mode, iv, KEY);
+
+                    assertFalse(Files.exists(output), name);
+                    assertEquals(resumable, ResumableEncryption.hasCheckpoint(output), name);
+
+                    var result = encrypt(input, output, algorithm, mode, iv, KEY);
+                    byte[] expected = BlockCipherImpl.encrypt(algorithm, mode, BlockCipherImpl.Padding.PKCS7Padding,
+                            iv, data, KEY);
+
+                    assertEquals(resumable, result.resumed(), name);
+                    assertArrayEquals(expected, Files.readAllBytes(output), name);
+                    assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(expected), result.sha256(), name);
+                    assertFalse(Files.exists(ResumableEncryption.partialFile(output)));
+                    assertFalse(Files.exists(ResumableEncryption.journalFile(output)));
+                } finally {
+                    deleteAll(dir);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldStartOverWhenPartialOutputWasModified() throws IOException {
+        byte[] data = randomData();
+        Path dir = Files.createTempDirectory("resumable");
+        Path input = Files.write(dir.resolve("plain.bin"), data);
+        Path output = dir.resolve("plain.bin.enc");
+
+        try {
+            interrupt(input, output, "AES", BlockCipherImpl.Mode.CBC, IV, KEY);
+
+            Path partial = ResumableEncryption.partialFile(output);
+            byte[] damaged = Files.readAllBytes(partial);
+            damaged[100] ^= 1;
+            Files.write(partial, damaged);
+
+            var result = encrypt(input, output, "AES", BlockCipherImpl.Mode.CBC, IV, KEY);
+
+            assertEquals(0, result.resumedFrom());
+            assertArrayEquals(BlockCipherImpl.encrypt("AES", BlockCipherImpl.Mode.CBC,
+                    BlockCipherImpl.Padding.PKCS7Padding, IV, data, KEY), Files.readAllBytes(output));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void shouldStartOverWithAnotherKey() throws IOException {
+        byte[] data = randomData();
+        byte[] otherKey = new byte[32];
+        Path dir = Files.createTempDirectory("resumable");
+        Path input = Files.write(dir.resolve("plain.bin"), data);
+        Path output = dir.resolve("plain.bin.enc");
+
+        try {
+            interrupt(input, output, "AES", BlockCipherImpl.Mode.CBC, IV, KEY);
+
+            var result = encrypt(input, output, "AES", BlockCipherImpl.Mode.CBC, IV, otherKey);
+
+            assertFalse(result.resumed());
+            assertArrayEquals(BlockCipherImpl.encrypt("AES", BlockCipherImpl.Mode.CBC,
+                    BlockCipherImpl.Padding.PKCS7Padding, IV, data, otherKey), Files.readAllBytes(output));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    private static byte[] randomData() {
+        byte[] data = new byte[SIZE];
+        new Random(1).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Starts an encryption and cancels it after roughly half of the file.
+     */
+    private static void interrupt(Path input,
+                                  Path output,
+                                  String algorithm,
+                                  BlockCipherImpl.Mode mode,
+                                  byte[] iv,
+                                  byte[] key) {
+        var processed = new AtomicLong();
+        var monitor = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) {
+                processed.addAndGet(bytes);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return processed.get() > SIZE / 2;
+            }
+        };
+
+        assertThrows(CancellationException.class, () -> ResumableEncryption.encrypt(input, output, algorithm,
+                mode, BlockCipherImpl.Padding.PKCS7Padding, iv, key, INTERVAL, monitor));
+    }
+
+    private static ResumableEncryption.Result encrypt(Path input,
+                                                      Path output,
+                                                      String algorithm,
+                                                      BlockCipherImpl.Mode mode,
+                                                      byte[] iv,
+                                                      byte[] key) {
+        return ResumableEncryption.encrypt(input, output, algorithm, mode, BlockCipherImpl.Padding.PKCS7Padding, iv,
+                key, INTERVAL, ProgressMonitor.NONE);
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+
+        Files.delete(dir);
+    }
+
+}
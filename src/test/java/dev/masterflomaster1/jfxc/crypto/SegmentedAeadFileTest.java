@@ -0,0 +1,146 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedAeadFileTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldEncryptAndDecryptWithAllAlgorithms() throws IOException {
+        var pool = new ForkJoinPool(4);
+
+        for (var algorithm : SegmentedAeadFile.Algorithm.values()) {
+            for (int length : new int[] {0, 1, SEGMENT_SIZE, SEGMENT_SIZE * 37 + 5}) {
+                var key = SecurityUtils.generateIV(256);
+                byte[] data = randomBytes(length);
+
+                Path input = Files.createTempFile("aead", ".in");
+                Path encrypted = Files.createTempFile("aead", ".enc");
+                Path decrypted = Files.createTempFile("aead", ".dec");
+
+                try {
+                    Files.write(input, data);
+                    SegmentedAeadFile.encrypt(input, encrypted, algorithm, key, SEGMENT_SIZE, pool);
+                    SegmentedAeadFile.decrypt(encrypted, decrypted, key, pool);
+
+                    assertArrayEquals(data, Files.readAllBytes(decrypted), algorithm + " " + length);
+                    assertEquals(length, SegmentedAeadFile.plaintextSize(encrypted));
+                } finally {
+                    deleteAll(input, encrypted, decrypted);
+                }
+            }
+        }
+
+        pool.shutdown();
+    }
+
+    @Test
+    void shouldDecryptByteRange() throws IOException {
+        var key = SecurityUtils.generateIV(256);
+        byte[] data = randomBytes(SEGMENT_SIZE * 10 + 100);
+
+        Path input = Files.createTempFile("aead", ".in");
+        Path encrypted = Files.createTempFile("aead", ".enc");
+
+        try {
+            Files.write(input, data);
+            SegmentedAeadFile.encrypt(input, encrypted, SegmentedAeadFile.Algorithm.CHACHA20_POLY1305, key,
+                    SEGMENT_SIZE, ForkJoinPool.commonPool());
+
+            assertArrayEquals(Arrays.copyOfRange(data, 1000, 3500),
+                    SegmentedAeadFile.decryptRange(encrypted, 1000, 2500, key));
+            assertArrayEquals(Arrays.copyOfRange(data, data.length - 50, data.length),
+                    SegmentedAeadFile.decryptRange(encrypted, data.length - 50, 500, key));
+            assertEquals(0, SegmentedAeadFile.decryptRange(encrypted, data.length, 10, key).length);
+        } finally {
+            deleteAll(input, encrypted);
+        }
+    }
+
+    @Test
+    void shouldRejectTamperedAndTruncatedContainers() throws IOException {
+        var key = SecurityUtils.generateIV(256);
+        byte[] data = randomBytes(SEGMENT_SIZE * 3);
+
+        Path input = Files.createTempFile("aead", ".in");
+        Path encrypted = Files.createTempFile("aead", ".enc");
+        Path decrypted = Files.createTempFile("aead", ".dec");
+
+        try {
+            Files.write(input, data);
+            SegmentedAeadFile.encrypt(input, encrypted, SegmentedAeadFile.Algorithm.AES_GCM, key,
+                    SEGMENT_SIZE, ForkJoinPool.commonPool());
+            byte[] container = Files.readAllBytes(encrypted);
+
+            byte[] tampered = container.clone();
+            tampered[SegmentedAeadFile.HEADER_LENGTH + SEGMENT_SIZE + 20] ^= 1;
+            Files.write(encrypted, tampered);
+            assertThrows(RuntimeException.class, () -> SegmentedAeadFile.decrypt(encrypted, decrypted, key));
+            assertFalse(Files.exists(decrypted));
+
+            // Dropping the last segment must not yield a valid shorter plaintext
+            Files.write(encrypted, Arrays.copyOf(container,
+                    SegmentedAeadFile.HEADER_LENGTH + 2 * (SEGMENT_SIZE + SegmentedAeadFile.TAG_LENGTH)));
+            assertThrows(RuntimeException.class, () -> SegmentedAeadFile.decrypt(encrypted, decrypted, key));
+        } finally {
+            deleteAll(input, encrypted, decrypted);
+        }
+    }
+
+    @Test
+    void shouldRejectSegmentSizesOutOfRange() throws IOException {
+        var key = SecurityUtils.generateIV(256);
+
+        Path input = Files.createTempFile("aead", ".in");
+        Path encrypted = Files.createTempFile("aead", ".enc");
+        Path decrypted = Files.createTempFile("aead", ".dec");
+
+        try {
+            Files.write(input, randomBytes(100));
+            assertThrows(IllegalArgumentException.class, () -> SegmentedAeadFile.encrypt(input, encrypted,
+                    SegmentedAeadFile.Algorithm.AES_GCM, key, SegmentedAeadFile.MAX_SEGMENT_SIZE + 1,
+                    ForkJoinPool.commonPool()));
+
+            SegmentedAeadFile.encrypt(input, encrypted, SegmentedAeadFile.Algorithm.AES_GCM, key);
+            byte[] container = Files.readAllBytes(encrypted);
+
+            // A forged header must be rejected before a segment buffer is sized from it
+            ByteBuffer.wrap(container).putInt(6, Integer.MAX_VALUE - SegmentedAeadFile.TAG_LENGTH);
+            Files.write(encrypted, container);
+            assertThrows(UncheckedIOException.class, () -> SegmentedAeadFile.decrypt(encrypted, decrypted, key));
+            assertThrows(UncheckedIOException.class, () -> SegmentedAeadFile.decryptRange(encrypted, 0, 10, key));
+        } finally {
+            deleteAll(input, encrypted, decrypted);
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static void deleteAll(Path... paths) throws IOException {
+        for (var path : paths)
+            Files.deleteIfExists(path);
+    }
+
+}
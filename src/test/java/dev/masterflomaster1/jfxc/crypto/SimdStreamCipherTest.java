@@ -0,0 +1,118 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.bouncycastle.crypto.SkippingStreamCipher;
+import org.bouncycastle.crypto.engines.ChaChaEngine;
+import org.bouncycastle.crypto.engines.Salsa20Engine;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimdStreamCipherTest {
+
+    private static final List<String> ALGORITHMS = List.of("CHACHA", "CHACHA7539", "SALSA20", "XSALSA20");
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldMatchBouncyCastleForAllKeyLengthsAndChunkings() {
+        Random random = new Random(7);
+
+        for (String algorithm : ALGORITHMS) {
+            for (int keyLength : StreamCipherImpl.getCorrespondingKeyLengths(algorithm)) {
+                byte[] key = bytes(random, keyLength / 8);
+                byte[] iv = bytes(random, StreamCipherImpl.getCorrespondingIvLengthBits(algorithm).get().get(0) / 8);
+
+                for (int length : new int[] {0, 1, 63, 64, 65, 1023, 4096, 70_001}) {
+                    byte[] data = bytes(random, length);
+                    byte[] expected = StreamCipherImpl.encrypt(algorithm, iv, data, key);
+
+                    for (boolean vectorized : new boolean[] {false, true}) {
+                        var engine = SimdStreamCipher.create(algorithm, key, iv, vectorized);
+                        byte[] actual = new byte[length];
+
+                        for (int offset = 0; offset < length; ) {
+                            int n = Math.min(random.nextInt(700), length - offset);
+                            engine.process(data, offset, n, actual, offset);
+                            offset += n;
+                        }
+
+                        assertArrayEquals(expected, actual, "%s-%d, %d bytes, %s".formatted(
+                                algorithm, keyLength, length, engine.getImplementation()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldSkipLikeBouncyCastleAcrossTheCounterWordBoundary() {
+        Random random = new Random(11);
+        byte[] key = bytes(random, 32);
+        byte[] iv = bytes(random, 8);
+        // Lands a few blocks before the low counter word wraps, so the batch carries into the high word
+        long offset = (1L << 32) * 64 - 3 * 64 - 5;
+
+        for (String algorithm : List.of("CHACHA", "SALSA20")) {
+            SkippingStreamCipher reference = "CHACHA".equals(algorithm) ? new ChaChaEngine() : new Salsa20Engine();
+            reference.init(true, new ParametersWithIV(new KeyParameter(key), iv));
+            reference.skip(offset);
+
+            byte[] data = bytes(random, 2000);
+            byte[] expected = new byte[data.length];
+            reference.processBytes(data, 0, data.length, expected, 0);
+
+            for (boolean vectorized : new boolean[] {false, true}) {
+                var engine = SimdStreamCipher.create(algorithm, key, iv, vectorized);
+                engine.skip(offset);
+
+                assertArrayEquals(expected, engine.process(data), algorithm + ", " + engine.getImplementation());
+            }
+        }
+    }
+
+    @Test
+    void shouldEncryptFileWithSimdEngineAndDecryptWithBouncyCastle() throws IOException {
+        Random random = new Random(3);
+        byte[] key = bytes(random, 32);
+        byte[] iv = bytes(random, 24);
+        byte[] data = bytes(random, 3 * 1024 * 1024 + 17);
+
+        Path source = Files.createTempFile("simd", ".bin");
+        Path encrypted = Files.createTempFile("simd", ".enc");
+        Path decrypted = Files.createTempFile("simd", ".dec");
+
+        try {
+            Files.write(source, data);
+
+            StreamCipherImpl.nioEncrypt(source, encrypted, "XSALSA20", iv, key, FileOperations.IoMode.NIO,
+                    StreamCipherImpl.Engine.SIMD, ProgressMonitor.NONE);
+            StreamCipherImpl.nioDecrypt(encrypted, decrypted, "XSALSA20", iv, key);
+
+            assertArrayEquals(StreamCipherImpl.encrypt("XSALSA20", iv, data, key), Files.readAllBytes(encrypted));
+            assertArrayEquals(data, Files.readAllBytes(decrypted));
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(encrypted);
+            Files.deleteIfExists(decrypted);
+        }
+    }
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+}
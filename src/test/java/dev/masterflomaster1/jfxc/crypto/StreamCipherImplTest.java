@@ -10,7 +10,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.Base64;
+import java.util.Random;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
@@ -95,4 +97,44 @@ class StreamCipherImplTest {
 
     }
 
+    @Test
+    void shouldEncryptAndDecryptSegmentedContainer() throws IOException {
+        byte[] data = new byte[SegmentedAeadFile.DEFAULT_SEGMENT_SIZE * 2 + 100];
+        new Random(3).nextBytes(data);
+        var key = SecurityUtils.generateIV(256);
+
+        Path input = Files.write(Files.createTempFile("segmented", ".bin"), data);
+        Path encrypted = Files.createTempFile("segmented", ".enc");
+        Path decrypted = Files.createTempFile("segmented", ".dec");
+        var worked = new AtomicLong();
+        var monitor = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) {
+                worked.addAndGet(bytes);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+
+        try {
+            assertTrue(StreamCipherImpl.isSegmentable("CHACHA20-POLY1305"));
+            assertFalse(StreamCipherImpl.isSegmentable("CHACHA7539"));
+
+            StreamCipherImpl.segmentedEncrypt(input, encrypted, "CHACHA20-POLY1305", key, monitor);
+            assertEquals(data.length, worked.get());
+            assertTrue(StreamCipherImpl.isSegmented(encrypted));
+            assertFalse(StreamCipherImpl.isSegmented(input));
+
+            StreamCipherImpl.segmentedDecrypt(encrypted, decrypted, key, ProgressMonitor.NONE);
+            assertArrayEquals(data, Files.readAllBytes(decrypted));
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(encrypted);
+            Files.deleteIfExists(decrypted);
+        }
+    }
+
 }
\ No newline at end of file
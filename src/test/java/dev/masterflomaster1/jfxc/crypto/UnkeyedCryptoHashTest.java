@@ -0,0 +1,243 @@
+package dev.masterflomaster1.jfxc.crypto;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.Blake3Digest;
+import org.bouncycastle.crypto.digests.ParallelHash;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnkeyedCryptoHashTest {
+
+    private static final List<String> ALGORITHMS = List.of("SHA-256", "SHA-512", "BLAKE2B-512", "SHA3-256", "MD5");
+
+    @BeforeAll
+    static void beforeAll() {
+        SecurityUtils.init();
+    }
+
+    @Test
+    void shouldMatchSingleDigestsInOnePass() throws IOException {
+        for (int length : new int[] {0, 1, MultiDigest.CHUNK_SIZE + 3, MultiDigest.CHUNK_SIZE * 3}) {
+            Path input = createInput(length);
+
+            try {
+                byte[] data = Files.readAllBytes(input);
+
+                for (boolean mapped : new boolean[] {false, true}) {
+                    var done = new AtomicLong();
+                    var digests = UnkeyedCryptoHash.hash(ALGORITHMS, input, mapped, new ProgressMonitor() {
+                        @Override
+                        public void worked(long bytes) {
+                            done.addAndGet(bytes);
+                        }
+
+                        @Override
+                        public boolean isCancelled() {
+                            return false;
+                        }
+                    });
+
+                    assertEquals(ALGORITHMS, List.copyOf(digests.keySet()));
+                    assertEquals(length, done.get());
+
+                    for (String algorithm : ALGORITHMS)
+                        assertArrayEquals(UnkeyedCryptoHash.hash(algorithm, data), digests.get(algorithm),
+                                algorithm + " " + length + (mapped ? " mapped" : ""));
+                }
+            } finally {
+                Files.deleteIfExists(input);
+            }
+        }
+    }
+
+    @Test
+    void shouldStopMultiDigestWhenCancelled() throws IOException {
+        Path input = createInput(MultiDigest.CHUNK_SIZE * 2);
+
+        var cancelled = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) { }
+
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+
+        try {
+            assertThrows(CancellationException.class, () -> UnkeyedCryptoHash.hash(ALGORITHMS, input, false,
+                    cancelled));
+        } finally {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    @Test
+    void shouldMatchReferenceTreeHashes() throws IOException, NoSuchAlgorithmException {
+        // Up to several leaf tasks, with a short last chunk, leaf and block
+        for (int length : new int[] {0, 1, 1024, 1025, 8192, 65537, 3 * 1024 * 1024 + 17}) {
+            Path input = createInput(length);
+
+            try {
+                byte[] data = Files.readAllBytes(input);
+
+                assertArrayEquals(reference(new Blake3Digest(), data),
+                        UnkeyedCryptoHash.treeHash(UnkeyedCryptoHash.TreeMode.BLAKE3, input, ProgressMonitor.NONE),
+                        "BLAKE3 " + length);
+                assertArrayEquals(reference(new ParallelHash(128, null, ParallelTreeHash.BLOCK_SIZE), data),
+                        UnkeyedCryptoHash.treeHash(UnkeyedCryptoHash.TreeMode.PARALLEL_HASH_128, input,
+                                ProgressMonitor.NONE),
+                        "ParallelHash128 " + length);
+                assertArrayEquals(reference(new ParallelHash(256, null, ParallelTreeHash.BLOCK_SIZE), data),
+                        UnkeyedCryptoHash.treeHash(UnkeyedCryptoHash.TreeMode.PARALLEL_HASH_256, input,
+                                ProgressMonitor.NONE),
+                        "ParallelHash256 " + length);
+                assertArrayEquals(merkleReference(data),
+                        UnkeyedCryptoHash.treeHash(UnkeyedCryptoHash.TreeMode.MERKLE_SHA256, input,
+                                ProgressMonitor.NONE),
+                        "Merkle " + length);
+            } finally {
+                Files.deleteIfExists(input);
+            }
+        }
+    }
+
+    @Test
+    void shouldStopTreeHashWhenCancelled() throws IOException {
+        Path input = createInput(4 * 1024 * 1024);
+        var done = new AtomicLong();
+
+        var monitor = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) {
+                done.addAndGet(bytes);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+
+        try {
+            for (UnkeyedCryptoHash.TreeMode mode : UnkeyedCryptoHash.TreeMode.values())
+                assertThrows(CancellationException.class, () -> UnkeyedCryptoHash.treeHash(mode, input, monitor));
+
+            assertEquals(0, done.get());
+        } finally {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    @Test
+    void shouldHashAsynchronously() throws Exception {
+        // Empty, shorter than a chunk, and more chunks than reads in flight
+        for (int length : new int[] {0, 1, AsyncHashReader.CHUNK_SIZE * AsyncHashReader.SLOTS + 5}) {
+            Path input = createInput(length);
+
+            try {
+                var done = new AtomicLong();
+                var monitor = new ProgressMonitor() {
+                    @Override
+                    public void worked(long bytes) {
+                        done.addAndGet(bytes);
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return false;
+                    }
+                };
+
+                assertArrayEquals(UnkeyedCryptoHash.hash("SHA-256", Files.readAllBytes(input)),
+                        UnkeyedCryptoHash.asyncHash("SHA-256", input, monitor).get(), "length " + length);
+                assertEquals(length, done.get());
+            } finally {
+                Files.deleteIfExists(input);
+            }
+        }
+    }
+
+    @Test
+    void shouldFailAsyncHashWithoutThrowing() throws IOException {
+        Path input = createInput(AsyncHashReader.CHUNK_SIZE * 2);
+
+        var cancelled = new ProgressMonitor() {
+            @Override
+            public void worked(long bytes) { }
+
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+
+        try {
+            var missing = UnkeyedCryptoHash.asyncHash("SHA-256", input.resolveSibling("missing.bin"), cancelled);
+            var ex = assertThrows(ExecutionException.class, missing::get);
+            assertInstanceOf(NoSuchFileException.class, ex.getCause());
+
+            var stopped = UnkeyedCryptoHash.asyncHash("SHA-256", input, cancelled);
+            assertThrows(CancellationException.class, stopped::get);
+
+            // The channel is closed, so the file can be deleted on every platform
+            Files.delete(input);
+        } finally {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    private static byte[] reference(Digest digest, byte[] data) {
+        byte[] output = new byte[digest.getDigestSize()];
+        digest.update(data, 0, data.length);
+        digest.doFinal(output, 0);
+        return output;
+    }
+
+    /**
+     * MTH of RFC 6962, straight from its recursive definition.
+     */
+    private static byte[] merkleReference(byte[] data) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+
+        if (data.length <= MerkleTreeHash.LEAF_SIZE) {
+            if (data.length > 0)
+                md.update((byte) 0x00);
+
+            return md.digest(data);
+        }
+
+        int leaves = (data.length + MerkleTreeHash.LEAF_SIZE - 1) / MerkleTreeHash.LEAF_SIZE;
+        int split = Integer.highestOneBit(leaves - 1) * MerkleTreeHash.LEAF_SIZE;
+
+        md.update((byte) 0x01);
+        md.update(merkleReference(Arrays.copyOfRange(data, 0, split)));
+        md.update(merkleReference(Arrays.copyOfRange(data, split, data.length)));
+        return md.digest();
+    }
+
+    private static Path createInput(int length) throws IOException {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+
+        Path input = Files.createTempFile("hash", ".bin");
+        Files.write(input, data);
+        return input;
+    }
+
+}
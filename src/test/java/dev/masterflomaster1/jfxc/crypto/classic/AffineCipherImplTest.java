@@ -32,4 +32,22 @@ class AffineCipherImplTest {
         }
     }
 
+    @Test
+    void shouldMatchStringResultForCharArrays() {
+        var longText = text.repeat(40);
+
+        for (int a : AffineCipherImpl.SLOPE) {
+            for (int b : AffineCipherImpl.INTERCEPT) {
+                assertEquals(AffineCipherImpl.encrypt(longText, a, b),
+                        new String(AffineCipherImpl.encrypt(longText.toCharArray(), a, b)));
+                assertEquals(AffineCipherImpl.decrypt(longText, a, b),
+                        new String(AffineCipherImpl.decrypt(longText.toCharArray(), a, b)));
+            }
+        }
+
+        var nonAscii = longText + "Größe";
+        assertEquals(AffineCipherImpl.encrypt(nonAscii, 5, 8),
+                new String(AffineCipherImpl.encrypt(nonAscii.toCharArray(), 5, 8)));
+    }
+
 }
\ No newline at end of file
@@ -14,4 +14,12 @@ class AtbashCipherImplTest {
         assertEquals("Hello world!".toUpperCase(), b);
     }
 
+    @Test
+    void shouldMatchStringResultForCharArrays() {
+        var text = "The quick brown fox jumps over 13 lazy dogs. ".repeat(40);
+
+        assertEquals(AtbashCipherImpl.encrypt(text), new String(AtbashCipherImpl.encrypt(text.toCharArray())));
+        assertEquals(AtbashCipherImpl.decrypt(text), new String(AtbashCipherImpl.decrypt(text.toCharArray())));
+    }
+
 }
\ No newline at end of file
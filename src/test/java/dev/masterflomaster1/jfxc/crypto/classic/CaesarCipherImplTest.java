@@ -16,5 +16,16 @@ class CaesarCipherImplTest {
         assertEquals(text, b);
     }
 
+    @Test
+    void shouldMatchStringResultForCharArrays() {
+        var text = "The quick brown fox jumps over 13 lazy dogs. ".repeat(40) + "Größe, Ærø, Σίσυφος";
+
+        for (int shift : new int[] {0, 1, 5, 25, 26, 77, -3}) {
+            assertEquals(CaesarCipherImpl.encrypt(text, shift),
+                    new String(CaesarCipherImpl.encrypt(text.toCharArray(), shift)));
+            assertEquals(CaesarCipherImpl.decrypt(text, shift),
+                    new String(CaesarCipherImpl.decrypt(text.toCharArray(), shift)));
+        }
+    }
 
 }
\ No newline at end of file
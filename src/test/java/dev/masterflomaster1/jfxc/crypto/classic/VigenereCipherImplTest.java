@@ -16,4 +16,18 @@ class VigenereCipherImplTest {
         assertEquals(text.toUpperCase(), b);
     }
 
+    @Test
+    void shouldMatchStringResultForCharArrays() {
+        // Runs of letters longer than a vector and chunks mixing letters with spaces and punctuation
+        var text = "Attackatdawnfromthenorthernridge".repeat(20) + "The quick brown fox jumps, 13 lazy dogs. "
+                .repeat(20);
+
+        for (String keyword : new String[] {"LEMON", "oculorhinolaryngology", "K"}) {
+            assertEquals(VigenereCipherImpl.encrypt(text, keyword),
+                    new String(VigenereCipherImpl.encrypt(text.toCharArray(), keyword)));
+            assertEquals(VigenereCipherImpl.decrypt(text, keyword),
+                    new String(VigenereCipherImpl.decrypt(text.toCharArray(), keyword)));
+        }
+    }
+
 }
\ No newline at end of file